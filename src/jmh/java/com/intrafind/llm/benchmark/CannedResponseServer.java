@@ -0,0 +1,73 @@
+package com.intrafind.llm.benchmark;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+
+// Loopback server answering every provider endpoint with a fixed response, so benchmarks measure the client only
+class CannedResponseServer {
+    static final String OPENAI_RESPONSE = "{\"id\":\"chatcmpl-1\",\"object\":\"chat.completion\",\"model\":\"gpt-4o\"," +
+        "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"The answer is 4.\"},\"finish_reason\":\"stop\"}]," +
+        "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":6,\"total_tokens\":18,\"prompt_tokens_details\":{\"cached_tokens\":0}}}";
+    static final String ANTHROPIC_RESPONSE = "{\"id\":\"msg_1\",\"type\":\"message\",\"role\":\"assistant\",\"model\":\"claude-3-haiku-20240307\"," +
+        "\"content\":[{\"type\":\"text\",\"text\":\"The answer is 4.\"}],\"stop_reason\":\"end_turn\"," +
+        "\"usage\":{\"input_tokens\":12,\"output_tokens\":6}}";
+    static final String GEMINI_RESPONSE = "{\"candidates\":[{\"content\":{\"role\":\"model\",\"parts\":[{\"text\":\"The answer is 4.\"}]}," +
+        "\"finishReason\":\"STOP\"}],\"usageMetadata\":{\"promptTokenCount\":12,\"candidatesTokenCount\":6,\"totalTokenCount\":18}}";
+    static final String MISTRAL_RESPONSE = "{\"id\":\"cmpl-1\",\"object\":\"chat.completion\",\"model\":\"mistral-tiny\"," +
+        "\"choices\":[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"The answer is 4.\"},\"finish_reason\":\"stop\"}]," +
+        "\"usage\":{\"prompt_tokens\":12,\"completion_tokens\":6,\"total_tokens\":18}}";
+    
+    private final HttpServer server;
+    
+    CannedResponseServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 512);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        context("/openai/chat/completions", OPENAI_RESPONSE);
+        context("/anthropic/messages", ANTHROPIC_RESPONSE);
+        context("/gemini/models/", GEMINI_RESPONSE);
+        context("/mistral/chat/completions", MISTRAL_RESPONSE);
+        server.start();
+    }
+    
+    private void context(String path, String json) {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        server.createContext(path, exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+    
+    String baseUrl(LLMProvider provider) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + provider.name().toLowerCase();
+    }
+    
+    static String response(LLMProvider provider) {
+        switch (provider) {
+            case OPENAI:
+                return OPENAI_RESPONSE;
+            case ANTHROPIC:
+                return ANTHROPIC_RESPONSE;
+            case GEMINI:
+                return GEMINI_RESPONSE;
+            default:
+                return MISTRAL_RESPONSE;
+        }
+    }
+    
+    void stop() {
+        server.stop(0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.intrafind.llm.benchmark;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end generate() per provider against a loopback server with canned responses: request building,
+ * serialization, the HTTP exchange over a pooled connection and response parsing. Run with the GC
+ * profiler (the benchmark profile does) to see bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-Dsun.net.httpserver.nodelay=true"})
+public class GenerateBenchmark {
+    
+    @Param({"OPENAI", "ANTHROPIC", "GEMINI", "MISTRAL"})
+    public LLMProvider provider;
+    
+    @Param({"100", "10000", "1000000"})
+    public int promptBytes;
+    
+    @Param({"false", "true"})
+    public boolean image;
+    
+    @Param({"false", "true"})
+    public boolean tools;
+    
+    private CannedResponseServer server;
+    private LLMClient client;
+    private LLMRequest request;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new CannedResponseServer();
+        client = LLMClientFactory.create(provider, new LLMConfig("benchmark-key").withBaseUrl(server.baseUrl(provider)));
+        request = Payloads.request(promptBytes, image, tools);
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.close();
+        server.stop();
+    }
+    
+    @Benchmark
+    public LLMResponse generate() {
+        return client.generate(request);
+    }
+}
\ No newline at end of file
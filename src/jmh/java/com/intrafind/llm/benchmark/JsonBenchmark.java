@@ -0,0 +1,59 @@
+package com.intrafind.llm.benchmark;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.utils.JsonParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Serialization and parsing in isolation, without the loopback round trip of GenerateBenchmark
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+    
+    @Param({"OPENAI", "ANTHROPIC", "GEMINI", "MISTRAL"})
+    public LLMProvider provider;
+    
+    @Param({"100", "10000", "1000000"})
+    public int promptBytes;
+    
+    private Map<String, Object> requestBody;
+    private String responseJson;
+    
+    @Setup
+    public void setUp() {
+        // Same shape as the chat request bodies the clients build
+        requestBody = Map.of(
+            "model", "benchmark-model",
+            "messages", List.of(Map.of("role", "user", "content", Payloads.prompt(promptBytes))),
+            "temperature", 0.2,
+            "max_tokens", 256);
+        responseJson = CannedResponseServer.response(provider);
+    }
+    
+    @Benchmark
+    public String serializeRequest() {
+        return JsonParser.toJson(requestBody);
+    }
+    
+    @Benchmark
+    public Map<?, ?> parseResponse() {
+        return JsonParser.parse(responseJson, Map.class);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.intrafind.llm.benchmark;
+
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.Tool;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+// Deterministic request payloads shared by the benchmarks
+class Payloads {
+    private static final String[] WORDS = {
+        "the", "quarterly", "report", "shows", "revenue", "growth", "across", "all", "regions", "while",
+        "operating", "costs", "remained", "stable", "compared", "to", "previous", "year", "Übersicht", "données"
+    };
+    
+    static String prompt(int bytes) {
+        Random random = new Random(42);
+        StringBuilder prompt = new StringBuilder(bytes + 16);
+        while (prompt.length() < bytes) {
+            prompt.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        prompt.setLength(bytes);
+        return prompt.toString();
+    }
+    
+    static byte[] image(int bytes) {
+        byte[] image = new byte[bytes];
+        new Random(7).nextBytes(image);
+        // JPEG magic so providers and stand-ins would treat it as an image
+        image[0] = (byte) 0xFF;
+        image[1] = (byte) 0xD8;
+        return image;
+    }
+    
+    static List<Tool> tools() {
+        return List.of(
+            new Tool("get_weather", "Get the current weather in a location", Map.of(
+                "type", "object",
+                "properties", Map.of(
+                    "location", Map.of("type", "string", "description", "The city and state"),
+                    "unit", Map.of("type", "string", "enum", List.of("celsius", "fahrenheit"))),
+                "required", List.of("location"))),
+            new Tool("search_documents", "Full-text search over the document index", Map.of(
+                "type", "object",
+                "properties", Map.of(
+                    "query", Map.of("type", "string"),
+                    "limit", Map.of("type", "integer", "minimum", 1, "maximum", 50)),
+                "required", List.of("query"))));
+    }
+    
+    static LLMRequest request(int promptBytes, boolean withImage, boolean withTools) {
+        LLMRequest.Builder request = LLMRequest.builder()
+            .prompt(prompt(promptBytes))
+            .parameter("temperature", 0.2)
+            .parameter("max_tokens", 256);
+        if (withImage) {
+            request.image("image/jpeg", image(512 * 1024));
+        }
+        if (withTools) {
+            request.tools(tools());
+        }
+        return request.build();
+    }
+}
\ No newline at end of file
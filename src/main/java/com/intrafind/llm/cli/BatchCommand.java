@@ -0,0 +1,416 @@
+package com.intrafind.llm.cli;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.utils.JsonParser;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a JSONL file of requests through a client, behind {@code j2xlm batch}. Each input line is an object with a
+ * {@code prompt} and optionally {@code id}, {@code model} and {@code parameters}; each output line carries the
+ * input's zero-based {@code index}. Lines are read lazily, so input size is not limited by memory.
+ *
+ * <p>With {@code --checkpoint} the progress is saved atomically once per second: every index below {@code next}
+ * is done, {@code done} lists the finished indices above it (as-completed output only), and {@code bytes} is the
+ * output length covering exactly those lines. A restarted run truncates the output to {@code bytes} and skips the
+ * finished indices, so a crashed run resumes without losing or duplicating lines.
+ */
+public class BatchCommand {
+    
+    static final String USAGE = "Usage: java -jar j2xlm.jar batch <provider> <api_key> [options]\n\n" +
+        "Options:\n" +
+        "  --input <path>          JSONL input, one {\"prompt\": ...} object per line (default: stdin)\n" +
+        "  --output <path>         JSONL output (default: stdout)\n" +
+        "  --checkpoint <path>     Progress file; rerun the same command to resume (needs --output)\n" +
+        "  --concurrency <n>       Requests in flight (default 8)\n" +
+        "  --rate <n>              At most n requests started per second\n" +
+        "  --as-completed          Write results as they finish instead of in input order\n" +
+        "  --model <name>          Default model for lines without one\n" +
+        "  --base-url <url>        Endpoint override\n\n" +
+        "Example:\n" +
+        "java -jar j2xlm.jar batch openai sk-your-key --input prompts.jsonl --output results.jsonl " +
+        "--checkpoint results.ckpt --concurrency 32 --rate 50";
+    
+    private static final long CHECKPOINT_INTERVAL_NANOS = 1_000_000_000L;
+    
+    private final LLMProvider provider;
+    private final String apiKey;
+    private Path input;
+    private Path output;
+    private Path checkpoint;
+    private int concurrency = 8;
+    private double rate;
+    private boolean ordered = true;
+    private String model;
+    private String baseUrl;
+    
+    public BatchCommand(LLMProvider provider, String apiKey) {
+        this.provider = provider;
+        this.apiKey = apiKey;
+    }
+    
+    public static BatchCommand parse(String[] args) {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("batch needs a provider and an API key");
+        }
+        BatchCommand command = new BatchCommand(LLMTestCLI.parseProvider(args[0].toLowerCase()), args[1]);
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--as-completed")) {
+                command.ordered = false;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--input" -> command.input = value.equals("-") ? null : Path.of(value);
+                case "--output" -> command.output = value.equals("-") ? null : Path.of(value);
+                case "--checkpoint" -> command.checkpoint = Path.of(value);
+                case "--concurrency" -> command.concurrency = Integer.parseInt(value);
+                case "--rate" -> command.rate = Double.parseDouble(value);
+                case "--model" -> command.model = value;
+                case "--base-url" -> command.baseUrl = value;
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (command.checkpoint != null && command.output == null) {
+            throw new IllegalArgumentException("--checkpoint needs --output");
+        }
+        return command;
+    }
+    
+    public BatchCommand withInput(Path input) {
+        this.input = input;
+        return this;
+    }
+    
+    public BatchCommand withOutput(Path output) {
+        this.output = output;
+        return this;
+    }
+    
+    public BatchCommand withCheckpoint(Path checkpoint) {
+        this.checkpoint = checkpoint;
+        return this;
+    }
+    
+    public BatchCommand withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+    
+    public BatchCommand withRate(double rate) {
+        this.rate = rate;
+        return this;
+    }
+    
+    public BatchCommand withOrdered(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+    
+    public BatchCommand withBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+    
+    public Summary run(InputStream stdin, OutputStream stdout, PrintStream log) throws IOException {
+        Checkpoint resume = checkpoint != null && Files.exists(checkpoint) ? Checkpoint.load(checkpoint) : Checkpoint.EMPTY;
+        if (resume != Checkpoint.EMPTY) {
+            log.println("Resuming from " + checkpoint + ": " + resume.next() + " lines done, " +
+                resume.done().size() + " more ahead of them");
+        }
+        
+        FileChannel channel = null;
+        OutputStream sink = stdout;
+        if (output != null) {
+            channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (channel.size() < resume.bytes()) {
+                channel.close();
+                throw new IllegalStateException(output + " is shorter than recorded in " + checkpoint +
+                    "; delete the checkpoint to start over");
+            }
+            // Drop lines written after the last checkpoint; they are not in it and will be redone
+            channel.truncate(resume.bytes());
+            channel.position(resume.bytes());
+            sink = Channels.newOutputStream(channel);
+        }
+        
+        LLMConfig config = new LLMConfig(apiKey).withMaxConnections(concurrency);
+        if (baseUrl != null) {
+            config.withBaseUrl(baseUrl);
+        }
+        LLMClient client = LLMClientFactory.create(provider, config);
+        ResultWriter writer = new ResultWriter(new BufferedOutputStream(sink, 64 * 1024), channel, resume);
+        Semaphore inFlight = new Semaphore(concurrency);
+        Summary summary = new Summary();
+        long started = System.nanoTime();
+        long interval = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        long nextStart = started;
+        
+        InputStream in = input != null ? Files.newInputStream(input) : stdin;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            String line;
+            for (long index = 0; (line = reader.readLine()) != null; index++) {
+                if (index < resume.next() || resume.done().contains(index) || line.isBlank()) {
+                    writer.complete(index, null);
+                    summary.skipped.incrementAndGet();
+                    continue;
+                }
+                // Bounds the results held back for ordering, and the done set of the checkpoint
+                writer.awaitWindow(index, concurrency * 16L);
+                inFlight.acquireUninterruptibly();
+                if (interval > 0) {
+                    long wait = nextStart - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    nextStart = Math.max(nextStart, System.nanoTime() - interval) + interval;
+                }
+                
+                long lineIndex = index;
+                String text = line;
+                executor.execute(() -> {
+                    try {
+                        writer.complete(lineIndex, process(client, lineIndex, text, summary));
+                    } finally {
+                        inFlight.release();
+                    }
+                    long processed = summary.processed.incrementAndGet();
+                    if (processed % 1000 == 0) {
+                        double seconds = (System.nanoTime() - started) / 1e9;
+                        log.printf(Locale.ROOT, "%d processed, %d errors, %.1f lines/s%n",
+                            processed, summary.errors.get(), processed / seconds);
+                    }
+                });
+            }
+        } finally {
+            client.close();
+        }
+        writer.finish();
+        if (channel != null) {
+            channel.close();
+        }
+        
+        log.printf(Locale.ROOT, "Done: %d processed, %d errors, %d skipped in %.1fs%n", summary.processed.get(),
+            summary.errors.get(), summary.skipped.get(), (System.nanoTime() - started) / 1e9);
+        return summary;
+    }
+    
+    private String process(LLMClient client, long index, String line, Summary summary) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("index", index);
+        try {
+            Map<String, Object> item = JsonParser.parse(line, Map.class);
+            if (item.get("id") != null) {
+                result.put("id", item.get("id"));
+            }
+            if (!(item.get("prompt") instanceof String prompt)) {
+                throw new IllegalArgumentException("Line has no prompt");
+            }
+            
+            LLMRequest.Builder request = LLMRequest.builder().prompt(prompt);
+            Object lineModel = item.getOrDefault("model", model);
+            if (lineModel != null) {
+                request.model(lineModel.toString());
+            }
+            // Batch lines usually share their system prompt, so it is marked for the provider's prompt cache
+            if (item.get("system") instanceof String system) {
+                request.system(ContentPart.cached(system)).automaticCaching(true);
+            }
+            if (item.get("parameters") instanceof Map<?, ?> parameters) {
+                parameters.forEach((key, value) -> request.parameter(key.toString(), value));
+            }
+            
+            long start = System.nanoTime();
+            LLMResponse response = client.generate(request.build());
+            result.put("content", response.getContent());
+            result.put("model", response.getModel());
+            result.put("usage", Map.of(
+                "input_tokens", response.getUsage().inputTokens(),
+                "output_tokens", response.getUsage().outputTokens(),
+                "cached_input_tokens", response.getUsage().cachedInputTokens(),
+                "cache_write_input_tokens", response.getUsage().cacheWriteInputTokens()));
+            result.put("latency_ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (RuntimeException e) {
+            summary.errors.incrementAndGet();
+            result.put("error", e.getMessage());
+            result.put("error_type", e.getClass().getSimpleName());
+        }
+        return JsonParser.toJson(result);
+    }
+    
+    public static final class Summary {
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        
+        public long getProcessed() {
+            return processed.get();
+        }
+        
+        public long getErrors() {
+            return errors.get();
+        }
+        
+        public long getSkipped() {
+            return skipped.get();
+        }
+    }
+    
+    // Writes result lines in input order or as completed and keeps the checkpoint in step with the output
+    private final class ResultWriter {
+        private static final String WRITTEN = new String("written");
+        
+        private final OutputStream out;
+        private final FileChannel channel;
+        private final TreeMap<Long, String> pending = new TreeMap<>();
+        private long next;
+        private long bytes;
+        private long lastCheckpoint = System.nanoTime();
+        
+        ResultWriter(OutputStream out, FileChannel channel, Checkpoint resume) {
+            this.out = out;
+            this.channel = channel;
+            this.next = resume.next();
+            this.bytes = resume.bytes();
+            // Indices finished ahead of the watermark in the previous run stay done
+            resume.done().forEach(index -> pending.put(index, WRITTEN));
+        }
+        
+        synchronized void awaitWindow(long index, long window) {
+            while (index - next >= window) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for results", e);
+                }
+            }
+        }
+        
+        // A null line marks an index that is done without output (skipped on resume or blank)
+        synchronized void complete(long index, String line) {
+            if (index < next) {
+                // Done before the resumed checkpoint; keeping it would grow pending and the checkpoint's done set
+                notifyAll();
+                return;
+            }
+            if (line != null && !ordered) {
+                write(line);
+                line = null;
+            }
+            pending.put(index, line != null ? line : WRITTEN);
+            String head;
+            while ((head = pending.get(next)) != null) {
+                pending.remove(next);
+                if (head != WRITTEN) {
+                    write(head);
+                }
+                next++;
+            }
+            notifyAll();
+            if (checkpoint != null && System.nanoTime() - lastCheckpoint > CHECKPOINT_INTERVAL_NANOS) {
+                saveCheckpoint();
+            }
+        }
+        
+        synchronized void finish() throws IOException {
+            out.flush();
+            if (checkpoint != null) {
+                saveCheckpoint();
+            }
+        }
+        
+        private void write(String line) {
+            try {
+                byte[] data = (line + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(data);
+                bytes += data.length;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        private void saveCheckpoint() {
+            try {
+                // The output must be on disk before a checkpoint that covers it
+                out.flush();
+                if (channel != null) {
+                    channel.force(false);
+                }
+                Set<Long> done = ordered ? Set.of() : pending.keySet();
+                new Checkpoint(next, bytes, done).store(checkpoint);
+                lastCheckpoint = System.nanoTime();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+    
+    record Checkpoint(long next, long bytes, Set<Long> done) {
+        static final Checkpoint EMPTY = new Checkpoint(0, 0, Set.of());
+        
+        static Checkpoint load(Path file) throws IOException {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(file)) {
+                properties.load(in);
+            }
+            String done = properties.getProperty("done", "").trim();
+            return new Checkpoint(
+                Long.parseLong(properties.getProperty("next", "0")),
+                Long.parseLong(properties.getProperty("bytes", "0")),
+                done.isEmpty() ? Set.of() : Arrays.stream(done.split(","))
+                    .map(Long::valueOf)
+                    .collect(Collectors.toUnmodifiableSet()));
+        }
+        
+        void store(Path file) throws IOException {
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            String content = "next=" + next + "\nbytes=" + bytes + "\ndone=" +
+                done.stream().map(String::valueOf).collect(Collectors.joining(",")) + "\n";
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(StandardCharsets.UTF_8.encode(content));
+                channel.force(false);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,349 @@
+package com.intrafind.llm.cli;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.LLMTiming;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator behind {@code j2xlm bench}. In open-loop mode ({@code --rate}) requests are issued on a fixed
+ * schedule regardless of how many are still in flight, and latency is measured from each request's intended
+ * start, so a stalled server shows up in the percentiles instead of silently lowering the offered load
+ * (coordinated omission). {@code --concurrency} runs a closed loop of N callers instead.
+ */
+public class BenchCommand {
+    
+    static final String USAGE = "Usage: java -jar j2xlm.jar bench <provider> <api_key> [options]\n\n" +
+        "Options:\n" +
+        "  --model <name>          Model to request\n" +
+        "  --base-url <url>        Endpoint override, e.g. a local mock server\n" +
+        "  --rate <n>              Open loop: start n requests per second\n" +
+        "  --concurrency <n>       Closed loop: n callers back to back (default 8 when --rate is not set)\n" +
+        "  --duration <time>       Measured run time, e.g. 30s or 2m (default 30s)\n" +
+        "  --warmup <time>         Unmeasured lead-in at the same load (default 0s)\n" +
+        "  --prompt-file <path>    Prompts, one per line, used round robin\n" +
+        "  --max-tokens <n>        max_tokens parameter for every request\n" +
+        "  --connections <n>       HTTP connection pool size (default: concurrency, or 64 for --rate)\n" +
+        "  --hgrm <path>           Write the latency distribution in HdrHistogram .hgrm format\n\n" +
+        "Example:\n" +
+        "java -jar j2xlm.jar bench openai sk-your-key --rate 20 --duration 60s --prompt-file prompts.txt";
+    
+    private static final Pattern HTTP_STATUS = Pattern.compile("^HTTP error (\\d{3})");
+    
+    private final LLMProvider provider;
+    private final String apiKey;
+    private String model;
+    private String baseUrl;
+    private double rate;
+    private int concurrency;
+    private long durationNanos = 30_000_000_000L;
+    private long warmupNanos;
+    private List<String> prompts = List.of("What is 2+2?");
+    private Integer maxTokens;
+    private int connections;
+    private Path hgrmFile;
+    
+    public BenchCommand(LLMProvider provider, String apiKey) {
+        this.provider = provider;
+        this.apiKey = apiKey;
+    }
+    
+    public static BenchCommand parse(String[] args) throws IOException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("bench needs a provider and an API key");
+        }
+        BenchCommand command = new BenchCommand(LLMTestCLI.parseProvider(args[0].toLowerCase()), args[1]);
+        for (int i = 2; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--model" -> command.model = value;
+                case "--base-url" -> command.baseUrl = value;
+                case "--rate" -> command.rate = Double.parseDouble(value);
+                case "--concurrency" -> command.concurrency = Integer.parseInt(value);
+                case "--duration" -> command.durationNanos = parseDuration(value);
+                case "--warmup" -> command.warmupNanos = parseDuration(value);
+                case "--prompt-file" -> command.prompts = Files.readAllLines(Path.of(value)).stream()
+                    .filter(line -> !line.isBlank())
+                    .toList();
+                case "--max-tokens" -> command.maxTokens = Integer.parseInt(value);
+                case "--connections" -> command.connections = Integer.parseInt(value);
+                case "--hgrm" -> command.hgrmFile = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: " + option);
+            }
+        }
+        if (command.prompts.isEmpty()) {
+            throw new IllegalArgumentException("Prompt file contains no prompts");
+        }
+        return command;
+    }
+    
+    static long parseDuration(String value) {
+        String text = value.trim().toLowerCase();
+        if (text.endsWith("ms")) {
+            return Long.parseLong(text.substring(0, text.length() - 2)) * 1_000_000L;
+        } else if (text.endsWith("s")) {
+            return (long) (Double.parseDouble(text.substring(0, text.length() - 1)) * 1_000_000_000L);
+        } else if (text.endsWith("m")) {
+            return (long) (Double.parseDouble(text.substring(0, text.length() - 1)) * 60_000_000_000L);
+        }
+        return (long) (Double.parseDouble(text) * 1_000_000_000L);
+    }
+    
+    public BenchCommand withModel(String model) {
+        this.model = model;
+        return this;
+    }
+    
+    public BenchCommand withBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl;
+        return this;
+    }
+    
+    public BenchCommand withRate(double rate) {
+        this.rate = rate;
+        return this;
+    }
+    
+    public BenchCommand withConcurrency(int concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+    
+    public BenchCommand withDuration(long durationMillis) {
+        this.durationNanos = durationMillis * 1_000_000L;
+        return this;
+    }
+    
+    public BenchCommand withPrompts(List<String> prompts) {
+        this.prompts = prompts;
+        return this;
+    }
+    
+    public Result run(PrintStream out) throws IOException {
+        boolean openLoop = rate > 0;
+        int callers = concurrency > 0 ? concurrency : 8;
+        LLMConfig config = new LLMConfig(apiKey)
+            .withMaxConnections(connections > 0 ? connections : openLoop ? 64 : callers);
+        if (baseUrl != null) {
+            config.withBaseUrl(baseUrl);
+        }
+        
+        out.println("=== Benchmark: " + provider.getDisplayName() + " (" + (model != null ? model : "default model") + ") ===");
+        out.println(openLoop
+            ? String.format(Locale.ROOT, "Open loop at %.1f req/s", rate)
+            : "Closed loop with " + callers + " concurrent callers");
+        out.printf(Locale.ROOT, "Duration %.1fs, warmup %.1fs, %d prompt(s)%n%n", durationNanos / 1e9, warmupNanos / 1e9, prompts.size());
+        
+        Result result = new Result((int) ((warmupNanos + durationNanos) / 1_000_000_000L) + 1);
+        LLMClient client = LLMClientFactory.create(provider, config);
+        long start = System.nanoTime();
+        long measureStart = start + warmupNanos;
+        long end = measureStart + durationNanos;
+        result.start = start;
+        result.measureStart = measureStart;
+        
+        Thread reporter = Thread.ofVirtual().start(() -> report(out, result, start));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            if (openLoop) {
+                long interval = (long) (1_000_000_000L / rate);
+                long intended = start;
+                for (long i = 0; intended < end; intended = start + (++i) * interval) {
+                    long wait = intended - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    long scheduled = intended;
+                    int index = (int) (i % prompts.size());
+                    executor.execute(() -> call(client, index, scheduled, result));
+                }
+            } else {
+                AtomicInteger next = new AtomicInteger();
+                for (int c = 0; c < callers; c++) {
+                    executor.execute(() -> {
+                        while (System.nanoTime() < end) {
+                            call(client, next.getAndIncrement() % prompts.size(), System.nanoTime(), result);
+                        }
+                    });
+                }
+            }
+        } finally {
+            result.finished = System.nanoTime();
+            reporter.interrupt();
+            client.close();
+        }
+        try {
+            reporter.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        
+        printSummary(out, result);
+        if (hgrmFile != null) {
+            try (PrintStream hgrm = new PrintStream(Files.newOutputStream(hgrmFile))) {
+                result.latency.outputPercentileDistribution(hgrm);
+            }
+            out.println("Latency distribution written to " + hgrmFile);
+        }
+        return result;
+    }
+    
+    private void call(LLMClient client, int promptIndex, long intendedStart, Result result) {
+        result.inFlight.incrementAndGet();
+        try {
+            LLMRequest.Builder request = LLMRequest.builder().prompt(prompts.get(promptIndex));
+            if (model != null) {
+                request.model(model);
+            }
+            if (maxTokens != null) {
+                request.parameter("max_tokens", maxTokens);
+            }
+            LLMResponse response = client.generate(request.build());
+            long done = System.nanoTime();
+            result.countCompletion(done, false);
+            if (intendedStart >= result.measureStart) {
+                LLMTiming timing = response.getTiming();
+                long latency = done - intendedStart;
+                result.latency.recordNanos(latency);
+                result.timeToFirstToken.recordNanos(latency - timing.getDownload().toNanos() - timing.getParse().toNanos());
+                result.inputTokens.add(response.getUsage().inputTokens());
+                result.outputTokens.add(response.getUsage().outputTokens());
+                result.lastCompletion.accumulateAndGet(done, Math::max);
+            }
+        } catch (RuntimeException e) {
+            result.countCompletion(System.nanoTime(), true);
+            if (intendedStart >= result.measureStart) {
+                result.errors.computeIfAbsent(errorKey(e), key -> new LongAdder()).increment();
+            }
+        } finally {
+            result.inFlight.decrementAndGet();
+        }
+    }
+    
+    static String errorKey(RuntimeException e) {
+        if (e instanceof LLMException && e.getMessage() != null) {
+            Matcher status = HTTP_STATUS.matcher(e.getMessage());
+            if (status.find()) {
+                return "HTTP " + status.group(1);
+            }
+        }
+        return e.getClass().getSimpleName();
+    }
+    
+    // Prints throughput once per second while the run is in progress
+    private static void report(PrintStream out, Result result, long start) {
+        out.println("  time        ok    errors  in-flight");
+        for (int second = 1; ; second++) {
+            long wake = start + second * 1_000_000_000L;
+            long wait;
+            while ((wait = wake - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+            int slot = Math.min(second - 1, result.perSecond.length() / 2 - 1);
+            out.printf(Locale.ROOT, "%5ds %9d %9d %10d%n", second,
+                result.perSecond.get(slot * 2), result.perSecond.get(slot * 2 + 1), result.inFlight.get());
+        }
+    }
+    
+    private static void printSummary(PrintStream out, Result result) {
+        long ok = result.latency.getTotalCount();
+        long errors = result.getErrorCount();
+        double seconds = Math.max(1, Math.max(result.lastCompletion.get(), result.finished) - result.measureStart) / 1e9;
+        
+        out.println();
+        out.printf(Locale.ROOT, "Requests:    %d ok, %d errors (%.2f%%)%n", ok, errors, ok + errors == 0 ? 0.0 : 100.0 * errors / (ok + errors));
+        out.printf(Locale.ROOT, "Throughput:  %.1f req/s, %.1f output tokens/s, %.1f input tokens/s%n",
+            ok / seconds, result.outputTokens.sum() / seconds, result.inputTokens.sum() / seconds);
+        out.println("Latency:     " + percentiles(result.latency));
+        out.println("TTFT:        " + percentiles(result.timeToFirstToken));
+        if (errors > 0) {
+            out.println("Errors:");
+            new TreeMap<>(result.errors).forEach((key, count) -> out.printf(Locale.ROOT, "  %-24s %d%n", key, count.sum()));
+        }
+    }
+    
+    private static String percentiles(LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "p50 %.1fms  p90 %.1fms  p99 %.1fms  p99.9 %.1fms  max %.1fms",
+            histogram.valueAtPercentile(50) / 1000.0,
+            histogram.valueAtPercentile(90) / 1000.0,
+            histogram.valueAtPercentile(99) / 1000.0,
+            histogram.valueAtPercentile(99.9) / 1000.0,
+            histogram.getMax() / 1000.0);
+    }
+    
+    public static final class Result {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LatencyHistogram timeToFirstToken = new LatencyHistogram();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong lastCompletion = new AtomicLong();
+        // ok and error completions per second since the start, interleaved
+        private final AtomicLongArray perSecond;
+        private volatile long start;
+        private volatile long measureStart;
+        private volatile long finished;
+        
+        private Result(int seconds) {
+            this.perSecond = new AtomicLongArray((seconds + 1) * 2);
+        }
+        
+        private void countCompletion(long now, boolean error) {
+            int slot = (int) Math.min((now - start) / 1_000_000_000L, perSecond.length() / 2 - 1);
+            perSecond.incrementAndGet(slot * 2 + (error ? 1 : 0));
+        }
+        
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+        
+        public LatencyHistogram getTimeToFirstToken() {
+            return timeToFirstToken;
+        }
+        
+        public long getOutputTokens() {
+            return outputTokens.sum();
+        }
+        
+        public long getErrorCount() {
+            return errors.values().stream().mapToLong(LongAdder::sum).sum();
+        }
+        
+        public Map<String, Long> getErrors() {
+            Map<String, Long> counts = new TreeMap<>();
+            errors.forEach((key, count) -> counts.put(key, count.sum()));
+            return counts;
+        }
+    }
+}
\ No newline at end of file
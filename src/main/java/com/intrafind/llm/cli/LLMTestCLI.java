@@ -2,12 +2,14 @@ package com.intrafind.llm.cli;
 
 import com.intrafind.llm.config.LLMClientFactory;
 import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.Conversation;
 import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.core.LLMRequest;
 import com.intrafind.llm.core.LLMResponse;
 import com.intrafind.llm.exceptions.LLMException;
 
+import java.io.IOException;
 import java.util.Arrays;
 import java.util.Scanner;
 
@@ -23,9 +25,21 @@ public class LLMTestCLI {
         "java -jar j2xlm.jar openai sk-your-key gpt-4\n" +
         "java -jar j2xlm.jar anthropic your-key claude-3-sonnet-20240229\n" +
         "java -jar j2xlm.jar gemini your-key gemini-pro\n" +
-        "java -jar j2xlm.jar mistral your-key mistral-medium";
+        "java -jar j2xlm.jar mistral your-key mistral-medium\n\n" +
+        "Load testing and batch processing (run without further arguments for options):\n" +
+        "java -jar j2xlm.jar bench <provider> <api_key> [options]\n" +
+        "java -jar j2xlm.jar batch <provider> <api_key> [options]";
     
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equalsIgnoreCase("bench")) {
+            runBench(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        if (args.length > 0 && args[0].equalsIgnoreCase("batch")) {
+            runBatch(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+        
         if (args.length < 2) {
             System.out.println(USAGE);
             System.exit(1);
@@ -69,7 +83,46 @@ public class LLMTestCLI {
         }
     }
     
-    private static LLMProvider parseProvider(String providerName) {
+    private static void runBench(String[] args) {
+        BenchCommand command;
+        try {
+            command = BenchCommand.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.out.println(BenchCommand.USAGE);
+            System.exit(1);
+            return;
+        }
+        
+        try {
+            command.run(System.out);
+        } catch (IOException e) {
+            System.err.println("Error writing results: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    private static void runBatch(String[] args) {
+        BatchCommand command;
+        try {
+            command = BatchCommand.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(BatchCommand.USAGE);
+            System.exit(1);
+            return;
+        }
+        
+        try {
+            command.run(System.in, System.out, System.err);
+            System.out.flush();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Batch failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+    
+    static LLMProvider parseProvider(String providerName) {
         switch (providerName) {
             case "openai":
                 return LLMProvider.OPENAI;
@@ -87,6 +140,7 @@ public class LLMTestCLI {
     
     private static void runInteractiveMode(LLMClient client, String modelToUse) {
         Scanner scanner = new Scanner(System.in);
+        Conversation conversation = Conversation.empty();
         
         while (true) {
             System.out.print("> ");
@@ -107,20 +161,29 @@ public class LLMTestCLI {
                 continue;
             }
             
+            if (input.equalsIgnoreCase("reset")) {
+                conversation = Conversation.empty();
+                System.out.println("Conversation cleared.");
+                continue;
+            }
+            
             if (input.isEmpty()) {
                 continue;
             }
             
             try {
-                LLMRequest request = new LLMRequest(input);
+                // Earlier turns are shared, not copied, by the conversation this turn extends
+                Conversation turn = conversation.user(input);
+                LLMRequest request = new LLMRequest(turn);
                 if (modelToUse != null) {
-                    request.setModel(modelToUse);
+                    request = request.withModel(modelToUse);
                 }
                 
                 System.out.println("Sending request...");
                 long startTime = System.currentTimeMillis();
                 
                 LLMResponse response = client.generate(request);
+                conversation = turn.append(response);
                 
                 long endTime = System.currentTimeMillis();
                 long duration = endTime - startTime;
@@ -131,6 +194,10 @@ public class LLMTestCLI {
                 System.out.println("Model: " + response.getModel());
                 System.out.println("Provider: " + response.getProvider().getDisplayName());
                 System.out.println("Response time: " + duration + "ms");
+                System.out.println("Timing: " + response.getTiming());
+                System.out.println("Usage: " + response.getUsage().inputTokens() + " input (" +
+                    response.getUsage().cachedInputTokens() + " cached), " +
+                    response.getUsage().outputTokens() + " output");
                 
                 if (response.getMetadata() != null && !response.getMetadata().isEmpty()) {
                     System.out.println("Additional metadata:");
@@ -163,6 +230,7 @@ public class LLMTestCLI {
             "- <message>    : Send a message to the LLM\n" +
             "- help         : Show this help message\n" +
             "- health       : Check client health status\n" +
+            "- reset        : Start a new conversation\n" +
             "- quit/exit    : Exit the CLI\n\n" +
             "Simply type your message and press Enter to send it to the LLM.");
     }
@@ -3,9 +3,13 @@ package com.intrafind.llm.config;
 import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.providers.openai.OpenAIClient;
+import com.intrafind.llm.providers.openai.OpenAIResponsesClient;
 import com.intrafind.llm.providers.anthropic.AnthropicClient;
 import com.intrafind.llm.providers.gemini.GeminiClient;
 import com.intrafind.llm.providers.mistral.MistralClient;
+import com.intrafind.llm.scheduling.CredentialPool;
+
+import java.util.List;
 
 public class LLMClientFactory {
     
@@ -14,9 +18,15 @@ public class LLMClientFactory {
             throw new IllegalArgumentException("Provider cannot be null");
         }
         
+        List<String> apiKeys = config.getApiKeys();
+        if (apiKeys.size() > 1) {
+            return new CredentialPool(provider, apiKeys, apiKey -> create(provider, config.forApiKey(apiKey)))
+                .withKeyLimits(config.getRequestsPerMinutePerKey(), config.getTokensPerMinutePerKey());
+        }
+        
         switch (provider) {
             case OPENAI:
-                return new OpenAIClient(config);
+                return config.isResponsesApi() ? new OpenAIResponsesClient(config) : new OpenAIClient(config);
             case ANTHROPIC:
                 return new AnthropicClient(config);
             case GEMINI:
@@ -1,17 +1,29 @@
 package com.intrafind.llm.config;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class LLMConfig {
     private String apiKey;
+    private List<String> apiKeys;
     private String baseUrl;
     private int timeout;
+    private int maxConnections;
+    private int contextCacheTtlSeconds;
+    private boolean responsesApi;
+    private long fileUploadMinBytes;
+    private boolean imagePreprocessing;
+    private float imageQuality;
+    private int requestsPerMinutePerKey;
+    private long tokensPerMinutePerKey;
     private Map<String, String> headers;
     
     public LLMConfig(String apiKey) {
         this.apiKey = apiKey;
         this.timeout = 30000; // 30 seconds default
+        this.maxConnections = 5; // pooled connections per host
+        this.imageQuality = 0.85f;
         this.headers = new HashMap<>();
     }
     
@@ -23,6 +35,19 @@ public class LLMConfig {
         this.apiKey = apiKey;
     }
     
+    // All keys of the provider the client may use, the single apiKey unless several were configured
+    public List<String> getApiKeys() {
+        if (apiKeys != null) {
+            return apiKeys;
+        }
+        return apiKey != null ? List.of(apiKey) : List.of();
+    }
+    
+    public void setApiKeys(List<String> apiKeys) {
+        this.apiKeys = apiKeys != null ? List.copyOf(apiKeys) : null;
+        this.apiKey = apiKeys != null && !apiKeys.isEmpty() ? apiKeys.get(0) : apiKey;
+    }
+    
     public String getBaseUrl() {
         return baseUrl;
     }
@@ -39,6 +64,71 @@ public class LLMConfig {
         this.timeout = timeout;
     }
     
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+    
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+    
+    // Gemini only: lifetime of cachedContents created for repeated large prefixes, 0 disables context caching
+    public int getContextCacheTtlSeconds() {
+        return contextCacheTtlSeconds;
+    }
+    
+    public void setContextCacheTtlSeconds(int contextCacheTtlSeconds) {
+        this.contextCacheTtlSeconds = contextCacheTtlSeconds;
+    }
+    
+    public boolean isResponsesApi() {
+        return responsesApi;
+    }
+    
+    public void setResponsesApi(boolean responsesApi) {
+        this.responsesApi = responsesApi;
+    }
+    
+    public long getFileUploadMinBytes() {
+        return fileUploadMinBytes;
+    }
+    
+    public void setFileUploadMinBytes(long fileUploadMinBytes) {
+        this.fileUploadMinBytes = fileUploadMinBytes;
+    }
+    
+    public boolean isImagePreprocessing() {
+        return imagePreprocessing;
+    }
+    
+    public void setImagePreprocessing(boolean imagePreprocessing) {
+        this.imagePreprocessing = imagePreprocessing;
+    }
+    
+    public float getImageQuality() {
+        return imageQuality;
+    }
+    
+    public void setImageQuality(float imageQuality) {
+        this.imageQuality = imageQuality;
+    }
+    
+    public int getRequestsPerMinutePerKey() {
+        return requestsPerMinutePerKey;
+    }
+    
+    public void setRequestsPerMinutePerKey(int requestsPerMinutePerKey) {
+        this.requestsPerMinutePerKey = requestsPerMinutePerKey;
+    }
+    
+    public long getTokensPerMinutePerKey() {
+        return tokensPerMinutePerKey;
+    }
+    
+    public void setTokensPerMinutePerKey(long tokensPerMinutePerKey) {
+        this.tokensPerMinutePerKey = tokensPerMinutePerKey;
+    }
+    
     public Map<String, String> getHeaders() {
         return headers;
     }
@@ -47,6 +137,12 @@ public class LLMConfig {
         this.headers = headers;
     }
     
+    // Several keys of one provider, e.g. of different projects; calls are spread across them to add up their rate limits
+    public LLMConfig withApiKeys(String... apiKeys) {
+        setApiKeys(List.of(apiKeys));
+        return this;
+    }
+    
     public LLMConfig withBaseUrl(String baseUrl) {
         this.baseUrl = baseUrl;
         return this;
@@ -57,8 +153,65 @@ public class LLMConfig {
         return this;
     }
     
+    public LLMConfig withMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+        return this;
+    }
+    
+    public LLMConfig withContextCacheTtlSeconds(int contextCacheTtlSeconds) {
+        this.contextCacheTtlSeconds = contextCacheTtlSeconds;
+        return this;
+    }
+    
+    public LLMConfig withResponsesApi(boolean responsesApi) {
+        this.responsesApi = responsesApi;
+        return this;
+    }
+    
+    // Images and documents of at least this size are uploaded once and referenced where the provider allows; 0 disables
+    public LLMConfig withFileUploadMinBytes(long fileUploadMinBytes) {
+        this.fileUploadMinBytes = fileUploadMinBytes;
+        return this;
+    }
+    
+    // Scales images down to what the provider's models look at and re-encodes them before they are sent
+    public LLMConfig withImagePreprocessing(boolean imagePreprocessing) {
+        this.imagePreprocessing = imagePreprocessing;
+        return this;
+    }
+    
+    // JPEG quality of preprocessed images, 0 to 1
+    public LLMConfig withImageQuality(float imageQuality) {
+        this.imageQuality = imageQuality;
+        return this;
+    }
+    
+    // Quota of each key, for spreading calls before the provider reports its own numbers; 0 if unknown
+    public LLMConfig withKeyLimits(int requestsPerMinute, long tokensPerMinute) {
+        this.requestsPerMinutePerKey = requestsPerMinute;
+        this.tokensPerMinutePerKey = tokensPerMinute;
+        return this;
+    }
+    
     public LLMConfig withHeader(String key, String value) {
         this.headers.put(key, value);
         return this;
     }
+    
+    // This configuration with a single key, for the client of one key in a pool
+    LLMConfig forApiKey(String apiKey) {
+        LLMConfig copy = new LLMConfig(apiKey);
+        copy.baseUrl = baseUrl;
+        copy.timeout = timeout;
+        copy.maxConnections = maxConnections;
+        copy.contextCacheTtlSeconds = contextCacheTtlSeconds;
+        copy.responsesApi = responsesApi;
+        copy.fileUploadMinBytes = fileUploadMinBytes;
+        copy.imagePreprocessing = imagePreprocessing;
+        copy.imageQuality = imageQuality;
+        copy.requestsPerMinutePerKey = requestsPerMinutePerKey;
+        copy.tokensPerMinutePerKey = tokensPerMinutePerKey;
+        copy.headers = new HashMap<>(headers);
+        return copy;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.intrafind.llm.core;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * One block of a system prompt or user message. Parts marked {@code cacheable} end a prefix that should be written
+ * to the provider's prompt cache; providers without explicit cache control ignore the flag.
+ */
+public sealed interface ContentPart permits ContentPart.Text, ContentPart.Image {
+    
+    boolean cacheable();
+    
+    static Text text(String text) {
+        return new Text(text, false);
+    }
+    
+    static Text cached(String text) {
+        return new Text(text, true);
+    }
+    
+    static Image image(String mediaType, byte[] data) {
+        return new Image(mediaType, data, false);
+    }
+    
+    record Text(String text, boolean cacheable) implements ContentPart {
+    }
+    
+    record Image(String mediaType, byte[] data, boolean cacheable) implements ContentPart {
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Image image && cacheable == image.cacheable
+                && Objects.equals(mediaType, image.mediaType) && Arrays.equals(data, image.data);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(mediaType, cacheable) * 31 + Arrays.hashCode(data);
+        }
+        
+        public String base64() {
+            return Base64.getEncoder().encodeToString(data);
+        }
+        
+        public String asDataUrl() {
+            return "data:" + mediaType + ";base64," + base64();
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.intrafind.llm.core;
+
+import java.util.List;
+
+/**
+ * Immutable chat history kept as a persistent linked list: appending a turn returns a new conversation that shares
+ * every earlier turn with this one, so neither a long session nor branches forked from a common history ever copy
+ * messages. Only {@link #messages()} walks the list, once per request.
+ */
+public final class Conversation {
+    private static final Conversation EMPTY = new Conversation(null, null, 0);
+    
+    private final Message last;
+    private final Conversation parent;
+    private final int size;
+    private final long prefixHash;
+    
+    private Conversation(Message last, Conversation parent, int size) {
+        this.last = last;
+        this.parent = parent;
+        this.size = size;
+        this.prefixHash = parent == null ? 0 : Long.rotateLeft(parent.prefixHash, 29) * 0x9E3779B97F4A7C15L + last.hashCode();
+    }
+    
+    public static Conversation empty() {
+        return EMPTY;
+    }
+    
+    public static Conversation of(Message... messages) {
+        Conversation conversation = EMPTY;
+        for (Message message : messages) {
+            conversation = conversation.append(message);
+        }
+        return conversation;
+    }
+    
+    public Conversation append(Message message) {
+        if (message == null) {
+            throw new IllegalArgumentException("message must not be null");
+        }
+        return new Conversation(message, this, size + 1);
+    }
+    
+    public Conversation append(LLMResponse response) {
+        return append(response.toMessage());
+    }
+    
+    public Conversation user(String text) {
+        return append(Message.user(text));
+    }
+    
+    public Conversation assistant(String text) {
+        return append(Message.assistant(text));
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isEmpty() {
+        return size == 0;
+    }
+    
+    // Latest message, null for an empty conversation
+    public Message last() {
+        return last;
+    }
+    
+    // The conversation without its latest message
+    public Conversation parent() {
+        return parent != null ? parent : EMPTY;
+    }
+    
+    // Hash of all messages up to the latest one, equal for conversations with equal messages however they were built
+    public long prefixHash() {
+        return prefixHash;
+    }
+    
+    public List<Message> messages() {
+        Message[] messages = new Message[size];
+        Conversation node = this;
+        for (int i = size - 1; i >= 0; i--) {
+            messages[i] = node.last;
+            node = node.parent;
+        }
+        return List.of(messages);
+    }
+}
\ No newline at end of file
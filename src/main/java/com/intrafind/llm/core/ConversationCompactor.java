@@ -0,0 +1,233 @@
+package com.intrafind.llm.core;
+
+import com.intrafind.llm.tokenizer.Tokenizer;
+import com.intrafind.llm.tokenizer.Tokenizers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps the history sent for a long-running session bounded. {@link #compact(Conversation)} is called with the full
+ * history before every turn and returns what to send: system and pinned messages, a summary of the older turns and the
+ * recent turns verbatim. Once that exceeds {@code maxTokens}, the turns older than the most recent
+ * {@code keepRecentTokens} are summarized by a (typically cheaper) model in the background while the current turn goes
+ * out unchanged, so no turn waits for a summary. Later summaries extend the previous one. The summary and the turns
+ * after it stay byte-identical between compactions, which keeps provider prefix caches warm.
+ * <p>
+ * One compactor belongs to one session; a history that does not continue the one last compacted is sent as is until
+ * it grows past the threshold again.
+ */
+public final class ConversationCompactor {
+    static final String SUMMARY_HEADER = "Summary of the earlier conversation:\n";
+    private static final String INSTRUCTIONS = "Summarize the conversation below for the assistant that continues it. "
+        + "Keep facts, decisions, open questions, names and numbers; drop pleasantries. Write in the third person and "
+        + "in at most a few paragraphs. If a summary so far is given, extend it rather than starting over.";
+    
+    private final LLMClient summarizer;
+    private final Tokenizer tokenizer;
+    private int maxTokens = 8000;
+    private int keepRecentTokens = 2000;
+    private String summaryModel;
+    private Executor executor = task -> Thread.ofVirtual().name("conversation-compactor").start(task);
+    
+    private volatile Compaction latest;
+    private final AtomicReference<CompletableFuture<Void>> pending = new AtomicReference<>();
+    
+    // Turns up to and including `covered` are replaced by `retained` and `summary`
+    private record Compaction(Conversation covered, List<Message> retained, Message summary) {
+    }
+    
+    public ConversationCompactor(LLMClient summarizer, Tokenizer tokenizer) {
+        this.summarizer = summarizer;
+        this.tokenizer = tokenizer;
+    }
+    
+    public ConversationCompactor withMaxTokens(int maxTokens) {
+        this.maxTokens = maxTokens;
+        return this;
+    }
+    
+    public ConversationCompactor withKeepRecentTokens(int keepRecentTokens) {
+        this.keepRecentTokens = keepRecentTokens;
+        return this;
+    }
+    
+    // Model of the summarizer client to use for summaries, its default if not set
+    public ConversationCompactor withSummaryModel(String summaryModel) {
+        this.summaryModel = summaryModel;
+        return this;
+    }
+    
+    public ConversationCompactor withExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+    
+    // The conversation to send instead of the full history
+    public Conversation compact(Conversation history) {
+        Compaction compaction = latest;
+        if (compaction != null && !continues(history, compaction.covered())) {
+            compaction = null;
+        }
+        Conversation view = compaction != null ? view(compaction, history) : history;
+        if (countTokens(view) > maxTokens) {
+            summarizeInBackground(history, compaction);
+        }
+        return view;
+    }
+    
+    public boolean isCompacting() {
+        return pending.get() != null;
+    }
+    
+    // Completes when the summary in progress, if any, has been swapped in
+    public CompletableFuture<Void> pendingCompaction() {
+        CompletableFuture<Void> task = pending.get();
+        return task != null ? task : CompletableFuture.completedFuture(null);
+    }
+    
+    private void summarizeInBackground(Conversation history, Compaction base) {
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        if (!pending.compareAndSet(null, task)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    summarize(history, base);
+                    task.complete(null);
+                } catch (RuntimeException e) {
+                    // The history keeps growing and the next turn tries again
+                    task.completeExceptionally(e);
+                } finally {
+                    pending.compareAndSet(task, null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.compareAndSet(task, null);
+            task.completeExceptionally(e);
+        }
+    }
+    
+    private void summarize(Conversation history, Compaction base) {
+        int start = base != null ? base.covered().size() : 0;
+        Message[] tail = after(history, start);
+        
+        // The recent part starts with a user turn so tool calls and their results stay together
+        int boundary = -1;
+        int recentTokens = 0;
+        for (int i = tail.length - 1; i >= 0; i--) {
+            recentTokens += Tokenizers.countTokens(tokenizer, tail[i]);
+            if (tail[i].role() == Role.USER) {
+                if (boundary >= 0 && recentTokens > keepRecentTokens) {
+                    break;
+                }
+                boundary = i;
+            }
+        }
+        if (boundary <= 0) {
+            return;
+        }
+        
+        List<Message> retained = new ArrayList<>(base != null ? base.retained() : List.of());
+        StringBuilder transcript = new StringBuilder();
+        if (base != null) {
+            transcript.append("Summary so far:\n").append(base.summary().text().substring(SUMMARY_HEADER.length())).append("\n\n");
+        }
+        transcript.append("Conversation:\n");
+        for (int i = 0; i < boundary; i++) {
+            Message message = tail[i];
+            if (message.role() == Role.SYSTEM || message.pinned()) {
+                retained.add(message);
+            } else {
+                appendTurn(transcript, message);
+            }
+        }
+        
+        LLMRequest request = new LLMRequest(transcript.toString()).withSystem(INSTRUCTIONS);
+        if (summaryModel != null) {
+            request = request.withModel(summaryModel);
+        }
+        String summary = summarizer.generate(request).getContent();
+        
+        Conversation covered = history;
+        while (covered.size() > start + boundary) {
+            covered = covered.parent();
+        }
+        latest = new Compaction(covered, List.copyOf(retained), Message.system(SUMMARY_HEADER + summary));
+    }
+    
+    private int countTokens(Conversation conversation) {
+        int tokens = 0;
+        for (Conversation node = conversation; !node.isEmpty(); node = node.parent()) {
+            tokens += Tokenizers.countTokens(tokenizer, node.last());
+        }
+        return tokens;
+    }
+    
+    private static void appendTurn(StringBuilder transcript, Message message) {
+        switch (message.role()) {
+            case USER -> transcript.append("User: ").append(message.text());
+            case ASSISTANT -> {
+                transcript.append("Assistant: ").append(message.text());
+                for (ToolCall call : message.toolCalls()) {
+                    transcript.append("\n[called ").append(call.getName()).append(' ').append(call.getArguments()).append(']');
+                }
+            }
+            case TOOL -> transcript.append("Tool result (").append(message.toolName()).append("): ").append(message.text());
+            default -> transcript.append(message.text());
+        }
+        transcript.append('\n');
+    }
+    
+    private static Conversation view(Compaction compaction, Conversation history) {
+        Conversation view = Conversation.empty();
+        for (Message message : compaction.retained()) {
+            view = view.append(message);
+        }
+        view = view.append(compaction.summary());
+        for (Message message : after(history, compaction.covered().size())) {
+            view = view.append(message);
+        }
+        return view;
+    }
+    
+    // Whether history is prefix followed by zero or more turns
+    private static boolean continues(Conversation history, Conversation prefix) {
+        if (history.size() < prefix.size()) {
+            return false;
+        }
+        Conversation node = history;
+        while (node.size() > prefix.size()) {
+            node = node.parent();
+        }
+        return node.prefixHash() == prefix.prefixHash() && sameMessages(node, prefix);
+    }
+    
+    // Whether two conversations of the same size hold equal messages; stops at the first shared node
+    private static boolean sameMessages(Conversation a, Conversation b) {
+        while (a != b) {
+            if (!a.last().equals(b.last())) {
+                return false;
+            }
+            a = a.parent();
+            b = b.parent();
+        }
+        return true;
+    }
+    
+    // Messages of history after the first `start`, oldest first
+    private static Message[] after(Conversation history, int start) {
+        Message[] messages = new Message[Math.max(0, history.size() - start)];
+        Conversation node = history;
+        for (int i = messages.length - 1; i >= 0; i--) {
+            messages[i] = node.last();
+            node = node.parent();
+        }
+        return messages;
+    }
+}
\ No newline at end of file
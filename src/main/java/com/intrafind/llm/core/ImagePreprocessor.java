@@ -0,0 +1,328 @@
+package com.intrafind.llm.core;
+
+import com.intrafind.llm.events.CallEvents;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Shrinks request images to what the model actually looks at before they are sent. Vision models downscale large
+ * images on their side anyway, so a 12 MP photo costs upload time (and with some providers tokens) for pixels that are
+ * thrown away. Images larger than the provider's effective maximum are scaled down, turned upright according to their
+ * EXIF orientation and re-encoded as JPEG (PNG if they have transparency). Images already within the limits stay as
+ * they are. Work runs on a shared pool with one thread per core, so the images of a request are processed in
+ * parallel, and results are cached by content hash.
+ */
+public final class ImagePreprocessor {
+    private static final int MAX_CACHED = 100;
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(),
+        task -> {
+            Thread thread = new Thread(task, "image-preprocessor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    
+    private final int maxLongSide;
+    private final int maxShortSide;
+    private final float quality;
+    
+    // Content hash to the processed image, least recently used first
+    private final Map<String, CompletableFuture<ContentPart.Image>> cache = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<ContentPart.Image>> eldest) {
+                return size() > MAX_CACHED;
+            }
+        });
+    // Hashes of arrays seen before, so images repeated in every turn of a conversation are not hashed each time
+    private final Map<byte[], String> keys = Collections.synchronizedMap(new WeakHashMap<>());
+    
+    public ImagePreprocessor(int maxLongSide, int maxShortSide, float quality) {
+        this.maxLongSide = maxLongSide;
+        this.maxShortSide = maxShortSide;
+        this.quality = quality;
+    }
+    
+    // Limits at which each provider stops using more pixels (OpenAI high detail, Claude, Gemini, Pixtral)
+    public static ImagePreprocessor forProvider(LLMProvider provider, float quality) {
+        return switch (provider) {
+            case OPENAI -> new ImagePreprocessor(2048, 768, quality);
+            case ANTHROPIC -> new ImagePreprocessor(1568, 1568, quality);
+            case GEMINI -> new ImagePreprocessor(3072, 3072, quality);
+            case MISTRAL -> new ImagePreprocessor(1024, 1024, quality);
+        };
+    }
+    
+    // The request with all images processed; the request itself if it has none
+    public LLMRequest prepare(LLMRequest request) {
+        CompletableFuture<ContentPart.Image> image = request.getImage() != null
+            ? processAsync(ContentPart.image(request.getImage().mediaType(), request.getImage().data()))
+            : null;
+        Map<ContentPart.Image, CompletableFuture<ContentPart.Image>> pending = new IdentityHashMap<>();
+        submitAll(request.getSystem(), pending);
+        submitAll(request.getContext(), pending);
+        boolean conversationImages = false;
+        if (request.getConversation() != null) {
+            for (Message message : request.getConversation().messages()) {
+                conversationImages |= submitAll(message.parts(), pending);
+            }
+        }
+        if (image == null && pending.isEmpty()) {
+            return request;
+        }
+        
+        LLMRequest.Builder prepared = request.toBuilder();
+        if (image != null) {
+            ContentPart.Image processed = image.join();
+            prepared.image(processed.mediaType(), processed.data());
+        }
+        if (request.getSystem() != null) {
+            prepared.system(replace(request.getSystem(), pending));
+        }
+        if (request.getContext() != null) {
+            prepared.context(replace(request.getContext(), pending));
+        }
+        if (conversationImages) {
+            Conversation conversation = Conversation.empty();
+            for (Message message : request.getConversation().messages()) {
+                conversation = conversation.append(new Message(message.role(), replace(message.parts(), pending),
+                    message.toolCalls(), message.toolCallId(), message.toolName(), message.pinned()));
+            }
+            prepared.conversation(conversation);
+        }
+        return prepared.build();
+    }
+    
+    public ContentPart.Image process(ContentPart.Image image) {
+        return processAsync(image).join();
+    }
+    
+    public CompletableFuture<ContentPart.Image> processAsync(ContentPart.Image image) {
+        String key = image.mediaType() + ":" + keys.computeIfAbsent(image.data(), ImagePreprocessor::sha256);
+        CompletableFuture<ContentPart.Image> result;
+        synchronized (cache) {
+            result = cache.get(key);
+            if (result == null) {
+                result = CompletableFuture.supplyAsync(() -> resize(image), WORKERS);
+                cache.put(key, result);
+            } else {
+                CallEvents.cacheHit(null, null, "image-preprocessor", image.data().length);
+            }
+        }
+        if (image.cacheable()) {
+            return result.thenApply(processed -> new ContentPart.Image(processed.mediaType(), processed.data(), true));
+        }
+        return result;
+    }
+    
+    private boolean submitAll(List<ContentPart> parts, Map<ContentPart.Image, CompletableFuture<ContentPart.Image>> pending) {
+        boolean found = false;
+        if (parts != null) {
+            for (ContentPart part : parts) {
+                if (part instanceof ContentPart.Image image) {
+                    pending.put(image, processAsync(image));
+                    found = true;
+                }
+            }
+        }
+        return found;
+    }
+    
+    private static List<ContentPart> replace(List<ContentPart> parts, Map<ContentPart.Image, CompletableFuture<ContentPart.Image>> pending) {
+        List<ContentPart> replaced = new ArrayList<>(parts.size());
+        for (ContentPart part : parts) {
+            replaced.add(part instanceof ContentPart.Image image ? pending.get(image).join() : part);
+        }
+        return replaced;
+    }
+    
+    // Results are cached without the cacheable flag, processAsync() puts it back
+    private ContentPart.Image resize(ContentPart.Image image) {
+        ContentPart.Image unchanged = ContentPart.image(image.mediaType(), image.data());
+        try {
+            BufferedImage source = ImageIO.read(new ByteArrayInputStream(image.data()));
+            if (source == null) {
+                // A format ImageIO cannot read (e.g. WebP, HEIC) goes out unchanged
+                return unchanged;
+            }
+            int orientation = orientation(image.data());
+            boolean sideways = orientation == 6 || orientation == 8;
+            int width = sideways ? source.getHeight() : source.getWidth();
+            int height = sideways ? source.getWidth() : source.getHeight();
+            double scale = Math.min(1.0, Math.min(
+                (double) maxLongSide / Math.max(width, height),
+                (double) maxShortSide / Math.min(width, height)));
+            if (scale == 1.0 && orientation <= 1) {
+                return unchanged;
+            }
+            
+            BufferedImage scaled = upright(source, orientation);
+            int targetWidth = Math.max(1, (int) Math.round(width * scale));
+            int targetHeight = Math.max(1, (int) Math.round(height * scale));
+            boolean alpha = source.getColorModel().hasAlpha();
+            // Halving steps before the last one keep bilinear sampling from skipping pixels on large reductions
+            do {
+                int stepWidth = Math.max(targetWidth, scaled.getWidth() / 2);
+                int stepHeight = Math.max(targetHeight, scaled.getHeight() / 2);
+                scaled = draw(scaled, stepWidth, stepHeight, alpha);
+            } while (scaled.getWidth() != targetWidth || scaled.getHeight() != targetHeight);
+            
+            return alpha
+                ? new ContentPart.Image("image/png", png(scaled), false)
+                : new ContentPart.Image("image/jpeg", jpeg(scaled), false);
+        } catch (IOException | RuntimeException e) {
+            // Leaves a damaged image for the provider to reject with a proper message
+            return unchanged;
+        }
+    }
+    
+    private static BufferedImage draw(BufferedImage source, int width, int height, boolean alpha) {
+        BufferedImage target = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+    
+    // Applies EXIF orientations 3, 6 and 8 (rotations); mirrored orientations are rare and drawn as stored
+    private static BufferedImage upright(BufferedImage source, int orientation) {
+        int quarterTurns = switch (orientation) {
+            case 6 -> 1;
+            case 3 -> 2;
+            case 8 -> 3;
+            default -> 0;
+        };
+        if (quarterTurns == 0) {
+            return source;
+        }
+        int width = quarterTurns == 2 ? source.getWidth() : source.getHeight();
+        int height = quarterTurns == 2 ? source.getHeight() : source.getWidth();
+        BufferedImage target = new BufferedImage(width, height,
+            source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        AffineTransform transform = new AffineTransform();
+        transform.translate(width / 2.0, height / 2.0);
+        transform.quadrantRotate(quarterTurns);
+        transform.translate(-source.getWidth() / 2.0, -source.getHeight() / 2.0);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.drawImage(source, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+    
+    private byte[] jpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+    
+    private static byte[] png(BufferedImage image) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+    
+    // EXIF orientation tag of a JPEG, 1 (upright) if there is none
+    static int orientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xff) != 0xFF || (jpeg[1] & 0xff) != 0xD8) {
+            return 1;
+        }
+        int pos = 2;
+        while (pos + 4 <= jpeg.length && (jpeg[pos] & 0xff) == 0xFF) {
+            int marker = jpeg[pos + 1] & 0xff;
+            int length = (jpeg[pos + 2] & 0xff) << 8 | (jpeg[pos + 3] & 0xff);
+            if (marker == 0xDA) {
+                break;
+            }
+            if (marker == 0xE1 && pos + 10 <= jpeg.length
+                && new String(jpeg, pos + 4, 4, StandardCharsets.ISO_8859_1).equals("Exif")) {
+                return exifOrientation(jpeg, pos + 10, Math.min(jpeg.length, pos + 2 + length));
+            }
+            pos += 2 + length;
+        }
+        return 1;
+    }
+    
+    private static int exifOrientation(byte[] b, int tiff, int end) {
+        if (tiff + 8 > end) {
+            return 1;
+        }
+        boolean little = b[tiff] == 'I';
+        int ifd = tiff + readInt(b, tiff + 4, little);
+        if (ifd < tiff || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(b, ifd, little);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(b, entry, little) == 0x0112) {
+                int value = readShort(b, entry + 8, little);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+    
+    private static int readShort(byte[] b, int pos, boolean little) {
+        return little
+            ? (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8
+            : (b[pos] & 0xff) << 8 | (b[pos + 1] & 0xff);
+    }
+    
+    private static int readInt(byte[] b, int pos, boolean little) {
+        return little
+            ? readShort(b, pos, true) | readShort(b, pos + 2, true) << 16
+            : readShort(b, pos, false) << 16 | readShort(b, pos + 2, false);
+    }
+    
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -1,100 +1,527 @@
 package com.intrafind.llm.core;
 
+import com.intrafind.llm.tokenizer.Tokenizers;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
-public class LLMRequest {
-    private String prompt;
-    private Map<String, Object> parameters;
-    private String model;
-    private List<String> stopSequences;
-    private List<Tool> tools;
-    private ImageDTO image;
+/**
+ * Immutable description of one call. The {@code withX} methods return a copy that shares every unchanged part with
+ * this request, so one request can be used from several threads (retries, hedges, fan-out) and varied per call
+ * without defensive copies; {@link #builder()} assembles a request in one pass. {@link #contentHash()} is computed on
+ * first use and identifies requests with equal content, e.g. as a cache or coalescing key.
+ */
+public final class LLMRequest {
+    private final String prompt;
+    private final Map<String, Object> parameters;
+    private final String model;
+    private final List<String> stopSequences;
+    private final List<Tool> tools;
+    private final ImageDTO image;
+    private final List<ContentPart> system;
+    private final List<ContentPart> context;
+    private final boolean automaticCaching;
+    private final Conversation conversation;
+    private final String tenant;
+    private final Instant deadline;
+    // 0 until first computed; racing threads compute the same value
+    private long contentHash;
 
     public LLMRequest(String prompt) {
-        this.prompt = prompt;
-        this.parameters = new HashMap<>();
+        this(new Builder().prompt(prompt));
+    }
+    
+    // Continues a conversation whose latest message is the user's turn; there is no separate prompt
+    public LLMRequest(Conversation conversation) {
+        this(new Builder().conversation(conversation));
+    }
+    
+    private LLMRequest(Builder builder) {
+        this.prompt = builder.prompt;
+        this.parameters = builder.parameters;
+        this.model = builder.model;
+        this.stopSequences = builder.stopSequences;
+        this.tools = builder.tools;
+        this.image = builder.image;
+        this.system = builder.system;
+        this.context = builder.context;
+        this.automaticCaching = builder.automaticCaching;
+        this.conversation = builder.conversation;
+        this.tenant = builder.tenant;
+        this.deadline = builder.deadline;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    // A builder starting from this request; unchanged parts stay shared with it
+    public Builder toBuilder() {
+        return new Builder(this);
     }
     
     public String getPrompt() {
         return prompt;
     }
     
-    public void setPrompt(String prompt) {
-        this.prompt = prompt;
+    public LLMRequest withPrompt(String prompt) {
+        return toBuilder().prompt(prompt).build();
     }
     
+    // Never null; unmodifiable
     public Map<String, Object> getParameters() {
         return parameters;
     }
     
-    public void setParameters(Map<String, Object> parameters) {
-        this.parameters = parameters;
-    }
-    
     public String getModel() {
         return model;
     }
     
-    public void setModel(String model) {
-        this.model = model;
-    }
-    
     public List<String> getStopSequences() {
         return stopSequences;
     }
     
-    public void setStopSequences(List<String> stopSequences) {
-        this.stopSequences = stopSequences;
-    }
-    
     public LLMRequest withParameter(String key, Object value) {
-        this.parameters.put(key, value);
-        return this;
+        return toBuilder().parameter(key, value).build();
     }
     
     public LLMRequest withModel(String model) {
-        this.model = model;
-        return this;
+        return toBuilder().model(model).build();
     }
     
     public LLMRequest withStopSequences(List<String> stopSequences) {
-        this.stopSequences = stopSequences;
-        return this;
+        return toBuilder().stopSequences(stopSequences).build();
     }
     
     public List<Tool> getTools() {
         return tools;
     }
     
-    public void setTools(List<Tool> tools) {
-        this.tools = tools;
-    }
-    
     public LLMRequest withTools(List<Tool> tools) {
-        this.tools = tools;
-        return this;
+        return toBuilder().tools(tools).build();
     }
 
     public ImageDTO getImage() {
         return image;
     }
 
-    public void setImage(String mediaType, byte[] data) {
-        this.image = new ImageDTO(mediaType, data);
-    }
-
     public LLMRequest withImage(String mediaType, byte[] data) {
-        this.image = new ImageDTO(mediaType, data);
-        return this;
+        return toBuilder().image(mediaType, data).build();
     }
 
+    public List<ContentPart> getSystem() {
+        return system;
+    }
+    
+    public LLMRequest withSystem(String system) {
+        return withSystem(ContentPart.text(system));
+    }
+    
+    // Appends to the system prompt
+    public LLMRequest withSystem(ContentPart... parts) {
+        return toBuilder().system(parts).build();
+    }
+    
+    // The system prompt followed by the system messages of the conversation
+    public List<ContentPart> getSystemParts() {
+        List<ContentPart> parts = new ArrayList<>();
+        if (system != null) {
+            parts.addAll(system);
+        }
+        if (conversation != null) {
+            for (Message message : conversation.messages()) {
+                if (message.role() == Role.SYSTEM) {
+                    parts.addAll(message.parts());
+                }
+            }
+        }
+        return parts;
+    }
+    
+    // Text parts of the system prompt joined, for providers that take it as a single string
+    public String getSystemText() {
+        List<ContentPart> parts = getSystemParts();
+        if (parts.isEmpty()) {
+            return null;
+        }
+        return parts.stream()
+            .filter(part -> part instanceof ContentPart.Text)
+            .map(part -> ((ContentPart.Text) part).text())
+            .collect(Collectors.joining("\n\n"));
+    }
+    
+    // Blocks sent ahead of the prompt in the user message, typically shared documents
+    public List<ContentPart> getContext() {
+        return context;
+    }
+    
+    // Appends to the context
+    public LLMRequest withContext(ContentPart... parts) {
+        return toBuilder().context(parts).build();
+    }
+    
+    public boolean isAutomaticCaching() {
+        return automaticCaching;
+    }
+    
+    // Lets providers with explicit cache control mark the end of tools, system prompt and context as cacheable
+    public LLMRequest withAutomaticCaching(boolean automaticCaching) {
+        return toBuilder().automaticCaching(automaticCaching).build();
+    }
+    
+    public Conversation getConversation() {
+        return conversation;
+    }
+    
+    // Earlier turns sent ahead of the prompt
+    public LLMRequest withConversation(Conversation conversation) {
+        return toBuilder().conversation(conversation).build();
+    }
+    
+    public String getTenant() {
+        return tenant;
+    }
+    
+    // Who the call is made for, used by schedulers sharing capacity between tenants; not part of the content
+    public LLMRequest withTenant(String tenant) {
+        return toBuilder().tenant(tenant).build();
+    }
+    
+    public Instant getDeadline() {
+        return deadline;
+    }
+    
+    // Time after which the caller no longer needs the answer, so schedulers can drop the call instead of sending it late
+    public LLMRequest withDeadline(Instant deadline) {
+        return toBuilder().deadline(deadline).build();
+    }
+    
+    // Conversation turns other than system messages, in order
+    public List<Message> getHistory() {
+        if (conversation == null) {
+            return List.of();
+        }
+        List<Message> history = new ArrayList<>(conversation.size());
+        for (Message message : conversation.messages()) {
+            if (message.role() != Role.SYSTEM) {
+                history.add(message);
+            }
+        }
+        return history;
+    }
+    
+    // Without a prompt the context and image have no turn of their own, so this moves them into the last user message of
+    // the conversation, ahead of and after its parts as they go around a prompt; requests with a prompt, or with neither
+    // context nor image, are returned as they are. Providers send the result
+    public LLMRequest attachToConversation() {
+        boolean hasContext = context != null && !context.isEmpty();
+        if (prompt != null || !hasContext && image == null) {
+            return this;
+        }
+        List<Message> messages = conversation != null ? conversation.messages() : List.of();
+        int turn = messages.size() - 1;
+        while (turn >= 0 && messages.get(turn).role() != Role.USER) {
+            turn--;
+        }
+        if (turn < 0) {
+            throw new IllegalArgumentException("Context and image need a prompt or a user message in the conversation");
+        }
+        Message user = messages.get(turn);
+        List<ContentPart> parts = new ArrayList<>();
+        if (hasContext) {
+            parts.addAll(context);
+        }
+        parts.addAll(user.parts());
+        if (image != null) {
+            parts.add(ContentPart.image(image.mediaType(), image.data()));
+        }
+        // Earlier turns stay shared, later ones are appended again
+        Conversation attached = conversation;
+        while (attached.size() > turn) {
+            attached = attached.parent();
+        }
+        attached = attached.append(new Message(Role.USER, parts, user.toolCalls(), user.toolCallId(), user.toolName(), user.pinned()));
+        for (Message message : messages.subList(turn + 1, messages.size())) {
+            attached = attached.append(message);
+        }
+        Builder builder = toBuilder().conversation(attached).context((List<ContentPart>) null);
+        builder.image = null;
+        return builder.build();
+    }
+    
+    // Input tokens counted locally for budgeting before the call; exact where the provider's vocabulary is bundled
+    public int estimateInputTokens(LLMProvider provider) {
+        return Tokenizers.countTokens(provider, this);
+    }
+    
+    // 64-bit hash of everything sent, equal for requests with equal content however they were built; never 0
+    public long contentHash() {
+        long hash = contentHash;
+        if (hash == 0) {
+            hash = mix(hash, prompt);
+            hash = mix(hash, model);
+            hash = mix(hash, parameters.hashCode());
+            hash = mix(hash, Objects.hashCode(stopSequences));
+            hash = mix(hash, Objects.hashCode(tools));
+            hash = mix(hash, image != null ? image.hashCode() : 0);
+            hash = mix(hash, parts(system));
+            hash = mix(hash, parts(context));
+            hash = mix(hash, automaticCaching ? 1 : 0);
+            hash = mix(hash, conversation != null ? conversation.prefixHash() : 0);
+            if (hash == 0) {
+                hash = 1;
+            }
+            contentHash = hash;
+        }
+        return hash;
+    }
+    
+    // Hash of the part providers cache as a prefix: model, tools, system prompt and the first historyMessages turns of the
+    // conversation; requests with the same prefix hash can reuse each other's cached prefill
+    public long prefixHash(int historyMessages) {
+        long hash = mix(0, model);
+        hash = mix(hash, Objects.hashCode(tools));
+        hash = mix(hash, parts(system));
+        Conversation turns = conversation != null ? conversation : Conversation.empty();
+        while (turns.size() > historyMessages) {
+            turns = turns.parent();
+        }
+        return mix(hash, turns.prefixHash());
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LLMRequest other) || contentHash() != other.contentHash()) {
+            return false;
+        }
+        return automaticCaching == other.automaticCaching
+            && Objects.equals(prompt, other.prompt)
+            && Objects.equals(model, other.model)
+            && parameters.equals(other.parameters)
+            && Objects.equals(stopSequences, other.stopSequences)
+            && Objects.equals(tools, other.tools)
+            && Objects.equals(image, other.image)
+            && Objects.equals(system, other.system)
+            && Objects.equals(context, other.context)
+            && sameConversation(conversation, other.conversation);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Long.hashCode(contentHash());
+    }
+    
+    private static boolean sameConversation(Conversation a, Conversation b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && a.size() == b.size() && a.prefixHash() == b.prefixHash() && a.messages().equals(b.messages());
+    }
+    
+    // Text parts hashed with all their characters, which are most of a request and collide most easily in 32 bits
+    private static long parts(List<ContentPart> parts) {
+        if (parts == null) {
+            return 0;
+        }
+        long hash = parts.size();
+        for (ContentPart part : parts) {
+            hash = part instanceof ContentPart.Text text ? mix(mix(hash, text.text()), text.cacheable() ? 1 : 0) : mix(hash, part.hashCode());
+        }
+        return hash;
+    }
+    
+    private static long mix(long hash, long value) {
+        return Long.rotateLeft(hash, 29) * 0x9E3779B97F4A7C15L + value;
+    }
+    
+    // FNV-1a over the characters
+    private static long mix(long hash, String value) {
+        if (value == null) {
+            return mix(hash, 0);
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash, h);
+    }
+    
     public record ImageDTO(String mediaType, byte[] data) {
 
         public String asDataUrl() {
             return "data:" + mediaType + ";base64," + Base64.getEncoder().encodeToString(data);
         }
+        
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ImageDTO image && Objects.equals(mediaType, image.mediaType) && Arrays.equals(data, image.data);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(mediaType) * 31 + Arrays.hashCode(data);
+        }
+    }
+    
+    /**
+     * Assembles a request. Parts taken from an existing request stay shared until changed; the parameter map and part
+     * lists are copied on the first change only.
+     */
+    public static final class Builder {
+        private String prompt;
+        private Map<String, Object> parameters = Map.of();
+        private boolean parametersOwned;
+        private String model;
+        private List<String> stopSequences;
+        private List<Tool> tools;
+        private ImageDTO image;
+        private List<ContentPart> system;
+        private boolean systemOwned;
+        private List<ContentPart> context;
+        private boolean contextOwned;
+        private boolean automaticCaching;
+        private Conversation conversation;
+        private String tenant;
+        private Instant deadline;
+        
+        private Builder() {
+        }
+        
+        private Builder(LLMRequest request) {
+            this.prompt = request.prompt;
+            this.parameters = request.parameters;
+            this.model = request.model;
+            this.stopSequences = request.stopSequences;
+            this.tools = request.tools;
+            this.image = request.image;
+            this.system = request.system;
+            this.context = request.context;
+            this.automaticCaching = request.automaticCaching;
+            this.conversation = request.conversation;
+            this.tenant = request.tenant;
+            this.deadline = request.deadline;
+        }
+        
+        public Builder prompt(String prompt) {
+            this.prompt = prompt;
+            return this;
+        }
+        
+        public Builder parameter(String key, Object value) {
+            if (!parametersOwned) {
+                parameters = new LinkedHashMap<>(parameters);
+                parametersOwned = true;
+            }
+            parameters.put(key, value);
+            return this;
+        }
+        
+        public Builder parameters(Map<String, Object> parameters) {
+            this.parameters = parameters != null ? new LinkedHashMap<>(parameters) : new LinkedHashMap<>();
+            this.parametersOwned = true;
+            return this;
+        }
+        
+        public Builder model(String model) {
+            this.model = model;
+            return this;
+        }
+        
+        public Builder stopSequences(List<String> stopSequences) {
+            this.stopSequences = stopSequences != null ? List.copyOf(stopSequences) : null;
+            return this;
+        }
+        
+        public Builder tools(List<Tool> tools) {
+            this.tools = tools != null ? List.copyOf(tools) : null;
+            return this;
+        }
+        
+        public Builder image(String mediaType, byte[] data) {
+            this.image = new ImageDTO(mediaType, data);
+            return this;
+        }
+        
+        // Appends to the system prompt
+        public Builder system(ContentPart... parts) {
+            if (!systemOwned) {
+                system = system != null ? new ArrayList<>(system) : new ArrayList<>();
+                systemOwned = true;
+            }
+            system.addAll(Arrays.asList(parts));
+            return this;
+        }
+        
+        // Replaces the system prompt
+        public Builder system(List<ContentPart> system) {
+            this.system = system != null ? new ArrayList<>(system) : null;
+            this.systemOwned = system != null;
+            return this;
+        }
+        
+        // Appends to the context
+        public Builder context(ContentPart... parts) {
+            if (!contextOwned) {
+                context = context != null ? new ArrayList<>(context) : new ArrayList<>();
+                contextOwned = true;
+            }
+            context.addAll(Arrays.asList(parts));
+            return this;
+        }
+        
+        // Replaces the context
+        public Builder context(List<ContentPart> context) {
+            this.context = context != null ? new ArrayList<>(context) : null;
+            this.contextOwned = context != null;
+            return this;
+        }
+        
+        public Builder automaticCaching(boolean automaticCaching) {
+            this.automaticCaching = automaticCaching;
+            return this;
+        }
+        
+        public Builder conversation(Conversation conversation) {
+            this.conversation = conversation;
+            return this;
+        }
+        
+        public Builder tenant(String tenant) {
+            this.tenant = tenant;
+            return this;
+        }
+        
+        public Builder deadline(Instant deadline) {
+            this.deadline = deadline;
+            return this;
+        }
+        
+        // The builder can be used further; later changes copy again and do not affect the built request
+        public LLMRequest build() {
+            if (parametersOwned) {
+                parameters = Collections.unmodifiableMap(parameters);
+                parametersOwned = false;
+            }
+            if (systemOwned) {
+                system = Collections.unmodifiableList(system);
+                systemOwned = false;
+            }
+            if (contextOwned) {
+                context = Collections.unmodifiableList(context);
+                contextOwned = false;
+            }
+            return new LLMRequest(this);
+        }
     }
 }
\ No newline at end of file
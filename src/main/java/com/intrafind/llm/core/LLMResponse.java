@@ -1,69 +1,203 @@
 package com.intrafind.llm.core;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
-public class LLMResponse {
-    private String content;
-    private String model;
-    private LLMProvider provider;
-    private Map<String, Object> metadata;
-    private Optional<String> functionCall;
-    private List<ToolCall> toolCalls;
+/**
+ * Immutable result of one call; the {@code withX} methods return a copy with one field replaced, e.g. for wrappers
+ * that attach their own timing or metadata.
+ */
+public final class LLMResponse {
+    private final String content;
+    private final String model;
+    private final LLMProvider provider;
+    private final Map<String, Object> metadata;
+    private final Optional<String> functionCall;
+    private final List<ToolCall> toolCalls;
+    private final LLMTiming timing;
+    private final Usage usage;
+    private final RateLimits rateLimits;
     
     public LLMResponse(String content, String model, LLMProvider provider) {
-        this.content = content;
-        this.model = model;
-        this.provider = provider;
-        this.functionCall = Optional.empty();
+        this(new Builder().content(content).model(model).provider(provider));
+    }
+    
+    private LLMResponse(Builder builder) {
+        this.content = builder.content;
+        this.model = builder.model;
+        this.provider = builder.provider;
+        this.metadata = builder.metadata;
+        this.functionCall = builder.functionCall;
+        this.toolCalls = builder.toolCalls;
+        this.timing = builder.timing;
+        this.usage = builder.usage;
+        this.rateLimits = builder.rateLimits;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    public Builder toBuilder() {
+        return new Builder(this);
     }
     
     public String getContent() {
         return content;
     }
     
-    public void setContent(String content) {
-        this.content = content;
+    public LLMResponse withContent(String content) {
+        return toBuilder().content(content).build();
     }
     
     public String getModel() {
         return model;
     }
     
-    public void setModel(String model) {
-        this.model = model;
+    public LLMResponse withModel(String model) {
+        return toBuilder().model(model).build();
     }
     
     public LLMProvider getProvider() {
         return provider;
     }
     
-    public void setProvider(LLMProvider provider) {
-        this.provider = provider;
+    public LLMResponse withProvider(LLMProvider provider) {
+        return toBuilder().provider(provider).build();
     }
     
+    // Unmodifiable, null if the provider returned none
     public Map<String, Object> getMetadata() {
         return metadata;
     }
     
-    public void setMetadata(Map<String, Object> metadata) {
-        this.metadata = metadata;
+    public LLMResponse withMetadata(Map<String, Object> metadata) {
+        return toBuilder().metadata(metadata).build();
     }
     
     public Optional<String> getFunctionCall() {
         return functionCall;
     }
     
-    public void setFunctionCall(Optional<String> functionCall) {
-        this.functionCall = functionCall;
+    public LLMResponse withFunctionCall(Optional<String> functionCall) {
+        return toBuilder().functionCall(functionCall).build();
     }
     
     public List<ToolCall> getToolCalls() {
         return toolCalls;
     }
     
-    public void setToolCalls(List<ToolCall> toolCalls) {
-        this.toolCalls = toolCalls;
+    public LLMResponse withToolCalls(List<ToolCall> toolCalls) {
+        return toBuilder().toolCalls(toolCalls).build();
+    }
+    
+    public LLMTiming getTiming() {
+        return timing;
+    }
+    
+    public LLMResponse withTiming(LLMTiming timing) {
+        return toBuilder().timing(timing).build();
+    }
+    
+    public Usage getUsage() {
+        return usage;
+    }
+    
+    public LLMResponse withUsage(Usage usage) {
+        return toBuilder().usage(usage).build();
+    }
+    
+    // Quota left on the API key used, never null
+    public RateLimits getRateLimits() {
+        return rateLimits;
+    }
+    
+    public LLMResponse withRateLimits(RateLimits rateLimits) {
+        return toBuilder().rateLimits(rateLimits).build();
+    }
+    
+    // The assistant turn to append to the conversation this response continues
+    public Message toMessage() {
+        return Message.assistant(content, toolCalls);
+    }
+    
+    public static final class Builder {
+        private String content;
+        private String model;
+        private LLMProvider provider;
+        private Map<String, Object> metadata;
+        private Optional<String> functionCall = Optional.empty();
+        private List<ToolCall> toolCalls;
+        private LLMTiming timing = LLMTiming.NONE;
+        private Usage usage = Usage.EMPTY;
+        private RateLimits rateLimits = RateLimits.UNKNOWN;
+        
+        private Builder() {
+        }
+        
+        private Builder(LLMResponse response) {
+            this.content = response.content;
+            this.model = response.model;
+            this.provider = response.provider;
+            this.metadata = response.metadata;
+            this.functionCall = response.functionCall;
+            this.toolCalls = response.toolCalls;
+            this.timing = response.timing;
+            this.usage = response.usage;
+            this.rateLimits = response.rateLimits;
+        }
+        
+        public Builder content(String content) {
+            this.content = content;
+            return this;
+        }
+        
+        public Builder model(String model) {
+            this.model = model;
+            return this;
+        }
+        
+        public Builder provider(LLMProvider provider) {
+            this.provider = provider;
+            return this;
+        }
+        
+        // Metadata values may be null, so the map is wrapped rather than copied with Map.copyOf
+        public Builder metadata(Map<String, Object> metadata) {
+            this.metadata = metadata != null ? Collections.unmodifiableMap(new LinkedHashMap<>(metadata)) : null;
+            return this;
+        }
+        
+        public Builder functionCall(Optional<String> functionCall) {
+            this.functionCall = functionCall != null ? functionCall : Optional.empty();
+            return this;
+        }
+        
+        public Builder toolCalls(List<ToolCall> toolCalls) {
+            this.toolCalls = toolCalls != null ? List.copyOf(toolCalls) : null;
+            return this;
+        }
+        
+        public Builder timing(LLMTiming timing) {
+            this.timing = timing;
+            return this;
+        }
+        
+        public Builder usage(Usage usage) {
+            this.usage = usage;
+            return this;
+        }
+        
+        public Builder rateLimits(RateLimits rateLimits) {
+            this.rateLimits = rateLimits != null ? rateLimits : RateLimits.UNKNOWN;
+            return this;
+        }
+        
+        public LLMResponse build() {
+            return new LLMResponse(this);
+        }
     }
 }
\ No newline at end of file
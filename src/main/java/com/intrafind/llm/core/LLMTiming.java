@@ -0,0 +1,98 @@
+package com.intrafind.llm.core;
+
+import java.time.Duration;
+
+/**
+ * Phase breakdown of a single LLM call. All phases are wall-clock durations measured on the
+ * calling thread; phases that did not happen (e.g. connect on a reused connection) are zero.
+ */
+public final class LLMTiming {
+    public static final LLMTiming NONE = new LLMTiming(0, 0, 0, 0, 0, 0, 0, 0, 0);
+    
+    private final long requestBuildNanos;
+    private final long serializationNanos;
+    private final long leaseWaitNanos;
+    private final long connectNanos;
+    private final long requestWriteNanos;
+    private final long timeToFirstByteNanos;
+    private final long downloadNanos;
+    private final long parseNanos;
+    private final long totalNanos;
+    
+    public LLMTiming(long requestBuildNanos, long serializationNanos, long leaseWaitNanos, long connectNanos,
+                     long requestWriteNanos, long timeToFirstByteNanos, long downloadNanos, long parseNanos,
+                     long totalNanos) {
+        this.requestBuildNanos = requestBuildNanos;
+        this.serializationNanos = serializationNanos;
+        this.leaseWaitNanos = leaseWaitNanos;
+        this.connectNanos = connectNanos;
+        this.requestWriteNanos = requestWriteNanos;
+        this.timeToFirstByteNanos = timeToFirstByteNanos;
+        this.downloadNanos = downloadNanos;
+        this.parseNanos = parseNanos;
+        this.totalNanos = totalNanos;
+    }
+    
+    // Mapping the LLMRequest onto the provider's request body
+    public Duration getRequestBuild() {
+        return Duration.ofNanos(requestBuildNanos);
+    }
+    
+    // Writing the request body as JSON
+    public Duration getSerialization() {
+        return Duration.ofNanos(serializationNanos);
+    }
+    
+    // Waiting for a pooled connection to become available
+    public Duration getLeaseWait() {
+        return Duration.ofNanos(leaseWaitNanos);
+    }
+    
+    // DNS resolution, TCP and TLS handshake; zero when a pooled connection was reused
+    public Duration getConnect() {
+        return Duration.ofNanos(connectNanos);
+    }
+    
+    public Duration getRequestWrite() {
+        return Duration.ofNanos(requestWriteNanos);
+    }
+    
+    // From the end of the request write until the response head arrived (server think time)
+    public Duration getTimeToFirstByte() {
+        return Duration.ofNanos(timeToFirstByteNanos);
+    }
+    
+    public Duration getDownload() {
+        return Duration.ofNanos(downloadNanos);
+    }
+    
+    // Parsing the response JSON into an LLMResponse
+    public Duration getParse() {
+        return Duration.ofNanos(parseNanos);
+    }
+    
+    public Duration getTotal() {
+        return Duration.ofNanos(totalNanos);
+    }
+    
+    public boolean isConnectionReused() {
+        return connectNanos == 0;
+    }
+    
+    @Override
+    public String toString() {
+        return "build=" + millis(requestBuildNanos) +
+            " serialize=" + millis(serializationNanos) +
+            " lease=" + millis(leaseWaitNanos) +
+            " connect=" + millis(connectNanos) +
+            " write=" + millis(requestWriteNanos) +
+            " ttfb=" + millis(timeToFirstByteNanos) +
+            " download=" + millis(downloadNanos) +
+            " parse=" + millis(parseNanos) +
+            " total=" + millis(totalNanos);
+    }
+    
+    private static String millis(long nanos) {
+        return String.format(java.util.Locale.ROOT, "%.1fms", nanos / 1_000_000.0);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.intrafind.llm.core;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * One immutable turn of a {@link Conversation}. Assistant messages may carry the tool calls the model made, tool
+ * messages answer one of them and name the call by id and tool name (Gemini matches results by name). Pinned
+ * messages are never summarized away by a {@link ConversationCompactor}.
+ */
+public record Message(Role role, List<ContentPart> parts, List<ToolCall> toolCalls, String toolCallId, String toolName,
+                      boolean pinned) {
+    
+    public Message {
+        parts = parts == null ? List.of() : List.copyOf(parts);
+        toolCalls = toolCalls == null ? List.of() : List.copyOf(toolCalls);
+    }
+    
+    public static Message system(String text) {
+        return new Message(Role.SYSTEM, List.of(ContentPart.text(text)), null, null, null, false);
+    }
+    
+    public static Message user(String text) {
+        return new Message(Role.USER, List.of(ContentPart.text(text)), null, null, null, false);
+    }
+    
+    public static Message user(ContentPart... parts) {
+        return new Message(Role.USER, List.of(parts), null, null, null, false);
+    }
+    
+    public static Message assistant(String text) {
+        return assistant(text, null);
+    }
+    
+    public static Message assistant(String text, List<ToolCall> toolCalls) {
+        List<ContentPart> parts = text == null || text.isEmpty() ? List.of() : List.of(ContentPart.text(text));
+        return new Message(Role.ASSISTANT, parts, toolCalls, null, null, false);
+    }
+    
+    public static Message toolResult(ToolCall call, String result) {
+        return new Message(Role.TOOL, List.of(ContentPart.text(result)), null, call.getId(), call.getName(), false);
+    }
+    
+    // The same message, kept verbatim when the conversation is compacted
+    public Message asPinned() {
+        return new Message(role, parts, toolCalls, toolCallId, toolName, true);
+    }
+    
+    // Text parts joined, for formats that take a message as a single string
+    public String text() {
+        return parts.stream()
+            .filter(part -> part instanceof ContentPart.Text)
+            .map(part -> ((ContentPart.Text) part).text())
+            .collect(Collectors.joining("\n\n"));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,199 @@
+package com.intrafind.llm.core;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The setter API of earlier versions over an immutable {@link LLMRequest}, for code that builds a request step by step
+ * and changes it in place. Each change replaces the wrapped request by a copy sharing the unchanged parts;
+ * {@link #toRequest()} returns the request to send. As before, the parameter map can be changed through
+ * {@link #getParameters()}. Not thread-safe.
+ */
+public final class MutableLLMRequest {
+    private LLMRequest request;
+    private Map<String, Object> parameters;
+    
+    public MutableLLMRequest(String prompt) {
+        this(new LLMRequest(prompt));
+    }
+    
+    public MutableLLMRequest(LLMRequest request) {
+        this.request = request;
+        this.parameters = new LinkedHashMap<>(request.getParameters());
+    }
+    
+    // The request as currently set up; later changes do not affect it
+    public LLMRequest toRequest() {
+        if (!parameters.equals(request.getParameters())) {
+            request = request.toBuilder().parameters(parameters).build();
+        }
+        return request;
+    }
+    
+    public String getPrompt() {
+        return request.getPrompt();
+    }
+    
+    public void setPrompt(String prompt) {
+        request = request.withPrompt(prompt);
+    }
+    
+    public MutableLLMRequest withPrompt(String prompt) {
+        setPrompt(prompt);
+        return this;
+    }
+    
+    // Modifiable; changes show in the next toRequest()
+    public Map<String, Object> getParameters() {
+        return parameters;
+    }
+    
+    public void setParameters(Map<String, Object> parameters) {
+        this.parameters = parameters != null ? parameters : new LinkedHashMap<>();
+    }
+    
+    public MutableLLMRequest withParameter(String key, Object value) {
+        parameters.put(key, value);
+        return this;
+    }
+    
+    public String getModel() {
+        return request.getModel();
+    }
+    
+    public void setModel(String model) {
+        request = request.withModel(model);
+    }
+    
+    public MutableLLMRequest withModel(String model) {
+        setModel(model);
+        return this;
+    }
+    
+    public List<String> getStopSequences() {
+        return request.getStopSequences();
+    }
+    
+    public void setStopSequences(List<String> stopSequences) {
+        request = request.withStopSequences(stopSequences);
+    }
+    
+    public MutableLLMRequest withStopSequences(List<String> stopSequences) {
+        setStopSequences(stopSequences);
+        return this;
+    }
+    
+    public List<Tool> getTools() {
+        return request.getTools();
+    }
+    
+    public void setTools(List<Tool> tools) {
+        request = request.withTools(tools);
+    }
+    
+    public MutableLLMRequest withTools(List<Tool> tools) {
+        setTools(tools);
+        return this;
+    }
+    
+    public LLMRequest.ImageDTO getImage() {
+        return request.getImage();
+    }
+    
+    public void setImage(String mediaType, byte[] data) {
+        request = request.withImage(mediaType, data);
+    }
+    
+    public MutableLLMRequest withImage(String mediaType, byte[] data) {
+        setImage(mediaType, data);
+        return this;
+    }
+    
+    public List<ContentPart> getSystem() {
+        return request.getSystem();
+    }
+    
+    // Replaces the system prompt
+    public void setSystem(List<ContentPart> system) {
+        request = request.toBuilder().system(system).build();
+    }
+    
+    // Appends to the system prompt
+    public MutableLLMRequest withSystem(ContentPart... parts) {
+        request = request.withSystem(parts);
+        return this;
+    }
+    
+    public MutableLLMRequest withSystem(String system) {
+        return withSystem(ContentPart.text(system));
+    }
+    
+    public List<ContentPart> getContext() {
+        return request.getContext();
+    }
+    
+    // Replaces the context
+    public void setContext(List<ContentPart> context) {
+        request = request.toBuilder().context(context).build();
+    }
+    
+    // Appends to the context
+    public MutableLLMRequest withContext(ContentPart... parts) {
+        request = request.withContext(parts);
+        return this;
+    }
+    
+    public boolean isAutomaticCaching() {
+        return request.isAutomaticCaching();
+    }
+    
+    public void setAutomaticCaching(boolean automaticCaching) {
+        request = request.withAutomaticCaching(automaticCaching);
+    }
+    
+    public MutableLLMRequest withAutomaticCaching(boolean automaticCaching) {
+        setAutomaticCaching(automaticCaching);
+        return this;
+    }
+    
+    public Conversation getConversation() {
+        return request.getConversation();
+    }
+    
+    public void setConversation(Conversation conversation) {
+        request = request.withConversation(conversation);
+    }
+    
+    public MutableLLMRequest withConversation(Conversation conversation) {
+        setConversation(conversation);
+        return this;
+    }
+    
+    public String getTenant() {
+        return request.getTenant();
+    }
+    
+    public void setTenant(String tenant) {
+        request = request.withTenant(tenant);
+    }
+    
+    public MutableLLMRequest withTenant(String tenant) {
+        setTenant(tenant);
+        return this;
+    }
+    
+    public Instant getDeadline() {
+        return request.getDeadline();
+    }
+    
+    public void setDeadline(Instant deadline) {
+        request = request.withDeadline(deadline);
+    }
+    
+    public MutableLLMRequest withDeadline(Instant deadline) {
+        setDeadline(deadline);
+        return this;
+    }
+}
\ No newline at end of file
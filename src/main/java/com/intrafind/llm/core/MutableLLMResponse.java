@@ -0,0 +1,103 @@
+package com.intrafind.llm.core;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * The setter API of earlier versions over an immutable {@link LLMResponse}, for code that fills in or adjusts a
+ * response field by field. Each change replaces the wrapped response by a copy; {@link #toResponse()} returns the
+ * response. The metadata map is kept as set, so it can still be added to through {@link #getMetadata()}. Not
+ * thread-safe.
+ */
+public final class MutableLLMResponse {
+    private LLMResponse response;
+    private Map<String, Object> metadata;
+    
+    public MutableLLMResponse(String content, String model, LLMProvider provider) {
+        this(new LLMResponse(content, model, provider));
+    }
+    
+    public MutableLLMResponse(LLMResponse response) {
+        this.response = response;
+        this.metadata = response.getMetadata();
+    }
+    
+    // The response as currently set up; later changes do not affect it
+    public LLMResponse toResponse() {
+        return metadata == response.getMetadata() ? response : response.withMetadata(metadata);
+    }
+    
+    public String getContent() {
+        return response.getContent();
+    }
+    
+    public void setContent(String content) {
+        response = response.withContent(content);
+    }
+    
+    public String getModel() {
+        return response.getModel();
+    }
+    
+    public void setModel(String model) {
+        response = response.withModel(model);
+    }
+    
+    public LLMProvider getProvider() {
+        return response.getProvider();
+    }
+    
+    public void setProvider(LLMProvider provider) {
+        response = response.withProvider(provider);
+    }
+    
+    // The map last set, modifiable if it was
+    public Map<String, Object> getMetadata() {
+        return metadata;
+    }
+    
+    public void setMetadata(Map<String, Object> metadata) {
+        this.metadata = metadata;
+    }
+    
+    public Optional<String> getFunctionCall() {
+        return response.getFunctionCall();
+    }
+    
+    public void setFunctionCall(Optional<String> functionCall) {
+        response = response.withFunctionCall(functionCall);
+    }
+    
+    public List<ToolCall> getToolCalls() {
+        return response.getToolCalls();
+    }
+    
+    public void setToolCalls(List<ToolCall> toolCalls) {
+        response = response.withToolCalls(toolCalls);
+    }
+    
+    public LLMTiming getTiming() {
+        return response.getTiming();
+    }
+    
+    public void setTiming(LLMTiming timing) {
+        response = response.withTiming(timing);
+    }
+    
+    public Usage getUsage() {
+        return response.getUsage();
+    }
+    
+    public void setUsage(Usage usage) {
+        response = response.withUsage(usage);
+    }
+    
+    public RateLimits getRateLimits() {
+        return response.getRateLimits();
+    }
+    
+    public void setRateLimits(RateLimits rateLimits) {
+        response = response.withRateLimits(rateLimits);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,115 @@
+package com.intrafind.llm.core;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Quota left on the API key after a call, as reported in the provider's rate limit headers (OpenAI and Mistral
+ * {@code x-ratelimit-*}, Anthropic {@code anthropic-ratelimit-*}). Values the provider did not report are -1; Gemini
+ * reports none.
+ */
+public record RateLimits(long remainingRequests, long remainingTokens, long requestsResetMillis, long tokensResetMillis) {
+    
+    public static final RateLimits UNKNOWN = new RateLimits(-1, -1, -1, -1);
+    
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    
+    public boolean isKnown() {
+        return remainingRequests >= 0 || remainingTokens >= 0;
+    }
+    
+    // From response headers with lower-case names
+    public static RateLimits fromHeaders(Map<String, String> headers) {
+        if (headers == null || headers.isEmpty()) {
+            return UNKNOWN;
+        }
+        RateLimits limits = new RateLimits(
+            number(headers, "x-ratelimit-remaining-requests", "anthropic-ratelimit-requests-remaining", "x-ratelimit-remaining-req-minute"),
+            number(headers, "x-ratelimit-remaining-tokens", "anthropic-ratelimit-tokens-remaining", "x-ratelimit-remaining-tokens-minute"),
+            reset(headers, "x-ratelimit-reset-requests", "anthropic-ratelimit-requests-reset"),
+            reset(headers, "x-ratelimit-reset-tokens", "anthropic-ratelimit-tokens-reset"));
+        return limits.isKnown() ? limits : UNKNOWN;
+    }
+    
+    // Retry-After in seconds or as an HTTP date, or OpenAI's retry-after-ms; -1 if absent
+    public static long retryAfterMillis(Map<String, String> headers) {
+        if (headers == null) {
+            return -1;
+        }
+        String millis = headers.get("retry-after-ms");
+        if (millis != null) {
+            try {
+                return (long) Double.parseDouble(millis.trim());
+            } catch (NumberFormatException e) {
+                // fall back to Retry-After
+            }
+        }
+        String value = headers.get("retry-after");
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return (long) (Double.parseDouble(value.trim()) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, Duration.between(Instant.now(), date).toMillis());
+            } catch (DateTimeParseException ignored) {
+                return -1;
+            }
+        }
+    }
+    
+    private static long number(Map<String, String> headers, String... names) {
+        for (String name : names) {
+            String value = headers.get(name);
+            if (value != null) {
+                try {
+                    return Long.parseLong(value.trim());
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    // OpenAI sends durations such as "6m0s" or "20ms", Anthropic RFC 3339 timestamps
+    private static long reset(Map<String, String> headers, String... names) {
+        for (String name : names) {
+            String value = headers.get(name);
+            if (value == null) {
+                continue;
+            }
+            value = value.trim();
+            if (value.contains("T")) {
+                try {
+                    return Math.max(0, Duration.between(Instant.now(), Instant.parse(value)).toMillis());
+                } catch (DateTimeParseException e) {
+                    return -1;
+                }
+            }
+            Matcher matcher = DURATION_PART.matcher(value);
+            double millis = 0;
+            int end = 0;
+            while (matcher.find() && matcher.start() == end) {
+                double amount = Double.parseDouble(matcher.group(1));
+                millis += switch (matcher.group(2)) {
+                    case "h" -> amount * 3_600_000;
+                    case "m" -> amount * 60_000;
+                    case "s" -> amount * 1000;
+                    default -> amount;
+                };
+                end = matcher.end();
+            }
+            return end == value.length() && end > 0 ? (long) millis : -1;
+        }
+        return -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.intrafind.llm.core;
+
+public enum Role {
+    SYSTEM,
+    USER,
+    ASSISTANT,
+    TOOL
+}
\ No newline at end of file
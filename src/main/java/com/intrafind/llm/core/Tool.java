@@ -1,6 +1,7 @@
 package com.intrafind.llm.core;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class Tool {
     private String name;
@@ -36,4 +37,21 @@ public class Tool {
     public void setParameters(Map<String, Object> parameters) {
         this.parameters = parameters;
     }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Tool other)) {
+            return false;
+        }
+        return Objects.equals(name, other.name) && Objects.equals(description, other.description)
+            && Objects.equals(parameters, other.parameters);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, description, parameters);
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.intrafind.llm.core;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class ToolCall {
     private String id;
@@ -36,4 +37,21 @@ public class ToolCall {
     public void setArguments(Map<String, Object> arguments) {
         this.arguments = arguments;
     }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ToolCall)) {
+            return false;
+        }
+        ToolCall other = (ToolCall) o;
+        return Objects.equals(id, other.id) && Objects.equals(name, other.name) && Objects.equals(arguments, other.arguments);
+    }
+    
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, name, arguments);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.intrafind.llm.core;
+
+/**
+ * Token usage of a single call, normalized across providers. {@code inputTokens} counts every prompt
+ * token including the ones served from the provider's prompt cache ({@code cachedInputTokens});
+ * {@code reasoningTokens} are the part of {@code outputTokens} spent on hidden reasoning.
+ * {@code cacheWriteInputTokens} are the input tokens written to the cache by this call, also part of
+ * {@code inputTokens}; only providers with explicit cache control report them.
+ */
+public record Usage(long inputTokens, long outputTokens, long cachedInputTokens, long reasoningTokens,
+                    long cacheWriteInputTokens) {
+    
+    public static final Usage EMPTY = new Usage(0, 0, 0, 0);
+    
+    public Usage(long inputTokens, long outputTokens, long cachedInputTokens, long reasoningTokens) {
+        this(inputTokens, outputTokens, cachedInputTokens, reasoningTokens, 0);
+    }
+    
+    public long totalTokens() {
+        return inputTokens + outputTokens;
+    }
+    
+    public double cacheHitRatio() {
+        return inputTokens == 0 ? 0.0 : (double) cachedInputTokens / inputTokens;
+    }
+}
\ No newline at end of file
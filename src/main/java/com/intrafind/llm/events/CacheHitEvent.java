@@ -0,0 +1,18 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.CacheHit")
+@Label("LLM Cache Hit")
+@Description("A cached artifact was reused instead of being sent or computed again")
+public class CacheHitEvent extends LLMEvent {
+    @Label("Cache")
+    String cache;
+    
+    @Label("Bytes Saved")
+    @DataAmount
+    long bytesSaved;
+}
\ No newline at end of file
@@ -0,0 +1,170 @@
+package com.intrafind.llm.events;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.Usage;
+import jdk.jfr.FlightRecorder;
+
+/**
+ * Emits the JFR events of one LLM call as its phases progress. {@link #begin} returns null until a
+ * recording has been started in this JVM, so calls made without JFR allocate nothing.
+ */
+public final class CallEvents {
+    private final String provider;
+    private final String model;
+    private RequestBuildEvent build;
+    private SerializationEvent serialization;
+    private HttpExchangeEvent exchange;
+    private FirstTokenEvent firstToken;
+    private ParseEvent parse;
+    
+    private CallEvents(String provider, String model) {
+        this.provider = provider;
+        this.model = model;
+        this.build = new RequestBuildEvent();
+        this.build.begin();
+    }
+    
+    public static CallEvents begin(LLMProvider provider, String model) {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        return new CallEvents(provider.getDisplayName(), model);
+    }
+    
+    private void finishBuild() {
+        if (build != null) {
+            build.end();
+            if (build.shouldCommit()) {
+                build.provider = provider;
+                build.model = model;
+                build.commit();
+            }
+            build = null;
+        }
+    }
+    
+    public void serializationStarted() {
+        finishBuild();
+        serialization = new SerializationEvent();
+        serialization.begin();
+    }
+    
+    public void serializationFinished(long requestBytes) {
+        serialization.end();
+        if (serialization.shouldCommit()) {
+            serialization.provider = provider;
+            serialization.model = model;
+            serialization.requestBytes = requestBytes;
+            serialization.commit();
+        }
+    }
+    
+    public void exchangeStarted() {
+        finishBuild();
+        exchange = new HttpExchangeEvent();
+        exchange.begin();
+        firstToken = new FirstTokenEvent();
+        firstToken.begin();
+    }
+    
+    public void firstByteReceived() {
+        firstToken.end();
+        if (firstToken.shouldCommit()) {
+            firstToken.provider = provider;
+            firstToken.model = model;
+            firstToken.commit();
+        }
+    }
+    
+    public void exchangeFinished(int statusCode, long requestBytes, long responseBytes, boolean connectionReused) {
+        exchange.end();
+        if (exchange.shouldCommit()) {
+            exchange.provider = provider;
+            exchange.model = model;
+            exchange.statusCode = statusCode;
+            exchange.requestBytes = requestBytes;
+            exchange.responseBytes = responseBytes;
+            exchange.connectionReused = connectionReused;
+            exchange.commit();
+        }
+    }
+    
+    public void parseStarted() {
+        parse = new ParseEvent();
+        parse.begin();
+    }
+    
+    public void parseFinished(long responseBytes, Usage usage) {
+        parse.end();
+        if (parse.shouldCommit()) {
+            parse.provider = provider;
+            parse.model = model;
+            parse.responseBytes = responseBytes;
+            parse.inputTokens = usage.inputTokens();
+            parse.outputTokens = usage.outputTokens();
+            parse.cachedInputTokens = usage.cachedInputTokens();
+            parse.commit();
+        }
+    }
+    
+    // Events for work around a call (waits, retries, cache hits); begin returns null while JFR is not in use
+    
+    public static RateLimitWaitEvent beginRateLimitWait() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        RateLimitWaitEvent event = new RateLimitWaitEvent();
+        event.begin();
+        return event;
+    }
+    
+    public static void endRateLimitWait(RateLimitWaitEvent event, LLMProvider provider, String model, String limiter) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.provider = provider != null ? provider.getDisplayName() : null;
+            event.model = model;
+            event.limiter = limiter;
+            event.commit();
+        }
+    }
+    
+    public static RetryEvent beginRetry() {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        RetryEvent event = new RetryEvent();
+        event.begin();
+        return event;
+    }
+    
+    public static void endRetry(RetryEvent event, LLMProvider provider, String model, int attempt, String reason) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.provider = provider != null ? provider.getDisplayName() : null;
+            event.model = model;
+            event.attempt = attempt;
+            event.reason = reason;
+            event.commit();
+        }
+    }
+    
+    public static void cacheHit(LLMProvider provider, String model, String cache, long bytesSaved) {
+        if (!FlightRecorder.isInitialized()) {
+            return;
+        }
+        CacheHitEvent event = new CacheHitEvent();
+        if (event.shouldCommit()) {
+            event.provider = provider != null ? provider.getDisplayName() : null;
+            event.model = model;
+            event.cache = cache;
+            event.bytesSaved = bytesSaved;
+            event.commit();
+        }
+    }
+}
\ No newline at end of file
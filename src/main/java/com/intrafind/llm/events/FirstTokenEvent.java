@@ -0,0 +1,11 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.FirstToken")
+@Label("LLM First Token")
+@Description("Time from sending the request until the first response byte arrived")
+public class FirstTokenEvent extends LLMEvent {
+}
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.HttpExchange")
+@Label("LLM HTTP Exchange")
+@Description("HTTP round trip to the provider, from connection lease to the end of the response body")
+public class HttpExchangeEvent extends LLMEvent {
+    @Label("Status Code")
+    int statusCode;
+    
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+    
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+    
+    @Label("Connection Reused")
+    boolean connectionReused;
+}
\ No newline at end of file
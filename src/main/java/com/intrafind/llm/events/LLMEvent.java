@@ -0,0 +1,16 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+@Category("J2XLM")
+@StackTrace(false)
+abstract class LLMEvent extends Event {
+    @Label("Provider")
+    String provider;
+    
+    @Label("Model")
+    String model;
+}
\ No newline at end of file
@@ -0,0 +1,24 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.Parse")
+@Label("LLM Response Parse")
+@Description("Parsing the provider response into an LLMResponse")
+public class ParseEvent extends LLMEvent {
+    @Label("Response Size")
+    @DataAmount
+    long responseBytes;
+    
+    @Label("Input Tokens")
+    long inputTokens;
+    
+    @Label("Output Tokens")
+    long outputTokens;
+    
+    @Label("Cached Input Tokens")
+    long cachedInputTokens;
+}
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.RateLimitWait")
+@Label("LLM Rate Limit Wait")
+@Description("Time a call was held back by a client-side limiter or scheduler")
+public class RateLimitWaitEvent extends LLMEvent {
+    @Label("Limiter")
+    String limiter;
+}
\ No newline at end of file
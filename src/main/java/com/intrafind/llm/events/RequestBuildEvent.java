@@ -0,0 +1,11 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.RequestBuild")
+@Label("LLM Request Build")
+@Description("Mapping an LLMRequest onto the provider request body")
+public class RequestBuildEvent extends LLMEvent {
+}
\ No newline at end of file
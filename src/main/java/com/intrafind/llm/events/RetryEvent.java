@@ -0,0 +1,16 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.Retry")
+@Label("LLM Retry")
+@Description("A failed LLM call attempted again, on another key or endpoint or with everything sent inline")
+public class RetryEvent extends LLMEvent {
+    @Label("Attempt")
+    int attempt;
+    
+    @Label("Reason")
+    String reason;
+}
\ No newline at end of file
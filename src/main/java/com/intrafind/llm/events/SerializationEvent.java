@@ -0,0 +1,15 @@
+package com.intrafind.llm.events;
+
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.intrafind.llm.Serialization")
+@Label("LLM Serialization")
+@Description("Serializing the provider request body to JSON")
+public class SerializationEvent extends LLMEvent {
+    @Label("Request Size")
+    @DataAmount
+    long requestBytes;
+}
\ No newline at end of file
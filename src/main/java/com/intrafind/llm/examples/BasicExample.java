@@ -23,7 +23,7 @@ public class BasicExample {
         System.out.println("Provider: " + response.getProvider().getDisplayName());
         System.out.println("Model: " + response.getModel());
         System.out.println("Response: " + response.getContent());
-        System.out.println("Usage: " + response.getMetadata().get("usage"));
+        System.out.println("Usage: " + response.getUsage());
         
         openaiClient.close();
         
@@ -1,12 +1,36 @@
 package com.intrafind.llm.exceptions;
 
 public class LLMException extends RuntimeException {
+    private final int statusCode;
+    private final String responseBody;
     
     public LLMException(String message) {
+        this(message, 0);
+    }
+    
+    public LLMException(String message, int statusCode) {
+        this(message, statusCode, null);
+    }
+    
+    public LLMException(String message, int statusCode, String responseBody) {
         super(message);
+        this.statusCode = statusCode;
+        this.responseBody = responseBody;
     }
     
     public LLMException(String message, Throwable cause) {
         super(message, cause);
+        this.statusCode = 0;
+        this.responseBody = null;
+    }
+    
+    // HTTP status of the failed call, 0 if the call did not get a response
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    // Body of the error response as sent by the provider, null if there was none
+    public String getResponseBody() {
+        return responseBody;
     }
 }
\ No newline at end of file
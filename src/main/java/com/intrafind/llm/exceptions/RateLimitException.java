@@ -1,12 +1,24 @@
 package com.intrafind.llm.exceptions;
 
 public class RateLimitException extends LLMException {
+    private final long retryAfterMillis;
     
     public RateLimitException(String message) {
-        super(message);
+        this(message, -1);
+    }
+    
+    public RateLimitException(String message, long retryAfterMillis) {
+        super(message, 429);
+        this.retryAfterMillis = retryAfterMillis;
     }
     
     public RateLimitException(String message, Throwable cause) {
         super(message, cause);
+        this.retryAfterMillis = -1;
+    }
+    
+    // Wait the provider asked for before the next call, -1 if it did not say
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package com.intrafind.llm.exceptions;
+
+// The call was not sent because a client-side scheduler turned it away; it may be retried later
+public class RequestRejectedException extends LLMException {
+    
+    public RequestRejectedException(String message) {
+        super(message);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,169 @@
+package com.intrafind.llm.metrics;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of latencies in microseconds, in the style of HdrHistogram: values up to 256us
+ * are exact, larger ones land in one of 128 linear sub-buckets per power of two (under 0.8% relative error).
+ * Covers up to about 19 hours; larger values are clamped.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKETS = 256;
+    private static final int HALF = SUB_BUCKETS / 2;
+    private static final int SHIFT = 7; // log2(HALF)
+    private static final int MAX_EXPONENT = 28;
+    private static final long MAX_VALUE = ((long) SUB_BUCKETS << MAX_EXPONENT) - 1;
+    
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + MAX_EXPONENT * HALF);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+    
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+    
+    public void record(long micros) {
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        sum.addAndGet(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+    
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value) - SHIFT;
+        return SUB_BUCKETS + (exponent - 1) * HALF + (int) ((value >>> exponent) - HALF);
+    }
+    
+    private static long lowestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / HALF + 1;
+        return ((long) ((index - SUB_BUCKETS) % HALF + HALF)) << exponent;
+    }
+    
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = (index - SUB_BUCKETS) / HALF + 1;
+        return lowestValueAt(index) + (1L << exponent) - 1;
+    }
+    
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+    
+    public long getMin() {
+        return totalCount.get() == 0 ? 0 : min.get();
+    }
+    
+    public long getMax() {
+        return max.get();
+    }
+    
+    public double getMean() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+    
+    // Value in microseconds at or below which the given percentage (0-100) of recorded values fall
+    public long valueAtPercentile(double percentile) {
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+    
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        totalCount.addAndGet(other.totalCount.get());
+        sum.addAndGet(other.sum.get());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+    
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        sum.set(0);
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+    
+    /**
+     * Writes the percentile distribution in milliseconds in HdrHistogram's .hgrm text format, so the output can be
+     * plotted with the usual HdrHistogram tooling.
+     */
+    public void outputPercentileDistribution(PrintStream out) {
+        long count = totalCount.get();
+        long[] snapshot = new long[counts.length()];
+        for (int i = 0; i < snapshot.length; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        
+        out.println("       Value     Percentile TotalCount 1/(1-Percentile)");
+        out.println();
+        if (count > 0) {
+            int ticksPerHalfDistance = 5;
+            double percentile = 0;
+            int index = 0;
+            long seen = snapshot[0];
+            while (true) {
+                long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+                while (seen < target && index < snapshot.length - 1) {
+                    seen += snapshot[++index];
+                }
+                double value = Math.min(highestValueAt(index), max.get()) / 1000.0;
+                if (seen >= count) {
+                    out.printf(Locale.ROOT, "%12.3f %1.12f %10d%n", value, 1.0, count);
+                    break;
+                }
+                double fraction = (double) seen / count;
+                out.printf(Locale.ROOT, "%12.3f %1.12f %10d %14.2f%n", value, fraction, seen, 1 / (1 - fraction));
+                // Like HdrHistogram, report at finer steps the closer the percentile gets to 100
+                double halfDistance = Math.pow(2, Math.floor(Math.log(100.0 / (100.0 - fraction * 100)) / Math.log(2)) + 1);
+                percentile = Math.max(percentile + 100.0 / (ticksPerHalfDistance * halfDistance), fraction * 100 + 1e-9);
+            }
+        }
+        
+        double mean = getMean();
+        double variance = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            if (snapshot[i] > 0) {
+                double deviation = (lowestValueAt(i) + highestValueAt(i)) / 2.0 - mean;
+                variance += deviation * deviation * snapshot[i];
+            }
+        }
+        double stdDeviation = count > 0 ? Math.sqrt(variance / count) : 0;
+        out.printf(Locale.ROOT, "#[Mean    = %12.3f, StdDeviation   = %12.3f]%n", mean / 1000.0, stdDeviation / 1000.0);
+        out.printf(Locale.ROOT, "#[Max     = %12.3f, Total count    = %12d]%n", getMax() / 1000.0, count);
+        out.printf(Locale.ROOT, "#[Buckets = %12d, SubBuckets     = %12d]%n", MAX_EXPONENT + 1, SUB_BUCKETS);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.intrafind.llm.metrics;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.Usage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide token usage per provider and model. Recording is lock-free (striped {@link LongAdder}s),
+ * so every call can record; dashboards poll {@link #snapshot()} and derive rates from two snapshots.
+ */
+public class UsageMetrics {
+    private static final UsageMetrics GLOBAL = new UsageMetrics();
+    
+    private final ConcurrentHashMap<Key, Counters> counters = new ConcurrentHashMap<>();
+    
+    public static UsageMetrics global() {
+        return GLOBAL;
+    }
+    
+    public void record(LLMProvider provider, String model, Usage usage) {
+        Key key = new Key(provider, model);
+        Counters c = counters.get(key);
+        if (c == null) {
+            c = counters.computeIfAbsent(key, k -> new Counters());
+        }
+        c.requests.increment();
+        c.inputTokens.add(usage.inputTokens());
+        c.outputTokens.add(usage.outputTokens());
+        c.cachedInputTokens.add(usage.cachedInputTokens());
+        c.reasoningTokens.add(usage.reasoningTokens());
+        c.cacheWriteInputTokens.add(usage.cacheWriteInputTokens());
+    }
+    
+    public List<UsageSnapshot> snapshot() {
+        long now = System.nanoTime();
+        List<UsageSnapshot> snapshots = new ArrayList<>(counters.size());
+        counters.forEach((key, c) -> snapshots.add(c.snapshot(key.provider(), key.model(), now)));
+        return snapshots;
+    }
+    
+    public UsageSnapshot snapshot(LLMProvider provider, String model) {
+        Counters c = counters.get(new Key(provider, model));
+        if (c == null) {
+            return new UsageSnapshot(provider, model, System.nanoTime(), 0, 0, 0, 0, 0, 0);
+        }
+        return c.snapshot(provider, model, System.nanoTime());
+    }
+    
+    public void reset() {
+        counters.clear();
+    }
+    
+    private record Key(LLMProvider provider, String model) {
+    }
+    
+    private static class Counters {
+        final LongAdder requests = new LongAdder();
+        final LongAdder inputTokens = new LongAdder();
+        final LongAdder outputTokens = new LongAdder();
+        final LongAdder cachedInputTokens = new LongAdder();
+        final LongAdder reasoningTokens = new LongAdder();
+        final LongAdder cacheWriteInputTokens = new LongAdder();
+        
+        UsageSnapshot snapshot(LLMProvider provider, String model, long timestampNanos) {
+            return new UsageSnapshot(provider, model, timestampNanos, requests.sum(), inputTokens.sum(),
+                outputTokens.sum(), cachedInputTokens.sum(), reasoningTokens.sum(), cacheWriteInputTokens.sum());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.intrafind.llm.metrics;
+
+import com.intrafind.llm.core.LLMProvider;
+
+// Cumulative counters at one point in time; rates are computed against an earlier snapshot of the same key.
+// cacheWriteInputTokens are the input tokens written to the prompt cache, which Anthropic bills above regular input
+public record UsageSnapshot(LLMProvider provider, String model, long timestampNanos, long requests,
+                            long inputTokens, long outputTokens, long cachedInputTokens, long reasoningTokens,
+                            long cacheWriteInputTokens) {
+    
+    public UsageSnapshot(LLMProvider provider, String model, long timestampNanos, long requests,
+                         long inputTokens, long outputTokens, long cachedInputTokens, long reasoningTokens) {
+        this(provider, model, timestampNanos, requests, inputTokens, outputTokens, cachedInputTokens, reasoningTokens, 0);
+    }
+    
+    public long totalTokens() {
+        return inputTokens + outputTokens;
+    }
+    
+    public double cacheHitRatio() {
+        return inputTokens == 0 ? 0.0 : (double) cachedInputTokens / inputTokens;
+    }
+    
+    // Cache writes per second since the previous snapshot
+    public double cacheWriteTokensPerSecond(UsageSnapshot previous) {
+        return perSecond(cacheWriteInputTokens - previous.cacheWriteInputTokens, previous);
+    }
+    
+    public double tokensPerSecond(UsageSnapshot previous) {
+        return perSecond(totalTokens() - previous.totalTokens(), previous);
+    }
+    
+    public double outputTokensPerSecond(UsageSnapshot previous) {
+        return perSecond(outputTokens - previous.outputTokens, previous);
+    }
+    
+    public double requestsPerSecond(UsageSnapshot previous) {
+        return perSecond(requests - previous.requests, previous);
+    }
+    
+    // Cache hit ratio of the calls made since the previous snapshot
+    public double cacheHitRatio(UsageSnapshot previous) {
+        long input = inputTokens - previous.inputTokens;
+        return input <= 0 ? 0.0 : (double) (cachedInputTokens - previous.cachedInputTokens) / input;
+    }
+    
+    private double perSecond(long delta, UsageSnapshot previous) {
+        long elapsed = timestampNanos - previous.timestampNanos;
+        return elapsed <= 0 ? 0.0 : delta * 1_000_000_000.0 / elapsed;
+    }
+}
\ No newline at end of file
@@ -1,16 +1,31 @@
 package com.intrafind.llm.providers.anthropic;
 
 import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.ImagePreprocessor;
 import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.core.LLMRequest;
 import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.core.Role;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.core.Usage;
 import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.metrics.UsageMetrics;
+import com.intrafind.llm.utils.Base64Value;
 import com.intrafind.llm.utils.HttpClient;
 import com.intrafind.llm.utils.JsonParser;
+import com.intrafind.llm.utils.RequestTimer;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class AnthropicClient implements LLMClient {
     private static final String DEFAULT_BASE_URL = "https://api.anthropic.com/v1";
@@ -19,32 +34,65 @@ public class AnthropicClient implements LLMClient {
     private final LLMConfig config;
     private final HttpClient httpClient;
     private final String baseUrl;
+    private final ImagePreprocessor images;
     
     public AnthropicClient(LLMConfig config) {
         this.config = config;
-        this.httpClient = new HttpClient();
+        this.httpClient = new HttpClient(config.getMaxConnections());
         this.baseUrl = config.getBaseUrl() != null ? config.getBaseUrl() : DEFAULT_BASE_URL;
+        this.images = config.isImagePreprocessing() ? ImagePreprocessor.forProvider(LLMProvider.ANTHROPIC, config.getImageQuality()) : null;
     }
     
     @Override
     public LLMResponse generate(LLMRequest request) {
+        request = images != null ? images.prepare(request) : request;
+        request = request.attachToConversation();
         try {
+            RequestTimer timer = new RequestTimer(LLMProvider.ANTHROPIC, request.getModel() != null ? request.getModel() : DEFAULT_MODEL);
             Map<String, String> headers = new HashMap<>();
             headers.put("x-api-key", config.getApiKey());
             headers.put("Content-Type", "application/json");
             headers.put("anthropic-version", "2023-06-01");
             
-            Map<String, Object> requestBody = new HashMap<>();
+            // Stable field order, see JsonParser.canonicalize
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", request.getModel() != null ? request.getModel() : DEFAULT_MODEL);
-            requestBody.put("messages", new Object[]{
-                Map.of("role", "user", "content", request.getPrompt())
-            });
+            CacheBreakpoints breakpoints = new CacheBreakpoints(request.isAutomaticCaching());
+            if (request.getTools() != null && !request.getTools().isEmpty()) {
+                requestBody.put("tools", breakpoints.segment(toTools(request.getTools()), null));
+            }
+            List<ContentPart> system = request.getSystemParts();
+            if (!system.isEmpty()) {
+                requestBody.put("system", breakpoints.segment(toBlocks(system), system));
+            }
+            List<Map<String, Object>> messages = new ArrayList<>();
+            List<Message> history = request.getHistory();
+            for (int i = 0; i < history.size(); i++) {
+                messages.add(toMessage(history.get(i), breakpoints, i == history.size() - 1));
+            }
+            if (request.getPrompt() != null) {
+                Object userContent = request.getPrompt();
+                boolean hasContext = request.getContext() != null && !request.getContext().isEmpty();
+                if (hasContext || request.getImage() != null) {
+                    List<Map<String, Object>> blocks = hasContext
+                        ? breakpoints.segment(toBlocks(request.getContext()), request.getContext())
+                        : new ArrayList<>();
+                    blocks.add(new LinkedHashMap<>(Map.of("type", "text", "text", request.getPrompt())));
+                    if (request.getImage() != null) {
+                        blocks.addAll(toBlocks(List.of(ContentPart.image(request.getImage().mediaType(), request.getImage().data()))));
+                    }
+                    userContent = blocks;
+                }
+                messages.add(Map.of("role", "user", "content", userContent));
+            }
+            breakpoints.apply();
+            requestBody.put("messages", messages);
             requestBody.put("max_tokens", request.getParameters() != null ? 
                 request.getParameters().getOrDefault("max_tokens", 1000) : 1000);
             
-            // Add parameters
+            // Add parameters in key order
             if (request.getParameters() != null) {
-                for (Map.Entry<String, Object> param : request.getParameters().entrySet()) {
+                for (Map.Entry<String, Object> param : new TreeMap<>(request.getParameters()).entrySet()) {
                     if (!param.getKey().equals("max_tokens")) {
                         requestBody.put(param.getKey(), param.getValue());
                     }
@@ -55,22 +103,44 @@ public class AnthropicClient implements LLMClient {
                 requestBody.put("stop_sequences", request.getStopSequences());
             }
             
-            String responseJson = httpClient.post(baseUrl + "/messages", headers, requestBody);
+            Map<String, String> rateLimitHeaders = new HashMap<>();
+            String responseJson = httpClient.post(baseUrl + "/messages", headers, JsonParser.canonicalize(requestBody), timer, rateLimitHeaders);
             
+            timer.parseStarted();
             Map<String, Object> responseMap = JsonParser.parse(responseJson, Map.class);
             
             @SuppressWarnings("unchecked")
             java.util.List<Map<String, Object>> content = (java.util.List<Map<String, Object>>) responseMap.get("content");
-            String text = (String) content.get(0).get("text");
+            StringBuilder text = new StringBuilder();
+            List<ToolCall> toolCalls = new ArrayList<>();
+            for (Map<String, Object> block : content) {
+                if ("tool_use".equals(block.get("type"))) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> input = (Map<String, Object>) block.get("input");
+                    toolCalls.add(new ToolCall((String) block.get("id"), (String) block.get("name"), input));
+                } else if (block.get("text") != null) {
+                    text.append(block.get("text"));
+                }
+            }
             
             @SuppressWarnings("unchecked")
             Map<String, Object> usage = (Map<String, Object>) responseMap.get("usage");
             
-            LLMResponse response = new LLMResponse(text, (String) responseMap.get("model"), LLMProvider.ANTHROPIC);
-            
             Map<String, Object> metadata = new HashMap<>();
             metadata.put("usage", usage);
-            response.setMetadata(metadata);
+            Usage tokenUsage = toUsage(usage);
+            timer.parseFinished(tokenUsage);
+            LLMResponse response = LLMResponse.builder()
+                .content(text.toString())
+                .model((String) responseMap.get("model"))
+                .provider(LLMProvider.ANTHROPIC)
+                .toolCalls(toolCalls.isEmpty() ? null : toolCalls)
+                .metadata(metadata)
+                .usage(tokenUsage)
+                .timing(timer.toTiming())
+                .rateLimits(RateLimits.fromHeaders(rateLimitHeaders))
+                .build();
+            UsageMetrics.global().record(LLMProvider.ANTHROPIC, response.getModel(), response.getUsage());
             
             return response;
             
@@ -115,4 +185,118 @@ public class AnthropicClient implements LLMClient {
     public void close() {
         httpClient.close();
     }
+    
+    // input_tokens excludes cache reads and writes, which are reported separately
+    private static Usage toUsage(Map<String, Object> usage) {
+        if (usage == null) {
+            return Usage.EMPTY;
+        }
+        long cacheRead = JsonParser.longAt(usage, "cache_read_input_tokens");
+        long cacheWrite = JsonParser.longAt(usage, "cache_creation_input_tokens");
+        return new Usage(
+            JsonParser.longAt(usage, "input_tokens") + cacheRead + cacheWrite,
+            JsonParser.longAt(usage, "output_tokens"),
+            cacheRead,
+            0,
+            cacheWrite);
+    }
+    
+    private static List<Map<String, Object>> toBlocks(List<ContentPart> parts) {
+        List<Map<String, Object>> blocks = new ArrayList<>(parts.size() + 1);
+        for (ContentPart part : parts) {
+            Map<String, Object> block = new LinkedHashMap<>();
+            if (part instanceof ContentPart.Text text) {
+                block.put("type", "text");
+                block.put("text", text.text());
+            } else if (part instanceof ContentPart.Image image) {
+                block.put("type", "image");
+                block.put("source", Map.of("type", "base64", "media_type", image.mediaType(), "data", Base64Value.of(image.data())));
+            }
+            blocks.add(block);
+        }
+        return blocks;
+    }
+    
+    // Tool results go back as user turns; the breakpoint on the latest turn caches the conversation so far
+    private static Map<String, Object> toMessage(Message message, CacheBreakpoints breakpoints, boolean latest) {
+        List<Map<String, Object>> blocks;
+        if (message.role() == Role.TOOL) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("type", "tool_result");
+            result.put("tool_use_id", message.toolCallId());
+            result.put("content", message.text());
+            blocks = new ArrayList<>(List.of(result));
+        } else {
+            blocks = toBlocks(message.parts());
+            for (ToolCall call : message.toolCalls()) {
+                Map<String, Object> use = new LinkedHashMap<>();
+                use.put("type", "tool_use");
+                use.put("id", call.getId());
+                use.put("name", call.getName());
+                use.put("input", call.getArguments() != null ? call.getArguments() : Map.of());
+                blocks.add(use);
+            }
+        }
+        breakpoints.segment(blocks, message.parts(), latest);
+        
+        Map<String, Object> turn = new LinkedHashMap<>();
+        turn.put("role", message.role() == Role.ASSISTANT ? "assistant" : "user");
+        turn.put("content", blocks);
+        return turn;
+    }
+    
+    /**
+     * Collects cache_control breakpoints in prefix order (tools, system, messages): every part marked cacheable and,
+     * with automatic caching, the last block of each segment, so that the longest stable prefix is cached and
+     * shorter ones still hit when a later segment changes. Anthropic accepts at most four breakpoints; the latest
+     * four are kept since they cover the longest prefixes.
+     */
+    private static final class CacheBreakpoints {
+        private static final int MAX_BREAKPOINTS = 4;
+        
+        private final boolean automatic;
+        private final List<Map<String, Object>> blocks = new ArrayList<>();
+        
+        CacheBreakpoints(boolean automatic) {
+            this.automatic = automatic;
+        }
+        
+        List<Map<String, Object>> segment(List<Map<String, Object>> segment, List<ContentPart> parts) {
+            return segment(segment, parts, true);
+        }
+        
+        // Marks the cacheable parts, and the end of the segment if automatic caching applies to it
+        List<Map<String, Object>> segment(List<Map<String, Object>> segment, List<ContentPart> parts, boolean end) {
+            for (int i = 0; parts != null && i < parts.size() && i < segment.size(); i++) {
+                if (parts.get(i).cacheable()) {
+                    blocks.add(segment.get(i));
+                }
+            }
+            if (automatic && end && !segment.isEmpty()) {
+                Map<String, Object> last = segment.get(segment.size() - 1);
+                if (blocks.isEmpty() || blocks.get(blocks.size() - 1) != last) {
+                    blocks.add(last);
+                }
+            }
+            return segment;
+        }
+        
+        void apply() {
+            for (Map<String, Object> block : blocks.subList(Math.max(0, blocks.size() - MAX_BREAKPOINTS), blocks.size())) {
+                block.put("cache_control", Map.of("type", "ephemeral"));
+            }
+        }
+    }
+    
+    private static List<Map<String, Object>> toTools(List<Tool> tools) {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        for (Tool tool : tools) {
+            Map<String, Object> definition = new LinkedHashMap<>();
+            definition.put("name", tool.getName());
+            definition.put("description", tool.getDescription());
+            definition.put("input_schema", tool.getParameters());
+            definitions.add(definition);
+        }
+        return definitions;
+    }
 }
\ No newline at end of file
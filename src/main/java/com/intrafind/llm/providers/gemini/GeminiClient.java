@@ -1,16 +1,35 @@
 package com.intrafind.llm.providers.gemini;
 
 import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.ImagePreprocessor;
 import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.core.LLMRequest;
 import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.Role;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RetryEvent;
 import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.metrics.UsageMetrics;
+import com.intrafind.llm.utils.Base64Value;
 import com.intrafind.llm.utils.HttpClient;
 import com.intrafind.llm.utils.JsonParser;
+import com.intrafind.llm.utils.RequestTimer;
+import com.intrafind.llm.utils.UploadCache;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class GeminiClient implements LLMClient {
     private static final String DEFAULT_BASE_URL = "https://generativelanguage.googleapis.com/v1beta";
@@ -19,35 +38,84 @@ public class GeminiClient implements LLMClient {
     private final LLMConfig config;
     private final HttpClient httpClient;
     private final String baseUrl;
+    private final ImagePreprocessor images;
+    private final GeminiContextCache contextCache;
+    private final UploadCache uploads;
     
     public GeminiClient(LLMConfig config) {
         this.config = config;
-        this.httpClient = new HttpClient();
+        this.httpClient = new HttpClient(config.getMaxConnections());
         this.baseUrl = config.getBaseUrl() != null ? config.getBaseUrl() : DEFAULT_BASE_URL;
+        this.images = config.isImagePreprocessing() ? ImagePreprocessor.forProvider(LLMProvider.GEMINI, config.getImageQuality()) : null;
+        this.contextCache = config.getContextCacheTtlSeconds() > 0
+            ? new GeminiContextCache(httpClient, baseUrl, config.getApiKey(), config.getContextCacheTtlSeconds())
+            : null;
+        this.uploads = config.getFileUploadMinBytes() > 0 ? new UploadCache(LLMProvider.GEMINI, this::upload, config.getFileUploadMinBytes()) : null;
     }
     
     @Override
     public LLMResponse generate(LLMRequest request) {
+        request = images != null ? images.prepare(request) : request;
+        request = request.attachToConversation();
+        return generate(request, contextCache != null, uploads != null);
+    }
+    
+    private LLMResponse generate(LLMRequest request, boolean useContextCache, boolean useUploads) {
+        String cachedContent = null;
+        // Files referenced instead of inlined, null if everything is inlined
+        List<String> files = useUploads ? new ArrayList<>() : null;
         try {
             String model = request.getModel() != null ? request.getModel() : DEFAULT_MODEL;
+            RequestTimer timer = new RequestTimer(LLMProvider.GEMINI, model);
             String url = baseUrl + "/models/" + model + ":generateContent?key=" + config.getApiKey();
             
             Map<String, String> headers = new HashMap<>();
             headers.put("Content-Type", "application/json");
             
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("contents", new Object[]{
-                Map.of("parts", new Object[]{
-                    Map.of("text", request.getPrompt())
-                })
-            });
+            // Stable field order, see JsonParser.canonicalize
+            Map<String, Object> requestBody = new LinkedHashMap<>();
+            List<Map<String, ?>> contextParts = request.getContext() != null ? toParts(request.getContext(), files) : List.of();
+            List<Map<String, ?>> imageParts = request.getImage() != null
+                ? toParts(List.of(ContentPart.image(request.getImage().mediaType(), request.getImage().data())), files)
+                : List.of();
+            Map<String, Object> prefix = toPrefix(request, contextParts, files);
+            if (useContextCache && !prefix.isEmpty()) {
+                cachedContent = contextCache.lookup(model, prefix);
+            }
+            List<Map<String, Object>> contents = new ArrayList<>();
+            for (Message message : request.getHistory()) {
+                contents.add(toContent(message, files));
+            }
+            if (cachedContent != null) {
+                // Tools, system instruction and context live in the cached content
+                requestBody.put("cachedContent", cachedContent);
+                if (request.getPrompt() != null) {
+                    List<Map<String, ?>> promptParts = new ArrayList<>(imageParts.size() + 1);
+                    promptParts.add(Map.of("text", request.getPrompt()));
+                    promptParts.addAll(imageParts);
+                    contents.add(Map.of("role", "user", "parts", promptParts));
+                }
+            } else {
+                if (prefix.containsKey("tools")) {
+                    requestBody.put("tools", prefix.get("tools"));
+                }
+                if (prefix.containsKey("systemInstruction")) {
+                    requestBody.put("systemInstruction", prefix.get("systemInstruction"));
+                }
+                if (request.getPrompt() != null) {
+                    List<Map<String, ?>> promptParts = new ArrayList<>(contextParts.size() + imageParts.size() + 1);
+                    promptParts.addAll(contextParts);
+                    promptParts.add(Map.of("text", request.getPrompt()));
+                    promptParts.addAll(imageParts);
+                    contents.add(Map.of("role", "user", "parts", promptParts));
+                }
+            }
+            requestBody.put("contents", contents);
             
-            // Add generation config
-            Map<String, Object> generationConfig = new HashMap<>();
+            // Add generation config, parameters in key order
+            Map<String, Object> generationConfig = new LinkedHashMap<>();
             if (request.getParameters() != null) {
-                for (Map.Entry<String, Object> param : request.getParameters().entrySet()) {
-                    generationConfig.put(param.getKey(), param.getValue());
-                }
+                generationConfig.putAll(new TreeMap<>(request.getParameters()));
             }
             
             if (request.getStopSequences() != null) {
@@ -58,8 +126,9 @@ public class GeminiClient implements LLMClient {
                 requestBody.put("generationConfig", generationConfig);
             }
             
-            String responseJson = httpClient.post(url, headers, requestBody);
+            String responseJson = httpClient.post(url, headers, JsonParser.canonicalize(requestBody), timer);
             
+            timer.parseStarted();
             Map<String, Object> responseMap = JsonParser.parse(responseJson, Map.class);
             
             @SuppressWarnings("unchecked")
@@ -68,16 +137,35 @@ public class GeminiClient implements LLMClient {
             Map<String, Object> content = (Map<String, Object>) candidates.get(0).get("content");
             @SuppressWarnings("unchecked")
             java.util.List<Map<String, Object>> parts = (java.util.List<Map<String, Object>>) content.get("parts");
-            String text = (String) parts.get(0).get("text");
+            StringBuilder text = new StringBuilder();
+            List<ToolCall> toolCalls = new ArrayList<>();
+            for (Map<String, Object> part : parts) {
+                if (part.get("functionCall") instanceof Map<?, ?> call) {
+                    @SuppressWarnings("unchecked")
+                    Map<String, Object> args = (Map<String, Object>) call.get("args");
+                    toolCalls.add(new ToolCall((String) call.get("id"), (String) call.get("name"), args));
+                } else if (part.get("text") != null) {
+                    text.append(part.get("text"));
+                }
+            }
             
             @SuppressWarnings("unchecked")
             Map<String, Object> usageMetadata = (Map<String, Object>) responseMap.get("usageMetadata");
             
-            LLMResponse response = new LLMResponse(text, model, LLMProvider.GEMINI);
-            
             Map<String, Object> metadata = new HashMap<>();
             metadata.put("usage", usageMetadata);
-            response.setMetadata(metadata);
+            Usage tokenUsage = toUsage(usageMetadata);
+            timer.parseFinished(tokenUsage);
+            LLMResponse response = LLMResponse.builder()
+                .content(text.toString())
+                .model(model)
+                .provider(LLMProvider.GEMINI)
+                .toolCalls(toolCalls.isEmpty() ? null : toolCalls)
+                .metadata(metadata)
+                .usage(tokenUsage)
+                .timing(timer.toTiming())
+                .build();
+            UsageMetrics.global().record(LLMProvider.GEMINI, response.getModel(), response.getUsage());
             
             return response;
             
@@ -86,12 +174,58 @@ public class GeminiClient implements LLMClient {
         } catch (com.intrafind.llm.exceptions.RateLimitException e) {
             throw e;
         } catch (com.intrafind.llm.exceptions.LLMException e) {
+            boolean cacheGone = cachedContent != null && namesCachedContent(e, cachedContent);
+            boolean filesGone = files != null && namesFile(e, files);
+            if (cacheGone || filesGone) {
+                // Cached content or uploaded files expired or were deleted on the server, send those parts inline once
+                if (cacheGone) {
+                    contextCache.invalidate(cachedContent);
+                }
+                if (filesGone) {
+                    files.forEach(uploads::invalidate);
+                }
+                RetryEvent retry = CallEvents.beginRetry();
+                try {
+                    return generate(request, useContextCache && !cacheGone, useUploads && !filesGone);
+                } finally {
+                    CallEvents.endRetry(retry, LLMProvider.GEMINI, request.getModel(), 1, cacheGone ? "cached content expired" : "uploaded file deleted");
+                }
+            }
             throw e;
         } catch (Exception e) {
             throw new LLMException("Gemini API call failed", e);
         }
     }
     
+    // Whether the call failed because the cached content is gone (Gemini answers 403 or 404 naming it) rather than
+    // because of the request, which a resend without it would repeat
+    private static boolean namesCachedContent(LLMException e, String cachedContent) {
+        String message = errorMessage(e);
+        return message != null && (message.contains(cachedContent) || message.toLowerCase(Locale.ROOT).contains("cachedcontent"));
+    }
+    
+    // Whether the error names one of the uploaded files, referenced by URIs ending in their id
+    private static boolean namesFile(LLMException e, List<String> files) {
+        String message = errorMessage(e);
+        if (message == null) {
+            return false;
+        }
+        for (String uri : files) {
+            if (message.contains(uri.substring(uri.lastIndexOf('/') + 1))) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String errorMessage(LLMException e) {
+        int status = e.getStatusCode();
+        if (status != 400 && status != 403 && status != 404) {
+            return null;
+        }
+        return JsonParser.errorOf(e.getResponseBody()).get("message") instanceof String message ? message : null;
+    }
+    
     @Override
     public boolean isHealthy() {
         try {
@@ -113,6 +247,98 @@ public class GeminiClient implements LLMClient {
     
     @Override
     public void close() {
+        if (contextCache != null) {
+            contextCache.close();
+        }
         httpClient.close();
     }
+    
+    // File API upload; the upload endpoint lives under /upload next to the API version
+    private UploadCache.Upload upload(String mediaType, byte[] data) {
+        String url = baseUrl.replace("/v1beta", "/upload/v1beta") + "/files?key=" + config.getApiKey();
+        String metadata = JsonParser.toJson(Map.of("file", Map.of("displayName", "upload")));
+        String responseJson = httpClient.postMultipart(url, Map.of("X-Goog-Upload-Protocol", "multipart"), "related",
+            Map.of("metadata", metadata), "upload", mediaType, data);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> file = (Map<String, Object>) JsonParser.parse(responseJson, Map.class).get("file");
+        Object expirationTime = file.get("expirationTime");
+        return new UploadCache.Upload((String) file.get("uri"),
+            expirationTime != null ? Instant.parse(expirationTime.toString()).toEpochMilli() : Long.MAX_VALUE);
+    }
+    
+    // candidatesTokenCount excludes thinking tokens, which Gemini bills as output
+    private static Usage toUsage(Map<String, Object> usageMetadata) {
+        if (usageMetadata == null) {
+            return Usage.EMPTY;
+        }
+        long thoughts = JsonParser.longAt(usageMetadata, "thoughtsTokenCount");
+        return new Usage(
+            JsonParser.longAt(usageMetadata, "promptTokenCount"),
+            JsonParser.longAt(usageMetadata, "candidatesTokenCount") + thoughts,
+            JsonParser.longAt(usageMetadata, "cachedContentTokenCount"),
+            thoughts);
+    }
+    
+    // The parts of a request that repeat across calls, in the shape cachedContents takes them
+    private Map<String, Object> toPrefix(LLMRequest request, List<Map<String, ?>> contextParts, List<String> files) {
+        Map<String, Object> prefix = new LinkedHashMap<>();
+        if (request.getTools() != null && !request.getTools().isEmpty()) {
+            prefix.put("tools", toTools(request.getTools()));
+        }
+        List<ContentPart> system = request.getSystemParts();
+        if (!system.isEmpty()) {
+            prefix.put("systemInstruction", Map.of("parts", toParts(system, files)));
+        }
+        if (!contextParts.isEmpty()) {
+            prefix.put("contents", List.of(Map.of("role", "user", "parts", contextParts)));
+        }
+        return prefix;
+    }
+    
+    // Gemini matches function responses to calls by name
+    private Map<String, Object> toContent(Message message, List<String> files) {
+        List<Map<String, ?>> parts;
+        if (message.role() == Role.TOOL) {
+            parts = List.of(Map.of("functionResponse", Map.of(
+                "name", message.toolName(),
+                "response", Map.of("content", message.text()))));
+        } else {
+            parts = toParts(message.parts(), files);
+            for (ToolCall call : message.toolCalls()) {
+                parts.add(Map.of("functionCall", Map.of(
+                    "name", call.getName(),
+                    "args", call.getArguments() != null ? call.getArguments() : Map.of())));
+            }
+        }
+        return Map.of("role", message.role() == Role.ASSISTANT ? "model" : "user", "parts", parts);
+    }
+    
+    // Images go by File API URI when uploads are enabled and the image is large enough, inline otherwise
+    private List<Map<String, ?>> toParts(List<ContentPart> contentParts, List<String> files) {
+        List<Map<String, ?>> parts = new ArrayList<>(contentParts.size() + 1);
+        for (ContentPart part : contentParts) {
+            String uri = files != null && part instanceof ContentPart.Image image ? uploads.reference(image.mediaType(), image.data()) : null;
+            if (uri != null) {
+                files.add(uri);
+                parts.add(Map.of("fileData", Map.of("mimeType", ((ContentPart.Image) part).mediaType(), "fileUri", uri)));
+            } else if (part instanceof ContentPart.Image image) {
+                parts.add(Map.of("inlineData", Map.of("mimeType", image.mediaType(), "data", Base64Value.of(image.data()))));
+            } else {
+                parts.add(Map.of("text", ((ContentPart.Text) part).text()));
+            }
+        }
+        return parts;
+    }
+    
+    private static List<Map<String, Object>> toTools(List<Tool> tools) {
+        List<Map<String, Object>> declarations = new ArrayList<>();
+        for (Tool tool : tools) {
+            Map<String, Object> declaration = new LinkedHashMap<>();
+            declaration.put("name", tool.getName());
+            declaration.put("description", tool.getDescription());
+            declaration.put("parameters", tool.getParameters());
+            declarations.add(declaration);
+        }
+        return List.of(Map.of("functionDeclarations", declarations));
+    }
 }
\ No newline at end of file
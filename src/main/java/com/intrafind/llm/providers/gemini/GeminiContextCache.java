@@ -0,0 +1,165 @@
+package com.intrafind.llm.providers.gemini;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.utils.HttpClient;
+import com.intrafind.llm.utils.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Registry of Gemini cachedContents for request prefixes (tools, system instruction and context) that repeat across
+ * calls, keyed by a SHA-256 of model and prefix. A prefix gets a cache entry the second time it is seen if it is large
+ * enough for Gemini to accept it; concurrent callers wait for the one creation in flight instead of creating their
+ * own. Entries are extended once less than half of their TTL is left, recreated after they expire and deleted when
+ * the client is closed.
+ */
+final class GeminiContextCache {
+    // Gemini rejects smaller caches; estimated at four bytes per token
+    static final long MIN_TOKENS = 4096;
+    private static final int MAX_SEEN = 10_000;
+    private static final long RETRY_AFTER_FAILURE_NANOS = 60_000_000_000L;
+    
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final String apiKey;
+    private final int ttlSeconds;
+    private final long ttlNanos;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    
+    private static final class Entry {
+        final CompletableFuture<String> name = new CompletableFuture<>();
+        final AtomicBoolean refreshing = new AtomicBoolean();
+        volatile long expiresAtNanos;
+    }
+    
+    GeminiContextCache(HttpClient httpClient, String baseUrl, String apiKey, int ttlSeconds) {
+        this.httpClient = httpClient;
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+        this.ttlSeconds = ttlSeconds;
+        this.ttlNanos = ttlSeconds * 1_000_000_000L;
+    }
+    
+    // Name of the cachedContents holding this prefix, or null if the prefix has to be sent inline
+    String lookup(String model, Map<String, Object> prefix) {
+        byte[] json = JsonParser.toJson(JsonParser.canonicalize(prefix)).getBytes(StandardCharsets.UTF_8);
+        if (json.length / 4 < MIN_TOKENS) {
+            return null;
+        }
+        String key = key(model, json);
+        boolean createdHere = false;
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                // Only prefixes that repeat are worth the storage
+                if (seen.add(key)) {
+                    if (seen.size() > MAX_SEEN) {
+                        seen.clear();
+                    }
+                    return null;
+                }
+                Entry created = new Entry();
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    create(created, model, prefix);
+                    entry = created;
+                    createdHere = true;
+                }
+            }
+            
+            String name;
+            try {
+                name = entry.name.join();
+            } catch (CompletionException e) {
+                // Creation failed, not retried for a while
+                name = null;
+            }
+            long remaining = entry.expiresAtNanos - System.nanoTime();
+            if (remaining <= 0) {
+                entries.remove(key, entry);
+                continue;
+            }
+            if (name != null && remaining < ttlNanos / 2 && entry.refreshing.compareAndSet(false, true)) {
+                refresh(key, entry, name);
+            }
+            if (name != null && !createdHere) {
+                CallEvents.cacheHit(LLMProvider.GEMINI, model, "gemini-context", json.length);
+            }
+            return name;
+        }
+    }
+    
+    // Drops a cache entry that generateContent no longer accepts, e.g. because it was deleted on the server
+    void invalidate(String name) {
+        entries.values().removeIf(entry -> entry.name.isDone() && !entry.name.isCompletedExceptionally()
+            && name.equals(entry.name.join()));
+    }
+    
+    void close() {
+        for (Entry entry : entries.values()) {
+            if (entry.name.isDone() && !entry.name.isCompletedExceptionally()) {
+                try {
+                    httpClient.delete(baseUrl + "/" + entry.name.join() + "?key=" + apiKey, Map.of());
+                } catch (RuntimeException e) {
+                    // Expires on its own
+                }
+            }
+        }
+        entries.clear();
+    }
+    
+    private void create(Entry entry, String model, Map<String, Object> prefix) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("model", "models/" + model);
+        body.putAll(prefix);
+        body.put("ttl", ttlSeconds + "s");
+        long start = System.nanoTime();
+        try {
+            String responseJson = httpClient.post(baseUrl + "/cachedContents?key=" + apiKey,
+                Map.of("Content-Type", "application/json"), JsonParser.canonicalize(body));
+            Map<String, Object> response = JsonParser.parse(responseJson, Map.class);
+            entry.expiresAtNanos = start + ttlNanos;
+            entry.name.complete((String) response.get("name"));
+        } catch (RuntimeException e) {
+            entry.expiresAtNanos = start + Math.min(ttlNanos, RETRY_AFTER_FAILURE_NANOS);
+            entry.name.completeExceptionally(e);
+        }
+    }
+    
+    private void refresh(String key, Entry entry, String name) {
+        long start = System.nanoTime();
+        try {
+            httpClient.patch(baseUrl + "/" + name + "?updateMask=ttl&key=" + apiKey,
+                Map.of("Content-Type", "application/json"), Map.of("ttl", ttlSeconds + "s"));
+            entry.expiresAtNanos = start + ttlNanos;
+        } catch (RuntimeException e) {
+            // Gone on the server, recreated on the next call
+            entries.remove(key, entry);
+        } finally {
+            entry.refreshing.set(false);
+        }
+    }
+    
+    private static String key(String model, byte[] prefix) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(prefix));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
\ No newline at end of file
@@ -1,20 +1,32 @@
 package com.intrafind.llm.providers.openai;
 
 import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.ImagePreprocessor;
 import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.core.LLMRequest;
-import com.intrafind.llm.core.LLMRequest.ImageDTO;
 import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.core.Role;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.core.Usage;
 import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.metrics.UsageMetrics;
+import com.intrafind.llm.utils.Base64Value;
 import com.intrafind.llm.utils.HttpClient;
 import com.intrafind.llm.utils.JsonParser;
+import com.intrafind.llm.utils.RequestTimer;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.TreeMap;
 
 public class OpenAIClient implements LLMClient {
     private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
@@ -23,16 +35,21 @@ public class OpenAIClient implements LLMClient {
     private final LLMConfig config;
     private final HttpClient httpClient;
     private final String baseUrl;
+    private final ImagePreprocessor images;
     
     public OpenAIClient(LLMConfig config) {
         this.config = config;
-        this.httpClient = new HttpClient();
+        this.httpClient = new HttpClient(config.getMaxConnections());
         this.baseUrl = config.getBaseUrl() != null ? config.getBaseUrl() : DEFAULT_BASE_URL;
+        this.images = config.isImagePreprocessing() ? ImagePreprocessor.forProvider(LLMProvider.OPENAI, config.getImageQuality()) : null;
     }
     
     @Override
     public LLMResponse generate(LLMRequest request) {
+        request = images != null ? images.prepare(request) : request;
+        request = request.attachToConversation();
         try {
+            RequestTimer timer = new RequestTimer(LLMProvider.OPENAI, request.getModel() != null ? request.getModel() : DEFAULT_MODEL);
             Map<String, String> headers = new HashMap<>();
             
             // Check if this is Azure OpenAI based on baseUrl
@@ -43,22 +60,37 @@ public class OpenAIClient implements LLMClient {
             }
             headers.put("Content-Type", "application/json");
             
-            Map<String, Object> requestBody = new HashMap<>();
+            // Stable field order, see JsonParser.canonicalize
+            Map<String, Object> requestBody = new LinkedHashMap<>();
             requestBody.put("model", request.getModel() != null ? request.getModel() : DEFAULT_MODEL);
-            List<Map<String, ?>> prompt = new ArrayList<>();
-            prompt.add(Map.of("type", "text", "text", request.getPrompt()));
-            Optional.ofNullable(request.getImage())
-                .map(ImageDTO::asDataUrl)
-                .ifPresent(imageURL -> prompt.add(Map.of("type", "image_url", "image_url", Map.of("url", imageURL))));
-            requestBody.put("messages", new Object[]{
-                Map.of("role", "user", "content", prompt)
-            });
+            if (request.getTools() != null && !request.getTools().isEmpty()) {
+                requestBody.put("tools", toTools(request.getTools()));
+            }
+            List<Map<String, Object>> messages = new ArrayList<>();
+            if (request.getSystemText() != null) {
+                messages.add(Map.of("role", "system", "content", request.getSystemText()));
+            }
+            for (Message message : request.getHistory()) {
+                messages.add(toMessage(message));
+            }
+            if (request.getPrompt() != null) {
+                List<Map<String, ?>> prompt = new ArrayList<>();
+                if (request.getContext() != null) {
+                    for (ContentPart part : request.getContext()) {
+                        prompt.add(toContentPart(part));
+                    }
+                }
+                prompt.add(Map.of("type", "text", "text", request.getPrompt()));
+                Optional.ofNullable(request.getImage())
+                    .map(image -> Base64Value.dataUrl(image.mediaType(), image.data()))
+                    .ifPresent(imageURL -> prompt.add(Map.of("type", "image_url", "image_url", Map.of("url", imageURL))));
+                messages.add(Map.of("role", "user", "content", prompt));
+            }
+            requestBody.put("messages", messages);
             
-            // Add parameters
+            // Add parameters in key order
             if (request.getParameters() != null) {
-                for (Map.Entry<String, Object> param : request.getParameters().entrySet()) {
-                    requestBody.put(param.getKey(), param.getValue());
-                }
+                requestBody.putAll(new TreeMap<>(request.getParameters()));
             }
             
             if (request.getStopSequences() != null) {
@@ -67,8 +99,10 @@ public class OpenAIClient implements LLMClient {
             
             // For Azure OpenAI, the baseUrl already includes the full path
             String endpoint = baseUrl.contains("azure.com") ? baseUrl : baseUrl + "/chat/completions";
-            String responseJson = httpClient.post(endpoint, headers, requestBody);
+            Map<String, String> rateLimitHeaders = new HashMap<>();
+            String responseJson = httpClient.post(endpoint, headers, JsonParser.canonicalize(requestBody), timer, rateLimitHeaders);
             
+            timer.parseStarted();
             Map<String, Object> responseMap = JsonParser.parse(responseJson, Map.class);
             
             @SuppressWarnings("unchecked")
@@ -80,11 +114,24 @@ public class OpenAIClient implements LLMClient {
             @SuppressWarnings("unchecked")
             Map<String, Object> usage = (Map<String, Object>) responseMap.get("usage");
             
-            LLMResponse response = new LLMResponse(content, (String) responseMap.get("model"), LLMProvider.OPENAI);
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> toolCalls = (List<Map<String, Object>>) message.get("tool_calls");
             
             Map<String, Object> metadata = new HashMap<>();
             metadata.put("usage", usage);
-            response.setMetadata(metadata);
+            Usage tokenUsage = toUsage(usage);
+            timer.parseFinished(tokenUsage);
+            LLMResponse response = LLMResponse.builder()
+                .content(content)
+                .model((String) responseMap.get("model"))
+                .provider(LLMProvider.OPENAI)
+                .toolCalls(toolCalls != null ? toToolCalls(toolCalls) : null)
+                .metadata(metadata)
+                .usage(tokenUsage)
+                .timing(timer.toTiming())
+                .rateLimits(RateLimits.fromHeaders(rateLimitHeaders))
+                .build();
+            UsageMetrics.global().record(LLMProvider.OPENAI, response.getModel(), response.getUsage());
             
             return response;
             
@@ -133,4 +180,83 @@ public class OpenAIClient implements LLMClient {
     public void close() {
         httpClient.close();
     }
+    
+    private static Usage toUsage(Map<String, Object> usage) {
+        if (usage == null) {
+            return Usage.EMPTY;
+        }
+        return new Usage(
+            JsonParser.longAt(usage, "prompt_tokens"),
+            JsonParser.longAt(usage, "completion_tokens"),
+            JsonParser.longAt(usage, "prompt_tokens_details", "cached_tokens"),
+            JsonParser.longAt(usage, "completion_tokens_details", "reasoning_tokens"));
+    }
+    
+    private static Map<String, Object> toMessage(Message message) {
+        Map<String, Object> turn = new LinkedHashMap<>();
+        if (message.role() == Role.TOOL) {
+            turn.put("role", "tool");
+            turn.put("tool_call_id", message.toolCallId());
+            turn.put("content", message.text());
+        } else if (message.role() == Role.ASSISTANT) {
+            turn.put("role", "assistant");
+            turn.put("content", message.parts().isEmpty() ? null : message.text());
+            if (!message.toolCalls().isEmpty()) {
+                List<Map<String, Object>> calls = new ArrayList<>();
+                for (ToolCall call : message.toolCalls()) {
+                    calls.add(Map.of("id", call.getId(), "type", "function", "function", Map.of(
+                        "name", call.getName(),
+                        "arguments", JsonParser.toJson(call.getArguments() != null ? call.getArguments() : Map.of()))));
+                }
+                turn.put("tool_calls", calls);
+            }
+        } else if (message.parts().size() == 1 && message.parts().get(0) instanceof ContentPart.Text text) {
+            turn.put("role", "user");
+            turn.put("content", text.text());
+        } else {
+            List<Map<String, ?>> content = new ArrayList<>();
+            for (ContentPart part : message.parts()) {
+                content.add(toContentPart(part));
+            }
+            turn.put("role", "user");
+            turn.put("content", content);
+        }
+        return turn;
+    }
+    
+    private static Map<String, ?> toContentPart(ContentPart part) {
+        if (part instanceof ContentPart.Image image) {
+            return Map.of("type", "image_url", "image_url", Map.of("url", Base64Value.dataUrl(image.mediaType(), image.data())));
+        }
+        return Map.of("type", "text", "text", ((ContentPart.Text) part).text());
+    }
+    
+    private static List<Map<String, Object>> toTools(List<Tool> tools) {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        for (Tool tool : tools) {
+            Map<String, Object> function = new LinkedHashMap<>();
+            function.put("name", tool.getName());
+            function.put("description", tool.getDescription());
+            function.put("parameters", tool.getParameters());
+            Map<String, Object> definition = new LinkedHashMap<>();
+            definition.put("type", "function");
+            definition.put("function", function);
+            definitions.add(definition);
+        }
+        return definitions;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<ToolCall> toToolCalls(List<Map<String, Object>> toolCalls) {
+        List<ToolCall> calls = new ArrayList<>();
+        for (Map<String, Object> toolCall : toolCalls) {
+            Map<String, Object> function = (Map<String, Object>) toolCall.get("function");
+            Object arguments = function.get("arguments");
+            Map<String, Object> parsed = arguments instanceof Map ? (Map<String, Object>) arguments
+                : arguments instanceof String json && !json.isBlank() ? JsonParser.parse(json, Map.class)
+                : new HashMap<>();
+            calls.add(new ToolCall((String) toolCall.get("id"), (String) function.get("name"), parsed));
+        }
+        return calls;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,378 @@
+package com.intrafind.llm.providers.openai;
+
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.ImagePreprocessor;
+import com.intrafind.llm.core.Conversation;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.core.Role;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RetryEvent;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.metrics.UsageMetrics;
+import com.intrafind.llm.utils.Base64Value;
+import com.intrafind.llm.utils.HttpClient;
+import com.intrafind.llm.utils.JsonParser;
+import com.intrafind.llm.utils.RequestTimer;
+import com.intrafind.llm.utils.UploadCache;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * OpenAI client for the Responses API that keeps conversation state on the server. Every response id is remembered
+ * under the hash of the conversation it completes; a later request whose conversation continues one of those only
+ * sends the new turns with {@code previous_response_id}, so the upload per turn stays constant however long the
+ * session gets. If the server no longer has the previous response the full history is sent instead.
+ */
+public class OpenAIResponsesClient implements LLMClient {
+    private static final String DEFAULT_BASE_URL = "https://api.openai.com/v1";
+    private static final String DEFAULT_MODEL = "gpt-4o-mini";
+    private static final int MAX_TRACKED_RESPONSES = 10_000;
+    // Uploaded files are deleted by OpenAI after a day instead of piling up in the project's storage
+    private static final int FILE_TTL_SECONDS = 86_400;
+    
+    private final LLMConfig config;
+    private final HttpClient httpClient;
+    private final String baseUrl;
+    private final ImagePreprocessor images;
+    private final UploadCache uploads;
+    // Conversation prefix hash to the response that ends it, least recently used first
+    private final Map<Long, StoredResponse> responseIds = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, StoredResponse> eldest) {
+            return size() > MAX_TRACKED_RESPONSES;
+        }
+    };
+    
+    // The conversation is kept to tell it from others with the same hash, which message hashes of 32 bits make likely
+    private record StoredResponse(Conversation conversation, String id) {
+    }
+    
+    public OpenAIResponsesClient(LLMConfig config) {
+        this.config = config;
+        this.httpClient = new HttpClient(config.getMaxConnections());
+        this.baseUrl = config.getBaseUrl() != null ? config.getBaseUrl() : DEFAULT_BASE_URL;
+        this.images = config.isImagePreprocessing() ? ImagePreprocessor.forProvider(LLMProvider.OPENAI, config.getImageQuality()) : null;
+        this.uploads = config.getFileUploadMinBytes() > 0 ? new UploadCache(LLMProvider.OPENAI, this::upload, config.getFileUploadMinBytes()) : null;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        request = images != null ? images.prepare(request) : request;
+        request = request.attachToConversation();
+        Conversation conversation = request.getConversation() != null ? request.getConversation() : Conversation.empty();
+        if (request.getPrompt() != null) {
+            List<ContentPart> parts = new ArrayList<>();
+            if (request.getContext() != null) {
+                parts.addAll(request.getContext());
+            }
+            parts.add(ContentPart.text(request.getPrompt()));
+            if (request.getImage() != null) {
+                parts.add(ContentPart.image(request.getImage().mediaType(), request.getImage().data()));
+            }
+            conversation = conversation.append(Message.user(parts.toArray(new ContentPart[0])));
+        }
+        return generate(request, conversation, true, uploads != null);
+    }
+    
+    private LLMResponse generate(LLMRequest request, Conversation conversation, boolean continueOnServer, boolean useUploads) {
+        String previousResponseId = null;
+        // Files referenced instead of inlined, null if everything is inlined
+        List<String> files = useUploads ? new ArrayList<>() : null;
+        try {
+            String model = request.getModel() != null ? request.getModel() : DEFAULT_MODEL;
+            RequestTimer timer = new RequestTimer(LLMProvider.OPENAI, model);
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Authorization", "Bearer " + config.getApiKey());
+            headers.put("Content-Type", "application/json");
+            
+            // Only the turns after the latest response the server knows about are sent
+            Deque<Message> input = new ArrayDeque<>();
+            for (Conversation node = conversation; !node.isEmpty(); node = node.parent()) {
+                if (continueOnServer) {
+                    StoredResponse stored;
+                    synchronized (responseIds) {
+                        stored = responseIds.get(node.prefixHash());
+                    }
+                    if (stored != null && sameTurns(stored.conversation(), node)) {
+                        previousResponseId = stored.id();
+                    }
+                    if (previousResponseId != null) {
+                        break;
+                    }
+                }
+                if (node.last().role() != Role.SYSTEM) {
+                    input.addFirst(node.last());
+                }
+            }
+            
+            // Stable field order, see JsonParser.canonicalize
+            Map<String, Object> requestBody = new LinkedHashMap<>();
+            requestBody.put("model", model);
+            if (request.getTools() != null && !request.getTools().isEmpty()) {
+                requestBody.put("tools", toTools(request.getTools()));
+            }
+            // Instructions are not carried over from the previous response
+            if (request.getSystemText() != null) {
+                requestBody.put("instructions", request.getSystemText());
+            }
+            if (previousResponseId != null) {
+                requestBody.put("previous_response_id", previousResponseId);
+            }
+            List<Map<String, Object>> items = new ArrayList<>();
+            for (Message message : input) {
+                addItems(items, message, files);
+            }
+            requestBody.put("input", items);
+            
+            // Add parameters in key order; max_tokens is called max_output_tokens here
+            if (request.getParameters() != null) {
+                for (Map.Entry<String, Object> param : new TreeMap<>(request.getParameters()).entrySet()) {
+                    requestBody.put(param.getKey().equals("max_tokens") ? "max_output_tokens" : param.getKey(), param.getValue());
+                }
+            }
+            
+            Map<String, String> rateLimitHeaders = new HashMap<>();
+            String responseJson = httpClient.post(baseUrl + "/responses", headers, JsonParser.canonicalize(requestBody), timer, rateLimitHeaders);
+            
+            timer.parseStarted();
+            Map<String, Object> responseMap = JsonParser.parse(responseJson, Map.class);
+            
+            StringBuilder text = new StringBuilder();
+            List<ToolCall> toolCalls = new ArrayList<>();
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> output = (List<Map<String, Object>>) responseMap.get("output");
+            for (Map<String, Object> item : output != null ? output : List.<Map<String, Object>>of()) {
+                if ("function_call".equals(item.get("type"))) {
+                    toolCalls.add(toToolCall(item));
+                } else if ("message".equals(item.get("type")) && item.get("content") instanceof List<?> content) {
+                    for (Object part : content) {
+                        if (part instanceof Map<?, ?> block && "output_text".equals(block.get("type"))) {
+                            text.append(block.get("text"));
+                        }
+                    }
+                }
+            }
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> usage = (Map<String, Object>) responseMap.get("usage");
+            
+            String responseId = (String) responseMap.get("id");
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("usage", usage);
+            metadata.put("response_id", responseId);
+            metadata.put("previous_response_id", previousResponseId);
+            Usage tokenUsage = toUsage(usage);
+            timer.parseFinished(tokenUsage);
+            LLMResponse response = LLMResponse.builder()
+                .content(text.toString())
+                .model((String) responseMap.get("model"))
+                .provider(LLMProvider.OPENAI)
+                .toolCalls(toolCalls.isEmpty() ? null : toolCalls)
+                .metadata(metadata)
+                .usage(tokenUsage)
+                .timing(timer.toTiming())
+                .rateLimits(RateLimits.fromHeaders(rateLimitHeaders))
+                .build();
+            UsageMetrics.global().record(LLMProvider.OPENAI, response.getModel(), response.getUsage());
+            
+            if (responseId != null) {
+                Conversation answered = conversation.append(response);
+                synchronized (responseIds) {
+                    responseIds.put(answered.prefixHash(), new StoredResponse(answered, responseId));
+                }
+            }
+            return response;
+            
+        } catch (com.intrafind.llm.exceptions.AuthenticationException e) {
+            throw e;
+        } catch (com.intrafind.llm.exceptions.RateLimitException e) {
+            throw e;
+        } catch (com.intrafind.llm.exceptions.LLMException e) {
+            if (previousResponseId != null && isPreviousResponseMissing(e, previousResponseId)) {
+                // Expired or deleted on the server, send the whole conversation once
+                forget(previousResponseId);
+                RetryEvent retry = CallEvents.beginRetry();
+                try {
+                    return generate(request, conversation, false, useUploads);
+                } finally {
+                    CallEvents.endRetry(retry, LLMProvider.OPENAI, request.getModel(), 1, "previous response expired");
+                }
+            }
+            if (files != null && isFileMissing(e, files)) {
+                // An uploaded file was deleted, send the images inline once
+                files.forEach(uploads::invalidate);
+                RetryEvent retry = CallEvents.beginRetry();
+                try {
+                    return generate(request, conversation, continueOnServer, false);
+                } finally {
+                    CallEvents.endRetry(retry, LLMProvider.OPENAI, request.getModel(), 1, "uploaded file deleted");
+                }
+            }
+            throw e;
+        } catch (Exception e) {
+            throw new LLMException("OpenAI API call failed", e);
+        }
+    }
+    
+    // Whether the stored response the call continued is gone rather than the request rejected, e.g. 400 with param
+    // previous_response_id and code previous_response_not_found
+    private static boolean isPreviousResponseMissing(LLMException e, String previousResponseId) {
+        if (e.getStatusCode() != 400 && e.getStatusCode() != 404) {
+            return false;
+        }
+        Map<String, Object> error = JsonParser.errorOf(e.getResponseBody());
+        return "previous_response_id".equals(error.get("param")) || "previous_response_not_found".equals(error.get("code"))
+            || error.get("message") instanceof String message && message.contains(previousResponseId);
+    }
+    
+    // Whether the error is about one of the uploaded files the call referenced, by code or by naming the file
+    private static boolean isFileMissing(LLMException e, List<String> files) {
+        if (files.isEmpty() || e.getStatusCode() != 400 && e.getStatusCode() != 404) {
+            return false;
+        }
+        Map<String, Object> error = JsonParser.errorOf(e.getResponseBody());
+        if ("file_not_found".equals(error.get("code"))) {
+            return true;
+        }
+        if (error.get("message") instanceof String message) {
+            for (String file : files) {
+                if (message.contains(file)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        try {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Authorization", "Bearer " + config.getApiKey());
+            httpClient.post(baseUrl + "/models", headers, null);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return LLMProvider.OPENAI;
+    }
+    
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+    
+    private void forget(String responseId) {
+        synchronized (responseIds) {
+            responseIds.values().removeIf(stored -> stored.id().equals(responseId));
+        }
+    }
+    
+    private static boolean sameTurns(Conversation a, Conversation b) {
+        while (a != b) {
+            if (a.size() != b.size() || a.isEmpty() || !a.last().equals(b.last())) {
+                return false;
+            }
+            a = a.parent();
+            b = b.parent();
+        }
+        return true;
+    }
+    
+    // Files API upload that expires on its own
+    private UploadCache.Upload upload(String mediaType, byte[] data) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("purpose", "vision");
+        fields.put("expires_after[anchor]", "created_at");
+        fields.put("expires_after[seconds]", String.valueOf(FILE_TTL_SECONDS));
+        String responseJson = httpClient.postMultipart(baseUrl + "/files", Map.of("Authorization", "Bearer " + config.getApiKey()),
+            "form-data", fields, "upload", mediaType, data);
+        Map<String, Object> file = JsonParser.parse(responseJson, Map.class);
+        long expiresAt = JsonParser.longAt(file, "expires_at");
+        return new UploadCache.Upload((String) file.get("id"), expiresAt > 0 ? expiresAt * 1000 : Long.MAX_VALUE);
+    }
+    
+    private static Usage toUsage(Map<String, Object> usage) {
+        if (usage == null) {
+            return Usage.EMPTY;
+        }
+        return new Usage(
+            JsonParser.longAt(usage, "input_tokens"),
+            JsonParser.longAt(usage, "output_tokens"),
+            JsonParser.longAt(usage, "input_tokens_details", "cached_tokens"),
+            JsonParser.longAt(usage, "output_tokens_details", "reasoning_tokens"));
+    }
+    
+    // Tool calls and their results are items of their own next to the messages
+    private void addItems(List<Map<String, Object>> items, Message message, List<String> files) {
+        if (message.role() == Role.TOOL) {
+            items.add(Map.of("type", "function_call_output", "call_id", message.toolCallId(), "output", message.text()));
+            return;
+        }
+        if (message.role() == Role.ASSISTANT) {
+            if (!message.parts().isEmpty()) {
+                items.add(Map.of("role", "assistant", "content", message.text()));
+            }
+            for (ToolCall call : message.toolCalls()) {
+                items.add(Map.of("type", "function_call", "call_id", call.getId(), "name", call.getName(),
+                    "arguments", JsonParser.toJson(call.getArguments() != null ? call.getArguments() : Map.of())));
+            }
+            return;
+        }
+        List<Map<String, ?>> content = new ArrayList<>();
+        for (ContentPart part : message.parts()) {
+            String fileId = files != null && part instanceof ContentPart.Image image ? uploads.reference(image.mediaType(), image.data()) : null;
+            if (fileId != null) {
+                files.add(fileId);
+                content.add(Map.of("type", "input_image", "file_id", fileId));
+            } else if (part instanceof ContentPart.Image image) {
+                content.add(Map.of("type", "input_image", "image_url", Base64Value.dataUrl(image.mediaType(), image.data())));
+            } else {
+                content.add(Map.of("type", "input_text", "text", ((ContentPart.Text) part).text()));
+            }
+        }
+        items.add(Map.of("role", "user", "content", content));
+    }
+    
+    private static List<Map<String, Object>> toTools(List<Tool> tools) {
+        List<Map<String, Object>> definitions = new ArrayList<>();
+        for (Tool tool : tools) {
+            Map<String, Object> definition = new LinkedHashMap<>();
+            definition.put("type", "function");
+            definition.put("name", tool.getName());
+            definition.put("description", tool.getDescription());
+            definition.put("parameters", tool.getParameters());
+            definitions.add(definition);
+        }
+        return definitions;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static ToolCall toToolCall(Map<String, Object> item) {
+        Object arguments = item.get("arguments");
+        Map<String, Object> parsed = arguments instanceof Map ? (Map<String, Object>) arguments
+            : arguments instanceof String json && !json.isBlank() ? JsonParser.parse(json, Map.class)
+            : new HashMap<>();
+        return new ToolCall((String) item.get("call_id"), (String) item.get("name"), parsed);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,318 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RateLimitWaitEvent;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded admission in front of a client that turns calls away early rather than letting every call queue until it
+ * times out. A call that finds the in-flight limit reached is shed on arrival when the queue is full, when its
+ * expected wait (queue position times the average call duration) exceeds the target wait, or when it could not finish
+ * before its {@link LLMRequest#getDeadline() deadline}. Queued calls are dropped once their deadline can no longer be
+ * met and, in the manner of CoDel, once they have waited longer than the interval, or longer than the target wait
+ * while every call dequeued during the last interval waited longer than the target (a standing queue).
+ * Shed and dropped calls fail with {@link RequestRejectedException} without reaching the provider.
+ */
+public final class AdmissionQueue implements LLMClient {
+    private static final double SERVICE_TIME_WEIGHT = 0.2;
+    // Stands in for calls without a deadline, far enough out that nanoTime differences cannot overflow
+    private static final Duration NO_DEADLINE = Duration.ofDays(365);
+    
+    private final LLMClient delegate;
+    private final int maxInFlight;
+    private int maxQueued = 1000;
+    private long targetNanos = TimeUnit.SECONDS.toNanos(2);
+    private long intervalNanos = TimeUnit.SECONDS.toNanos(10);
+    private LongSupplier clock = System::nanoTime;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+    private int inFlight;
+    private boolean closed;
+    // Moving average of call durations, 0 until the first call returns
+    private long serviceNanos;
+    // CoDel state: shortest wait of the calls dequeued in the current interval
+    private long intervalStart = clock.getAsLong();
+    private long minWaitNanos;
+    private boolean overloaded;
+    
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    
+    private enum State { WAITING, GRANTED, DROPPED }
+    
+    private static final class Ticket {
+        final long enqueuedNanos;
+        final long deadlineNanos;
+        final Condition ready;
+        State state = State.WAITING;
+        String reason;
+        
+        Ticket(long enqueuedNanos, long deadlineNanos, Condition ready) {
+            this.enqueuedNanos = enqueuedNanos;
+            this.deadlineNanos = deadlineNanos;
+            this.ready = ready;
+        }
+    }
+    
+    public AdmissionQueue(LLMClient delegate, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+    }
+    
+    public AdmissionQueue withMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+    
+    // Queue wait the callers accept; longer expected waits are shed on arrival
+    public AdmissionQueue withTargetWaitMillis(long targetWaitMillis) {
+        this.targetNanos = TimeUnit.MILLISECONDS.toNanos(targetWaitMillis);
+        return this;
+    }
+    
+    // Longest wait of a queued call, and how long waits must stay above the target before queued calls are dropped at it
+    public AdmissionQueue withIntervalMillis(long intervalMillis) {
+        this.intervalNanos = TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        return this;
+    }
+    
+    // Source of System.nanoTime-like readings for waits and call durations; tests move it instead of sleeping
+    AdmissionQueue withClock(LongSupplier clock) {
+        this.clock = clock;
+        this.intervalStart = clock.getAsLong();
+        return this;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        acquire(request);
+        long start = clock.getAsLong();
+        try {
+            return delegate.generate(request);
+        } finally {
+            release(clock.getAsLong() - start);
+        }
+    }
+    
+    // Calls that went to the provider
+    public long getAdmittedCount() {
+        return admitted.sum();
+    }
+    
+    // Calls rejected on arrival
+    public long getShedCount() {
+        return shed.sum();
+    }
+    
+    // Calls that were queued and then dropped before reaching the provider
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+    
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Whether queued calls are currently dropped at the target wait rather than at the interval
+    public boolean isOverloaded() {
+        lock.lock();
+        try {
+            return overloaded;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void acquire(LLMRequest request) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RequestRejectedException("Admission queue is closed");
+            }
+            long now = clock.getAsLong();
+            long deadline = now + remaining(request.getDeadline()).toNanos();
+            if (deadline - now <= serviceNanos) {
+                throw shed("Deadline cannot be met");
+            }
+            if (inFlight < maxInFlight && queue.isEmpty()) {
+                start(now, now);
+                return;
+            }
+            if (queue.size() >= maxQueued) {
+                throw shed("Admission queue is full (" + maxQueued + " waiting)");
+            }
+            long expectedWait = (queue.size() + 1) * serviceNanos / maxInFlight;
+            if (expectedWait > targetNanos) {
+                throw shed("Expected queue wait of " + TimeUnit.NANOSECONDS.toMillis(expectedWait) + " ms exceeds the target of "
+                    + TimeUnit.NANOSECONDS.toMillis(targetNanos) + " ms");
+            }
+            if (deadline - now < expectedWait + serviceNanos) {
+                throw shed("Deadline cannot be met after the expected queue wait");
+            }
+            
+            Ticket ticket = new Ticket(now, deadline, lock.newCondition());
+            queue.addLast(ticket);
+            RateLimitWaitEvent event = CallEvents.beginRateLimitWait();
+            try {
+                while (ticket.state == State.WAITING) {
+                    long remaining = dropAt(ticket) - clock.getAsLong();
+                    if (remaining <= 0) {
+                        queue.remove(ticket);
+                        drop(ticket);
+                        break;
+                    }
+                    ticket.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                if (ticket.state == State.WAITING) {
+                    queue.remove(ticket);
+                } else if (ticket.state == State.GRANTED) {
+                    inFlight--;
+                    grantNext();
+                }
+                Thread.currentThread().interrupt();
+                throw new LLMException("Interrupted while queued", e);
+            } finally {
+                CallEvents.endRateLimitWait(event, delegate.getProvider(), request.getModel(), "admission");
+            }
+            if (ticket.state == State.DROPPED) {
+                throw new RequestRejectedException(ticket.reason);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private static Duration remaining(Instant deadline) {
+        if (deadline == null) {
+            return NO_DEADLINE;
+        }
+        Duration remaining = Duration.between(Instant.now(), deadline);
+        return remaining.isNegative() ? Duration.ZERO : remaining.compareTo(NO_DEADLINE) > 0 ? NO_DEADLINE : remaining;
+    }
+    
+    private RequestRejectedException shed(String reason) {
+        shed.increment();
+        return new RequestRejectedException(reason);
+    }
+    
+    private void release(long serviceTime) {
+        lock.lock();
+        try {
+            inFlight--;
+            serviceNanos = serviceNanos == 0 ? serviceTime : (long) (serviceNanos + SERVICE_TIME_WEIGHT * (serviceTime - serviceNanos));
+            grantNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void grantNext() {
+        while (inFlight < maxInFlight && !queue.isEmpty()) {
+            Ticket next = queue.pollFirst();
+            long now = clock.getAsLong();
+            if (now - dropAt(next) >= 0) {
+                drop(next);
+                next.ready.signal();
+                continue;
+            }
+            start(next.enqueuedNanos, now);
+            next.state = State.GRANTED;
+            next.ready.signal();
+        }
+    }
+    
+    private void start(long enqueuedNanos, long now) {
+        inFlight++;
+        admitted.increment();
+        long wait = now - enqueuedNanos;
+        if (now - intervalStart >= intervalNanos) {
+            boolean wasOverloaded = overloaded;
+            overloaded = minWaitNanos > targetNanos;
+            intervalStart = now;
+            minWaitNanos = wait;
+            if (overloaded && !wasOverloaded) {
+                // Waiting calls recompute when to give up
+                queue.forEach(ticket -> ticket.ready.signal());
+            }
+        } else {
+            minWaitNanos = Math.min(minWaitNanos, wait);
+        }
+    }
+    
+    private long dropAt(Ticket ticket) {
+        long timeout = ticket.enqueuedNanos + (overloaded ? targetNanos : intervalNanos);
+        long latestStart = ticket.deadlineNanos - serviceNanos;
+        return latestStart - timeout < 0 ? latestStart : timeout;
+    }
+    
+    private void drop(Ticket ticket) {
+        long now = clock.getAsLong();
+        ticket.state = State.DROPPED;
+        ticket.reason = ticket.deadlineNanos - serviceNanos - now <= 0
+            ? "Dropped from the admission queue, the deadline can no longer be met"
+            : "Dropped from the admission queue after waiting " + TimeUnit.NANOSECONDS.toMillis(now - ticket.enqueuedNanos) + " ms";
+        dropped.increment();
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return delegate.getProvider();
+    }
+    
+    // Drops the queued calls and closes the wrapped client
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Ticket ticket : queue) {
+                ticket.state = State.DROPPED;
+                ticket.reason = "Admission queue is closed";
+                ticket.ready.signal();
+            }
+            queue.clear();
+        } finally {
+            lock.unlock();
+        }
+        delegate.close();
+    }
+}
\ No newline at end of file
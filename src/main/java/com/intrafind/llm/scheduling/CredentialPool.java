@@ -0,0 +1,377 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RetryEvent;
+import com.intrafind.llm.exceptions.AuthenticationException;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RateLimitException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Spreads calls over several API keys of one provider, each with a client of its own since uploaded files, context
+ * caches and response chains belong to the key that created them. Each call goes to the key with the most headroom:
+ * the quota the provider reported in its last {@link RateLimits rate limit headers}, less the calls made since, or,
+ * before any headers arrived, the configured per-minute limits less the key's usage over the last minute. Between
+ * keys with equal headroom the least used one wins. A key answering 429 is benched for its Retry-After time, one
+ * answering 401 for five minutes, and the call is retried on the next key. With {@link #withPrefixAffinity prefix
+ * affinity} calls sharing a prompt prefix stay on one key with headroom, where the provider cached the prefix.
+ */
+public final class CredentialPool implements LLMClient {
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int WINDOW_BUCKETS = 60;
+    private static final long BUCKET_NANOS = WINDOW_NANOS / WINDOW_BUCKETS;
+    
+    private final LLMProvider provider;
+    private final List<Credential> credentials = new ArrayList<>();
+    private final List<String> apiKeys;
+    private int requestsPerMinute;
+    private long tokensPerMinute;
+    private long rateLimitedBenchNanos = TimeUnit.SECONDS.toNanos(10);
+    private long unauthorizedBenchNanos = TimeUnit.MINUTES.toNanos(5);
+    private PrefixRing ring;
+    private int affinityMessages;
+    private double affinityLoadFactor;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    // Start of the scan for the best key, advanced on every call so that keys with equal headroom take turns
+    private int next;
+    
+    private static final class Credential {
+        final String name;
+        final LLMClient client;
+        // Requests and tokens per second over the last minute, bucket index is the second modulo 60
+        final long[] requests = new long[WINDOW_BUCKETS];
+        final long[] tokens = new long[WINDOW_BUCKETS];
+        long lastBucket;
+        int inFlight;
+        long benchedUntil;
+        // Quota from the last rate limit headers, -1 if unknown, and what was used since
+        long reportedRequests = -1;
+        long reportedTokens = -1;
+        long requestsResetAt;
+        long tokensResetAt;
+        long requestsSinceReport;
+        long tokensSinceReport;
+        long inputTokens;
+        long cachedInputTokens;
+        
+        Credential(String name, LLMClient client, long now) {
+            this.name = name;
+            this.client = client;
+            this.lastBucket = now / BUCKET_NANOS;
+            this.benchedUntil = now;
+        }
+        
+        void advance(long now) {
+            long bucket = now / BUCKET_NANOS;
+            for (long b = Math.max(lastBucket + 1, bucket - WINDOW_BUCKETS + 1); b <= bucket; b++) {
+                requests[(int) (b % WINDOW_BUCKETS)] = 0;
+                tokens[(int) (b % WINDOW_BUCKETS)] = 0;
+            }
+            lastBucket = Math.max(lastBucket, bucket);
+        }
+        
+        long requestsLastMinute() {
+            long sum = 0;
+            for (long count : requests) {
+                sum += count;
+            }
+            return sum;
+        }
+        
+        long tokensLastMinute() {
+            long sum = 0;
+            for (long count : tokens) {
+                sum += count;
+            }
+            return sum;
+        }
+        
+        // Requests the key may still send in the current window, Long.MAX_VALUE if nothing is known
+        long remainingRequests(long now, int requestsPerMinute) {
+            if (reportedRequests >= 0 && now - requestsResetAt < 0) {
+                return reportedRequests - requestsSinceReport;
+            }
+            return requestsPerMinute > 0 ? requestsPerMinute - requestsLastMinute() : Long.MAX_VALUE;
+        }
+        
+        long remainingTokens(long now, long tokensPerMinute) {
+            if (reportedTokens >= 0 && now - tokensResetAt < 0) {
+                return reportedTokens - tokensSinceReport;
+            }
+            return tokensPerMinute > 0 ? tokensPerMinute - tokensLastMinute() : Long.MAX_VALUE;
+        }
+    }
+    
+    public CredentialPool(LLMProvider provider, List<String> apiKeys, Function<String, LLMClient> clientFactory) {
+        if (apiKeys == null || apiKeys.isEmpty()) {
+            throw new IllegalArgumentException("At least one API key is required");
+        }
+        this.provider = provider;
+        this.apiKeys = List.copyOf(apiKeys);
+        long now = System.nanoTime();
+        for (String apiKey : apiKeys) {
+            credentials.add(new Credential(mask(apiKey), clientFactory.apply(apiKey), now));
+        }
+    }
+    
+    // Quota of each key, used until the provider reports its own; 0 if unknown
+    public CredentialPool withKeyLimits(int requestsPerMinute, long tokensPerMinute) {
+        this.requestsPerMinute = requestsPerMinute;
+        this.tokensPerMinute = tokensPerMinute;
+        return this;
+    }
+    
+    // How long keys are left out after a 429 without Retry-After, and after a 401
+    public CredentialPool withBenchMillis(long rateLimitedMillis, long unauthorizedMillis) {
+        this.rateLimitedBenchNanos = TimeUnit.MILLISECONDS.toNanos(rateLimitedMillis);
+        this.unauthorizedBenchNanos = TimeUnit.MILLISECONDS.toNanos(unauthorizedMillis);
+        return this;
+    }
+    
+    // Sends calls with the same model, tools, system prompt and first historyMessages turns to the same key while its
+    // in-flight calls stay within loadFactor times the average, see PrefixRing
+    public CredentialPool withPrefixAffinity(int historyMessages, double loadFactor) {
+        this.ring = new PrefixRing(apiKeys);
+        this.affinityMessages = historyMessages;
+        this.affinityLoadFactor = loadFactor;
+        return this;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        boolean[] tried = new boolean[credentials.size()];
+        long prefixHash = ring != null ? request.prefixHash(affinityMessages) : 0;
+        LLMException failure = null;
+        for (int attempt = 0; attempt < credentials.size(); attempt++) {
+            Credential credential = acquire(tried, prefixHash);
+            if (credential == null) {
+                break;
+            }
+            // A retry on another key, after the previous one was rate limited or refused
+            RetryEvent retry = failure != null ? CallEvents.beginRetry() : null;
+            String reason = failure instanceof RateLimitException ? "key rate limited" : "key unauthorized";
+            LLMResponse response = null;
+            try {
+                response = credential.client.generate(request);
+                return response;
+            } catch (RateLimitException e) {
+                long retryAfter = e.getRetryAfterMillis();
+                bench(credential, retryAfter >= 0 ? TimeUnit.MILLISECONDS.toNanos(retryAfter) : rateLimitedBenchNanos);
+                failure = e;
+            } catch (AuthenticationException e) {
+                bench(credential, unauthorizedBenchNanos);
+                failure = e;
+            } finally {
+                release(credential, response);
+                CallEvents.endRetry(retry, provider, request.getModel(), attempt, reason);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        throw allBenched();
+    }
+    
+    public List<CredentialSnapshot> snapshot() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            List<CredentialSnapshot> snapshots = new ArrayList<>(credentials.size());
+            for (Credential credential : credentials) {
+                credential.advance(now);
+                long remainingRequests = credential.remainingRequests(now, requestsPerMinute);
+                long remainingTokens = credential.remainingTokens(now, tokensPerMinute);
+                snapshots.add(new CredentialSnapshot(credential.name, credential.inFlight,
+                    credential.requestsLastMinute(), credential.tokensLastMinute(),
+                    remainingRequests == Long.MAX_VALUE ? -1 : Math.max(0, remainingRequests),
+                    remainingTokens == Long.MAX_VALUE ? -1 : Math.max(0, remainingTokens),
+                    Math.max(0, TimeUnit.NANOSECONDS.toMillis(credential.benchedUntil - now)),
+                    credential.inputTokens, credential.cachedInputTokens));
+            }
+            return snapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // The untried, unbenched key for the prefix or with the most headroom, or null if there is none
+    private Credential acquire(boolean[] tried, long prefixHash) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Credential best = ring != null ? affine(tried, prefixHash, now) : null;
+            if (best == null) {
+                best = mostHeadroom(tried, now);
+            }
+            next = (next + 1) % credentials.size();
+            if (best == null) {
+                return null;
+            }
+            tried[credentials.indexOf(best)] = true;
+            best.inFlight++;
+            best.requests[(int) (best.lastBucket % WINDOW_BUCKETS)]++;
+            best.requestsSinceReport++;
+            return best;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private Credential mostHeadroom(boolean[] tried, long now) {
+        int size = credentials.size();
+        Credential best = null;
+        boolean bestHasRequests = false;
+        long bestTokens = 0;
+        for (int i = 0; i < size; i++) {
+            int index = (next + i) % size;
+            Credential candidate = credentials.get(index);
+            if (tried[index] || now - candidate.benchedUntil < 0) {
+                continue;
+            }
+            candidate.advance(now);
+            boolean hasRequests = candidate.remainingRequests(now, requestsPerMinute) > 0;
+            long tokens = candidate.remainingTokens(now, tokensPerMinute);
+            if (best == null || isBetter(candidate, hasRequests, tokens, best, bestHasRequests, bestTokens)) {
+                best = candidate;
+                bestHasRequests = hasRequests;
+                bestTokens = tokens;
+            }
+        }
+        return best;
+    }
+    
+    // The key the ring assigns the prefix to among those that are usable and not out of requests
+    private Credential affine(boolean[] tried, long prefixHash, long now) {
+        int size = credentials.size();
+        int[] load = new int[size];
+        boolean[] excluded = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            Credential credential = credentials.get(i);
+            credential.advance(now);
+            load[i] = credential.inFlight;
+            excluded[i] = tried[i] || now - credential.benchedUntil < 0
+                || credential.remainingRequests(now, requestsPerMinute) <= 0;
+        }
+        int index = ring.select(prefixHash, load, excluded, affinityLoadFactor);
+        return index >= 0 ? credentials.get(index) : null;
+    }
+    
+    private static boolean isBetter(Credential candidate, boolean hasRequests, long tokens,
+                                    Credential best, boolean bestHasRequests, long bestTokens) {
+        if (hasRequests != bestHasRequests) {
+            return hasRequests;
+        }
+        if (tokens != bestTokens) {
+            return tokens > bestTokens;
+        }
+        if (candidate.inFlight != best.inFlight) {
+            return candidate.inFlight < best.inFlight;
+        }
+        return candidate.tokensLastMinute() < best.tokensLastMinute();
+    }
+    
+    private void release(Credential credential, LLMResponse response) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            credential.inFlight--;
+            credential.advance(now);
+            if (response == null) {
+                return;
+            }
+            long used = response.getUsage().totalTokens();
+            credential.tokens[(int) (credential.lastBucket % WINDOW_BUCKETS)] += used;
+            credential.tokensSinceReport += used;
+            credential.inputTokens += response.getUsage().inputTokens();
+            credential.cachedInputTokens += response.getUsage().cachedInputTokens();
+            RateLimits limits = response.getRateLimits();
+            if (limits.remainingRequests() >= 0) {
+                credential.reportedRequests = limits.remainingRequests();
+                credential.requestsResetAt = now + resetNanos(limits.requestsResetMillis());
+                credential.requestsSinceReport = 0;
+            }
+            if (limits.remainingTokens() >= 0) {
+                credential.reportedTokens = limits.remainingTokens();
+                credential.tokensResetAt = now + resetNanos(limits.tokensResetMillis());
+                credential.tokensSinceReport = 0;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Without a reset time the reported quota is trusted for one window
+    private static long resetNanos(long resetMillis) {
+        return resetMillis >= 0 ? TimeUnit.MILLISECONDS.toNanos(resetMillis) : WINDOW_NANOS;
+    }
+    
+    private void bench(Credential credential, long nanos) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + nanos;
+            if (until - credential.benchedUntil > 0) {
+                credential.benchedUntil = until;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private RateLimitException allBenched() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            long soonest = Long.MAX_VALUE;
+            for (Credential credential : credentials) {
+                soonest = Math.min(soonest, credential.benchedUntil - now);
+            }
+            long retryAfter = Math.max(0, TimeUnit.NANOSECONDS.toMillis(soonest));
+            return new RateLimitException("All " + credentials.size() + " API keys are benched, the first is back in "
+                + retryAfter + " ms", retryAfter);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Enough of the key to tell keys apart in logs and metrics
+    private static String mask(String apiKey) {
+        if (apiKey == null || apiKey.length() <= 8) {
+            return "****";
+        }
+        return "****" + apiKey.substring(apiKey.length() - 4);
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        for (Credential credential : credentials) {
+            if (credential.client.isHealthy()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return provider;
+    }
+    
+    // Closes the client of every key
+    @Override
+    public void close() {
+        for (Credential credential : credentials) {
+            credential.client.close();
+        }
+    }
+}
\ No newline at end of file
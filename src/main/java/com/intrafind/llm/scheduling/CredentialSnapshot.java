@@ -0,0 +1,12 @@
+package com.intrafind.llm.scheduling;
+
+// State of one key of a CredentialPool; usage covers the last minute, remaining quota is -1 if unknown, benchedMillis 0 if the key is in use
+public record CredentialSnapshot(String key, int inFlight, long requestsLastMinute, long tokensLastMinute,
+                                 long remainingRequests, long remainingTokens, long benchedMillis,
+                                 long inputTokens, long cachedInputTokens) {
+    
+    // Share of all input tokens sent with this key that the provider served from its prompt cache
+    public double cacheHitRatio() {
+        return inputTokens == 0 ? 0.0 : (double) cachedInputTokens / inputTokens;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,11 @@
+package com.intrafind.llm.scheduling;
+
+// State of one endpoint of a MultiEndpointClient; requests, errors and tokens are cumulative, latency and error rate moving averages
+public record EndpointSnapshot(String name, int inFlight, long requests, long errors, double latencyMillis, double errorRate,
+                               long inputTokens, long cachedInputTokens) {
+    
+    // Share of all input tokens sent to this endpoint that the provider served from its prompt cache
+    public double cacheHitRatio() {
+        return inputTokens == 0 ? 0.0 : (double) cachedInputTokens / inputTokens;
+    }
+}
\ No newline at end of file
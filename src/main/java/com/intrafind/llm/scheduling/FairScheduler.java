@@ -0,0 +1,371 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RateLimitWaitEvent;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+import com.intrafind.llm.metrics.LatencyHistogram;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Shares a client's calls in flight between tenants ({@link LLMRequest#getTenant()}) in proportion to their weights,
+ * measured in tokens rather than calls, so a tenant sending large prompts cannot take the whole provider quota by
+ * sending fewer of them. Calls that find the limit reached wait in a queue per tenant, served by deficit round robin:
+ * each round a tenant is credited {@code quantumTokens * weight} and sends its queued calls while the credit covers
+ * their estimated tokens (local input count plus {@code max_tokens}). Once a call returns, the difference between
+ * the estimate and the reported usage is settled against the tenant's credit.
+ * <p>
+ * Idle tenants take no share and bank no credit, but keep a debt from underestimated calls. Beyond
+ * {@link #withMaxTenants maxTenants} the least recently seen idle tenants are forgotten along with their metrics and debt.
+ */
+public final class FairScheduler implements LLMClient {
+    public static final String DEFAULT_TENANT = "default";
+    
+    private final LLMClient delegate;
+    private final int maxInFlight;
+    private int quantumTokens = 4000;
+    private int defaultOutputTokens = 1000;
+    private int maxQueuedPerTenant = 1000;
+    private int maxTenants = 10_000;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Double> weights = new HashMap<>();
+    // In access order, least recently seen first
+    private final Map<String, Tenant> tenants = new LinkedHashMap<>(16, 0.75f, true);
+    // Tenants with queued calls, in round-robin order
+    private final ArrayDeque<Tenant> active = new ArrayDeque<>();
+    private int inFlight;
+    private boolean closed;
+    
+    private enum State { WAITING, GRANTED, REJECTED }
+    
+    private static final class Tenant {
+        final String name;
+        final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+        final LatencyHistogram wait = new LatencyHistogram();
+        double weight;
+        long deficit;
+        // Credited for the current round
+        boolean visited;
+        int inFlight;
+        long requests;
+        long tokens;
+        
+        Tenant(String name, double weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+    
+    private static final class Ticket {
+        final Tenant tenant;
+        final long cost;
+        final long enqueuedNanos;
+        final Condition ready;
+        State state = State.WAITING;
+        String reason;
+        
+        Ticket(Tenant tenant, long cost, long enqueuedNanos, Condition ready) {
+            this.tenant = tenant;
+            this.cost = cost;
+            this.enqueuedNanos = enqueuedNanos;
+            this.ready = ready;
+        }
+    }
+    
+    public FairScheduler(LLMClient delegate, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+    }
+    
+    // Share of a tenant relative to the others, 1 if not set
+    public FairScheduler withWeight(String tenant, double weight) {
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Weight must be positive: " + weight);
+        }
+        lock.lock();
+        try {
+            weights.put(tenant, weight);
+            Tenant existing = tenants.get(tenant);
+            if (existing != null) {
+                existing.weight = weight;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return this;
+    }
+    
+    // Tokens credited per round to a tenant of weight 1; smaller values interleave tenants more finely
+    public FairScheduler withQuantumTokens(int quantumTokens) {
+        this.quantumTokens = quantumTokens;
+        return this;
+    }
+    
+    // Output tokens assumed for calls without a max_tokens parameter
+    public FairScheduler withDefaultOutputTokens(int defaultOutputTokens) {
+        this.defaultOutputTokens = defaultOutputTokens;
+        return this;
+    }
+    
+    // Calls one tenant may have waiting; more are rejected so a flood from one tenant stays its own problem
+    public FairScheduler withMaxQueuedPerTenant(int maxQueuedPerTenant) {
+        this.maxQueuedPerTenant = maxQueuedPerTenant;
+        return this;
+    }
+    
+    // Tenants kept with their metrics; with per-user tenant ids the idle ones are dropped beyond this
+    public FairScheduler withMaxTenants(int maxTenants) {
+        this.maxTenants = maxTenants;
+        return this;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        // Counted before taking the lock, tokenizing a long prompt takes a while
+        long cost = estimateTokens(request);
+        Ticket ticket = acquire(request, cost);
+        LLMResponse response = null;
+        try {
+            response = delegate.generate(request);
+            return response;
+        } finally {
+            release(ticket, response);
+        }
+    }
+    
+    long estimateTokens(LLMRequest request) {
+        Object maxTokens = request.getParameters().get("max_tokens");
+        int output = maxTokens instanceof Number number ? number.intValue() : defaultOutputTokens;
+        return request.estimateInputTokens(delegate.getProvider()) + (long) output;
+    }
+    
+    public List<TenantSnapshot> snapshot() {
+        lock.lock();
+        try {
+            List<TenantSnapshot> snapshots = new ArrayList<>(tenants.size());
+            for (Tenant tenant : tenants.values()) {
+                snapshots.add(snapshot(tenant));
+            }
+            return snapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public TenantSnapshot snapshot(String tenant) {
+        lock.lock();
+        try {
+            String name = tenant != null ? tenant : DEFAULT_TENANT;
+            Tenant state = tenants.get(name);
+            return state != null ? snapshot(state) : new TenantSnapshot(name, weights.getOrDefault(name, 1.0), 0, 0, 0, 0, 0, 0, 0);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private static TenantSnapshot snapshot(Tenant tenant) {
+        return new TenantSnapshot(tenant.name, tenant.weight, tenant.queue.size(), tenant.inFlight, tenant.requests, tenant.tokens,
+            tenant.wait.valueAtPercentile(50), tenant.wait.valueAtPercentile(99), tenant.wait.getMax());
+    }
+    
+    private Ticket acquire(LLMRequest request, long cost) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RequestRejectedException("Scheduler is closed");
+            }
+            String name = request.getTenant() != null ? request.getTenant() : DEFAULT_TENANT;
+            Tenant tenant = tenants.get(name);
+            if (tenant == null) {
+                tenant = new Tenant(name, weights.getOrDefault(name, 1.0));
+                tenants.put(name, tenant);
+                evictIdleTenants(tenant);
+            }
+            if (inFlight < maxInFlight && active.isEmpty()) {
+                // Nobody waits, so there is nothing to be fair to and the call is not charged
+                Ticket ticket = new Ticket(tenant, cost, System.nanoTime(), null);
+                start(ticket);
+                return ticket;
+            }
+            if (tenant.queue.size() >= maxQueuedPerTenant) {
+                throw new RequestRejectedException("Tenant " + name + " has " + maxQueuedPerTenant + " calls waiting");
+            }
+            Ticket ticket = new Ticket(tenant, cost, System.nanoTime(), lock.newCondition());
+            if (tenant.queue.isEmpty()) {
+                active.addLast(tenant);
+            }
+            tenant.queue.addLast(ticket);
+            
+            RateLimitWaitEvent event = CallEvents.beginRateLimitWait();
+            try {
+                while (ticket.state == State.WAITING) {
+                    ticket.ready.await();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.state == State.WAITING) {
+                    tenant.queue.remove(ticket);
+                    if (tenant.queue.isEmpty()) {
+                        active.remove(tenant);
+                        tenant.visited = false;
+                    }
+                } else if (ticket.state == State.GRANTED) {
+                    finish(ticket, 0);
+                }
+                Thread.currentThread().interrupt();
+                throw new LLMException("Interrupted while queued", e);
+            } finally {
+                CallEvents.endRateLimitWait(event, delegate.getProvider(), request.getModel(), "tenant:" + name);
+            }
+            if (ticket.state == State.REJECTED) {
+                throw new RequestRejectedException(ticket.reason);
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void evictIdleTenants(Tenant arrived) {
+        Iterator<Tenant> eldest = tenants.values().iterator();
+        while (tenants.size() > maxTenants && eldest.hasNext()) {
+            Tenant tenant = eldest.next();
+            if (tenant != arrived && tenant.queue.isEmpty() && tenant.inFlight == 0) {
+                eldest.remove();
+            }
+        }
+    }
+    
+    private void release(Ticket ticket, LLMResponse response) {
+        long used = response != null && response.getUsage() != null ? response.getUsage().totalTokens() : 0;
+        lock.lock();
+        try {
+            finish(ticket, used);
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void start(Ticket ticket) {
+        inFlight++;
+        ticket.tenant.inFlight++;
+        ticket.tenant.wait.recordNanos(System.nanoTime() - ticket.enqueuedNanos);
+    }
+    
+    private void finish(Ticket ticket, long usedTokens) {
+        Tenant tenant = ticket.tenant;
+        inFlight--;
+        tenant.inFlight--;
+        tenant.requests++;
+        tenant.tokens += usedTokens > 0 ? usedTokens : ticket.cost;
+        // Only queued calls were charged, so only they are settled
+        if (ticket.ready != null && usedTokens > 0) {
+            tenant.deficit -= usedTokens - ticket.cost;
+            if (tenant.queue.isEmpty()) {
+                tenant.deficit = Math.min(tenant.deficit, 0);
+            }
+        }
+        grantNext();
+    }
+    
+    private void grantNext() {
+        while (inFlight < maxInFlight && !active.isEmpty()) {
+            Ticket next = next();
+            start(next);
+            next.state = State.GRANTED;
+            next.ready.signal();
+        }
+    }
+    
+    // Deficit round robin over the active tenants
+    private Ticket next() {
+        skipIdleRounds();
+        while (true) {
+            Tenant tenant = active.peekFirst();
+            if (!tenant.visited) {
+                tenant.deficit += quantum(tenant);
+                tenant.visited = true;
+            }
+            Ticket head = tenant.queue.peekFirst();
+            if (head.cost <= tenant.deficit) {
+                tenant.deficit -= head.cost;
+                tenant.queue.pollFirst();
+                if (tenant.queue.isEmpty()) {
+                    active.pollFirst();
+                    tenant.visited = false;
+                    tenant.deficit = Math.min(tenant.deficit, 0);
+                }
+                return head;
+            }
+            tenant.visited = false;
+            active.addLast(active.pollFirst());
+        }
+    }
+    
+    // Credits all active tenants at once for the rounds in which none of them could send, instead of looping through them
+    private void skipIdleRounds() {
+        long rounds = Long.MAX_VALUE;
+        for (Tenant tenant : active) {
+            long quantum = quantum(tenant);
+            long missing = tenant.queue.peekFirst().cost - tenant.deficit - (tenant.visited ? 0 : quantum);
+            rounds = Math.min(rounds, missing <= 0 ? 0 : (missing + quantum - 1) / quantum);
+        }
+        if (rounds > 0) {
+            for (Tenant tenant : active) {
+                tenant.deficit += rounds * quantum(tenant);
+            }
+        }
+    }
+    
+    private long quantum(Tenant tenant) {
+        return Math.max(1, Math.round(quantumTokens * tenant.weight));
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return delegate.getProvider();
+    }
+    
+    // Rejects the queued calls and closes the wrapped client
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Tenant tenant : active) {
+                for (Ticket ticket : tenant.queue) {
+                    ticket.state = State.REJECTED;
+                    ticket.reason = "Scheduler is closed";
+                    ticket.ready.signal();
+                }
+                tenant.queue.clear();
+                tenant.visited = false;
+            }
+            active.clear();
+        } finally {
+            lock.unlock();
+        }
+        delegate.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,279 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RetryEvent;
+import com.intrafind.llm.exceptions.AuthenticationException;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RateLimitException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Routes calls for one logical model over several deployments of it, such as Azure OpenAI regions and openai.com.
+ * Each endpoint keeps a moving average of its latency and error rate; every call picks two endpoints at random and
+ * goes to the cheaper one (power of two choices), where the cost is the average latency plus the error rate times a
+ * failure penalty, scaled by the calls in flight. Slow or failing endpoints thus get less traffic without being cut
+ * off, and since an endpoint's cost fades while it is not used, one that recovered is tried again. Calls that fail
+ * without a response, with 429 or with a 5xx status are retried once on the other endpoint. With
+ * {@link #withPrefixAffinity prefix affinity} calls sharing a prompt prefix go to one endpoint instead, where the
+ * provider cached the prefix, as long as its load stays bounded.
+ */
+public final class MultiEndpointClient implements LLMClient {
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final double ERROR_WEIGHT = 0.1;
+    
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private long failurePenaltyNanos = TimeUnit.SECONDS.toNanos(5);
+    private long decayNanos = TimeUnit.SECONDS.toNanos(10);
+    private PrefixRing ring;
+    private int affinityMessages;
+    private double affinityLoadFactor;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    
+    private static final class Endpoint {
+        final String name;
+        final LLMClient client;
+        // Model or deployment name at this endpoint, null to keep the request's
+        final String model;
+        int inFlight;
+        long requests;
+        long errors;
+        long inputTokens;
+        long cachedInputTokens;
+        // Moving averages, 0 until the first call returns
+        double latencyNanos;
+        double errorRate;
+        long lastUsed;
+        
+        Endpoint(String name, LLMClient client, String model) {
+            this.name = name;
+            this.client = client;
+            this.model = model;
+        }
+    }
+    
+    // Endpoints are added with withEndpoint
+    public MultiEndpointClient() {
+    }
+    
+    public MultiEndpointClient withEndpoint(String name, LLMClient client) {
+        return withEndpoint(name, client, null);
+    }
+    
+    // An endpoint that serves the model under its own name, e.g. an Azure deployment
+    public MultiEndpointClient withEndpoint(String name, LLMClient client, String model) {
+        if (!endpoints.isEmpty() && endpoints.get(0).client.getProvider() != client.getProvider()) {
+            throw new IllegalArgumentException("All endpoints must use the same provider");
+        }
+        endpoints.add(new Endpoint(name, client, model));
+        if (ring != null) {
+            ring = new PrefixRing(names());
+        }
+        return this;
+    }
+    
+    // Latency a failed call counts as, weighted by the error rate
+    public MultiEndpointClient withFailurePenaltyMillis(long failurePenaltyMillis) {
+        this.failurePenaltyNanos = TimeUnit.MILLISECONDS.toNanos(failurePenaltyMillis);
+        return this;
+    }
+    
+    // Time over which an unused endpoint's cost fades by a factor of e, so that it is tried again
+    public MultiEndpointClient withDecayMillis(long decayMillis) {
+        this.decayNanos = TimeUnit.MILLISECONDS.toNanos(decayMillis);
+        return this;
+    }
+    
+    // Sends calls with the same model, tools, system prompt and first historyMessages turns to the same endpoint while
+    // its in-flight calls stay within loadFactor times the average, see PrefixRing
+    public MultiEndpointClient withPrefixAffinity(int historyMessages, double loadFactor) {
+        this.ring = new PrefixRing(names());
+        this.affinityMessages = historyMessages;
+        this.affinityLoadFactor = loadFactor;
+        return this;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("No endpoints configured");
+        }
+        Endpoint[] choices = ring != null ? chooseByPrefix(request.prefixHash(affinityMessages)) : choose();
+        try {
+            return call(choices[0], request);
+        } catch (LLMException e) {
+            if (choices[1] == null || !isRetryable(e)) {
+                throw e;
+            }
+            acquire(choices[1]);
+            RetryEvent retry = CallEvents.beginRetry();
+            try {
+                return call(choices[1], request);
+            } finally {
+                CallEvents.endRetry(retry, getProvider(), request.getModel(), 1, "endpoint " + choices[0].name);
+            }
+        }
+    }
+    
+    public List<EndpointSnapshot> snapshot() {
+        lock.lock();
+        try {
+            List<EndpointSnapshot> snapshots = new ArrayList<>(endpoints.size());
+            for (Endpoint endpoint : endpoints) {
+                snapshots.add(new EndpointSnapshot(endpoint.name, endpoint.inFlight, endpoint.requests, endpoint.errors,
+                    endpoint.latencyNanos / 1_000_000, endpoint.errorRate, endpoint.inputTokens, endpoint.cachedInputTokens));
+            }
+            return snapshots;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // The endpoint to call and the other one of the two choices for a retry, which is null with a single endpoint
+    private Endpoint[] choose() {
+        lock.lock();
+        try {
+            int size = endpoints.size();
+            if (size == 1) {
+                Endpoint only = endpoints.get(0);
+                only.inFlight++;
+                return new Endpoint[] { only, null };
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(size);
+            int second = random.nextInt(size - 1);
+            if (second >= first) {
+                second++;
+            }
+            Endpoint a = endpoints.get(first);
+            Endpoint b = endpoints.get(second);
+            long now = System.nanoTime();
+            Endpoint chosen = cost(b, now) < cost(a, now) ? b : a;
+            chosen.inFlight++;
+            return new Endpoint[] { chosen, chosen == a ? b : a };
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // The endpoint the ring assigns the prefix to, and its successor on the ring for a retry
+    private Endpoint[] chooseByPrefix(long prefixHash) {
+        lock.lock();
+        try {
+            int size = endpoints.size();
+            int[] load = new int[size];
+            for (int i = 0; i < size; i++) {
+                load[i] = endpoints.get(i).inFlight;
+            }
+            boolean[] excluded = new boolean[size];
+            int first = ring.select(prefixHash, load, excluded, affinityLoadFactor);
+            excluded[first] = true;
+            int second = ring.select(prefixHash, load, excluded, affinityLoadFactor);
+            Endpoint chosen = endpoints.get(first);
+            chosen.inFlight++;
+            return new Endpoint[] { chosen, second >= 0 ? endpoints.get(second) : null };
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private List<String> names() {
+        List<String> names = new ArrayList<>(endpoints.size());
+        for (Endpoint endpoint : endpoints) {
+            names.add(endpoint.name);
+        }
+        return names;
+    }
+    
+    private double cost(Endpoint endpoint, long now) {
+        double expected = endpoint.latencyNanos + endpoint.errorRate * failurePenaltyNanos;
+        double decay = endpoint.inFlight > 0 ? 1 : Math.exp(-(double) (now - endpoint.lastUsed) / decayNanos);
+        return expected * decay * (endpoint.inFlight + 1);
+    }
+    
+    private void acquire(Endpoint endpoint) {
+        lock.lock();
+        try {
+            endpoint.inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private LLMResponse call(Endpoint endpoint, LLMRequest request) {
+        long start = System.nanoTime();
+        LLMResponse response;
+        try {
+            response = endpoint.client.generate(endpoint.model != null ? request.withModel(endpoint.model) : request);
+        } catch (RuntimeException e) {
+            release(endpoint, System.nanoTime() - start, null, e);
+            throw e;
+        }
+        release(endpoint, System.nanoTime() - start, response, null);
+        return response;
+    }
+    
+    // Only failures of the endpoint count against it, a request the provider rejected leaves its error rate alone
+    private void release(Endpoint endpoint, long latency, LLMResponse response, RuntimeException failure) {
+        boolean failed = failure != null && (!(failure instanceof LLMException e) || isRetryable(e));
+        lock.lock();
+        try {
+            endpoint.inFlight--;
+            endpoint.requests++;
+            endpoint.lastUsed = System.nanoTime();
+            if (response == null && !failed) {
+                return;
+            }
+            endpoint.errorRate += ERROR_WEIGHT * ((failed ? 1 : 0) - endpoint.errorRate);
+            if (failed) {
+                endpoint.errors++;
+            } else {
+                endpoint.inputTokens += response.getUsage().inputTokens();
+                endpoint.cachedInputTokens += response.getUsage().cachedInputTokens();
+                endpoint.latencyNanos = endpoint.latencyNanos == 0 ? latency : endpoint.latencyNanos + LATENCY_WEIGHT * (latency - endpoint.latencyNanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    // Failures of the endpoint rather than of the request
+    private static boolean isRetryable(LLMException e) {
+        if (e instanceof AuthenticationException) {
+            return false;
+        }
+        return e instanceof RateLimitException || e.getStatusCode() == 0 || e.getStatusCode() >= 500;
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.client.isHealthy()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return endpoints.isEmpty() ? null : endpoints.get(0).client.getProvider();
+    }
+    
+    // Closes the client of every endpoint
+    @Override
+    public void close() {
+        for (Endpoint endpoint : endpoints) {
+            endpoint.client.close();
+        }
+    }
+}
\ No newline at end of file
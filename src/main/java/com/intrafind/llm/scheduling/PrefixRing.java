@@ -0,0 +1,97 @@
+package com.intrafind.llm.scheduling;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Consistent hashing with bounded load over the routes of a router, so that requests sharing a prompt prefix land
+ * where the provider already cached it. Each route owns a number of points on a ring of 64-bit hashes and a prefix
+ * hash goes to the route of the next point clockwise, unless that route already carries more than the load factor
+ * times the average load, in which case the walk continues to the next route. Each point is a SHA-256 hash of the
+ * route name and the point's number, so points of similar names are unrelated and adding a route moves only the
+ * prefixes it takes over.
+ */
+final class PrefixRing {
+    private static final int POINTS_PER_ROUTE = 64;
+    
+    private final int routes;
+    private final long[] points;
+    private final int[] owners;
+    
+    PrefixRing(List<String> names) {
+        this.routes = names.size();
+        long[][] entries = new long[routes * POINTS_PER_ROUTE][];
+        MessageDigest digest = sha256();
+        for (int route = 0; route < routes; route++) {
+            for (int i = 0; i < POINTS_PER_ROUTE; i++) {
+                byte[] point = digest.digest((names.get(route) + '#' + i).getBytes(StandardCharsets.UTF_8));
+                entries[route * POINTS_PER_ROUTE + i] = new long[] { ByteBuffer.wrap(point).getLong(), route };
+            }
+        }
+        // Points that still tie go to the route whose name sorts first, however the routes are ordered
+        Arrays.sort(entries, Comparator.<long[]>comparingLong(entry -> entry[0])
+            .thenComparing(entry -> names.get((int) entry[1]))
+            .thenComparingLong(entry -> entry[1]));
+        this.points = new long[entries.length];
+        this.owners = new int[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            points[i] = entries[i][0];
+            owners[i] = (int) entries[i][1];
+        }
+    }
+    
+    // Route for the prefix among those not excluded whose load stays within the bound, -1 if every route is excluded
+    int select(long prefixHash, int[] load, boolean[] excluded, double loadFactor) {
+        int available = 0;
+        long total = 0;
+        for (int route = 0; route < routes; route++) {
+            if (!excluded[route]) {
+                available++;
+                total += load[route];
+            }
+        }
+        if (available == 0) {
+            return -1;
+        }
+        double bound = Math.ceil(loadFactor * (total + 1) / available);
+        int start = Arrays.binarySearch(points, scramble(prefixHash));
+        start = start >= 0 ? start : -start - 1;
+        int fallback = -1;
+        for (int i = 0; i < points.length; i++) {
+            int route = owners[(start + i) % points.length];
+            if (excluded[route]) {
+                continue;
+            }
+            if (load[route] + 1 <= bound) {
+                return route;
+            }
+            if (fallback < 0) {
+                fallback = route;
+            }
+        }
+        return fallback;
+    }
+    
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    // Spreads nearby hashes over the ring (the finalizer of MurmurHash3)
+    private static long scramble(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,8 @@
+package com.intrafind.llm.scheduling;
+
+// Scheduling classes, most urgent first
+public enum Priority {
+    INTERACTIVE,
+    NORMAL,
+    BULK
+}
\ No newline at end of file
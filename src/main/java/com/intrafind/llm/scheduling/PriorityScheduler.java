@@ -0,0 +1,281 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.events.CallEvents;
+import com.intrafind.llm.events.RateLimitWaitEvent;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the calls in flight on a client and queues the rest by {@link Priority}, so interactive calls sharing an API
+ * key with bulk jobs skip ahead of the bulk backlog instead of waiting behind it. A queued call gains one class for
+ * every {@code agingMillis} it waits, and calls of the same effective class run oldest first, so bulk work still
+ * progresses under constant interactive load.
+ * <p>
+ * The queue is bounded: a call arriving at a full queue takes the place of the newest queued call of a lower class,
+ * which fails with {@link RequestRejectedException}, or is rejected itself if there is none. With a preemption
+ * threshold set, all queued bulk calls are rejected as soon as that many interactive calls are waiting.
+ */
+public final class PriorityScheduler implements LLMClient {
+    private static final Priority[] PRIORITIES = Priority.values();
+    
+    private final LLMClient delegate;
+    private final int maxInFlight;
+    private int maxQueued = 1000;
+    private long agingNanos = TimeUnit.SECONDS.toNanos(10);
+    private int preemptionThreshold;
+    
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<Ticket>[] queues;
+    private int queued;
+    private int inFlight;
+    private boolean closed;
+    
+    private enum State { WAITING, GRANTED, REJECTED }
+    
+    private static final class Ticket {
+        final Priority priority;
+        final long enqueuedNanos;
+        final Condition ready;
+        State state = State.WAITING;
+        String reason;
+        
+        Ticket(Priority priority, long enqueuedNanos, Condition ready) {
+            this.priority = priority;
+            this.enqueuedNanos = enqueuedNanos;
+            this.ready = ready;
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    public PriorityScheduler(LLMClient delegate, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least 1");
+        }
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+        this.queues = new ArrayDeque[PRIORITIES.length];
+        for (int i = 0; i < queues.length; i++) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+    
+    // Calls waiting for a slot across all classes, 0 rejects every call that finds the limit reached
+    public PriorityScheduler withMaxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+    
+    // Wait after which a queued call is treated as one class more urgent, 0 disables aging
+    public PriorityScheduler withAgingMillis(long agingMillis) {
+        this.agingNanos = TimeUnit.MILLISECONDS.toNanos(agingMillis);
+        return this;
+    }
+    
+    // Waiting interactive calls at which queued bulk calls are rejected, 0 disables preemption
+    public PriorityScheduler withPreemptionThreshold(int preemptionThreshold) {
+        this.preemptionThreshold = preemptionThreshold;
+        return this;
+    }
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        return generate(request, Priority.NORMAL);
+    }
+    
+    public LLMResponse generate(LLMRequest request, Priority priority) {
+        acquire(request, priority);
+        try {
+            return delegate.generate(request);
+        } finally {
+            release();
+        }
+    }
+    
+    // A client that sends every call with the given priority; closing it leaves the scheduler open
+    public LLMClient client(Priority priority) {
+        return new LLMClient() {
+            @Override
+            public LLMResponse generate(LLMRequest request) {
+                return PriorityScheduler.this.generate(request, priority);
+            }
+            
+            @Override
+            public boolean isHealthy() {
+                return PriorityScheduler.this.isHealthy();
+            }
+            
+            @Override
+            public LLMProvider getProvider() {
+                return PriorityScheduler.this.getProvider();
+            }
+            
+            @Override
+            public void close() {
+            }
+        };
+    }
+    
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    public int getQueued(Priority priority) {
+        lock.lock();
+        try {
+            return queues[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void acquire(LLMRequest request, Priority priority) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new RequestRejectedException("Scheduler is closed");
+            }
+            if (inFlight < maxInFlight && queued == 0) {
+                inFlight++;
+                return;
+            }
+            if (queued >= maxQueued && !evictBelow(priority)) {
+                throw new RequestRejectedException("Scheduler queue is full (" + maxQueued + " waiting), rejected " + priority + " call");
+            }
+            Ticket ticket = new Ticket(priority, System.nanoTime(), lock.newCondition());
+            ArrayDeque<Ticket> queue = queues[priority.ordinal()];
+            queue.addLast(ticket);
+            queued++;
+            if (priority == Priority.INTERACTIVE && preemptionThreshold > 0 && queue.size() >= preemptionThreshold) {
+                rejectAll(Priority.BULK, "Preempted by " + queue.size() + " waiting interactive calls");
+            }
+            
+            RateLimitWaitEvent event = CallEvents.beginRateLimitWait();
+            try {
+                while (ticket.state == State.WAITING) {
+                    ticket.ready.await();
+                }
+            } catch (InterruptedException e) {
+                if (ticket.state == State.WAITING) {
+                    queues[priority.ordinal()].remove(ticket);
+                    queued--;
+                } else if (ticket.state == State.GRANTED) {
+                    inFlight--;
+                    grantNext();
+                }
+                Thread.currentThread().interrupt();
+                throw new LLMException("Interrupted while queued", e);
+            } finally {
+                CallEvents.endRateLimitWait(event, delegate.getProvider(), request.getModel(), "priority:" + priority);
+            }
+            if (ticket.state == State.REJECTED) {
+                throw new RequestRejectedException(ticket.reason);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            grantNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void grantNext() {
+        long now = System.nanoTime();
+        while (inFlight < maxInFlight && queued > 0) {
+            Ticket next = null;
+            long nextRank = Long.MAX_VALUE;
+            for (ArrayDeque<Ticket> queue : queues) {
+                Ticket head = queue.peekFirst();
+                if (head == null) {
+                    continue;
+                }
+                long rank = head.priority.ordinal();
+                if (agingNanos > 0) {
+                    rank = Math.max(0, rank - (now - head.enqueuedNanos) / agingNanos);
+                }
+                if (rank < nextRank || rank == nextRank && head.enqueuedNanos - next.enqueuedNanos < 0) {
+                    next = head;
+                    nextRank = rank;
+                }
+            }
+            queues[next.priority.ordinal()].pollFirst();
+            queued--;
+            inFlight++;
+            next.state = State.GRANTED;
+            next.ready.signal();
+        }
+    }
+    
+    // Makes room for a call of the given priority by rejecting the newest call of the lowest class below it
+    private boolean evictBelow(Priority priority) {
+        for (int i = queues.length - 1; i > priority.ordinal(); i--) {
+            Ticket victim = queues[i].pollLast();
+            if (victim != null) {
+                queued--;
+                reject(victim, "Displaced from the full scheduler queue by a " + priority + " call");
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private void rejectAll(Priority priority, String reason) {
+        ArrayDeque<Ticket> queue = queues[priority.ordinal()];
+        queued -= queue.size();
+        for (Ticket ticket : queue) {
+            reject(ticket, reason);
+        }
+        queue.clear();
+    }
+    
+    private static void reject(Ticket ticket, String reason) {
+        ticket.state = State.REJECTED;
+        ticket.reason = reason;
+        ticket.ready.signal();
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        return delegate.isHealthy();
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return delegate.getProvider();
+    }
+    
+    // Rejects the queued calls and closes the wrapped client
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Priority priority : PRIORITIES) {
+                rejectAll(priority, "Scheduler is closed");
+            }
+        } finally {
+            lock.unlock();
+        }
+        delegate.close();
+    }
+}
\ No newline at end of file
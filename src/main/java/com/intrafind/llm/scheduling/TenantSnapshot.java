@@ -0,0 +1,6 @@
+package com.intrafind.llm.scheduling;
+
+// State of one tenant of a FairScheduler; requests and tokens are cumulative, wait times in microseconds include calls that did not wait
+public record TenantSnapshot(String tenant, double weight, int queued, int inFlight, long requests, long tokens,
+                             long waitP50Micros, long waitP99Micros, long waitMaxMicros) {
+}
\ No newline at end of file
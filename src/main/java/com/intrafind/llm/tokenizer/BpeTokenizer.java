@@ -0,0 +1,292 @@
+package com.intrafind.llm.tokenizer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Byte-level BPE with a tiktoken rank file (one {@code base64-token rank} pair per line), e.g. cl100k_base or
+ * o200k_base; vocabularies named o200k_* split text with the o200k pattern, all others with cl100k's. Token bytes
+ * are kept in one array with an open-addressing table over byte slices, so a piece is looked up straight from the
+ * UTF-8 scratch buffer without creating keys. Counting skips the merge loop for single bytes and for pieces that are
+ * a token of their own, which covers most words.
+ */
+public final class BpeTokenizer extends Tokenizer {
+    private static final int NO_RANK = Integer.MAX_VALUE;
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+    
+    private final String name;
+    private final boolean o200k;
+    private final byte[] bytes;
+    private final int[] offsets;
+    private final int[] ranks;
+    private final int[] table;
+    private final int mask;
+    // Built on the first decode
+    private volatile int[] byRank;
+    
+    private static final class Scratch {
+        byte[] utf8 = new byte[256];
+        int[] starts = new int[257];
+        int[] pairRanks = new int[257];
+        
+        void ensure(int length) {
+            if (utf8.length < length) {
+                utf8 = new byte[Math.max(length, utf8.length * 2)];
+            }
+            if (starts.length < utf8.length + 1) {
+                starts = new int[utf8.length + 1];
+                pairRanks = new int[utf8.length + 1];
+            }
+        }
+    }
+    
+    private BpeTokenizer(String name, byte[] bytes, int[] offsets, int[] ranks) {
+        this.name = name;
+        this.o200k = name.startsWith("o200k");
+        this.bytes = bytes;
+        this.offsets = offsets;
+        this.ranks = ranks;
+        int size = Integer.highestOneBit(Math.max(2, ranks.length * 2 - 1)) << 1;
+        this.table = new int[size];
+        this.mask = size - 1;
+        Arrays.fill(table, -1);
+        for (int token = 0; token < ranks.length; token++) {
+            int slot = hash(bytes, offsets[token], offsets[token + 1]) & mask;
+            while (table[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = token;
+        }
+    }
+    
+    // Loads a tiktoken rank file from the classpath
+    public static BpeTokenizer fromResource(String name, String resource) {
+        InputStream in = BpeTokenizer.class.getResourceAsStream(resource);
+        if (in == null) {
+            throw new IllegalArgumentException("Tokenizer resource not found: " + resource);
+        }
+        try (in) {
+            return read(name, in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read tokenizer resource " + resource, e);
+        }
+    }
+    
+    public static BpeTokenizer read(String name, InputStream in) throws IOException {
+        Base64.Decoder decoder = Base64.getDecoder();
+        byte[] bytes = new byte[1 << 20];
+        int[] offsets = new int[1 << 16];
+        int[] ranks = new int[1 << 16];
+        int count = 0;
+        int length = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                continue;
+            }
+            byte[] token = decoder.decode(line.substring(0, space));
+            if (count + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                ranks = Arrays.copyOf(ranks, ranks.length * 2);
+            }
+            if (length + token.length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + token.length));
+            }
+            System.arraycopy(token, 0, bytes, length, token.length);
+            offsets[count] = length;
+            ranks[count] = Integer.parseInt(line.substring(space + 1).trim());
+            length += token.length;
+            count++;
+        }
+        offsets[count] = length;
+        return new BpeTokenizer(name, Arrays.copyOf(bytes, length), Arrays.copyOf(offsets, count + 1), Arrays.copyOf(ranks, count));
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public boolean isExact() {
+        return true;
+    }
+    
+    public int getVocabularySize() {
+        return ranks.length;
+    }
+    
+    public int[] encode(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return new int[0];
+        }
+        String string = text.toString();
+        char[] c = string.toCharArray();
+        Scratch scratch = SCRATCH.get();
+        int[] tokens = new int[16];
+        int count = 0;
+        for (int pos = 0; pos < c.length; ) {
+            int next = nextPiece(c, pos, c.length);
+            int length = utf8(c, pos, next, scratch);
+            int parts = merge(scratch, length);
+            if (count + parts > tokens.length) {
+                tokens = Arrays.copyOf(tokens, Math.max(tokens.length * 2, count + parts));
+            }
+            for (int i = 0; i < parts; i++) {
+                tokens[count++] = rank(scratch.utf8, scratch.starts[i], scratch.starts[i + 1]);
+            }
+            pos = next;
+        }
+        return Arrays.copyOf(tokens, count);
+    }
+    
+    public String decode(int[] tokens) {
+        int[] index = tokensByRank();
+        byte[] out = new byte[tokens.length * 4];
+        int length = 0;
+        for (int rank : tokens) {
+            int token = rank >= 0 && rank < index.length ? index[rank] : -1;
+            if (token < 0) {
+                throw new IllegalArgumentException("Unknown token " + rank);
+            }
+            int size = offsets[token + 1] - offsets[token];
+            if (length + size > out.length) {
+                out = Arrays.copyOf(out, Math.max(out.length * 2, length + size));
+            }
+            System.arraycopy(bytes, offsets[token], out, length, size);
+            length += size;
+        }
+        return new String(out, 0, length, StandardCharsets.UTF_8);
+    }
+    
+    private int[] tokensByRank() {
+        int[] index = byRank;
+        if (index == null) {
+            int maxRank = 0;
+            for (int rank : ranks) {
+                maxRank = Math.max(maxRank, rank);
+            }
+            index = new int[maxRank + 1];
+            Arrays.fill(index, -1);
+            for (int token = 0; token < ranks.length; token++) {
+                index[ranks[token]] = token;
+            }
+            byRank = index;
+        }
+        return index;
+    }
+    
+    @Override
+    protected int nextPiece(char[] c, int pos, int end) {
+        return o200k ? PreTokenizer.nextO200k(c, pos, end) : PreTokenizer.next(c, pos, end);
+    }
+    
+    @Override
+    protected int countPiece(char[] c, int start, int end) {
+        // ASCII single characters are always one byte and one token
+        if (end - start == 1 && c[start] < 128) {
+            return 1;
+        }
+        Scratch scratch = SCRATCH.get();
+        int length = utf8(c, start, end, scratch);
+        if (length == 1 || rank(scratch.utf8, 0, length) != NO_RANK) {
+            return 1;
+        }
+        return merge(scratch, length);
+    }
+    
+    // Applies merges lowest rank first; leaves the part boundaries in scratch.starts and returns the part count
+    private int merge(Scratch scratch, int length) {
+        byte[] utf8 = scratch.utf8;
+        int[] starts = scratch.starts;
+        int[] pairRanks = scratch.pairRanks;
+        for (int i = 0; i <= length; i++) {
+            starts[i] = i;
+        }
+        int boundaries = length + 1;
+        for (int i = 0; i + 2 < boundaries; i++) {
+            pairRanks[i] = rank(utf8, starts[i], starts[i + 2]);
+        }
+        while (boundaries > 2) {
+            int best = -1;
+            int bestRank = NO_RANK;
+            for (int i = 0; i + 2 < boundaries; i++) {
+                if (pairRanks[i] < bestRank) {
+                    bestRank = pairRanks[i];
+                    best = i;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            // Drop the boundary between the two parts
+            System.arraycopy(starts, best + 2, starts, best + 1, boundaries - best - 2);
+            System.arraycopy(pairRanks, best + 2, pairRanks, best + 1, Math.max(0, boundaries - best - 4));
+            boundaries--;
+            pairRanks[best] = best + 2 < boundaries ? rank(utf8, starts[best], starts[best + 2]) : NO_RANK;
+            if (best > 0) {
+                pairRanks[best - 1] = rank(utf8, starts[best - 1], starts[best + 1]);
+            }
+        }
+        return boundaries - 1;
+    }
+    
+    private int rank(byte[] key, int start, int end) {
+        int slot = hash(key, start, end) & mask;
+        int length = end - start;
+        for (int token = table[slot]; token >= 0; token = table[slot = (slot + 1) & mask]) {
+            int offset = offsets[token];
+            if (offsets[token + 1] - offset == length
+                && Arrays.equals(bytes, offset, offset + length, key, start, end)) {
+                return ranks[token];
+            }
+        }
+        return NO_RANK;
+    }
+    
+    private static int hash(byte[] key, int start, int end) {
+        int h = 0x811c9dc5;
+        for (int i = start; i < end; i++) {
+            h = (h ^ (key[i] & 0xff)) * 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+    
+    private static int utf8(char[] c, int start, int end, Scratch scratch) {
+        scratch.ensure((end - start) * 3);
+        byte[] out = scratch.utf8;
+        int n = 0;
+        for (int i = start; i < end; i++) {
+            char ch = c[i];
+            if (ch < 0x80) {
+                out[n++] = (byte) ch;
+            } else if (ch < 0x800) {
+                out[n++] = (byte) (0xc0 | (ch >> 6));
+                out[n++] = (byte) (0x80 | (ch & 0x3f));
+            } else if (Character.isHighSurrogate(ch) && i + 1 < end && Character.isLowSurrogate(c[i + 1])) {
+                int cp = Character.toCodePoint(ch, c[++i]);
+                out[n++] = (byte) (0xf0 | (cp >> 18));
+                out[n++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                out[n++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                out[n++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                // Lone surrogates are encoded like String.getBytes does, as '?'
+                if (Character.isSurrogate(ch)) {
+                    out[n++] = '?';
+                    continue;
+                }
+                out[n++] = (byte) (0xe0 | (ch >> 12));
+                out[n++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+                out[n++] = (byte) (0x80 | (ch & 0x3f));
+            }
+        }
+        return n;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.intrafind.llm.tokenizer;
+
+/**
+ * Approximate counts for providers whose vocabularies are not public. Each pre-tokenizer piece counts as one token
+ * per {@code charsPerToken} characters, rounded and at least one; non-ASCII characters count three times since they
+ * tend to split into several byte-level tokens.
+ */
+public final class EstimatingTokenizer extends Tokenizer {
+    private final String name;
+    private final double charsPerToken;
+    
+    public EstimatingTokenizer(String name, double charsPerToken) {
+        if (charsPerToken <= 0) {
+            throw new IllegalArgumentException("charsPerToken must be positive");
+        }
+        this.name = name;
+        this.charsPerToken = charsPerToken;
+    }
+    
+    @Override
+    public String getName() {
+        return name;
+    }
+    
+    @Override
+    public boolean isExact() {
+        return false;
+    }
+    
+    public double getCharsPerToken() {
+        return charsPerToken;
+    }
+    
+    @Override
+    protected int countPiece(char[] c, int start, int end) {
+        int weight = 0;
+        for (int i = start; i < end; i++) {
+            weight += c[i] < 128 ? 1 : 3;
+        }
+        return Math.max(1, (int) Math.round(weight / charsPerToken));
+    }
+}
\ No newline at end of file
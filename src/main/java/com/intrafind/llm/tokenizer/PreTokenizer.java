@@ -0,0 +1,195 @@
+package com.intrafind.llm.tokenizer;
+
+/**
+ * Splits text into the pieces BPE merges never cross, following the cl100k split pattern: contractions, words with
+ * one leading non-letter, runs of up to three digits, punctuation runs with an optional leading space, and whitespace
+ * where a single space before a word stays with that word. The o200k pattern differs in words, which also split
+ * before an upper case letter that follows lower case ones, take marks and a trailing contraction, and in punctuation
+ * runs, which also take trailing slashes. Works on char ranges without a regex so no matcher or substrings are
+ * allocated.
+ */
+final class PreTokenizer {
+    
+    private PreTokenizer() {
+    }
+    
+    // End (exclusive) of the piece that starts at pos
+    static int next(char[] c, int pos, int end) {
+        char first = c[pos];
+        
+        if (first == '\'' && pos + 1 < end) {
+            int contraction = contraction(c, pos + 1, end);
+            if (contraction > 0) {
+                return pos + 1 + contraction;
+            }
+        }
+        
+        if (isLetter(first)) {
+            return letters(c, pos + 1, end);
+        }
+        if (first != '\r' && first != '\n' && !isDigit(first) && pos + 1 < end && isLetter(c[pos + 1])) {
+            return letters(c, pos + 2, end);
+        }
+        
+        return numberPunctuationOrSpace(c, pos, end, false);
+    }
+    
+    // End (exclusive) of the piece that starts at pos under the o200k pattern
+    static int nextO200k(char[] c, int pos, int end) {
+        int prefix = prefixLength(c, pos, end);
+        if (prefix > 0) {
+            int word = o200kWord(c, pos + prefix, end);
+            if (word > 0) {
+                return word;
+            }
+        }
+        int word = o200kWord(c, pos, end);
+        if (word > 0) {
+            return word;
+        }
+        return numberPunctuationOrSpace(c, pos, end, true);
+    }
+    
+    // Digits, punctuation and whitespace, which both patterns split alike except for slashes after punctuation
+    private static int numberPunctuationOrSpace(char[] c, int pos, int end, boolean slashes) {
+        char first = c[pos];
+        if (isDigit(first)) {
+            int i = pos + 1;
+            while (i < end && i < pos + 3 && isDigit(c[i])) {
+                i++;
+            }
+            return i;
+        }
+        
+        int i = first == ' ' ? pos + 1 : pos;
+        if (i < end && isPunctuation(c[i])) {
+            i++;
+            while (i < end && isPunctuation(c[i])) {
+                i++;
+            }
+            while (i < end && (c[i] == '\r' || c[i] == '\n' || (slashes && c[i] == '/'))) {
+                i++;
+            }
+            return i;
+        }
+        
+        // Whitespace: up to the last line break, else all but the space that leads the next word
+        int run = pos;
+        int lastBreak = -1;
+        while (run < end && Character.isWhitespace(c[run])) {
+            if (c[run] == '\r' || c[run] == '\n') {
+                lastBreak = run;
+            }
+            run++;
+        }
+        if (lastBreak >= 0) {
+            return lastBreak + 1;
+        }
+        if (run < end && run - pos > 1) {
+            return run - 1;
+        }
+        return Math.max(run, pos + 1);
+    }
+    
+    // Length of the one non-letter, non-digit character other than a line break that may lead a word, 0 if there is none
+    private static int prefixLength(char[] c, int pos, int end) {
+        char first = c[pos];
+        if (first == '\r' || first == '\n' || isLetter(first) || isDigit(first)) {
+            return 0;
+        }
+        return Character.isHighSurrogate(first) && pos + 1 < end && Character.isLowSurrogate(c[pos + 1]) ? 2 : 1;
+    }
+    
+    // End of an o200k word starting at i, or 0 if none does: upper case letters followed by lower case ones, where other
+    // letters and marks count as either, then an optional contraction. Upper case letters alone are a word when no lower
+    // case letter follows
+    private static int o200kWord(char[] c, int i, int end) {
+        int upper = i;
+        int lastEither = -1;
+        while (upper < end && isUpperOrEither(c[upper])) {
+            if (isLowerOrEither(c[upper])) {
+                lastEither = upper;
+            }
+            upper++;
+        }
+        int lower = upper;
+        while (lower < end && isLowerOrEither(c[lower])) {
+            lower++;
+        }
+        int word;
+        if (lower > upper) {
+            word = lower;
+        } else if (lastEither >= 0) {
+            // The upper case run gives back its last letter that may also be lower case
+            word = lastEither + 1;
+        } else if (upper > i) {
+            word = upper;
+        } else {
+            return 0;
+        }
+        if (word + 1 < end && c[word] == '\'') {
+            int contraction = contraction(c, word + 1, end);
+            if (contraction > 0) {
+                word += 1 + contraction;
+            }
+        }
+        return word;
+    }
+    
+    private static boolean isUpperOrEither(char ch) {
+        if (ch < 128) {
+            return ch >= 'A' && ch <= 'Z';
+        }
+        int type = Character.getType(ch);
+        return type == Character.UPPERCASE_LETTER || type == Character.TITLECASE_LETTER || isEither(type);
+    }
+    
+    private static boolean isLowerOrEither(char ch) {
+        if (ch < 128) {
+            return ch >= 'a' && ch <= 'z';
+        }
+        int type = Character.getType(ch);
+        return type == Character.LOWERCASE_LETTER || isEither(type);
+    }
+    
+    // Modifier and other letters (e.g. CJK) and marks, which o200k counts as upper and lower case alike
+    private static boolean isEither(int type) {
+        return type == Character.MODIFIER_LETTER || type == Character.OTHER_LETTER || type == Character.NON_SPACING_MARK
+            || type == Character.ENCLOSING_MARK || type == Character.COMBINING_SPACING_MARK;
+    }
+    
+    private static int contraction(char[] c, int i, int end) {
+        char a = Character.toLowerCase(c[i]);
+        if (a == 's' || a == 't' || a == 'm' || a == 'd') {
+            return 1;
+        }
+        if (i + 1 < end) {
+            char b = Character.toLowerCase(c[i + 1]);
+            if ((a == 'r' && b == 'e') || (a == 'v' && b == 'e') || (a == 'l' && b == 'l')) {
+                return 2;
+            }
+        }
+        return 0;
+    }
+    
+    private static int letters(char[] c, int i, int end) {
+        while (i < end && isLetter(c[i])) {
+            i++;
+        }
+        return i;
+    }
+    
+    // Surrogate pairs are treated as punctuation, which is what emoji are; supplementary letters are rare
+    private static boolean isLetter(char ch) {
+        return ch < 128 ? (ch | 0x20) >= 'a' && (ch | 0x20) <= 'z' : Character.isLetter(ch);
+    }
+    
+    private static boolean isDigit(char ch) {
+        return ch < 128 ? ch >= '0' && ch <= '9' : Character.getType(ch) == Character.DECIMAL_DIGIT_NUMBER
+            || Character.getType(ch) == Character.LETTER_NUMBER || Character.getType(ch) == Character.OTHER_NUMBER;
+    }
+    
+    private static boolean isPunctuation(char ch) {
+        return !Character.isWhitespace(ch) && !isLetter(ch) && !isDigit(ch);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.intrafind.llm.tokenizer;
+
+/**
+ * Counts tokens in-process so budgets, {@code max_tokens} and context trimming don't need a round trip. Text is split
+ * into pre-tokenizer pieces and each piece is counted on its own; counting works on a per-thread char buffer and
+ * allocates nothing per call once the buffers have grown to the largest input seen.
+ */
+public abstract class Tokenizer {
+    private static final ThreadLocal<char[][]> CHARS = ThreadLocal.withInitial(() -> new char[][] {new char[1024]});
+    
+    public abstract String getName();
+    
+    // Exact for BPE vocabularies, an estimate otherwise
+    public abstract boolean isExact();
+    
+    // Number of tokens the piece c[start, end) encodes to
+    protected abstract int countPiece(char[] c, int start, int end);
+    
+    // End (exclusive) of the pre-tokenizer piece that starts at pos
+    protected int nextPiece(char[] c, int pos, int end) {
+        return PreTokenizer.next(c, pos, end);
+    }
+    
+    public int countTokens(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        char[] c = chars(text);
+        return countTokens(c, 0, text.length());
+    }
+    
+    public int countTokens(char[] c, int offset, int length) {
+        int end = offset + length;
+        int tokens = 0;
+        for (int pos = offset; pos < end; ) {
+            int next = nextPiece(c, pos, end);
+            tokens += countPiece(c, pos, next);
+            pos = next;
+        }
+        return tokens;
+    }
+    
+    // Length of the longest prefix of text that encodes to at most maxTokens tokens, cut at a piece boundary
+    public int fit(CharSequence text, int maxTokens) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        char[] c = chars(text);
+        int end = text.length();
+        int tokens = 0;
+        for (int pos = 0; pos < end; ) {
+            int next = nextPiece(c, pos, end);
+            tokens += countPiece(c, pos, next);
+            if (tokens > maxTokens) {
+                return pos;
+            }
+            pos = next;
+        }
+        return end;
+    }
+    
+    // Text cut to at most maxTokens tokens
+    public String truncate(String text, int maxTokens) {
+        int length = fit(text, maxTokens);
+        return text == null || length == text.length() ? text : text.substring(0, length);
+    }
+    
+    private static char[] chars(CharSequence text) {
+        char[][] holder = CHARS.get();
+        if (holder[0].length < text.length()) {
+            holder[0] = new char[Math.max(text.length(), holder[0].length * 2)];
+        }
+        char[] c = holder[0];
+        if (text instanceof String string) {
+            string.getChars(0, string.length(), c, 0);
+        } else {
+            for (int i = 0; i < text.length(); i++) {
+                c[i] = text.charAt(i);
+            }
+        }
+        return c;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,136 @@
+package com.intrafind.llm.tokenizer;
+
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.utils.JsonParser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Picks the tokenizer for a provider and model and counts whole requests. OpenAI models use the BPE vocabulary of
+ * their family when its rank file is on the classpath under {@code /tokenizers/<name>.tiktoken} or was loaded with
+ * {@link #loadVocabulary}; everything else, and OpenAI without the rank file, is estimated. The rank files are not
+ * bundled; OpenAI publishes them as {@code https://openaipublic.blob.core.windows.net/encodings/<name>.tiktoken}, the
+ * same files tiktoken downloads.
+ */
+public final class Tokenizers {
+    public static final String CL100K_BASE = "cl100k_base";
+    public static final String O200K_BASE = "o200k_base";
+    // Role and separators the chat format wraps around every message
+    static final int MESSAGE_OVERHEAD = 4;
+    // A 1024x1024 image at high detail on OpenAI; other providers are in the same range
+    static final int IMAGE_TOKENS = 765;
+    
+    private static final Tokenizer OPENAI_ESTIMATE = new EstimatingTokenizer("openai-estimate", 4.0);
+    private static final Tokenizer ANTHROPIC_ESTIMATE = new EstimatingTokenizer("anthropic-estimate", 3.5);
+    private static final Tokenizer GEMINI_ESTIMATE = new EstimatingTokenizer("gemini-estimate", 4.0);
+    private static final Tokenizer MISTRAL_ESTIMATE = new EstimatingTokenizer("mistral-estimate", 3.5);
+    private static final ConcurrentHashMap<String, Optional<BpeTokenizer>> VOCABULARIES = new ConcurrentHashMap<>();
+    
+    private Tokenizers() {
+    }
+    
+    public static Tokenizer forModel(LLMProvider provider, String model) {
+        switch (provider) {
+            case OPENAI:
+                BpeTokenizer vocabulary = vocabulary(isO200k(model) ? O200K_BASE : CL100K_BASE);
+                return vocabulary != null ? vocabulary : OPENAI_ESTIMATE;
+            case ANTHROPIC:
+                return ANTHROPIC_ESTIMATE;
+            case GEMINI:
+                return GEMINI_ESTIMATE;
+            case MISTRAL:
+                return MISTRAL_ESTIMATE;
+            default:
+                throw new IllegalArgumentException("Unsupported provider: " + provider);
+        }
+    }
+    
+    // The bundled BPE vocabulary with this name, loaded once, or null if its rank file is not on the classpath
+    public static BpeTokenizer vocabulary(String name) {
+        return VOCABULARIES.computeIfAbsent(name, key -> {
+            String resource = "/tokenizers/" + key + ".tiktoken";
+            if (Tokenizers.class.getResource(resource) == null) {
+                return Optional.empty();
+            }
+            return Optional.of(BpeTokenizer.fromResource(key, resource));
+        }).orElse(null);
+    }
+    
+    // Reads a rank file from disk, e.g. one downloaded to a cache directory, and uses it for the vocabulary with this name
+    public static BpeTokenizer loadVocabulary(String name, Path rankFile) throws IOException {
+        BpeTokenizer vocabulary;
+        try (InputStream in = Files.newInputStream(rankFile)) {
+            vocabulary = BpeTokenizer.read(name, in);
+        }
+        VOCABULARIES.put(name, Optional.of(vocabulary));
+        return vocabulary;
+    }
+    
+    // Input tokens of the request: tools, system prompt, history, context and prompt plus the per-message framing
+    public static int countTokens(LLMProvider provider, LLMRequest request) {
+        request = request.attachToConversation();
+        Tokenizer tokenizer = forModel(provider, request.getModel());
+        int tokens = 0;
+        if (request.getTools() != null) {
+            for (Tool tool : request.getTools()) {
+                tokens += tokenizer.countTokens(tool.getName()) + tokenizer.countTokens(tool.getDescription())
+                    + tokenizer.countTokens(JsonParser.toJson(tool.getParameters() != null ? tool.getParameters() : Map.of()));
+            }
+        }
+        List<ContentPart> system = request.getSystemParts();
+        if (!system.isEmpty()) {
+            tokens += MESSAGE_OVERHEAD + countParts(tokenizer, system);
+        }
+        for (Message message : request.getHistory()) {
+            tokens += countTokens(tokenizer, message);
+        }
+        if (request.getPrompt() != null) {
+            tokens += MESSAGE_OVERHEAD + tokenizer.countTokens(request.getPrompt());
+            if (request.getContext() != null) {
+                tokens += countParts(tokenizer, request.getContext());
+            }
+            if (request.getImage() != null) {
+                tokens += IMAGE_TOKENS;
+            }
+        }
+        return tokens;
+    }
+    
+    // Tokens of one conversation turn including its tool calls and framing
+    public static int countTokens(Tokenizer tokenizer, Message message) {
+        int tokens = MESSAGE_OVERHEAD + countParts(tokenizer, message.parts());
+        for (ToolCall call : message.toolCalls()) {
+            tokens += tokenizer.countTokens(call.getName())
+                + tokenizer.countTokens(JsonParser.toJson(call.getArguments() != null ? call.getArguments() : Map.of()));
+        }
+        return tokens;
+    }
+    
+    private static int countParts(Tokenizer tokenizer, List<ContentPart> parts) {
+        int tokens = 0;
+        for (ContentPart part : parts) {
+            tokens += part instanceof ContentPart.Text text ? tokenizer.countTokens(text.text()) : IMAGE_TOKENS;
+        }
+        return tokens;
+    }
+    
+    private static boolean isO200k(String model) {
+        if (model == null) {
+            return false;
+        }
+        return model.startsWith("gpt-4o") || model.startsWith("gpt-4.1") || model.startsWith("gpt-4.5")
+            || model.startsWith("gpt-5") || model.startsWith("o1") || model.startsWith("o3") || model.startsWith("o4");
+    }
+}
\ No newline at end of file
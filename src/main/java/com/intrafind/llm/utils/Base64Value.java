@@ -0,0 +1,184 @@
+package com.intrafind.llm.utils;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * JSON string holding binary data in base64, optionally after a prefix such as {@code data:image/png;base64,}. The
+ * encoding is produced chunk by chunk while the request is serialized, from the original byte array or file, so
+ * neither an encoded String nor (see {@link HttpClient}) a serialized body with the encoded data is held in memory.
+ */
+public final class Base64Value implements JsonSerializable {
+    private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final int CHUNK_BYTES = 3 * 1024;
+    
+    private final String prefix;
+    private final byte[] data;
+    private final Path file;
+    private final long size;
+    
+    private Base64Value(String prefix, byte[] data, Path file, long size) {
+        this.prefix = prefix;
+        this.data = data;
+        this.file = file;
+        this.size = size;
+    }
+    
+    public static Base64Value of(byte[] data) {
+        return new Base64Value("", data, null, data.length);
+    }
+    
+    public static Base64Value of(Path file) {
+        return new Base64Value("", null, file, sizeOf(file));
+    }
+    
+    public static Base64Value dataUrl(String mediaType, byte[] data) {
+        return new Base64Value(dataUrlPrefix(mediaType), data, null, data.length);
+    }
+    
+    public static Base64Value dataUrl(String mediaType, Path file) {
+        return new Base64Value(dataUrlPrefix(mediaType), null, file, sizeOf(file));
+    }
+    
+    // Characters of the JSON string without quotes
+    public long length() {
+        return prefix.length() + (size + 2) / 3 * 4;
+    }
+    
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        if (length() > Integer.MAX_VALUE) {
+            throw new IOException("Too large to encode inline: " + size + " bytes");
+        }
+        try (Reader reader = new EncodingReader(prefix, data != null ? new ByteArrayInputStream(data) : Files.newInputStream(file))) {
+            gen.writeString(reader, (int) length());
+        }
+    }
+    
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+    
+    @Override
+    public String toString() {
+        return prefix + "<" + size + " bytes>";
+    }
+    
+    // Whether a request body built from maps, collections and arrays holds a Base64Value anywhere
+    public static boolean isContainedIn(Object value) {
+        if (value instanceof Base64Value) {
+            return true;
+        } else if (value instanceof Map<?, ?> map) {
+            for (Object element : map.values()) {
+                if (isContainedIn(element)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof Collection<?> collection) {
+            for (Object element : collection) {
+                if (isContainedIn(element)) {
+                    return true;
+                }
+            }
+        } else if (value instanceof Object[] array) {
+            for (Object element : array) {
+                if (isContainedIn(element)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static String dataUrlPrefix(String mediaType) {
+        return "data:" + mediaType + ";base64,";
+    }
+    
+    private static long sizeOf(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    // The prefix, then the source encoded one chunk at a time
+    private static final class EncodingReader extends Reader {
+        private final String prefix;
+        private final InputStream in;
+        private final byte[] chunk = new byte[CHUNK_BYTES];
+        private final char[] encoded = new char[CHUNK_BYTES / 3 * 4];
+        private int prefixPos;
+        private int pos;
+        private int end;
+        
+        EncodingReader(String prefix, InputStream in) {
+            this.prefix = prefix;
+            this.in = in;
+        }
+        
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (prefixPos < prefix.length()) {
+                int count = Math.min(len, prefix.length() - prefixPos);
+                prefix.getChars(prefixPos, prefixPos + count, cbuf, off);
+                prefixPos += count;
+                return count;
+            }
+            if (pos == end) {
+                // Only the last chunk can be shorter than CHUNK_BYTES, so padding only ever ends the value
+                int read = in.readNBytes(chunk, 0, chunk.length);
+                if (read == 0) {
+                    return -1;
+                }
+                end = encode(chunk, read, encoded);
+                pos = 0;
+            }
+            int count = Math.min(len, end - pos);
+            System.arraycopy(encoded, pos, cbuf, off, count);
+            pos += count;
+            return count;
+        }
+        
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+        
+        private static int encode(byte[] src, int length, char[] dst) {
+            int d = 0;
+            int s = 0;
+            for (; s + 2 < length; s += 3) {
+                int bits = (src[s] & 0xff) << 16 | (src[s + 1] & 0xff) << 8 | (src[s + 2] & 0xff);
+                dst[d++] = ALPHABET[bits >>> 18];
+                dst[d++] = ALPHABET[bits >>> 12 & 0x3f];
+                dst[d++] = ALPHABET[bits >>> 6 & 0x3f];
+                dst[d++] = ALPHABET[bits & 0x3f];
+            }
+            if (s < length) {
+                int bits = (src[s] & 0xff) << 16 | (s + 1 < length ? (src[s + 1] & 0xff) << 8 : 0);
+                dst[d++] = ALPHABET[bits >>> 18];
+                dst[d++] = ALPHABET[bits >>> 12 & 0x3f];
+                dst[d++] = s + 1 < length ? ALPHABET[bits >>> 6 & 0x3f] : '=';
+                dst[d++] = '=';
+            }
+            return d;
+        }
+    }
+}
\ No newline at end of file
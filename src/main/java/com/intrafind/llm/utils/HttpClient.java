@@ -1,32 +1,93 @@
 package com.intrafind.llm.utils;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.intrafind.llm.core.RateLimits;
 import com.intrafind.llm.exceptions.AuthenticationException;
 import com.intrafind.llm.exceptions.LLMException;
 import com.intrafind.llm.exceptions.RateLimitException;
+import org.apache.hc.client5.http.classic.methods.HttpDelete;
+import org.apache.hc.client5.http.classic.methods.HttpPatch;
 import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.classic.methods.HttpUriRequestBase;
+import org.apache.hc.client5.http.entity.mime.MultipartEntityBuilder;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.core5.http.io.entity.StringEntity;
-import org.apache.hc.core5.http.io.support.ClassicRequestBuilder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.client5.http.protocol.HttpClientContext;
 import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.Header;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.HttpResponse;
+import org.apache.hc.core5.http.io.entity.AbstractHttpEntity;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
 
 public class HttpClient {
     private final CloseableHttpClient httpClient;
     private final ObjectMapper objectMapper;
+    // Writes into the connection's stream without closing it
+    private final ObjectWriter streamingWriter;
     
     public HttpClient() {
-        this.httpClient = HttpClients.createDefault();
+        this(5);
+    }
+    
+    public HttpClient(int maxConnections) {
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(new TimingConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnPerRoute(maxConnections)
+                .setMaxConnTotal(Math.max(maxConnections, 25))
+                .build()))
+            .build();
         this.objectMapper = new ObjectMapper();
+        this.streamingWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
     }
     
     public String post(String url, Map<String, String> headers, Object body) {
+        return post(url, headers, body, new RequestTimer());
+    }
+    
+    public String post(String url, Map<String, String> headers, Object body, RequestTimer timer) {
+        return execute(new HttpPost(url), headers, body, timer, null);
+    }
+    
+    // Also puts the rate limit and Retry-After headers of the response into rateLimitHeaders, with lower-case names
+    public String post(String url, Map<String, String> headers, Object body, RequestTimer timer, Map<String, String> rateLimitHeaders) {
+        return execute(new HttpPost(url), headers, body, timer, rateLimitHeaders);
+    }
+    
+    // Multipart upload of one file with text fields; subtype "form-data" or "related"
+    public String postMultipart(String url, Map<String, String> headers, String subtype, Map<String, String> fields,
+                                String fileName, String mediaType, byte[] data) {
+        MultipartEntityBuilder builder = MultipartEntityBuilder.create().setMimeSubtype(subtype);
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            ContentType type = field.getValue().startsWith("{") ? ContentType.APPLICATION_JSON : ContentType.TEXT_PLAIN;
+            builder.addTextBody(field.getKey(), field.getValue(), type);
+        }
+        builder.addBinaryBody("file", data, ContentType.create(mediaType), fileName);
+        return execute(new HttpPost(url), headers, builder.build(), new RequestTimer(), null);
+    }
+    
+    public String patch(String url, Map<String, String> headers, Object body) {
+        return execute(new HttpPatch(url), headers, body, new RequestTimer(), null);
+    }
+    
+    public String delete(String url, Map<String, String> headers) {
+        return execute(new HttpDelete(url), headers, null, new RequestTimer(), null);
+    }
+    
+    private String execute(HttpUriRequestBase request, Map<String, String> headers, Object body, RequestTimer timer,
+                           Map<String, String> rateLimitHeaders) {
         try {
-            HttpPost request = new HttpPost(url);
-            
             // Add headers
             if (headers != null) {
                 for (Map.Entry<String, String> header : headers.entrySet()) {
@@ -35,21 +96,44 @@ public class HttpClient {
             }
             
             // Add body
-            if (body != null) {
-                String jsonBody = objectMapper.writeValueAsString(body);
-                request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+            if (body instanceof HttpEntity entity) {
+                request.setEntity(entity);
+            } else if (Base64Value.isContainedIn(body)) {
+                // Inline binary data is encoded while the body goes out instead of being buffered with it; the first
+                // pass only counts bytes, so the request keeps its Content-Length and the timer its phases
+                timer.serializationStarted();
+                CountingOutputStream counter = new CountingOutputStream();
+                streamingWriter.writeValue(counter, body);
+                timer.serializationFinished(counter.count);
+                request.setEntity(new StreamingEntity(body, counter.count, timer));
+            } else if (body != null) {
+                timer.serializationStarted();
+                byte[] jsonBody = objectMapper.writeValueAsBytes(body);
+                timer.serializationFinished(jsonBody.length);
+                request.setEntity(new TimedEntity(jsonBody, timer));
             }
             
-            return httpClient.execute(request, response -> {
+            HttpClientContext context = HttpClientContext.create();
+            context.setAttribute(RequestTimer.CONTEXT_ATTRIBUTE, timer);
+            
+            timer.executeStarted();
+            return httpClient.execute(request, context, response -> {
                 int statusCode = response.getCode();
-                String responseBody = new String(response.getEntity().getContent().readAllBytes());
+                timer.firstByteReceived(statusCode);
+                byte[] responseBytes = response.getEntity() != null ? response.getEntity().getContent().readAllBytes() : new byte[0];
+                timer.downloadFinished(responseBytes.length);
+                String responseBody = new String(responseBytes, StandardCharsets.UTF_8);
+                Map<String, String> limits = rateLimitHeaders != null ? rateLimitHeaders : statusCode == 429 ? new HashMap<>() : null;
+                if (limits != null) {
+                    collectRateLimitHeaders(response, limits);
+                }
                 
                 if (statusCode == 401) {
                     throw new AuthenticationException("Authentication failed: " + responseBody);
                 } else if (statusCode == 429) {
-                    throw new RateLimitException("Rate limit exceeded: " + responseBody);
+                    throw new RateLimitException("Rate limit exceeded: " + responseBody, RateLimits.retryAfterMillis(limits));
                 } else if (statusCode >= 400) {
-                    throw new LLMException("HTTP error " + statusCode + ": " + responseBody);
+                    throw new LLMException("HTTP error " + statusCode + ": " + responseBody, statusCode, responseBody);
                 }
                 
                 return responseBody;
@@ -60,6 +144,15 @@ public class HttpClient {
         }
     }
     
+    private static void collectRateLimitHeaders(HttpResponse response, Map<String, String> limits) {
+        for (Header header : response.getHeaders()) {
+            String name = header.getName().toLowerCase(Locale.ROOT);
+            if (name.contains("ratelimit") || name.startsWith("retry-after")) {
+                limits.put(name, header.getValue());
+            }
+        }
+    }
+    
     public void close() {
         try {
             httpClient.close();
@@ -67,4 +160,108 @@ public class HttpClient {
             // Log or handle close exception
         }
     }
+    
+    // JSON request entity that reports how long writing it to the connection took
+    private static class TimedEntity extends AbstractHttpEntity {
+        private final byte[] content;
+        private final RequestTimer timer;
+        
+        TimedEntity(byte[] content, RequestTimer timer) {
+            super(ContentType.APPLICATION_JSON, null);
+            this.content = content;
+            this.timer = timer;
+        }
+        
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+        
+        @Override
+        public long getContentLength() {
+            return content.length;
+        }
+        
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(content);
+        }
+        
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            timer.writeStarted();
+            outStream.write(content);
+            outStream.flush();
+            timer.writeFinished();
+        }
+        
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    // JSON request entity serialized straight into the connection, once per attempt
+    private class StreamingEntity extends AbstractHttpEntity {
+        private final Object body;
+        private final long length;
+        private final RequestTimer timer;
+        
+        StreamingEntity(Object body, long length, RequestTimer timer) {
+            super(ContentType.APPLICATION_JSON, null);
+            this.body = body;
+            this.length = length;
+            this.timer = timer;
+        }
+        
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+        
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+        
+        @Override
+        public InputStream getContent() throws IOException {
+            return new ByteArrayInputStream(objectMapper.writeValueAsBytes(body));
+        }
+        
+        @Override
+        public void writeTo(OutputStream outStream) throws IOException {
+            timer.writeStarted();
+            streamingWriter.writeValue(outStream, body);
+            outStream.flush();
+            timer.writeFinished();
+        }
+        
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    private static class CountingOutputStream extends OutputStream {
+        long count;
+        
+        @Override
+        public void write(int b) {
+            count++;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
 }
\ No newline at end of file
@@ -4,6 +4,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.intrafind.llm.exceptions.LLMException;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 public class JsonParser {
     private static final ObjectMapper objectMapper = new ObjectMapper();
@@ -23,4 +30,58 @@ public class JsonParser {
             throw new LLMException("Failed to serialize to JSON", e);
         }
     }
+    
+    // Reads a numeric value from nested maps, e.g. longAt(usage, "prompt_tokens_details", "cached_tokens"); 0 if absent
+    public static long longAt(Map<String, Object> map, String... path) {
+        Object current = map;
+        for (String key : path) {
+            if (!(current instanceof Map)) {
+                return 0;
+            }
+            current = ((Map<?, ?>) current).get(key);
+        }
+        return current instanceof Number ? ((Number) current).longValue() : 0;
+    }
+    
+    // The "error" object of an error response such as {"error": {"message": ..., "code": ...}}, empty if there is none
+    @SuppressWarnings("unchecked")
+    public static Map<String, Object> errorOf(String responseBody) {
+        if (responseBody == null || responseBody.isBlank()) {
+            return Map.of();
+        }
+        try {
+            Map<String, Object> body = objectMapper.readValue(responseBody, Map.class);
+            return body != null && body.get("error") instanceof Map ? (Map<String, Object>) body.get("error") : Map.of();
+        } catch (IOException e) {
+            return Map.of();
+        }
+    }
+    
+    // Copies maps without a defined iteration order (HashMap, Map.of) into key-sorted ones, recursively, so that the
+    // same request serializes to the same bytes in every JVM; LinkedHashMap and SortedMap keep their order. Provider
+    // clients build their request bodies as LinkedHashMaps with the parts that repeat across calls (model, tools,
+    // system prompt, history) first, so that shared prefixes serialize to identical bytes and prompt caches match
+    public static Object canonicalize(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> ordered = new LinkedHashMap<>();
+            Map<?, ?> source = map instanceof LinkedHashMap || map instanceof SortedMap ? map : new TreeMap<>(map);
+            for (Map.Entry<?, ?> entry : source.entrySet()) {
+                ordered.put(String.valueOf(entry.getKey()), canonicalize(entry.getValue()));
+            }
+            return ordered;
+        } else if (value instanceof Collection<?> collection) {
+            List<Object> list = new ArrayList<>(collection.size());
+            for (Object element : collection) {
+                list.add(canonicalize(element));
+            }
+            return list;
+        } else if (value instanceof Object[] array) {
+            List<Object> list = new ArrayList<>(array.length);
+            for (Object element : array) {
+                list.add(canonicalize(element));
+            }
+            return list;
+        }
+        return value;
+    }
 }
\ No newline at end of file
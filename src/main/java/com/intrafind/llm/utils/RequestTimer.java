@@ -0,0 +1,148 @@
+package com.intrafind.llm.utils;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMTiming;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.events.CallEvents;
+
+/**
+ * Collects phase timestamps for one LLM call. Created by the provider client when generate() starts,
+ * filled in by {@link HttpClient} during the exchange and turned into an {@link LLMTiming} at the end.
+ * Phases are also reported as JFR events while a recording is active.
+ * Not thread-safe; a timer belongs to the thread executing the call.
+ */
+public class RequestTimer {
+    static final String CONTEXT_ATTRIBUTE = RequestTimer.class.getName();
+    
+    private final long started;
+    private final CallEvents events;
+    private long serializeStart;
+    private long serializeEnd;
+    private long executeStart;
+    private long connectStart;
+    private long connectEnd;
+    private long writeStart;
+    private long writeEnd;
+    private long firstByte;
+    private long downloadEnd;
+    private long parseStart;
+    private long parseEnd;
+    private int statusCode;
+    private long requestBytes;
+    private long responseBytes;
+    
+    public RequestTimer() {
+        this.started = System.nanoTime();
+        this.events = null;
+    }
+    
+    public RequestTimer(LLMProvider provider, String model) {
+        this.started = System.nanoTime();
+        this.events = CallEvents.begin(provider, model);
+    }
+    
+    void serializationStarted() {
+        if (events != null) {
+            events.serializationStarted();
+        }
+        serializeStart = System.nanoTime();
+    }
+    
+    void serializationFinished(long bytes) {
+        serializeEnd = System.nanoTime();
+        requestBytes = bytes;
+        if (events != null) {
+            events.serializationFinished(bytes);
+        }
+    }
+    
+    void executeStarted() {
+        if (events != null) {
+            events.exchangeStarted();
+        }
+        executeStart = System.nanoTime();
+    }
+    
+    void connectStarted() {
+        connectStart = System.nanoTime();
+    }
+    
+    void connectFinished() {
+        connectEnd = System.nanoTime();
+    }
+    
+    void writeStarted() {
+        writeStart = System.nanoTime();
+    }
+    
+    void writeFinished() {
+        writeEnd = System.nanoTime();
+    }
+    
+    void firstByteReceived(int statusCode) {
+        firstByte = System.nanoTime();
+        this.statusCode = statusCode;
+        if (events != null) {
+            events.firstByteReceived();
+        }
+    }
+    
+    void downloadFinished(long bytes) {
+        downloadEnd = System.nanoTime();
+        responseBytes = bytes;
+        if (events != null) {
+            events.exchangeFinished(statusCode, requestBytes, responseBytes, connectStart == 0);
+        }
+    }
+    
+    public void parseStarted() {
+        if (events != null) {
+            events.parseStarted();
+        }
+        parseStart = System.nanoTime();
+    }
+    
+    public void parseFinished() {
+        parseFinished(Usage.EMPTY);
+    }
+    
+    public void parseFinished(Usage usage) {
+        parseEnd = System.nanoTime();
+        if (events != null) {
+            events.parseFinished(responseBytes, usage);
+        }
+    }
+    
+    public int getStatusCode() {
+        return statusCode;
+    }
+    
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+    
+    public long getResponseBytes() {
+        return responseBytes;
+    }
+    
+    public LLMTiming toTiming() {
+        long end = parseEnd != 0 ? parseEnd : downloadEnd != 0 ? downloadEnd : System.nanoTime();
+        // Everything between execute() and the first network activity is spent leasing a connection
+        long firstIo = connectStart != 0 ? connectStart : writeStart != 0 ? writeStart : firstByte;
+        long requestSent = writeEnd != 0 ? writeEnd : firstIo;
+        return new LLMTiming(
+            between(started, serializeStart != 0 ? serializeStart : executeStart),
+            between(serializeStart, serializeEnd),
+            between(executeStart, firstIo),
+            between(connectStart, connectEnd),
+            between(writeStart, writeEnd),
+            between(requestSent, firstByte),
+            between(firstByte, downloadEnd),
+            between(parseStart, parseEnd),
+            end - started);
+    }
+    
+    private static long between(long from, long to) {
+        return from != 0 && to != 0 && to > from ? to - from : 0;
+    }
+}
\ No newline at end of file
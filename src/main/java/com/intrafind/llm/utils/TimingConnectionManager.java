@@ -0,0 +1,61 @@
+package com.intrafind.llm.utils;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.io.CloseMode;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+
+// Delegating connection manager that reports connect (DNS + TCP + TLS) time to the RequestTimer in the context
+class TimingConnectionManager implements HttpClientConnectionManager {
+    private final HttpClientConnectionManager delegate;
+    
+    TimingConnectionManager(HttpClientConnectionManager delegate) {
+        this.delegate = delegate;
+    }
+    
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        return delegate.lease(id, route, requestTimeout, state);
+    }
+    
+    @Override
+    public void release(ConnectionEndpoint endpoint, Object newState, TimeValue validDuration) {
+        delegate.release(endpoint, newState, validDuration);
+    }
+    
+    @Override
+    public void connect(ConnectionEndpoint endpoint, TimeValue connectTimeout, HttpContext context) throws IOException {
+        RequestTimer timer = context != null ? (RequestTimer) context.getAttribute(RequestTimer.CONTEXT_ATTRIBUTE) : null;
+        if (timer != null) {
+            timer.connectStarted();
+        }
+        try {
+            delegate.connect(endpoint, connectTimeout, context);
+        } finally {
+            if (timer != null) {
+                timer.connectFinished();
+            }
+        }
+    }
+    
+    @Override
+    public void upgrade(ConnectionEndpoint endpoint, HttpContext context) throws IOException {
+        delegate.upgrade(endpoint, context);
+    }
+    
+    @Override
+    public void close(CloseMode closeMode) {
+        delegate.close(closeMode);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
\ No newline at end of file
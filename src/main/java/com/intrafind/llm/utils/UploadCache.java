@@ -0,0 +1,123 @@
+package com.intrafind.llm.utils;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.events.CallEvents;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content-addressed cache of files uploaded to a provider's file API. Binary inputs are keyed by a SHA-256 of media
+ * type and bytes, uploaded once and referenced afterwards until shortly before the provider deletes them. Concurrent
+ * callers with the same bytes wait for the one upload in flight; inputs below {@code minBytes} and inputs whose upload
+ * failed recently are sent inline.
+ */
+public final class UploadCache {
+    private static final long RETRY_AFTER_FAILURE_MILLIS = 60_000;
+    // A reference is not handed out this close to its expiry, so it stays valid for the request that uses it
+    private static final long EXPIRY_MARGIN_MILLIS = 10 * 60_000;
+    
+    private final LLMProvider provider;
+    private final Uploader uploader;
+    private final long minBytes;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    // A file on the provider and when the provider deletes it (epoch millis, Long.MAX_VALUE if never)
+    public record Upload(String reference, long expiresAtMillis) {
+    }
+    
+    @FunctionalInterface
+    public interface Uploader {
+        Upload upload(String mediaType, byte[] data);
+    }
+    
+    private static final class Entry {
+        final CompletableFuture<Upload> upload = new CompletableFuture<>();
+        volatile long retryAtMillis;
+    }
+    
+    public UploadCache(LLMProvider provider, Uploader uploader, long minBytes) {
+        this.provider = provider;
+        this.uploader = uploader;
+        this.minBytes = minBytes;
+    }
+    
+    // Reference to send instead of the data, uploading it on first use; null if the data has to be sent inline
+    public String reference(String mediaType, byte[] data) {
+        if (data == null || data.length < minBytes) {
+            return null;
+        }
+        String key = key(mediaType, data);
+        boolean uploadedHere = false;
+        while (true) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                Entry created = new Entry();
+                entry = entries.putIfAbsent(key, created);
+                if (entry == null) {
+                    upload(created, mediaType, data);
+                    entry = created;
+                    uploadedHere = true;
+                }
+            }
+            
+            Upload upload;
+            try {
+                upload = entry.upload.join();
+            } catch (CompletionException e) {
+                if (System.currentTimeMillis() < entry.retryAtMillis) {
+                    return null;
+                }
+                entries.remove(key, entry);
+                continue;
+            }
+            if (upload.expiresAtMillis() - EXPIRY_MARGIN_MILLIS <= System.currentTimeMillis()) {
+                entries.remove(key, entry);
+                continue;
+            }
+            if (!uploadedHere) {
+                CallEvents.cacheHit(provider, null, "upload", data.length);
+            }
+            return upload.reference();
+        }
+    }
+    
+    // Drops a reference the provider no longer accepts; the next use uploads the data again
+    public void invalidate(String reference) {
+        entries.values().removeIf(entry -> entry.upload.isDone() && !entry.upload.isCompletedExceptionally()
+            && reference.equals(entry.upload.join().reference()));
+    }
+    
+    public int size() {
+        return entries.size();
+    }
+    
+    private void upload(Entry entry, String mediaType, byte[] data) {
+        try {
+            entry.upload.complete(uploader.upload(mediaType, data));
+        } catch (RuntimeException e) {
+            entry.retryAtMillis = System.currentTimeMillis() + RETRY_AFTER_FAILURE_MILLIS;
+            entry.upload.completeExceptionally(e);
+        } catch (Throwable e) {
+            // Waiting and later callers must not block on an upload that never completes
+            entry.upload.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    private static String key(String mediaType, byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(mediaType).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            return HexFormat.of().formatHex(digest.digest(data));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
\ No newline at end of file
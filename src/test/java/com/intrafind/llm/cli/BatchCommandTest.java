@@ -0,0 +1,173 @@
+package com.intrafind.llm.cli;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.mock.LatencyDistribution;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BatchCommandTest {
+    
+    @TempDir
+    Path dir;
+    
+    private MockLLMServer server;
+    private Path input;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        // Varying latency so that requests finish out of order
+        server = new MockLLMServer()
+            .withLatency(LatencyDistribution.uniform(Duration.ZERO, Duration.ofMillis(10)))
+            .start();
+        input = dir.resolve("input.jsonl");
+        Files.write(input, IntStream.range(0, 100)
+            .mapToObj(i -> "{\"id\":\"q" + i + "\",\"prompt\":\"Question " + i + "\"}")
+            .toList());
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+    
+    private BatchCommand command() {
+        return new BatchCommand(LLMProvider.OPENAI, "test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .withInput(input)
+            .withConcurrency(8);
+    }
+    
+    private static PrintStream quiet() {
+        return new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> results(Path output) throws Exception {
+        return Files.readAllLines(output).stream()
+            .map(line -> (Map<String, Object>) JsonParser.parse(line, Map.class))
+            .toList();
+    }
+    
+    private static List<Integer> indices(List<Map<String, Object>> results) {
+        return results.stream().map(result -> ((Number) result.get("index")).intValue()).toList();
+    }
+    
+    @Test
+    public void testOrderedOutput() throws Exception {
+        Path output = dir.resolve("output.jsonl");
+        BatchCommand.Summary summary = command().withOutput(output).run(null, null, quiet());
+        
+        List<Map<String, Object>> results = results(output);
+        assertEquals(IntStream.range(0, 100).boxed().toList(), indices(results));
+        assertEquals("q42", results.get(42).get("id"));
+        assertNotNull(results.get(42).get("content"));
+        assertEquals(100, summary.getProcessed());
+        assertEquals(0, summary.getErrors());
+    }
+    
+    @Test
+    public void testAsCompletedOutput() throws Exception {
+        Path output = dir.resolve("output.jsonl");
+        command().withOutput(output).withOrdered(false).run(null, null, quiet());
+        
+        List<Integer> indices = indices(results(output));
+        assertEquals(100, indices.size());
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toSet()), Set.copyOf(indices));
+    }
+    
+    @Test
+    public void testStdinToStdout() throws Exception {
+        ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        byte[] stdin = "{\"prompt\":\"a\"}\n\n{\"prompt\":\"b\"}\nnot json\n".getBytes(StandardCharsets.UTF_8);
+        
+        BatchCommand.Summary summary = new BatchCommand(LLMProvider.ANTHROPIC, "test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .run(new ByteArrayInputStream(stdin), stdout, quiet());
+        
+        String[] lines = stdout.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].startsWith("{\"index\":0,\"content\""), lines[0]);
+        assertTrue(lines[1].startsWith("{\"index\":2,\"content\""), lines[1]);
+        assertTrue(lines[2].startsWith("{\"index\":3,\"error\""), lines[2]);
+        assertEquals(1, summary.getErrors());
+        assertEquals(1, summary.getSkipped());
+    }
+    
+    @Test
+    public void testResumeOrderedRun() throws Exception {
+        Path complete = dir.resolve("complete.jsonl");
+        command().withOutput(complete).run(null, null, quiet());
+        List<String> expected = Files.readAllLines(complete);
+        
+        // A run that crashed after checkpointing 40 lines and writing half of another one
+        Path output = dir.resolve("output.jsonl");
+        String done = expected.subList(0, 40).stream().map(line -> line + "\n").collect(Collectors.joining());
+        Files.writeString(output, done + expected.get(40).substring(0, 20));
+        Path checkpoint = dir.resolve("output.ckpt");
+        Files.writeString(checkpoint, "next=40\nbytes=" + done.getBytes(StandardCharsets.UTF_8).length + "\ndone=\n");
+        
+        long requestsBefore = server.getRequestCount();
+        BatchCommand.Summary summary = command().withOutput(output).withCheckpoint(checkpoint).run(null, null, quiet());
+        
+        assertEquals(60, server.getRequestCount() - requestsBefore);
+        assertEquals(40, summary.getSkipped());
+        assertEquals(IntStream.range(0, 100).boxed().toList(), indices(results(output)));
+        assertEquals(expected.subList(0, 40), Files.readAllLines(output).subList(0, 40));
+        assertTrue(Files.readString(checkpoint).contains("next=100\n"));
+    }
+    
+    @Test
+    public void testResumeAsCompletedRun() throws Exception {
+        Path output = dir.resolve("output.jsonl");
+        String done = "{\"index\":0}\n{\"index\":1}\n{\"index\":5}\n{\"index\":9}\n";
+        Files.writeString(output, done + "{\"index\":7,\"con");
+        Path checkpoint = dir.resolve("output.ckpt");
+        Files.writeString(checkpoint, "next=2\nbytes=" + done.length() + "\ndone=5,9\n");
+        
+        long requestsBefore = server.getRequestCount();
+        command().withOutput(output).withCheckpoint(checkpoint).withOrdered(false).run(null, null, quiet());
+        
+        assertEquals(96, server.getRequestCount() - requestsBefore);
+        List<Integer> indices = indices(results(output));
+        assertEquals(100, indices.size());
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toSet()), Set.copyOf(indices));
+        // Lines done in the previous run are not carried along as finished ahead of the watermark
+        BatchCommand.Checkpoint saved = BatchCommand.Checkpoint.load(checkpoint);
+        assertEquals(100, saved.next());
+        assertEquals(0, saved.done().size());
+    }
+    
+    @Test
+    public void testRateLimit() throws Exception {
+        long start = System.nanoTime();
+        command().withOutput(dir.resolve("output.jsonl")).withRate(200).run(null, null, quiet());
+        
+        // 100 lines at 200 per second
+        assertTrue(System.nanoTime() - start >= 450_000_000L);
+    }
+    
+    @Test
+    public void testCheckpointNeedsOutputFile() {
+        assertThrows(IllegalArgumentException.class, () ->
+            BatchCommand.parse(new String[]{"openai", "key", "--checkpoint", "run.ckpt"}));
+    }
+}
\ No newline at end of file
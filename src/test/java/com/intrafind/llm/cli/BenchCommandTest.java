@@ -0,0 +1,93 @@
+package com.intrafind.llm.cli;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RateLimitException;
+import com.intrafind.llm.mock.LatencyDistribution;
+import com.intrafind.llm.mock.MockLLMServer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BenchCommandTest {
+    
+    @Test
+    public void testClosedLoop() throws Exception {
+        try (MockLLMServer server = new MockLLMServer().withOutputTokens(10).start()) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            BenchCommand.Result result = new BenchCommand(LLMProvider.ANTHROPIC, "test-key")
+                .withBaseUrl(server.getBaseUrl())
+                .withConcurrency(4)
+                .withDuration(1000)
+                .withPrompts(List.of("first", "second"))
+                .run(new PrintStream(output, true, StandardCharsets.UTF_8));
+            
+            long ok = result.getLatency().getTotalCount();
+            assertTrue(ok > 0);
+            assertEquals(0, result.getErrorCount());
+            assertEquals(ok * 10, result.getOutputTokens());
+            
+            String report = output.toString(StandardCharsets.UTF_8);
+            assertTrue(report.contains("Latency:     p50"), report);
+            assertTrue(report.contains("TTFT:"), report);
+        }
+    }
+    
+    @Test
+    public void testOpenLoopMeasuresFromIntendedStart() throws Exception {
+        // One connection, 50ms per call: capacity is 20 req/s, so at 40 req/s requests queue up behind each other
+        try (MockLLMServer server = new MockLLMServer()
+                .withLatency(LatencyDistribution.fixed(Duration.ofMillis(50)))
+                .start()) {
+            BenchCommand.Result result = BenchCommand.parse(new String[]{
+                    "mistral", "test-key", "--base-url", server.getBaseUrl(),
+                    "--rate", "40", "--duration", "1s", "--connections", "1"})
+                .run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            
+            assertEquals(40, result.getLatency().getTotalCount() + result.getErrorCount(), 1);
+            // Service time never exceeds ~50ms, but the last requests waited for about half a second
+            assertTrue(result.getLatency().valueAtPercentile(90) > 300_000,
+                "p90 " + result.getLatency().valueAtPercentile(90) + "us");
+        }
+    }
+    
+    @Test
+    public void testErrorBreakdownAndHgrm() throws Exception {
+        Path hgrm = Files.createTempFile("bench", ".hgrm");
+        try (MockLLMServer server = new MockLLMServer().withRateLimit(1.0, 0).start()) {
+            BenchCommand.Result result = BenchCommand.parse(new String[]{
+                    "openai", "test-key", "--base-url", server.getBaseUrl(),
+                    "--concurrency", "2", "--duration", "500ms", "--hgrm", hgrm.toString()})
+                .run(new PrintStream(new ByteArrayOutputStream(), true, StandardCharsets.UTF_8));
+            
+            assertTrue(result.getErrorCount() > 0);
+            assertEquals(List.of("RateLimitException"), List.copyOf(result.getErrors().keySet()));
+            assertTrue(Files.readString(hgrm).contains("#[Max"));
+        } finally {
+            Files.deleteIfExists(hgrm);
+        }
+    }
+    
+    @Test
+    public void testErrorKey() {
+        assertEquals("HTTP 503", BenchCommand.errorKey(new LLMException("HTTP error 503: overloaded")));
+        assertEquals("RateLimitException", BenchCommand.errorKey(new RateLimitException("Rate limit exceeded")));
+        assertEquals("IllegalStateException", BenchCommand.errorKey(new IllegalStateException()));
+    }
+    
+    @Test
+    public void testParseDuration() {
+        assertEquals(1_500_000_000L, BenchCommand.parseDuration("1.5s"));
+        assertEquals(250_000_000L, BenchCommand.parseDuration("250ms"));
+        assertEquals(120_000_000_000L, BenchCommand.parseDuration("2m"));
+        assertEquals(10_000_000_000L, BenchCommand.parseDuration("10"));
+    }
+}
\ No newline at end of file
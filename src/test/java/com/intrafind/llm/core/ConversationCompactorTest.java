@@ -0,0 +1,132 @@
+package com.intrafind.llm.core;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.tokenizer.EstimatingTokenizer;
+import com.intrafind.llm.tokenizer.Tokenizer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversationCompactorTest {
+    
+    private static final Tokenizer TOKENIZER = new EstimatingTokenizer("estimate", 4.0);
+    
+    private MockLLMServer server;
+    private LLMClient summarizer;
+    private ConversationCompactor compactor;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).withOutputTokens(40).start();
+        summarizer = LLMClientFactory.create(LLMProvider.OPENAI, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+        // Summaries run on the calling thread so the tests see them right away
+        compactor = new ConversationCompactor(summarizer, TOKENIZER)
+            .withMaxTokens(1000)
+            .withKeepRecentTokens(300)
+            .withSummaryModel("gpt-4o-mini")
+            .withExecutor(Runnable::run);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        summarizer.close();
+        server.close();
+    }
+    
+    private static Conversation turns(Conversation conversation, int from, int to) {
+        for (int i = from; i < to; i++) {
+            conversation = conversation.user("Question " + i + ": " + "tell me more about the itinerary. ".repeat(5))
+                .assistant("Answer " + i + ": " + "the itinerary continues with a museum visit. ".repeat(5));
+        }
+        return conversation;
+    }
+    
+    private static int tokens(Conversation conversation) {
+        return new LLMRequest(conversation).estimateInputTokens(LLMProvider.OPENAI);
+    }
+    
+    @Test
+    public void testShortHistoryUnchanged() {
+        Conversation history = turns(Conversation.of(Message.system("You are a travel agent.")), 0, 3);
+        assertSame(history, compactor.compact(history));
+        assertEquals(0, server.getRequestCount());
+    }
+    
+    @Test
+    public void testOlderTurnsAreSummarized() {
+        Conversation history = turns(Conversation.of(Message.system("You are a travel agent.")), 0, 20).user("Latest question");
+        // The turn that crosses the threshold is sent in full while the summary is written
+        assertSame(history, compactor.compact(history));
+        assertEquals(1, server.getRequestCount());
+        String summaryRequest = server.getRecordedRequests().get(0).body();
+        assertTrue(summaryRequest.contains("Question 0:"));
+        assertTrue(summaryRequest.contains("gpt-4o-mini"));
+        assertFalse(summaryRequest.contains("Question 19:"));
+        
+        List<Message> view = compactor.compact(history).messages();
+        assertEquals(Message.system("You are a travel agent."), view.get(0));
+        assertTrue(view.get(1).text().startsWith(ConversationCompactor.SUMMARY_HEADER));
+        assertEquals(Role.USER, view.get(2).role());
+        assertEquals(Message.user("Latest question"), view.get(view.size() - 1));
+        assertTrue(view.size() < 12, view.toString());
+        assertTrue(tokens(Conversation.of(view.toArray(new Message[0]))) < 1000);
+    }
+    
+    @Test
+    public void testPinnedMessagesKeptVerbatim() {
+        Message pinned = Message.user("My budget is 2000 EUR and I travel with a dog.").asPinned();
+        Conversation history = turns(Conversation.empty().append(pinned).assistant("Noted."), 0, 20).user("Latest question");
+        compactor.compact(history);
+        
+        assertFalse(server.getRecordedRequests().get(0).body().contains("2000 EUR"));
+        List<Message> view = compactor.compact(history).messages();
+        assertEquals(pinned, view.get(0));
+        assertTrue(view.get(1).text().startsWith(ConversationCompactor.SUMMARY_HEADER));
+    }
+    
+    @Test
+    public void testSizeStaysBoundedOverLongSession() {
+        Conversation history = Conversation.of(Message.system("You are a travel agent."));
+        int maxSent = 0;
+        for (int i = 0; i < 200; i++) {
+            history = turns(history, i, i + 1).user("Follow-up " + i);
+            maxSent = Math.max(maxSent, tokens(compactor.compact(history)));
+            history = history.assistant("Reply " + i);
+        }
+        assertTrue(tokens(history) > 20_000);
+        // One turn may cross the threshold before its summary is in
+        assertTrue(maxSent < 1300, "max sent " + maxSent);
+        
+        // Later summaries extend the previous one
+        List<MockLLMServer.RecordedRequest> summaries = server.getRecordedRequests();
+        assertTrue(summaries.size() > 5);
+        assertTrue(summaries.get(summaries.size() - 1).body().contains("Summary so far"));
+    }
+    
+    @Test
+    public void testOtherHistoryIsNotMixedIn() {
+        Conversation history = turns(Conversation.empty(), 0, 20).user("Latest question");
+        compactor.compact(history);
+        
+        Conversation other = Conversation.empty().user("Unrelated");
+        assertSame(other, compactor.compact(other));
+    }
+    
+    @Test
+    public void testCollidingHistoryIsNotMixedIn() {
+        // "Aa" and "BB" have the same String hash, so both histories have the same prefix hashes
+        Conversation history = turns(Conversation.empty().user("Aa").assistant("Noted."), 0, 20).user("Latest question");
+        compactor.compact(history);
+        assertNotSame(history, compactor.compact(history));
+        
+        Conversation other = turns(Conversation.empty().user("BB").assistant("Noted."), 0, 20).user("Latest question");
+        assertEquals(history.prefixHash(), other.prefixHash());
+        assertSame(other, compactor.compact(other));
+    }
+}
\ No newline at end of file
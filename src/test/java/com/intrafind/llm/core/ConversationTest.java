@@ -0,0 +1,76 @@
+package com.intrafind.llm.core;
+
+import org.junit.jupiter.api.Test;
+import java.util.List;
+import java.util.Map;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversationTest {
+    
+    @Test
+    public void testAppendSharesEarlierTurns() {
+        Conversation first = Conversation.empty().user("Hello");
+        Conversation second = first.assistant("Hi, how can I help?");
+        
+        assertSame(first, second.parent());
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertSame(first.last(), second.messages().get(0));
+        assertTrue(Conversation.empty().isEmpty());
+        assertNull(Conversation.empty().last());
+    }
+    
+    @Test
+    public void testForkedBranchesAreIndependent() {
+        Conversation shared = Conversation.of(Message.system("Be brief."), Message.user("Plan a trip"), Message.assistant("Where to?"));
+        Conversation paris = shared.user("Paris");
+        Conversation rome = shared.user("Rome");
+        
+        assertSame(paris.parent(), rome.parent());
+        assertEquals("Paris", paris.last().text());
+        assertEquals("Rome", rome.last().text());
+        assertEquals(3, shared.size());
+        assertEquals(List.of(Role.SYSTEM, Role.USER, Role.ASSISTANT, Role.USER),
+            rome.messages().stream().map(Message::role).toList());
+    }
+    
+    @Test
+    public void testLongConversation() {
+        Conversation conversation = Conversation.empty();
+        for (int i = 0; i < 100_000; i++) {
+            conversation = conversation.user("Turn " + i);
+        }
+        List<Message> messages = conversation.messages();
+        assertEquals(100_000, messages.size());
+        assertEquals("Turn 0", messages.get(0).text());
+        assertEquals("Turn 99999", messages.get(99_999).text());
+    }
+    
+    @Test
+    public void testResponseToMessage() {
+        LLMResponse response = new LLMResponse(null, "gpt-4o", LLMProvider.OPENAI);
+        ToolCall call = new ToolCall("call_1", "get_weather", Map.of("city", "Hamburg"));
+        response = response.withToolCalls(List.of(call));
+        
+        Conversation conversation = Conversation.empty().user("Weather in Hamburg?").append(response);
+        Message message = conversation.last();
+        assertEquals(Role.ASSISTANT, message.role());
+        assertTrue(message.parts().isEmpty());
+        assertEquals(List.of(call), message.toolCalls());
+        
+        Message result = Message.toolResult(call, "12 degrees");
+        assertEquals("call_1", result.toolCallId());
+        assertEquals("get_weather", result.toolName());
+    }
+    
+    @Test
+    public void testRequestHistoryAndSystem() {
+        Conversation conversation = Conversation.of(Message.system("Answer in German."), Message.user("Hello"));
+        LLMRequest request = new LLMRequest(conversation).withSystem("You are a translator.");
+        
+        assertNull(request.getPrompt());
+        assertEquals(List.of(conversation.last()), request.getHistory());
+        assertEquals("You are a translator.\n\nAnswer in German.", request.getSystemText());
+        assertTrue(new LLMRequest("Hello").getHistory().isEmpty());
+    }
+}
\ No newline at end of file
@@ -0,0 +1,154 @@
+package com.intrafind.llm.core;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.mock.MockLLMServer;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImagePreprocessorTest {
+    
+    private static final byte[] PHOTO = encode(image(4000, 3000, false), "jpeg");
+    
+    private static BufferedImage image(int width, int height, boolean alpha) {
+        BufferedImage image = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, new Color(200, 40, 40, alpha ? 128 : 255), width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        graphics.dispose();
+        return image;
+    }
+    
+    private static byte[] encode(BufferedImage image, String format) {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(image, format, out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+    
+    private static BufferedImage decode(ContentPart.Image image) throws IOException {
+        return ImageIO.read(new ByteArrayInputStream(image.data()));
+    }
+    
+    // The JPEG with an APP1 segment holding a big-endian EXIF orientation tag right after its SOI marker
+    private static byte[] withOrientation(byte[] jpeg, int orientation) {
+        byte[] exif = {
+            (byte) 0xFF, (byte) 0xE1, 0, 34, 'E', 'x', 'i', 'f', 0, 0,
+            'M', 'M', 0, 42, 0, 0, 0, 8,
+            0, 1, 0x01, 0x12, 0, 3, 0, 0, 0, 1, 0, (byte) orientation, 0, 0,
+            0, 0, 0, 0};
+        byte[] result = new byte[jpeg.length + exif.length];
+        System.arraycopy(jpeg, 0, result, 0, 2);
+        System.arraycopy(exif, 0, result, 2, exif.length);
+        System.arraycopy(jpeg, 2, result, 2 + exif.length, jpeg.length - 2);
+        return result;
+    }
+    
+    @Test
+    public void testDownscalesToProviderLimit() throws IOException {
+        ContentPart.Image processed = ImagePreprocessor.forProvider(LLMProvider.ANTHROPIC, 0.85f)
+            .process(ContentPart.image("image/jpeg", PHOTO));
+        BufferedImage image = decode(processed);
+        assertEquals("image/jpeg", processed.mediaType());
+        assertEquals(1568, image.getWidth());
+        assertEquals(1176, image.getHeight());
+        assertTrue(processed.data().length < PHOTO.length);
+        
+        // OpenAI high detail also caps the short side
+        image = decode(ImagePreprocessor.forProvider(LLMProvider.OPENAI, 0.85f).process(ContentPart.image("image/jpeg", PHOTO)));
+        assertEquals(768, image.getHeight());
+    }
+    
+    @Test
+    public void testSmallAndUnreadableImagesUnchanged() {
+        ImagePreprocessor preprocessor = new ImagePreprocessor(1024, 1024, 0.85f);
+        byte[] small = encode(image(300, 200, false), "png");
+        assertSame(small, preprocessor.process(ContentPart.image("image/png", small)).data());
+        byte[] unknown = {1, 2, 3, 4};
+        assertSame(unknown, preprocessor.process(ContentPart.image("image/webp", unknown)).data());
+    }
+    
+    @Test
+    public void testTransparencyKeepsPng() throws IOException {
+        ContentPart.Image processed = new ImagePreprocessor(500, 500, 0.85f)
+            .process(ContentPart.image("image/png", encode(image(1000, 800, true), "png")));
+        assertEquals("image/png", processed.mediaType());
+        assertTrue(decode(processed).getColorModel().hasAlpha());
+        assertEquals(500, decode(processed).getWidth());
+    }
+    
+    @Test
+    public void testExifOrientation() throws IOException {
+        byte[] rotated = withOrientation(encode(image(800, 600, false), "jpeg"), 6);
+        assertEquals(6, ImagePreprocessor.orientation(rotated));
+        assertEquals(1, ImagePreprocessor.orientation(PHOTO));
+        
+        BufferedImage upright = decode(new ImagePreprocessor(400, 400, 0.85f).process(ContentPart.image("image/jpeg", rotated)));
+        assertEquals(300, upright.getWidth());
+        assertEquals(400, upright.getHeight());
+    }
+    
+    @Test
+    public void testPrepareCopiesRequestAndCaches() {
+        ImagePreprocessor preprocessor = ImagePreprocessor.forProvider(LLMProvider.MISTRAL, 0.85f);
+        ContentPart.Image photo = ContentPart.image("image/jpeg", PHOTO);
+        LLMRequest request = new LLMRequest("What changed?")
+            .withConversation(Conversation.empty().append(Message.user(photo)).assistant("A street."))
+            .withContext(photo)
+            .withImage("image/jpeg", PHOTO);
+        
+        LLMRequest prepared = preprocessor.prepare(request);
+        assertNotSame(request, prepared);
+        assertSame(photo, request.getContext().get(0));
+        assertSame(PHOTO, request.getImage().data());
+        
+        byte[] processed = ((ContentPart.Image) prepared.getContext().get(0)).data();
+        assertTrue(processed.length < PHOTO.length / 4);
+        // One image, processed once
+        assertSame(processed, prepared.getImage().data());
+        assertSame(processed, ((ContentPart.Image) prepared.getConversation().messages().get(0).parts().get(0)).data());
+        assertSame(processed, ((ContentPart.Image) preprocessor.prepare(request).getContext().get(0)).data());
+        // Same history, same hash, so the Responses API client can keep chaining turns
+        assertEquals(prepared.getConversation().prefixHash(), preprocessor.prepare(request).getConversation().prefixHash());
+        
+        LLMRequest textOnly = new LLMRequest("Hello");
+        assertSame(textOnly, preprocessor.prepare(textOnly));
+    }
+    
+    @Test
+    public void testClientsSendPreprocessedImages() throws Exception {
+        try (MockLLMServer server = new MockLLMServer().withRecording(true).start()) {
+            for (LLMProvider provider : LLMProvider.values()) {
+                int[] sizes = new int[2];
+                for (int i = 0; i < 2; i++) {
+                    server.clearRecordedRequests();
+                    LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key")
+                        .withBaseUrl(server.getBaseUrl())
+                        .withImagePreprocessing(i == 1));
+                    try {
+                        client.generate(new LLMRequest("Describe this photo").withImage("image/jpeg", PHOTO));
+                    } finally {
+                        client.close();
+                    }
+                    String body = server.getRecordedRequests().get(0).body();
+                    assertTrue(body.contains("image/jpeg"), provider.name());
+                    sizes[i] = body.length();
+                }
+                assertTrue(sizes[1] < sizes[0] * 0.8, provider + ": " + sizes[1] + " vs " + sizes[0]);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,8 +1,10 @@
 package com.intrafind.llm.core;
 
 import org.junit.jupiter.api.Test;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class LLMRequestTest {
@@ -58,4 +60,120 @@ public class LLMRequestTest {
         assertEquals(0.5, request.getParameters().get("temperature"));
         assertEquals(stopSequences, request.getStopSequences());
     }
+    
+    @Test
+    public void testWithReturnsCopySharingParts() {
+        LLMRequest original = new LLMRequest("Test prompt")
+            .withContext(ContentPart.text("Handbook"))
+            .withParameter("temperature", 0.5);
+        LLMRequest changed = original.withModel("gpt-4");
+        
+        assertNull(original.getModel());
+        assertEquals("gpt-4", changed.getModel());
+        assertSame(original.getContext(), changed.getContext());
+        assertSame(original.getParameters(), changed.getParameters());
+        assertThrows(UnsupportedOperationException.class, () -> original.getParameters().put("seed", 1));
+        assertThrows(UnsupportedOperationException.class, () -> original.getContext().add(ContentPart.text("x")));
+        
+        LLMRequest appended = original.withContext(ContentPart.text("Policy"));
+        assertEquals(1, original.getContext().size());
+        assertEquals(2, appended.getContext().size());
+    }
+    
+    @Test
+    public void testMutableAdapterChangesInPlace() {
+        LLMRequest base = new LLMRequest("Test prompt").withParameter("temperature", 0.5);
+        MutableLLMRequest draft = new MutableLLMRequest(base);
+        assertSame(draft, draft.withModel("gpt-4").withParameter("seed", 7));
+        draft.setPrompt("Changed prompt");
+        draft.getParameters().put("max_tokens", 100);
+        
+        LLMRequest request = draft.toRequest();
+        assertEquals("Changed prompt", request.getPrompt());
+        assertEquals("gpt-4", request.getModel());
+        assertEquals(Map.of("temperature", 0.5, "seed", 7, "max_tokens", 100), request.getParameters());
+        // Neither the request it started from nor the one handed out change afterwards
+        draft.setModel("gpt-4o");
+        assertNull(base.getModel());
+        assertEquals(Map.of("temperature", 0.5), base.getParameters());
+        assertEquals("gpt-4", request.getModel());
+        assertEquals("gpt-4o", draft.toRequest().getModel());
+        assertSame(draft.toRequest().getParameters(), draft.toRequest().getParameters());
+    }
+    
+    @Test
+    public void testAttachToConversation() {
+        Conversation conversation = Conversation.empty().user("Summarize").assistant("Which part?").user("All of it");
+        LLMRequest request = new LLMRequest(conversation).withContext(ContentPart.text("Handbook")).withImage("image/png", new byte[] {1});
+        LLMRequest attached = request.attachToConversation();
+        
+        assertNull(attached.getContext());
+        assertNull(attached.getImage());
+        assertSame(conversation.parent(), attached.getConversation().parent());
+        List<ContentPart> parts = attached.getConversation().last().parts();
+        assertEquals(List.of(ContentPart.text("Handbook"), ContentPart.text("All of it"), ContentPart.image("image/png", new byte[] {1})), parts);
+        
+        // Counted like what is sent
+        assertEquals(attached.estimateInputTokens(LLMProvider.OPENAI), request.estimateInputTokens(LLMProvider.OPENAI));
+        assertTrue(request.estimateInputTokens(LLMProvider.OPENAI) > new LLMRequest(conversation).estimateInputTokens(LLMProvider.OPENAI));
+        
+        LLMRequest prompted = request.withPrompt("And the appendix?");
+        assertSame(prompted, prompted.attachToConversation());
+    }
+    
+    @Test
+    public void testBuilderCanBeReused() {
+        LLMRequest.Builder builder = LLMRequest.builder().prompt("Test prompt").parameter("temperature", 0.5);
+        LLMRequest first = builder.build();
+        LLMRequest second = builder.parameter("seed", 7).build();
+        
+        assertEquals(Map.of("temperature", 0.5), first.getParameters());
+        assertEquals(Map.of("temperature", 0.5, "seed", 7), second.getParameters());
+    }
+    
+    @Test
+    public void testContentHash() {
+        LLMRequest built = LLMRequest.builder()
+            .prompt("Test prompt")
+            .model("gpt-4")
+            .parameter("temperature", 0.5)
+            .parameter("seed", 7)
+            .system(ContentPart.cached("Be brief."))
+            .conversation(Conversation.empty().user("Hi").assistant("Hello"))
+            .build();
+        LLMRequest chained = new LLMRequest("Test prompt")
+            .withConversation(Conversation.of(Message.user("Hi"), Message.assistant("Hello")))
+            .withSystem(ContentPart.cached("Be brief."))
+            .withParameter("seed", 7)
+            .withParameter("temperature", 0.5)
+            .withModel("gpt-4");
+        
+        assertEquals(built.contentHash(), chained.contentHash());
+        assertEquals(built, chained);
+        assertEquals(built.hashCode(), chained.hashCode());
+        
+        assertNotEquals(built.contentHash(), built.withPrompt("Test prompt!").contentHash());
+        assertNotEquals(built.contentHash(), built.withSystem("More.").contentHash());
+        assertNotEquals(built.contentHash(), built.withImage("image/png", new byte[] {1}).contentHash());
+        assertNotEquals(built, built.withAutomaticCaching(true));
+        assertEquals(built.withImage("image/png", new byte[] {1}), built.withImage("image/png", new byte[] {1}));
+        // Tenant and deadline say who a call is for and when, not what is sent
+        assertEquals("acme", built.withTenant("acme").getTenant());
+        assertEquals(built, built.withTenant("acme").withDeadline(Instant.now()));
+    }
+    
+    @Test
+    public void testPrefixHash() {
+        Conversation session = Conversation.of(Message.user("Summarize the handbook"), Message.assistant("It covers travel."));
+        LLMRequest first = new LLMRequest("What about hotels?").withSystem("You answer from the handbook").withConversation(session);
+        LLMRequest later = new LLMRequest("And trains?").withSystem("You answer from the handbook")
+            .withConversation(session.user("What about hotels?").assistant("Up to 150 EUR."));
+        
+        // The prompt and later turns are not part of the prefix
+        assertEquals(first.prefixHash(2), later.prefixHash(2));
+        assertEquals(first.prefixHash(0), later.prefixHash(0));
+        assertNotEquals(first.prefixHash(3), later.prefixHash(3));
+        assertNotEquals(first.prefixHash(0), first.withSystem("You answer briefly").prefixHash(0));
+        assertNotEquals(first.prefixHash(0), first.withModel("gpt-4o").prefixHash(0));
+    }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.intrafind.llm.core;
 
 import org.junit.jupiter.api.Test;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
@@ -24,7 +25,7 @@ public class LLMResponseTest {
         
         Map<String, Object> metadata = new HashMap<>();
         metadata.put("tokens", 10);
-        response.setMetadata(metadata);
+        response = response.withMetadata(metadata);
         
         assertEquals(metadata, response.getMetadata());
         assertEquals(10, response.getMetadata().get("tokens"));
@@ -33,12 +34,26 @@ public class LLMResponseTest {
     @Test
     public void testWithFunctionCall() {
         LLMResponse response = new LLMResponse("Hello!", "gpt-3.5-turbo", LLMProvider.OPENAI);
-        response.setFunctionCall(Optional.of("function_name"));
+        response = response.withFunctionCall(Optional.of("function_name"));
         
         assertTrue(response.getFunctionCall().isPresent());
         assertEquals("function_name", response.getFunctionCall().get());
     }
     
+    @Test
+    public void testDefaultTiming() {
+        LLMResponse response = new LLMResponse("Hello!", "gpt-3.5-turbo", LLMProvider.OPENAI);
+        
+        assertSame(LLMTiming.NONE, response.getTiming());
+        assertEquals(Duration.ZERO, response.getTiming().getTotal());
+        
+        LLMTiming timing = new LLMTiming(1_000_000, 0, 0, 5_000_000, 0, 20_000_000, 0, 0, 26_000_000);
+        response = response.withTiming(timing);
+        
+        assertEquals(Duration.ofMillis(20), response.getTiming().getTimeToFirstByte());
+        assertFalse(response.getTiming().isConnectionReused());
+    }
+    
     @Test
     public void testAllProviders() {
         LLMResponse openaiResponse = new LLMResponse("OpenAI", "gpt-4", LLMProvider.OPENAI);
@@ -51,4 +66,35 @@ public class LLMResponseTest {
         assertEquals(LLMProvider.GEMINI, geminiResponse.getProvider());
         assertEquals(LLMProvider.MISTRAL, mistralResponse.getProvider());
     }
+    
+    @Test
+    public void testBuilderAndWithCopies() {
+        LLMResponse response = LLMResponse.builder()
+            .content("Hello!")
+            .model("gpt-4o")
+            .provider(LLMProvider.OPENAI)
+            .usage(new Usage(10, 2, 0, 0))
+            .build();
+        LLMResponse timed = response.withTiming(new LLMTiming(0, 0, 0, 0, 0, 20_000_000, 0, 0, 26_000_000));
+        
+        assertSame(LLMTiming.NONE, response.getTiming());
+        assertEquals(Duration.ofMillis(20), timed.getTiming().getTimeToFirstByte());
+        assertSame(response.getUsage(), timed.getUsage());
+        assertEquals("Hello!", timed.getContent());
+    }
+    
+    @Test
+    public void testMutableAdapter() {
+        MutableLLMResponse draft = new MutableLLMResponse("Hello!", "gpt-4o", LLMProvider.OPENAI);
+        draft.setMetadata(new HashMap<>());
+        draft.getMetadata().put("tokens", 10);
+        draft.setContent("Hi!");
+        
+        LLMResponse response = draft.toResponse();
+        assertEquals("Hi!", response.getContent());
+        assertEquals(Map.of("tokens", 10), response.getMetadata());
+        assertThrows(UnsupportedOperationException.class, () -> response.getMetadata().put("more", 1));
+        draft.getMetadata().put("more", 1);
+        assertEquals(1, response.getMetadata().size());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,165 @@
+package com.intrafind.llm.events;
+
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.exceptions.RateLimitException;
+import com.intrafind.llm.providers.mistral.MistralClient;
+import com.intrafind.llm.scheduling.CredentialPool;
+import com.intrafind.llm.utils.UploadCache;
+import com.sun.net.httpserver.HttpServer;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CallEventsTest {
+    
+    private static final String CHAT_RESPONSE = "{\"model\":\"mistral-tiny\",\"choices\":[{\"message\":" +
+        "{\"role\":\"assistant\",\"content\":\"4\"}}],\"usage\":{\"prompt_tokens\":5,\"completion_tokens\":1}}";
+    
+    @Test
+    public void testCallPhasesAreRecorded() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/chat/completions", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            byte[] body = CHAT_RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        
+        Path dump = Files.createTempFile("j2xlm", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RequestBuildEvent.class);
+            recording.enable(SerializationEvent.class);
+            recording.enable(HttpExchangeEvent.class);
+            recording.enable(FirstTokenEvent.class);
+            recording.enable(ParseEvent.class);
+            recording.start();
+            
+            LLMConfig config = new LLMConfig("test-key")
+                .withBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+            MistralClient client = new MistralClient(config);
+            client.generate(new LLMRequest("What is 2+2?"));
+            client.close();
+            
+            recording.stop();
+            recording.dump(dump);
+        } finally {
+            server.stop(0);
+        }
+        
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+        
+        Set<String> names = events.stream()
+            .map(event -> event.getEventType().getName())
+            .collect(Collectors.toSet());
+        assertTrue(names.containsAll(Set.of(
+            "com.intrafind.llm.RequestBuild",
+            "com.intrafind.llm.Serialization",
+            "com.intrafind.llm.HttpExchange",
+            "com.intrafind.llm.FirstToken",
+            "com.intrafind.llm.Parse")), "Recorded events: " + names);
+        
+        RecordedEvent exchange = events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.intrafind.llm.HttpExchange"))
+            .findFirst()
+            .orElseThrow();
+        assertEquals("Mistral AI", exchange.getString("provider"));
+        assertEquals("mistral-tiny", exchange.getString("model"));
+        assertEquals(200, exchange.getInt("statusCode"));
+        assertEquals(CHAT_RESPONSE.length(), exchange.getLong("responseBytes"));
+        assertTrue(exchange.getLong("requestBytes") > 0);
+    }
+    
+    @Test
+    public void testRetriesAndCacheHitsAreRecorded() throws Exception {
+        // The first key is rate limited, so calls that try it first go on to the second
+        LLMClient limited = new StubClient(new RateLimitException("Slow down", 60_000));
+        LLMClient healthy = new StubClient(null);
+        CredentialPool pool = new CredentialPool(LLMProvider.OPENAI, List.of("sk-limited-0001", "sk-healthy-0002"),
+            apiKey -> apiKey.contains("limited") ? limited : healthy);
+        UploadCache uploads = new UploadCache(LLMProvider.OPENAI, (mediaType, data) -> new UploadCache.Upload("file-1", Long.MAX_VALUE), 1);
+        byte[] image = new byte[2048];
+        
+        Path dump = Files.createTempFile("j2xlm", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable(RetryEvent.class);
+            recording.enable(CacheHitEvent.class);
+            recording.start();
+            
+            pool.generate(new LLMRequest("Hello").withModel("gpt-4o"));
+            pool.generate(new LLMRequest("Hello").withModel("gpt-4o"));
+            uploads.reference("image/png", image);
+            uploads.reference("image/png", image);
+            
+            recording.stop();
+            recording.dump(dump);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+        Files.deleteIfExists(dump);
+        
+        RecordedEvent retry = events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.intrafind.llm.Retry"))
+            .findFirst()
+            .orElseThrow();
+        assertEquals("OpenAI", retry.getString("provider"));
+        assertEquals("gpt-4o", retry.getString("model"));
+        assertEquals(1, retry.getInt("attempt"));
+        assertEquals("key rate limited", retry.getString("reason"));
+        
+        List<RecordedEvent> hits = events.stream()
+            .filter(event -> event.getEventType().getName().equals("com.intrafind.llm.CacheHit"))
+            .toList();
+        assertEquals(1, hits.size());
+        assertEquals("upload", hits.get(0).getString("cache"));
+        assertEquals(2048, hits.get(0).getLong("bytesSaved"));
+    }
+    
+    private static class StubClient implements LLMClient {
+        private final RuntimeException failure;
+        
+        StubClient(RuntimeException failure) {
+            this.failure = failure;
+        }
+        
+        @Override
+        public LLMResponse generate(LLMRequest request) {
+            if (failure != null) {
+                throw failure;
+            }
+            return new LLMResponse("ok", request.getModel(), LLMProvider.OPENAI);
+        }
+        
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+        
+        @Override
+        public LLMProvider getProvider() {
+            return LLMProvider.OPENAI;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,73 @@
+package com.intrafind.llm.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+    
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 100L);
+        }
+        
+        assertEquals(10000, histogram.getTotalCount());
+        assertEquals(100, histogram.getMin());
+        assertEquals(1_000_000, histogram.getMax());
+        assertEquals(500_000, histogram.valueAtPercentile(50), 500_000 * 0.008);
+        assertEquals(990_000, histogram.valueAtPercentile(99), 990_000 * 0.008);
+        assertEquals(999_900, histogram.valueAtPercentile(99.99), 999_900 * 0.008);
+        assertEquals(1_000_000, histogram.valueAtPercentile(100));
+        assertEquals(500_050, histogram.getMean(), 0.001);
+    }
+    
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(3);
+        histogram.record(255);
+        
+        assertEquals(3, histogram.valueAtPercentile(50));
+        assertEquals(255, histogram.valueAtPercentile(100));
+    }
+    
+    @Test
+    public void testAdd() {
+        LatencyHistogram first = new LatencyHistogram();
+        LatencyHistogram second = new LatencyHistogram();
+        first.record(1000);
+        second.record(5000);
+        second.record(9000);
+        
+        first.add(second);
+        
+        assertEquals(3, first.getTotalCount());
+        assertEquals(1000, first.getMin());
+        assertEquals(9000, first.getMax(), 9000 * 0.008);
+    }
+    
+    @Test
+    public void testHgrmOutput() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        histogram.outputPercentileDistribution(new PrintStream(bytes, true, StandardCharsets.UTF_8));
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\n");
+        
+        assertTrue(lines[0].contains("Percentile"));
+        // 1ms lands in a bucket that is reported by its upper bound
+        assertTrue(lines[2].trim().matches("1\\.00\\d 0\\.001000000000 +1 +1\\.00"), lines[2]);
+        String last = lines[lines.length - 4].trim();
+        assertTrue(last.startsWith("1000.000 1.000000000000"), last);
+        assertTrue(lines[lines.length - 2].contains("Total count    =         1000"), lines[lines.length - 2]);
+    }
+}
\ No newline at end of file
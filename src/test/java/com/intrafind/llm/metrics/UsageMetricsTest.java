@@ -0,0 +1,70 @@
+package com.intrafind.llm.metrics;
+
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.Usage;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageMetricsTest {
+    
+    @Test
+    public void testRecordPerProviderAndModel() {
+        UsageMetrics metrics = new UsageMetrics();
+        metrics.record(LLMProvider.OPENAI, "gpt-4o", new Usage(100, 20, 80, 5));
+        metrics.record(LLMProvider.OPENAI, "gpt-4o", new Usage(50, 10, 0, 0));
+        metrics.record(LLMProvider.ANTHROPIC, "claude-3-haiku", new Usage(10, 1, 0, 0));
+        metrics.record(LLMProvider.ANTHROPIC, "claude-3-haiku", new Usage(2000, 1, 0, 0, 1800));
+        
+        UsageSnapshot openai = metrics.snapshot(LLMProvider.OPENAI, "gpt-4o");
+        assertEquals(2, openai.requests());
+        assertEquals(150, openai.inputTokens());
+        assertEquals(30, openai.outputTokens());
+        assertEquals(80, openai.cachedInputTokens());
+        assertEquals(5, openai.reasoningTokens());
+        assertEquals(80.0 / 150, openai.cacheHitRatio(), 1e-9);
+        assertEquals(0, openai.cacheWriteInputTokens());
+        assertEquals(1800, metrics.snapshot(LLMProvider.ANTHROPIC, "claude-3-haiku").cacheWriteInputTokens());
+        
+        assertEquals(2, metrics.snapshot().size());
+        assertEquals(0, metrics.snapshot(LLMProvider.GEMINI, "gemini-pro").requests());
+    }
+    
+    @Test
+    public void testRatesBetweenSnapshots() {
+        UsageSnapshot earlier = new UsageSnapshot(LLMProvider.OPENAI, "gpt-4o", 0, 10, 1000, 100, 0, 0);
+        UsageSnapshot later = new UsageSnapshot(LLMProvider.OPENAI, "gpt-4o", 2_000_000_000L, 30, 3000, 500, 1000, 0, 400);
+        
+        assertEquals(10.0, later.requestsPerSecond(earlier), 1e-9);
+        assertEquals(1200.0, later.tokensPerSecond(earlier), 1e-9);
+        assertEquals(200.0, later.outputTokensPerSecond(earlier), 1e-9);
+        assertEquals(0.5, later.cacheHitRatio(earlier), 1e-9);
+        assertEquals(200.0, later.cacheWriteTokensPerSecond(earlier), 1e-9);
+    }
+    
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        UsageMetrics metrics = new UsageMetrics();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    metrics.record(LLMProvider.MISTRAL, "mistral-tiny", new Usage(3, 2, 1, 0));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        UsageSnapshot snapshot = metrics.snapshot(LLMProvider.MISTRAL, "mistral-tiny");
+        assertEquals(80_000, snapshot.requests());
+        assertEquals(240_000, snapshot.inputTokens());
+        assertEquals(160_000, snapshot.outputTokens());
+    }
+}
\ No newline at end of file
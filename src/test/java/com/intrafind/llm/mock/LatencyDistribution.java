@@ -0,0 +1,37 @@
+package com.intrafind.llm.mock;
+
+import java.time.Duration;
+import java.util.Random;
+
+// Server think time injected by MockLLMServer before the response head is sent
+@FunctionalInterface
+public interface LatencyDistribution {
+    
+    long sampleNanos(Random random);
+    
+    static LatencyDistribution none() {
+        return random -> 0;
+    }
+    
+    static LatencyDistribution fixed(Duration latency) {
+        long nanos = latency.toNanos();
+        return random -> nanos;
+    }
+    
+    static LatencyDistribution uniform(Duration min, Duration max) {
+        long minNanos = min.toNanos();
+        long range = max.toNanos() - minNanos;
+        return random -> minNanos + (long) (random.nextDouble() * range);
+    }
+    
+    static LatencyDistribution exponential(Duration mean) {
+        double meanNanos = mean.toNanos();
+        return random -> (long) (-meanNanos * Math.log(1.0 - random.nextDouble()));
+    }
+    
+    // Long-tailed like real LLM endpoints: median plus a multiplicative spread (sigma of the underlying normal)
+    static LatencyDistribution logNormal(Duration median, double sigma) {
+        double mu = Math.log(median.toNanos());
+        return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+    }
+}
\ No newline at end of file
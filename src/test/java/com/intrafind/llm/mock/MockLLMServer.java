@@ -0,0 +1,725 @@
+package com.intrafind.llm.mock;
+
+import com.intrafind.llm.utils.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Embedded stand-in for the OpenAI, Anthropic, Gemini and Mistral HTTP APIs, for offline load and
+ * regression tests. Point a client at {@link #getBaseUrl()} and configure latency, token-paced SSE
+ * streaming, 429s, 5xx bursts and slow-drip bodies with the {@code with} methods before {@link #start()}.
+ *
+ * <p>Run {@link #main} to serve it standalone, e.g. as the target of the CLI bench command.
+ */
+public class MockLLMServer implements AutoCloseable {
+    
+    static {
+        // Without TCP_NODELAY small responses wait for the delayed ACK (~40ms) on loopback. The JDK reads this
+        // once, so it only takes effect here if no HttpServer was created before; the surefire config sets it too.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+    
+    private static final String[] WORDS = {
+        "The", "quick", "brown", "fox", "jumps", "over", "the", "lazy", "dog", "while", "a", "mock",
+        "model", "streams", "tokens", "at", "a", "steady", "pace"
+    };
+    // Uploaded files referenced from a request: OpenAI file ids and Gemini file URIs
+    private static final Pattern FILE_REFERENCE = Pattern.compile("\"(?:file_id|fileUri)\":\"([^\"]+)\"");
+    
+    private final Random random;
+    private int port;
+    private LatencyDistribution latency = LatencyDistribution.none();
+    private int outputTokens = 16;
+    private double tokensPerSecond;
+    private double rateLimitProbability;
+    private int retryAfterSeconds = 1;
+    private int errorEvery;
+    private int errorBurst;
+    private int errorStatus = 503;
+    private double slowDripProbability;
+    private int slowDripBytesPerSecond;
+    private boolean recording;
+    private boolean promptCaching;
+    
+    private HttpServer server;
+    private ExecutorService executor;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+    private final AtomicLong serverErrorCount = new AtomicLong();
+    private final ConcurrentLinkedQueue<RecordedRequest> recorded = new ConcurrentLinkedQueue<>();
+    private final Set<Long> cachedPrefixes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> cachedContents = new ConcurrentHashMap<>();
+    private final AtomicLong cachedContentIds = new AtomicLong();
+    private final Map<String, Long> responses = new ConcurrentHashMap<>();
+    private final Map<String, Integer> files = new ConcurrentHashMap<>();
+    private final AtomicLong fileIds = new AtomicLong();
+    private final AtomicLong responseIds = new AtomicLong();
+    
+    public record RecordedRequest(String method, String path, Map<String, String> headers, String body) {
+    }
+    
+    public MockLLMServer() {
+        this(42);
+    }
+    
+    public MockLLMServer(long seed) {
+        this.random = new Random(seed);
+    }
+    
+    public MockLLMServer withPort(int port) {
+        this.port = port;
+        return this;
+    }
+    
+    // Think time before the response head (time to first token when streaming)
+    public MockLLMServer withLatency(LatencyDistribution latency) {
+        this.latency = latency;
+        return this;
+    }
+    
+    public MockLLMServer withOutputTokens(int outputTokens) {
+        this.outputTokens = outputTokens;
+        return this;
+    }
+    
+    // Paces streamed tokens; 0 sends them as fast as possible
+    public MockLLMServer withTokensPerSecond(double tokensPerSecond) {
+        this.tokensPerSecond = tokensPerSecond;
+        return this;
+    }
+    
+    public MockLLMServer withRateLimit(double probability, int retryAfterSeconds) {
+        this.rateLimitProbability = probability;
+        this.retryAfterSeconds = retryAfterSeconds;
+        return this;
+    }
+    
+    // After every `every` requests the next `burst` requests fail with `status`
+    public MockLLMServer withServerErrorBursts(int every, int burst, int status) {
+        this.errorEvery = every;
+        this.errorBurst = burst;
+        this.errorStatus = status;
+        return this;
+    }
+    
+    public MockLLMServer withSlowDrip(double probability, int bytesPerSecond) {
+        this.slowDripProbability = probability;
+        this.slowDripBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+    
+    public MockLLMServer withRecording(boolean recording) {
+        this.recording = recording;
+        return this;
+    }
+    
+    // Emulates automatic prefix caching: byte-identical request prefixes seen before are reported as cached tokens
+    public MockLLMServer withPromptCaching(boolean promptCaching) {
+        this.promptCaching = promptCaching;
+        return this;
+    }
+    
+    public MockLLMServer start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+    
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+    
+    public long getServerErrorCount() {
+        return serverErrorCount.get();
+    }
+    
+    public List<RecordedRequest> getRecordedRequests() {
+        return new ArrayList<>(recorded);
+    }
+    
+    public void clearRecordedRequests() {
+        recorded.clear();
+    }
+    
+    // Names of the Gemini cachedContents that currently exist
+    public Set<String> getCachedContents() {
+        return Set.copyOf(cachedContents.keySet());
+    }
+    
+    // Simulates cachedContents expiring on the server
+    public void clearCachedContents() {
+        cachedContents.clear();
+    }
+    
+    // References of the uploaded files that currently exist
+    public Set<String> getFiles() {
+        return Set.copyOf(files.keySet());
+    }
+    
+    // Simulates uploaded files expiring on the server
+    public void clearFiles() {
+        files.clear();
+    }
+    
+    // Simulates stored Responses API responses expiring on the server
+    public void clearResponses() {
+        responses.clear();
+    }
+    
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+    
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+    
+    private long nextLatencyNanos() {
+        synchronized (random) {
+            return latency.sampleNanos(random);
+        }
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            long n = requestCount.incrementAndGet();
+            byte[] requestBytes = exchange.getRequestBody().readAllBytes();
+            String path = exchange.getRequestURI().getPath();
+            if (recording) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                exchange.getRequestHeaders().forEach((name, values) -> headers.put(name.toLowerCase(), values.get(0)));
+                recorded.add(new RecordedRequest(exchange.getRequestMethod(), path, headers,
+                    new String(requestBytes, StandardCharsets.UTF_8)));
+            }
+            
+            if (path.contains("/cachedContents")) {
+                handleCachedContents(exchange, path, requestBytes);
+                return;
+            }
+            if (path.endsWith("/files")) {
+                handleFileUpload(exchange, requestBytes);
+                return;
+            }
+            
+            WireFormat format = WireFormat.of(path);
+            if (format == null) {
+                send(exchange, 404, "{\"error\":{\"message\":\"Unknown path " + path + "\"}}", false);
+                return;
+            }
+            if (path.endsWith("/models")) {
+                send(exchange, 200, "{\"object\":\"list\",\"data\":[],\"models\":[]}", false);
+                return;
+            }
+            
+            sleepNanos(nextLatencyNanos());
+            
+            if (errorEvery > 0 && (n - 1) % (errorEvery + errorBurst) >= errorEvery) {
+                serverErrorCount.incrementAndGet();
+                send(exchange, errorStatus, format.error(errorStatus, "The mock server is having a bad moment"), false);
+                return;
+            }
+            if (rateLimitProbability > 0 && nextDouble() < rateLimitProbability) {
+                rateLimitedCount.incrementAndGet();
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(retryAfterSeconds));
+                send(exchange, 429, format.error(429, "Rate limit reached, retry after " + retryAfterSeconds + "s"), false);
+                return;
+            }
+            
+            Map<String, Object> request = requestBytes.length > 0 ? JsonParser.parse(new String(requestBytes, StandardCharsets.UTF_8), Map.class) : Map.of();
+            String model = format.model(path, request);
+            long inputTokens = Math.max(1, requestBytes.length / 4);
+            long cachedTokens = 0;
+            long cacheWriteTokens = 0;
+            if (promptCaching && format == WireFormat.ANTHROPIC_MESSAGES) {
+                // Explicit caching: only prefixes up to the last cache_control breakpoint are read or written
+                int breakpoint = new String(requestBytes, StandardCharsets.ISO_8859_1).lastIndexOf("\"cache_control\"");
+                if (breakpoint >= 0) {
+                    long cachedBytes = Math.min(breakpoint, cachedPrefixBytes(path, requestBytes));
+                    cachedTokens = cachedBytes / 4;
+                    cacheWriteTokens = (breakpoint - cachedBytes) / 4;
+                }
+            } else if (promptCaching) {
+                cachedTokens = Math.min(inputTokens, cachedPrefixBytes(path, requestBytes) / 4);
+            }
+            if (temperature(request) > 2) {
+                send(exchange, 400, format.error(400, "Invalid value for temperature: must be between 0 and 2"), false);
+                return;
+            }
+            if (request.get("cachedContent") instanceof String name) {
+                Long contentTokens = cachedContents.get(name);
+                if (contentTokens == null) {
+                    send(exchange, 404, format.error(404, "CachedContent not found: " + name), false);
+                    return;
+                }
+                inputTokens += contentTokens;
+                cachedTokens = contentTokens;
+            }
+            Matcher fileReference = FILE_REFERENCE.matcher(new String(requestBytes, StandardCharsets.UTF_8));
+            while (fileReference.find()) {
+                if (!files.containsKey(fileReference.group(1))) {
+                    send(exchange, 404, format.error(404, "File not found: " + fileReference.group(1)), false);
+                    return;
+                }
+            }
+            if (request.get("previous_response_id") instanceof String previous) {
+                // The stored conversation is billed as input again
+                Long previousTokens = responses.get(previous);
+                if (previousTokens == null) {
+                    send(exchange, 400, JsonParser.toJson(Map.of("error", Map.of("message", "Previous response with id '" + previous
+                        + "' not found.", "type", "invalid_request_error", "param", "previous_response_id", "code", "previous_response_not_found"))), false);
+                    return;
+                }
+                inputTokens += previousTokens;
+            }
+            
+            if (format.isStreaming(path, request)) {
+                stream(exchange, format, model, inputTokens, request);
+            } else {
+                boolean drip = slowDripProbability > 0 && nextDouble() < slowDripProbability;
+                Map<String, Object> completion = format.completion(model, text(outputTokens), inputTokens, cachedTokens, cacheWriteTokens, outputTokens);
+                if (format == WireFormat.RESPONSES) {
+                    String id = "resp_mock_" + responseIds.incrementAndGet();
+                    completion.put("id", id);
+                    responses.put(id, inputTokens + outputTokens);
+                }
+                send(exchange, 200, JsonParser.toJson(completion), drip);
+            }
+        }
+    }
+    
+    // Sampling temperature of the request wherever the wire format puts it, 0 if unset
+    private static double temperature(Map<String, Object> request) {
+        Object temperature = request.get("temperature");
+        if (temperature == null && request.get("generationConfig") instanceof Map<?, ?> config) {
+            temperature = config.get("temperature");
+        }
+        return temperature instanceof Number number ? number.doubleValue() : 0;
+    }
+    
+    // Gemini's explicit context caching: create, extend (PATCH) and delete cachedContents
+    private void handleCachedContents(HttpExchange exchange, String path, byte[] requestBytes) throws IOException {
+        String method = exchange.getRequestMethod();
+        String name = path.substring(path.indexOf("cachedContents"));
+        if (method.equals("POST") && name.equals("cachedContents")) {
+            Map<String, Object> request = JsonParser.parse(new String(requestBytes, StandardCharsets.UTF_8), Map.class);
+            name = "cachedContents/mock-" + cachedContentIds.incrementAndGet();
+            long tokens = Math.max(1, requestBytes.length / 4);
+            cachedContents.put(name, tokens);
+            send(exchange, 200, JsonParser.toJson(Map.of("name", name, "model", request.get("model"), "ttl", request.get("ttl"),
+                "usageMetadata", Map.of("totalTokenCount", tokens))), false);
+        } else if (!cachedContents.containsKey(name)) {
+            send(exchange, 404, WireFormat.GEMINI.error(404, "CachedContent not found: " + name), false);
+        } else if (method.equals("DELETE")) {
+            cachedContents.remove(name);
+            send(exchange, 200, "{}", false);
+        } else {
+            send(exchange, 200, JsonParser.toJson(Map.of("name", name)), false);
+        }
+    }
+    
+    // OpenAI Files API (multipart/form-data) or Gemini File API (multipart/related, X-Goog-Upload-Protocol)
+    private void handleFileUpload(HttpExchange exchange, byte[] requestBytes) throws IOException {
+        long id = fileIds.incrementAndGet();
+        if (exchange.getRequestHeaders().containsKey("X-Goog-Upload-Protocol")) {
+            String uri = "https://generativelanguage.googleapis.com/v1beta/files/mock-" + id;
+            files.put(uri, requestBytes.length);
+            send(exchange, 200, JsonParser.toJson(Map.of("file", Map.of("name", "files/mock-" + id, "uri", uri,
+                "sizeBytes", String.valueOf(requestBytes.length), "state", "ACTIVE",
+                "expirationTime", Instant.now().plus(Duration.ofHours(48)).toString()))), false);
+        } else {
+            String fileId = "file-mock-" + id;
+            files.put(fileId, requestBytes.length);
+            send(exchange, 200, JsonParser.toJson(Map.of("id", fileId, "object", "file", "bytes", requestBytes.length,
+                "purpose", "vision", "expires_at", Instant.now().plus(Duration.ofDays(1)).getEpochSecond())), false);
+        }
+    }
+    
+    // Like OpenAI: prefixes are cached in steps (512 bytes ~ 128 tokens) once they reach ~1024 tokens
+    private long cachedPrefixBytes(String path, byte[] body) {
+        int step = 512;
+        int minimum = 4096;
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash = (hash ^ path.charAt(i)) * 0x100000001b3L;
+        }
+        long cached = 0;
+        boolean hit = true;
+        for (int i = 0; i < body.length; i++) {
+            hash = (hash ^ (body[i] & 0xff)) * 0x100000001b3L;
+            if ((i + 1) % step == 0 && i + 1 >= minimum) {
+                if (hit && cachedPrefixes.contains(hash)) {
+                    cached = i + 1;
+                } else {
+                    hit = false;
+                    cachedPrefixes.add(hash);
+                }
+            }
+        }
+        return cached;
+    }
+    
+    private void send(HttpExchange exchange, int status, String json, boolean drip) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        OutputStream out = exchange.getResponseBody();
+        if (!drip) {
+            out.write(body);
+            return;
+        }
+        // Trickle the body out in 20 slices per second
+        int slice = Math.max(1, slowDripBytesPerSecond / 20);
+        for (int offset = 0; offset < body.length; offset += slice) {
+            out.write(body, offset, Math.min(slice, body.length - offset));
+            out.flush();
+            sleepNanos(50_000_000L);
+        }
+    }
+    
+    private void stream(HttpExchange exchange, WireFormat format, String model, long inputTokens, Map<String, Object> request) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        long interval = tokensPerSecond > 0 ? (long) (1_000_000_000L / tokensPerSecond) : 0;
+        
+        List<String> events = new ArrayList<>();
+        format.streamStart(events, model, inputTokens);
+        write(out, events);
+        for (int i = 0; i < outputTokens; i++) {
+            format.streamToken(events, model, (i == 0 ? "" : " ") + WORDS[i % WORDS.length]);
+            write(out, events);
+            sleepNanos(interval);
+        }
+        format.streamEnd(events, model, inputTokens, outputTokens, request);
+        write(out, events);
+    }
+    
+    private static void write(OutputStream out, List<String> events) throws IOException {
+        for (String event : events) {
+            out.write(event.getBytes(StandardCharsets.UTF_8));
+        }
+        out.flush();
+        events.clear();
+    }
+    
+    private static String text(int tokens) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[i % WORDS.length]);
+        }
+        return text.toString();
+    }
+    
+    private static void sleepNanos(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining = nanos;
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            remaining = deadline - System.nanoTime();
+        }
+    }
+    
+    private static String sse(Object data) {
+        return "data: " + JsonParser.toJson(data) + "\n\n";
+    }
+    
+    private static String sse(String event, Object data) {
+        return "event: " + event + "\n" + sse(data);
+    }
+    
+    private enum WireFormat {
+        // OpenAI and Mistral share the chat completions format
+        CHAT_COMPLETIONS {
+            @Override
+            Map<String, Object> completion(String model, String text, long inputTokens, long cachedTokens, long cacheWriteTokens, long outputTokens) {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("id", "chatcmpl-mock");
+                body.put("object", "chat.completion");
+                body.put("model", model);
+                body.put("choices", List.of(Map.of(
+                    "index", 0,
+                    "message", Map.of("role", "assistant", "content", text),
+                    "finish_reason", "stop")));
+                body.put("usage", Map.of(
+                    "prompt_tokens", inputTokens,
+                    "completion_tokens", outputTokens,
+                    "total_tokens", inputTokens + outputTokens,
+                    "prompt_tokens_details", Map.of("cached_tokens", cachedTokens)));
+                return body;
+            }
+            
+            @Override
+            String error(int status, String message) {
+                String type = status == 429 ? "rate_limit_error" : status == 400 ? "invalid_request_error" : "server_error";
+                return JsonParser.toJson(Map.of("error", Map.of("message", message, "type", type)));
+            }
+            
+            @Override
+            void streamToken(List<String> events, String model, String token) {
+                events.add(sse(chunk(model, Map.of("content", token), null)));
+            }
+            
+            @Override
+            void streamEnd(List<String> events, String model, long inputTokens, long outputTokens, Map<String, Object> request) {
+                events.add(sse(chunk(model, Map.of(), "stop")));
+                Object options = request.get("stream_options");
+                if (options instanceof Map<?, ?> map && Boolean.TRUE.equals(map.get("include_usage"))) {
+                    Map<String, Object> usage = new LinkedHashMap<>(chunk(model, null, null));
+                    usage.put("choices", List.of());
+                    usage.put("usage", Map.of("prompt_tokens", inputTokens, "completion_tokens", outputTokens,
+                        "total_tokens", inputTokens + outputTokens));
+                    events.add(sse(usage));
+                }
+                events.add("data: [DONE]\n\n");
+            }
+            
+            private Map<String, Object> chunk(String model, Map<String, Object> delta, String finishReason) {
+                Map<String, Object> chunk = new LinkedHashMap<>();
+                chunk.put("id", "chatcmpl-mock");
+                chunk.put("object", "chat.completion.chunk");
+                chunk.put("model", model);
+                if (delta != null) {
+                    Map<String, Object> choice = new LinkedHashMap<>();
+                    choice.put("index", 0);
+                    choice.put("delta", delta);
+                    choice.put("finish_reason", finishReason);
+                    chunk.put("choices", List.of(choice));
+                }
+                return chunk;
+            }
+        },
+        ANTHROPIC_MESSAGES {
+            @Override
+            Map<String, Object> completion(String model, String text, long inputTokens, long cachedTokens, long cacheWriteTokens, long outputTokens) {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("id", "msg_mock");
+                body.put("type", "message");
+                body.put("role", "assistant");
+                body.put("model", model);
+                body.put("content", List.of(Map.of("type", "text", "text", text)));
+                body.put("stop_reason", "end_turn");
+                // Anthropic counts cache reads separately from input_tokens
+                body.put("usage", Map.of("input_tokens", inputTokens - cachedTokens - cacheWriteTokens, "output_tokens", outputTokens,
+                    "cache_read_input_tokens", cachedTokens, "cache_creation_input_tokens", cacheWriteTokens));
+                return body;
+            }
+            
+            @Override
+            String error(int status, String message) {
+                String type = status == 429 ? "rate_limit_error" : status == 529 ? "overloaded_error" : "api_error";
+                return JsonParser.toJson(Map.of("type", "error", "error", Map.of("type", type, "message", message)));
+            }
+            
+            @Override
+            void streamStart(List<String> events, String model, long inputTokens) {
+                Map<String, Object> message = new LinkedHashMap<>(completion(model, "", inputTokens, 0, 0, 0));
+                message.put("content", List.of());
+                message.put("stop_reason", null);
+                events.add(sse("message_start", Map.of("type", "message_start", "message", message)));
+                events.add(sse("content_block_start", Map.of("type", "content_block_start", "index", 0,
+                    "content_block", Map.of("type", "text", "text", ""))));
+            }
+            
+            @Override
+            void streamToken(List<String> events, String model, String token) {
+                events.add(sse("content_block_delta", Map.of("type", "content_block_delta", "index", 0,
+                    "delta", Map.of("type", "text_delta", "text", token))));
+            }
+            
+            @Override
+            void streamEnd(List<String> events, String model, long inputTokens, long outputTokens, Map<String, Object> request) {
+                events.add(sse("content_block_stop", Map.of("type", "content_block_stop", "index", 0)));
+                events.add(sse("message_delta", Map.of("type", "message_delta",
+                    "delta", Map.of("stop_reason", "end_turn"), "usage", Map.of("output_tokens", outputTokens))));
+                events.add(sse("message_stop", Map.of("type", "message_stop")));
+            }
+        },
+        GEMINI {
+            @Override
+            String model(String path, Map<String, Object> request) {
+                int start = path.indexOf("/models/") + "/models/".length();
+                int end = path.indexOf(':', start);
+                return end > start ? path.substring(start, end) : "gemini-pro";
+            }
+            
+            @Override
+            boolean isStreaming(String path, Map<String, Object> request) {
+                return path.endsWith(":streamGenerateContent");
+            }
+            
+            @Override
+            Map<String, Object> completion(String model, String text, long inputTokens, long cachedTokens, long cacheWriteTokens, long outputTokens) {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("candidates", List.of(Map.of(
+                    "content", Map.of("role", "model", "parts", List.of(Map.of("text", text))),
+                    "finishReason", "STOP",
+                    "index", 0)));
+                body.put("usageMetadata", Map.of(
+                    "promptTokenCount", inputTokens,
+                    "candidatesTokenCount", outputTokens,
+                    "cachedContentTokenCount", cachedTokens,
+                    "totalTokenCount", inputTokens + outputTokens));
+                body.put("modelVersion", model);
+                return body;
+            }
+            
+            @Override
+            String error(int status, String message) {
+                String reason = status == 429 ? "RESOURCE_EXHAUSTED" : status == 404 ? "NOT_FOUND" : status == 400 ? "INVALID_ARGUMENT" : "UNAVAILABLE";
+                return JsonParser.toJson(Map.of("error", Map.of("code", status, "message", message, "status", reason)));
+            }
+            
+            @Override
+            void streamToken(List<String> events, String model, String token) {
+                events.add(sse(Map.of("candidates", List.of(Map.of(
+                    "content", Map.of("role", "model", "parts", List.of(Map.of("text", token))), "index", 0)))));
+            }
+            
+            @Override
+            void streamEnd(List<String> events, String model, long inputTokens, long outputTokens, Map<String, Object> request) {
+                Map<String, Object> last = completion(model, "", inputTokens, 0, 0, outputTokens);
+                events.add(sse(last));
+            }
+        },
+        
+        // OpenAI's Responses API, which can continue a stored response via previous_response_id
+        RESPONSES {
+            @Override
+            Map<String, Object> completion(String model, String text, long inputTokens, long cachedTokens, long cacheWriteTokens, long outputTokens) {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("id", "resp_mock");
+                body.put("object", "response");
+                body.put("status", "completed");
+                body.put("model", model);
+                body.put("output", List.of(Map.of(
+                    "type", "message",
+                    "role", "assistant",
+                    "content", List.of(Map.of("type", "output_text", "text", text)))));
+                body.put("usage", Map.of(
+                    "input_tokens", inputTokens,
+                    "output_tokens", outputTokens,
+                    "total_tokens", inputTokens + outputTokens,
+                    "input_tokens_details", Map.of("cached_tokens", cachedTokens),
+                    "output_tokens_details", Map.of("reasoning_tokens", 0)));
+                return body;
+            }
+            
+            @Override
+            String error(int status, String message) {
+                return CHAT_COMPLETIONS.error(status, message);
+            }
+            
+            @Override
+            void streamToken(List<String> events, String model, String token) {
+                events.add(sse("response.output_text.delta", Map.of("type", "response.output_text.delta", "delta", token)));
+            }
+            
+            @Override
+            void streamEnd(List<String> events, String model, long inputTokens, long outputTokens, Map<String, Object> request) {
+                events.add(sse("response.completed", Map.of("type", "response.completed",
+                    "response", completion(model, "", inputTokens, 0, 0, outputTokens))));
+            }
+        };
+        
+        static WireFormat of(String path) {
+            if (path.endsWith("/chat/completions")) {
+                return CHAT_COMPLETIONS;
+            } else if (path.endsWith("/responses")) {
+                return RESPONSES;
+            } else if (path.endsWith("/messages")) {
+                return ANTHROPIC_MESSAGES;
+            } else if (path.contains(":generateContent") || path.contains(":streamGenerateContent")) {
+                return GEMINI;
+            } else if (path.endsWith("/models")) {
+                return CHAT_COMPLETIONS;
+            }
+            return null;
+        }
+        
+        String model(String path, Map<String, Object> request) {
+            Object model = request.get("model");
+            return model != null ? model.toString() : "mock-model";
+        }
+        
+        boolean isStreaming(String path, Map<String, Object> request) {
+            return Boolean.TRUE.equals(request.get("stream"));
+        }
+        
+        abstract Map<String, Object> completion(String model, String text, long inputTokens, long cachedTokens, long cacheWriteTokens, long outputTokens);
+        
+        abstract String error(int status, String message);
+        
+        void streamStart(List<String> events, String model, long inputTokens) {
+        }
+        
+        abstract void streamToken(List<String> events, String model, String token);
+        
+        abstract void streamEnd(List<String> events, String model, long inputTokens, long outputTokens, Map<String, Object> request);
+    }
+    
+    // Standalone: --port 8089 --latency-ms 200 --output-tokens 64 --tokens-per-second 50 --rate-limit 0.01
+    public static void main(String[] args) throws IOException {
+        MockLLMServer server = new MockLLMServer().withPort(8089);
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port" -> server.withPort(Integer.parseInt(value));
+                case "--latency-ms" -> server.withLatency(LatencyDistribution.logNormal(Duration.ofMillis(Long.parseLong(value)), 0.5));
+                case "--output-tokens" -> server.withOutputTokens(Integer.parseInt(value));
+                case "--tokens-per-second" -> server.withTokensPerSecond(Double.parseDouble(value));
+                case "--rate-limit" -> server.withRateLimit(Double.parseDouble(value), 1);
+                default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        server.start();
+        System.out.println("Mock LLM server listening on " + server.getBaseUrl());
+    }
+}
\ No newline at end of file
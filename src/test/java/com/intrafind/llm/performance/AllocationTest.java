@@ -0,0 +1,134 @@
+package com.intrafind.llm.performance;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.mock.MockLLMServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bytes allocated by the calling thread per generate() call against the mock server, compared with the checked-in
+ * baseline in allocation-baseline.properties. Run with -Dallocation.updateBaseline=true to write the measured
+ * values to target/allocation-baseline.properties after an intentional change.
+ */
+public class AllocationTest {
+    
+    private static final int WARMUP_CALLS = 300;
+    private static final int MEASURED_CALLS = 100;
+    // Headroom for JIT and JDK differences before a change counts as a regression
+    private static final double TOLERANCE = 0.25;
+    private static final long SLACK_BYTES = 16 * 1024;
+    
+    private static final Map<String, Long> measured = new TreeMap<>();
+    private static MockLLMServer server;
+    private static Properties baseline;
+    private static byte[] image;
+    
+    @BeforeAll
+    public static void setUp() throws IOException {
+        server = new MockLLMServer().start();
+        baseline = new Properties();
+        try (InputStream in = AllocationTest.class.getResourceAsStream("/allocation-baseline.properties")) {
+            baseline.load(in);
+        }
+        image = Files.readAllBytes(Path.of("src/test/resources/city.jpg"));
+    }
+    
+    @AfterAll
+    public static void tearDown() throws IOException {
+        server.close();
+        
+        System.out.println("Allocated bytes per call:");
+        measured.forEach((key, bytes) -> System.out.printf(Locale.ROOT, "  %-20s %,12d (baseline %,d)%n",
+            key, bytes, Long.parseLong(baseline.getProperty(key, "0"))));
+        
+        if (Boolean.getBoolean("allocation.updateBaseline")) {
+            Properties updated = new Properties();
+            measured.forEach((key, bytes) -> updated.setProperty(key, String.valueOf(bytes)));
+            Files.createDirectories(Path.of("target"));
+            try (OutputStream out = Files.newOutputStream(Path.of("target/allocation-baseline.properties"))) {
+                updated.store(out, "Bytes allocated per generate() call, see AllocationTest");
+            }
+        }
+    }
+    
+    private static String prompt(int bytes) {
+        StringBuilder prompt = new StringBuilder(bytes + 16);
+        while (prompt.length() < bytes) {
+            prompt.append("The quarterly report shows revenue growth across all regions. ");
+        }
+        prompt.setLength(bytes);
+        return prompt.toString();
+    }
+    
+    private static long bytesPerCall(LLMProvider provider, LLMRequest request) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        
+        LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+        try {
+            for (int i = 0; i < WARMUP_CALLS; i++) {
+                client.generate(request);
+            }
+            long before = threads.getThreadAllocatedBytes(thread);
+            for (int i = 0; i < MEASURED_CALLS; i++) {
+                client.generate(request);
+            }
+            return (threads.getThreadAllocatedBytes(thread) - before) / MEASURED_CALLS;
+        } finally {
+            client.close();
+        }
+    }
+    
+    private static void check(String scenario, LLMRequest request) {
+        List<String> regressions = new ArrayList<>();
+        for (LLMProvider provider : LLMProvider.values()) {
+            String key = provider.name().toLowerCase() + "." + scenario;
+            long bytes = bytesPerCall(provider, request);
+            measured.put(key, bytes);
+            
+            String expected = baseline.getProperty(key);
+            assertNotNull(expected, "No baseline for " + key);
+            long limit = (long) (Long.parseLong(expected) * (1 + TOLERANCE)) + SLACK_BYTES;
+            if (bytes > limit) {
+                regressions.add(String.format(Locale.ROOT, "%s: %,d bytes per call, baseline %,d (limit %,d)",
+                    key, bytes, Long.parseLong(expected), limit));
+            }
+        }
+        assertTrue(regressions.isEmpty(), "Allocation regression: " + regressions);
+    }
+    
+    @Test
+    public void testSmallPrompt() {
+        check("small", new LLMRequest(prompt(100)));
+    }
+    
+    @Test
+    public void testLargePrompt() {
+        check("large", new LLMRequest(prompt(100_000)));
+    }
+    
+    @Test
+    public void testImage() {
+        check("image", new LLMRequest("Describe this image").withImage("image/jpeg", image));
+    }
+}
\ No newline at end of file
@@ -6,18 +6,27 @@ import com.intrafind.llm.core.LLMClient;
 import com.intrafind.llm.core.LLMProvider;
 import com.intrafind.llm.core.LLMRequest;
 import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.exceptions.RateLimitException;
+import com.intrafind.llm.mock.LatencyDistribution;
+import com.intrafind.llm.mock.MockLLMServer;
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
 import org.opentest4j.TestAbortedException;
 
+import java.net.URI;
+import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -321,4 +330,140 @@ public class PerformanceTest {
         
         client.close();
     }
+    
+    
+    // The tests below run against the embedded mock server and need no API keys
+    
+    // Asserts wall-clock latencies, so it only runs with -Pperformance
+    @Test
+    @Tag("performance")
+    public void testMockThroughput() throws Exception {
+        try (MockLLMServer server = new MockLLMServer()
+                .withLatency(LatencyDistribution.uniform(Duration.ofMillis(1), Duration.ofMillis(3)))
+                .start()) {
+            int concurrency = 32;
+            int requests = 2000;
+            LLMConfig config = new LLMConfig("test-key")
+                .withBaseUrl(server.getBaseUrl())
+                .withMaxConnections(concurrency);
+            
+            for (LLMProvider provider : LLMProvider.values()) {
+                LLMClient client = LLMClientFactory.create(provider, config);
+                
+                // Sequential calls on a warm connection: a Nagle/delayed-ACK stall would show up as ~40ms
+                long[] sequential = new long[200];
+                for (int i = 0; i < sequential.length; i++) {
+                    long begin = System.nanoTime();
+                    client.generate(new LLMRequest("Warmup " + i));
+                    sequential[i] = System.nanoTime() - begin;
+                }
+                Arrays.sort(sequential);
+                long sequentialMedian = sequential[sequential.length / 2] / 1_000_000;
+                assertTrue(sequentialMedian < 20, "Median sequential latency too high: " + sequentialMedian + "ms");
+                
+                long[] latencies = new long[requests];
+                AtomicInteger next = new AtomicInteger();
+                Instant start = Instant.now();
+                try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int t = 0; t < concurrency; t++) {
+                        executor.submit(() -> {
+                            int i;
+                            while ((i = next.getAndIncrement()) < requests) {
+                                long begin = System.nanoTime();
+                                LLMResponse response = client.generate(new LLMRequest("Request " + i));
+                                latencies[i] = System.nanoTime() - begin;
+                                assertNotNull(response.getContent());
+                            }
+                            return null;
+                        });
+                    }
+                }
+                Duration duration = Duration.between(start, Instant.now());
+                client.close();
+                
+                Arrays.sort(latencies);
+                assertTrue(latencies[0] > 0, "Not all requests completed");
+                System.out.printf("%s mock: %.0f req/s, p50 %dms, p99 %dms%n", provider.getDisplayName(),
+                    requests * 1000.0 / Math.max(1, duration.toMillis()),
+                    latencies[requests / 2] / 1_000_000, latencies[requests * 99 / 100] / 1_000_000);
+            }
+            assertEquals(LLMProvider.values().length * (200L + requests), server.getRequestCount());
+        }
+    }
+    
+    @Test
+    public void testMockRateLimit() throws Exception {
+        try (MockLLMServer server = new MockLLMServer().withRateLimit(1.0, 0).start()) {
+            for (LLMProvider provider : LLMProvider.values()) {
+                LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+                assertThrows(RateLimitException.class, () -> client.generate(new LLMRequest("Hello")));
+                client.close();
+            }
+            // The HTTP client retries a 429 once, honouring Retry-After, before the exception surfaces
+            assertEquals(2L * LLMProvider.values().length, server.getRateLimitedCount());
+        }
+    }
+    
+    @Test
+    public void testMockServerErrorBursts() throws Exception {
+        try (MockLLMServer server = new MockLLMServer().withServerErrorBursts(3, 2, 500).start()) {
+            LLMClient client = LLMClientFactory.create(LLMProvider.OPENAI, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+            
+            // 500 rather than 503, which the HTTP client would retry on its own
+            StringBuilder outcomes = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                try {
+                    client.generate(new LLMRequest("Hello"));
+                    outcomes.append('+');
+                } catch (LLMException e) {
+                    assertTrue(e.getMessage().contains("500"));
+                    outcomes.append('-');
+                }
+            }
+            client.close();
+            
+            assertEquals("+++--+++--", outcomes.toString());
+            assertEquals(4, server.getServerErrorCount());
+        }
+    }
+    
+    @Test
+    public void testMockSlowDrip() throws Exception {
+        try (MockLLMServer server = new MockLLMServer()
+                .withOutputTokens(100)
+                .withSlowDrip(1.0, 2000)
+                .start()) {
+            LLMClient client = LLMClientFactory.create(LLMProvider.MISTRAL, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+            LLMResponse response = client.generate(new LLMRequest("Hello"));
+            client.close();
+            
+            // ~700 bytes at 2000 bytes/s: the time goes into the download phase, not time to first byte
+            assertTrue(response.getTiming().getDownload().toMillis() >= 200, "Timing: " + response.getTiming());
+            assertTrue(response.getTiming().getTimeToFirstByte().toMillis() < 200, "Timing: " + response.getTiming());
+        }
+    }
+    
+    @Test
+    public void testMockStreamingPacedByTokenRate() throws Exception {
+        try (MockLLMServer server = new MockLLMServer()
+                .withOutputTokens(20)
+                .withTokensPerSecond(100)
+                .start()) {
+            java.net.http.HttpClient http = java.net.http.HttpClient.newHttpClient();
+            java.net.http.HttpRequest request = java.net.http.HttpRequest.newBuilder(URI.create(server.getBaseUrl() + "/chat/completions"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.ofString("{\"model\":\"gpt-4o\",\"stream\":true}"))
+                .build();
+            
+            Instant start = Instant.now();
+            List<String> lines = http.send(request, HttpResponse.BodyHandlers.ofLines()).body()
+                .filter(line -> line.startsWith("data: "))
+                .toList();
+            Duration duration = Duration.between(start, Instant.now());
+            
+            // 20 content chunks, a finish chunk and the [DONE] marker
+            assertEquals(22, lines.size());
+            assertEquals("data: [DONE]", lines.get(lines.size() - 1));
+            assertTrue(duration.toMillis() >= 190, "20 tokens at 100/s took " + duration.toMillis() + "ms");
+        }
+    }
 }
\ No newline at end of file
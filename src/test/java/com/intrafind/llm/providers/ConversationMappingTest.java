@@ -0,0 +1,150 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.Conversation;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConversationMappingTest {
+    
+    private static final ToolCall CALL = new ToolCall("call_1", "get_weather", Map.of("city", "Hamburg"));
+    
+    private MockLLMServer server;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).start();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+    
+    private static Conversation conversation() {
+        return Conversation.of(
+            Message.system("You report the weather."),
+            Message.user("Weather in Hamburg?"),
+            Message.assistant(null, List.of(CALL)),
+            Message.toolResult(CALL, "12 degrees, rain"),
+            Message.assistant("12 degrees and rain."),
+            Message.user("And tomorrow?"));
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> send(LLMProvider provider, LLMRequest request) {
+        LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+        try {
+            client.generate(request);
+        } finally {
+            client.close();
+        }
+        List<MockLLMServer.RecordedRequest> requests = server.getRecordedRequests();
+        return JsonParser.parse(requests.get(requests.size() - 1).body(), Map.class);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Object value) {
+        return (List<Map<String, Object>>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> map(Object value) {
+        return (Map<String, Object>) value;
+    }
+    
+    private static List<Object> roles(List<Map<String, Object>> messages) {
+        return messages.stream().map(message -> message.get("role")).toList();
+    }
+    
+    @Test
+    public void testChatCompletionsFormat() {
+        for (LLMProvider provider : List.of(LLMProvider.OPENAI, LLMProvider.MISTRAL)) {
+            List<Map<String, Object>> messages = list(send(provider, new LLMRequest(conversation())).get("messages"));
+            
+            assertEquals(List.of("system", "user", "assistant", "tool", "assistant", "user"), roles(messages), provider.name());
+            assertEquals("You report the weather.", messages.get(0).get("content"));
+            Map<String, Object> call = list(messages.get(2).get("tool_calls")).get(0);
+            assertEquals("call_1", call.get("id"));
+            assertEquals(Map.of("name", "get_weather", "arguments", "{\"city\":\"Hamburg\"}"), call.get("function"));
+            assertEquals("call_1", messages.get(3).get("tool_call_id"));
+            assertEquals("12 degrees, rain", messages.get(3).get("content"));
+            assertEquals("And tomorrow?", messages.get(5).get("content"));
+        }
+    }
+    
+    @Test
+    public void testAnthropicFormat() {
+        Map<String, Object> body = send(LLMProvider.ANTHROPIC, new LLMRequest(conversation()).withAutomaticCaching(true));
+        List<Map<String, Object>> messages = list(body.get("messages"));
+        
+        assertEquals("You report the weather.", list(body.get("system")).get(0).get("text"));
+        assertEquals(List.of("user", "assistant", "user", "assistant", "user"), roles(messages));
+        Map<String, Object> use = list(messages.get(1).get("content")).get(0);
+        assertEquals(Map.of("type", "tool_use", "id", "call_1", "name", "get_weather", "input", Map.of("city", "Hamburg")), use);
+        Map<String, Object> result = list(messages.get(2).get("content")).get(0);
+        assertEquals("tool_result", result.get("type"));
+        assertEquals("call_1", result.get("tool_use_id"));
+        // The latest turn ends the cached prefix for the next call
+        assertTrue(list(messages.get(4).get("content")).get(0).containsKey("cache_control"));
+        assertFalse(list(messages.get(3).get("content")).get(0).containsKey("cache_control"));
+    }
+    
+    @Test
+    public void testGeminiFormat() {
+        Map<String, Object> body = send(LLMProvider.GEMINI, new LLMRequest(conversation()));
+        List<Map<String, Object>> contents = list(body.get("contents"));
+        
+        assertEquals("You report the weather.", list(map(body.get("systemInstruction")).get("parts")).get(0).get("text"));
+        assertEquals(List.of("user", "model", "user", "model", "user"), roles(contents));
+        assertEquals(Map.of("name", "get_weather", "args", Map.of("city", "Hamburg")),
+            list(contents.get(1).get("parts")).get(0).get("functionCall"));
+        assertEquals(Map.of("name", "get_weather", "response", Map.of("content", "12 degrees, rain")),
+            list(contents.get(2).get("parts")).get(0).get("functionResponse"));
+    }
+    
+    @Test
+    public void testPromptFollowsConversation() {
+        for (LLMProvider provider : List.of(LLMProvider.OPENAI, LLMProvider.ANTHROPIC, LLMProvider.GEMINI, LLMProvider.MISTRAL)) {
+            Map<String, Object> body = send(provider, new LLMRequest("And the day after?").withConversation(conversation()));
+            List<Map<String, Object>> messages = list(body.getOrDefault("messages", body.get("contents")));
+            String last = JsonParser.toJson(messages.get(messages.size() - 1));
+            assertTrue(last.contains("And the day after?"), provider + ": " + last);
+            assertTrue(JsonParser.toJson(messages.get(messages.size() - 2)).contains("And tomorrow?"), provider.name());
+        }
+    }
+    
+    @Test
+    public void testContextAndImageGoWithLastUserTurn() {
+        LLMRequest request = new LLMRequest(conversation())
+            .withContext(ContentPart.text("Forecast bulletin"))
+            .withImage("image/png", new byte[] {1, 2, 3});
+        for (LLMProvider provider : List.of(LLMProvider.OPENAI, LLMProvider.ANTHROPIC, LLMProvider.GEMINI, LLMProvider.MISTRAL)) {
+            Map<String, Object> body = send(provider, request);
+            List<Map<String, Object>> messages = list(body.getOrDefault("messages", body.get("contents")));
+            String last = JsonParser.toJson(messages.get(messages.size() - 1));
+            assertTrue(last.indexOf("Forecast bulletin") >= 0 && last.indexOf("Forecast bulletin") < last.indexOf("And tomorrow?"), provider + ": " + last);
+            assertTrue(last.contains("AQID"), provider + ": " + last);
+            assertEquals(1, JsonParser.toJson(body).split("Forecast bulletin", -1).length - 1, provider.name());
+        }
+        
+        LLMRequest nothingToAttachTo = new LLMRequest(Conversation.of(Message.system("You report the weather.")))
+            .withContext(ContentPart.text("Forecast bulletin"));
+        assertThrows(IllegalArgumentException.class, () -> send(LLMProvider.OPENAI, nothingToAttachTo));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,214 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.UploadCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FileUploadTest {
+    
+    private static final byte[] SCAN = new byte[400_000];
+    private static final byte[] THUMBNAIL = new byte[2_000];
+    
+    static {
+        new Random(7).nextBytes(SCAN);
+        new Random(8).nextBytes(THUMBNAIL);
+    }
+    
+    private MockLLMServer server;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).start();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+    
+    private LLMClient client(LLMProvider provider, long minBytes) {
+        return LLMClientFactory.create(provider, new LLMConfig("test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .withResponsesApi(true)
+            .withFileUploadMinBytes(minBytes));
+    }
+    
+    private static LLMRequest question(String prompt, byte[] image) {
+        return new LLMRequest(prompt).withContext(ContentPart.image("image/png", image));
+    }
+    
+    private List<MockLLMServer.RecordedRequest> uploads() {
+        return server.getRecordedRequests().stream().filter(request -> request.path().endsWith("/files")).toList();
+    }
+    
+    private MockLLMServer.RecordedRequest lastGenerate() {
+        List<MockLLMServer.RecordedRequest> requests = server.getRecordedRequests().stream()
+            .filter(request -> !request.path().endsWith("/files")).toList();
+        return requests.get(requests.size() - 1);
+    }
+    
+    @Test
+    public void testGeminiUploadsOnce() {
+        LLMClient client = client(LLMProvider.GEMINI, 100_000);
+        try {
+            for (int i = 0; i < 3; i++) {
+                client.generate(question("Question " + i, SCAN));
+                String body = lastGenerate().body();
+                assertTrue(body.contains("\"fileData\":{\"fileUri\":\"https://generativelanguage.googleapis.com/v1beta/files/mock-1\""), body);
+                assertFalse(body.contains("inlineData"));
+                assertTrue(body.length() < 1_000, "body " + body.length());
+            }
+        } finally {
+            client.close();
+        }
+        List<MockLLMServer.RecordedRequest> uploads = uploads();
+        assertEquals(1, uploads.size());
+        assertEquals("multipart", uploads.get(0).headers().get("x-goog-upload-protocol"));
+        assertTrue(uploads.get(0).headers().get("content-type").startsWith("multipart/related"));
+    }
+    
+    @Test
+    public void testOpenAIUploadsOnce() {
+        LLMClient client = client(LLMProvider.OPENAI, 100_000);
+        try {
+            client.generate(question("First", SCAN));
+            client.generate(question("Second", SCAN));
+            assertTrue(lastGenerate().body().contains("{\"file_id\":\"file-mock-1\",\"type\":\"input_image\"}"));
+        } finally {
+            client.close();
+        }
+        List<MockLLMServer.RecordedRequest> uploads = uploads();
+        assertEquals(1, uploads.size());
+        assertTrue(uploads.get(0).headers().get("content-type").startsWith("multipart/form-data"));
+        assertTrue(uploads.get(0).body().contains("vision"));
+    }
+    
+    @Test
+    public void testSmallImagesInline() {
+        LLMClient client = client(LLMProvider.GEMINI, 100_000);
+        try {
+            client.generate(question("Question", THUMBNAIL));
+        } finally {
+            client.close();
+        }
+        assertTrue(uploads().isEmpty());
+        assertTrue(lastGenerate().body().contains("inlineData"));
+    }
+    
+    @Test
+    public void testExpiredFileFallsBackInline() {
+        LLMClient client = client(LLMProvider.GEMINI, 100_000);
+        try {
+            client.generate(question("First", SCAN));
+            server.clearFiles();
+            
+            assertNotNull(client.generate(question("Second", SCAN)).getContent());
+            assertTrue(lastGenerate().body().contains("inlineData"));
+            
+            client.generate(question("Third", SCAN));
+            assertTrue(lastGenerate().body().contains("files/mock-2"));
+        } finally {
+            client.close();
+        }
+        assertEquals(2, uploads().size());
+    }
+    
+    @Test
+    public void testRejectedRequestKeepsUpload() {
+        // Both providers number their files from the same counter of the mock server
+        List<Map.Entry<LLMProvider, String>> references = List.of(
+            Map.entry(LLMProvider.GEMINI, "files/mock-1"),
+            Map.entry(LLMProvider.OPENAI, "file-mock-2"));
+        for (Map.Entry<LLMProvider, String> reference : references) {
+            LLMClient client = client(reference.getKey(), 100_000);
+            try {
+                client.generate(question("First", SCAN));
+                LLMException e = assertThrows(LLMException.class, () -> client.generate(question("Second", SCAN).withParameter("temperature", 5)));
+                assertEquals(400, e.getStatusCode());
+                assertTrue(lastGenerate().body().contains(reference.getValue()), reference.getKey().name());
+                
+                client.generate(question("Third", SCAN));
+                assertTrue(lastGenerate().body().contains(reference.getValue()), reference.getKey().name());
+            } finally {
+                client.close();
+            }
+        }
+        assertEquals(2, uploads().size());
+    }
+    
+    @Test
+    public void testConcurrentCallersShareOneUpload() throws Exception {
+        LLMClient client = client(LLMProvider.OPENAI, 100_000);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                String prompt = "Question " + i;
+                futures.add(executor.submit(() -> client.generate(question(prompt, SCAN))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            client.close();
+        }
+        assertEquals(1, uploads().size());
+    }
+    
+    @Test
+    public void testUploadErrorDoesNotBlockLaterCallers() {
+        AtomicInteger attempts = new AtomicInteger();
+        UploadCache cache = new UploadCache(LLMProvider.GEMINI, (mediaType, data) -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new OutOfMemoryError("upload buffer");
+            }
+            return new UploadCache.Upload("files/retried", Long.MAX_VALUE);
+        }, 100_000);
+        
+        assertThrows(OutOfMemoryError.class, () -> cache.reference("image/png", SCAN));
+        String reference = assertTimeoutPreemptively(Duration.ofSeconds(5), () -> cache.reference("image/png", SCAN));
+        assertEquals("files/retried", reference);
+        assertEquals(2, attempts.get());
+    }
+    
+    @Test
+    public void testDisabledByDefaultAndUnsupportedInline() {
+        LLMClient disabled = client(LLMProvider.GEMINI, 0);
+        // Chat completions cannot reference uploaded images
+        LLMClient chat = LLMClientFactory.create(LLMProvider.OPENAI, new LLMConfig("test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .withFileUploadMinBytes(100_000));
+        try {
+            disabled.generate(question("Question", SCAN));
+            assertTrue(lastGenerate().body().contains("inlineData"));
+            chat.generate(question("Question", SCAN));
+            assertTrue(lastGenerate().body().contains("data:image/png;base64,"));
+        } finally {
+            disabled.close();
+            chat.close();
+        }
+        assertTrue(uploads().isEmpty());
+    }
+}
\ No newline at end of file
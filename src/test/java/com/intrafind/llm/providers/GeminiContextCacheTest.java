@@ -0,0 +1,183 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeminiContextCacheTest {
+    
+    private static final String HANDBOOK = "Employees accrue two vacation days per month of service. ".repeat(400);
+    
+    private MockLLMServer server;
+    private LLMClient client;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).start();
+        client = client(3600);
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+    
+    private LLMClient client(int ttlSeconds) {
+        return LLMClientFactory.create(LLMProvider.GEMINI, new LLMConfig("test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .withContextCacheTtlSeconds(ttlSeconds));
+    }
+    
+    private static LLMRequest question(String prompt) {
+        return new LLMRequest(prompt)
+            .withSystem("Answer from the handbook only.")
+            .withContext(ContentPart.text(HANDBOOK));
+    }
+    
+    private List<MockLLMServer.RecordedRequest> requests(String method, String pathPart) {
+        return server.getRecordedRequests().stream()
+            .filter(request -> request.method().equals(method) && request.path().contains(pathPart))
+            .toList();
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastGenerateBody() {
+        List<MockLLMServer.RecordedRequest> generate = requests("POST", ":generateContent");
+        return JsonParser.parse(generate.get(generate.size() - 1).body(), Map.class);
+    }
+    
+    @Test
+    public void testRepeatedPrefixIsCached() {
+        Usage first = client.generate(question("How many vacation days after a year?")).getUsage();
+        assertFalse(lastGenerateBody().containsKey("cachedContent"));
+        assertEquals(0, first.cachedInputTokens());
+        
+        Usage second = client.generate(question("Do vacation days expire?")).getUsage();
+        Map<String, Object> body = lastGenerateBody();
+        assertEquals("cachedContents/mock-1", body.get("cachedContent"));
+        assertFalse(body.containsKey("systemInstruction"));
+        assertFalse(body.toString().contains("Employees accrue"));
+        assertTrue(second.cachedInputTokens() > 4096, second.toString());
+        
+        client.generate(question("Who approves vacation?"));
+        assertEquals("cachedContents/mock-1", lastGenerateBody().get("cachedContent"));
+        assertEquals(1, requests("POST", "/cachedContents").size());
+        assertTrue(requests("POST", "/cachedContents").get(0).body().contains("\"ttl\":\"3600s\""));
+    }
+    
+    @Test
+    public void testConcurrentCallersShareOneEntry() throws Exception {
+        client.generate(question("First"));
+        
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                String prompt = "Question " + i;
+                futures.add(executor.submit(() -> client.generate(question(prompt))));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        
+        assertEquals(1, requests("POST", "/cachedContents").size());
+        assertEquals(1, server.getCachedContents().size());
+    }
+    
+    @Test
+    public void testSmallPrefixIsNotCached() {
+        for (int i = 0; i < 3; i++) {
+            client.generate(new LLMRequest("Question " + i).withSystem("Be brief."));
+        }
+        assertTrue(requests("POST", "/cachedContents").isEmpty());
+    }
+    
+    @Test
+    public void testExpiredOnServerFallsBackInline() {
+        client.generate(question("First"));
+        client.generate(question("Second"));
+        server.clearCachedContents();
+        
+        Usage usage = client.generate(question("Third")).getUsage();
+        assertNotNull(usage);
+        assertFalse(lastGenerateBody().containsKey("cachedContent"));
+        
+        client.generate(question("Fourth"));
+        assertEquals("cachedContents/mock-2", lastGenerateBody().get("cachedContent"));
+    }
+    
+    @Test
+    public void testRejectedRequestKeepsCacheAndUploads() {
+        client.generate(question("First"));
+        client.generate(question("Second"));
+        assertEquals("cachedContents/mock-1", lastGenerateBody().get("cachedContent"));
+        int calls = requests("POST", ":generateContent").size();
+        
+        // A bad parameter is not about the cached content, so it is neither dropped nor worked around
+        LLMException e = assertThrows(LLMException.class, () -> client.generate(question("Third").withParameter("temperature", 5)));
+        assertEquals(400, e.getStatusCode());
+        assertEquals(calls + 1, requests("POST", ":generateContent").size());
+        assertEquals(1, server.getCachedContents().size());
+        
+        client.generate(question("Fourth"));
+        assertEquals("cachedContents/mock-1", lastGenerateBody().get("cachedContent"));
+        assertEquals(1, requests("POST", "/cachedContents").size());
+    }
+    
+    @Test
+    public void testRefreshAndDelete() throws Exception {
+        LLMClient shortLived = client(2);
+        try {
+            shortLived.generate(question("First"));
+            shortLived.generate(question("Second"));
+            assertTrue(requests("PATCH", "/cachedContents").isEmpty());
+            
+            // Less than half of the TTL left
+            Thread.sleep(1200);
+            shortLived.generate(question("Third"));
+            List<MockLLMServer.RecordedRequest> patches = requests("PATCH", "/cachedContents/mock-1");
+            assertEquals(1, patches.size());
+            assertTrue(patches.get(0).body().contains("\"ttl\":\"2s\""));
+        } finally {
+            shortLived.close();
+        }
+        
+        assertEquals(1, requests("DELETE", "/cachedContents/mock-1").size());
+        assertTrue(server.getCachedContents().isEmpty());
+    }
+    
+    @Test
+    public void testDisabledByDefault() {
+        LLMClient plain = LLMClientFactory.create(LLMProvider.GEMINI, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+        try {
+            plain.generate(question("First"));
+            plain.generate(question("Second"));
+        } finally {
+            plain.close();
+        }
+        assertTrue(requests("POST", "/cachedContents").isEmpty());
+    }
+}
\ No newline at end of file
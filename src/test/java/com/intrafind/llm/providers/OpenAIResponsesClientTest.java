@@ -0,0 +1,185 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.Conversation;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Message;
+import com.intrafind.llm.core.ToolCall;
+import com.intrafind.llm.exceptions.LLMException;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.providers.openai.OpenAIResponsesClient;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OpenAIResponsesClientTest {
+    
+    private MockLLMServer server;
+    private LLMClient client;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).withOutputTokens(50).start();
+        client = LLMClientFactory.create(LLMProvider.OPENAI, new LLMConfig("test-key")
+            .withBaseUrl(server.getBaseUrl())
+            .withResponsesApi(true));
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        client.close();
+        server.close();
+    }
+    
+    private MockLLMServer.RecordedRequest lastRequest() {
+        List<MockLLMServer.RecordedRequest> requests = server.getRecordedRequests();
+        return requests.get(requests.size() - 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastBody() {
+        return JsonParser.parse(lastRequest().body(), Map.class);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Object value) {
+        return (List<Map<String, Object>>) value;
+    }
+    
+    @Test
+    public void testFactoryAndRequestFormat() {
+        assertInstanceOf(OpenAIResponsesClient.class, client);
+        
+        LLMResponse response = client.generate(new LLMRequest("Hello")
+            .withSystem("Be brief.")
+            .withParameter("max_tokens", 100));
+        
+        assertEquals("/responses", lastRequest().path());
+        Map<String, Object> body = lastBody();
+        assertEquals("Be brief.", body.get("instructions"));
+        assertEquals(100, body.get("max_output_tokens"));
+        assertFalse(body.containsKey("previous_response_id"));
+        assertEquals(List.of(Map.of("role", "user", "content", List.of(Map.of("type", "input_text", "text", "Hello")))),
+            body.get("input"));
+        
+        assertEquals(50, response.getUsage().outputTokens());
+        assertEquals("resp_mock_1", response.getMetadata().get("response_id"));
+        assertFalse(response.getContent().isEmpty());
+    }
+    
+    @Test
+    public void testOnlyNewTurnsAreSent() {
+        Conversation conversation = Conversation.of(Message.system("You are a travel agent."));
+        List<Integer> bodySizes = new ArrayList<>();
+        for (int turn = 0; turn < 8; turn++) {
+            conversation = conversation.user("Question " + turn);
+            LLMResponse response = client.generate(new LLMRequest(conversation));
+            conversation = conversation.append(response);
+            bodySizes.add(lastRequest().body().length());
+            
+            Map<String, Object> body = lastBody();
+            assertEquals("You are a travel agent.", body.get("instructions"));
+            assertEquals(1, list(body.get("input")).size());
+            if (turn > 0) {
+                assertEquals("resp_mock_" + turn, body.get("previous_response_id"));
+            }
+        }
+        // Constant upload per turn while the history grows
+        assertTrue(bodySizes.get(7) - bodySizes.get(1) < 10, bodySizes.toString());
+    }
+    
+    @Test
+    public void testPromptContinuesConversation() {
+        Conversation conversation = Conversation.empty();
+        LLMResponse first = client.generate(new LLMRequest("Where to in May?").withConversation(conversation));
+        conversation = conversation.user("Where to in May?").append(first);
+        
+        client.generate(new LLMRequest("And in June?").withConversation(conversation));
+        Map<String, Object> body = lastBody();
+        assertEquals("resp_mock_1", body.get("previous_response_id"));
+        assertEquals(1, list(body.get("input")).size());
+    }
+    
+    @Test
+    public void testEditedHistoryIsSentInFull() {
+        Conversation conversation = Conversation.empty().user("Where to in May?");
+        conversation = conversation.append(client.generate(new LLMRequest(conversation)));
+        
+        // A different answer than the one the server stored
+        client.generate(new LLMRequest(Conversation.empty().user("Where to in May?").assistant("Lisbon.").user("Why?")));
+        Map<String, Object> body = lastBody();
+        assertFalse(body.containsKey("previous_response_id"));
+        assertEquals(3, list(body.get("input")).size());
+    }
+    
+    @Test
+    public void testCollidingHistoryIsSentInFull() {
+        LLMResponse first = client.generate(new LLMRequest(Conversation.empty().user("Aa")));
+        
+        // "Aa" and "BB" have the same String hash, so both histories have the same prefix hash
+        Conversation other = Conversation.empty().user("BB").append(first).user("And then?");
+        assertEquals(Conversation.empty().user("Aa").append(first).prefixHash(), other.parent().prefixHash());
+        client.generate(new LLMRequest(other));
+        Map<String, Object> body = lastBody();
+        assertFalse(body.containsKey("previous_response_id"));
+        assertEquals(3, list(body.get("input")).size());
+    }
+    
+    @Test
+    public void testExpiredResponseFallsBackToFullHistory() {
+        Conversation conversation = Conversation.empty().user("Where to in May?");
+        conversation = conversation.append(client.generate(new LLMRequest(conversation)));
+        server.clearResponses();
+        
+        LLMResponse response = client.generate(new LLMRequest(conversation.user("And in June?")));
+        assertNotNull(response.getContent());
+        Map<String, Object> body = lastBody();
+        assertFalse(body.containsKey("previous_response_id"));
+        assertEquals(3, list(body.get("input")).size());
+        assertEquals("resp_mock_2", response.getMetadata().get("response_id"));
+    }
+    
+    @Test
+    public void testRejectedRequestKeepsChain() {
+        Conversation conversation = Conversation.empty().user("Where to in May?");
+        conversation = conversation.append(client.generate(new LLMRequest(conversation)));
+        int sent = server.getRecordedRequests().size();
+        
+        // A bad parameter is not about the stored response, so the full history is not sent instead
+        LLMRequest rejected = new LLMRequest(conversation.user("And in June?")).withParameter("temperature", 5);
+        LLMException e = assertThrows(LLMException.class, () -> client.generate(rejected));
+        assertEquals(400, e.getStatusCode());
+        assertEquals(sent + 1, server.getRecordedRequests().size());
+        assertEquals("resp_mock_1", lastBody().get("previous_response_id"));
+        
+        client.generate(new LLMRequest(conversation.user("And in June?")));
+        assertEquals("resp_mock_1", lastBody().get("previous_response_id"));
+        assertEquals(1, list(lastBody().get("input")).size());
+    }
+    
+    @Test
+    public void testToolCallItems() {
+        ToolCall call = new ToolCall("call_1", "get_weather", Map.of("city", "Hamburg"));
+        client.generate(new LLMRequest(Conversation.of(
+            Message.user("Weather in Hamburg?"),
+            Message.assistant(null, List.of(call)),
+            Message.toolResult(call, "12 degrees, rain"))));
+        
+        List<Map<String, Object>> input = list(lastBody().get("input"));
+        assertEquals(3, input.size());
+        assertEquals(Map.of("type", "function_call", "call_id", "call_1", "name", "get_weather",
+            "arguments", "{\"city\":\"Hamburg\"}"), input.get(1));
+        assertEquals(Map.of("type", "function_call_output", "call_id", "call_1", "output", "12 degrees, rain"), input.get(2));
+    }
+}
\ No newline at end of file
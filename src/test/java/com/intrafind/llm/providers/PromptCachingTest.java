@@ -0,0 +1,164 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromptCachingTest {
+    
+    private static final String INSTRUCTIONS = "You answer questions about the attached handbook. ".repeat(200);
+    
+    private MockLLMServer server;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).withPromptCaching(true).start();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+    
+    private Usage generate(LLMProvider provider, LLMRequest request) {
+        LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+        try {
+            return client.generate(request).getUsage();
+        } finally {
+            client.close();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> lastBody() {
+        List<MockLLMServer.RecordedRequest> requests = server.getRecordedRequests();
+        return JsonParser.parse(requests.get(requests.size() - 1).body(), Map.class);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> list(Object value) {
+        return (List<Map<String, Object>>) value;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> userContent(Map<String, Object> body) {
+        Map<String, Object> message = list(body.get("messages")).get(0);
+        return (List<Map<String, Object>>) message.get("content");
+    }
+    
+    private static List<Integer> breakpoints(List<Map<String, Object>> blocks) {
+        List<Integer> indices = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            if (blocks.get(i).containsKey("cache_control")) {
+                indices.add(i);
+            }
+        }
+        return indices;
+    }
+    
+    @Test
+    public void testManualBreakpoints() {
+        generate(LLMProvider.ANTHROPIC, new LLMRequest("Summarize chapter 2")
+            .withSystem(ContentPart.cached(INSTRUCTIONS), ContentPart.text("Today is Monday."))
+            .withContext(ContentPart.cached("Chapter 1 ..."), ContentPart.text("Chapter 2 ...")));
+        
+        Map<String, Object> body = lastBody();
+        assertEquals(List.of(0), breakpoints(list(body.get("system"))));
+        assertEquals(Map.of("type", "ephemeral"), list(body.get("system")).get(0).get("cache_control"));
+        List<Map<String, Object>> content = userContent(body);
+        assertEquals(3, content.size());
+        assertEquals("Summarize chapter 2", content.get(2).get("text"));
+        assertEquals(List.of(0), breakpoints(content));
+    }
+    
+    @Test
+    public void testAutomaticBreakpoints() {
+        Tool tool = new Tool("search", "Searches the handbook", Map.of("type", "object"));
+        generate(LLMProvider.ANTHROPIC, new LLMRequest("Summarize chapter 2")
+            .withTools(List.of(tool, tool))
+            .withSystem(INSTRUCTIONS)
+            .withContext(ContentPart.text("Chapter 1 ..."), ContentPart.text("Chapter 2 ..."))
+            .withAutomaticCaching(true));
+        
+        Map<String, Object> body = lastBody();
+        assertEquals(List.of(1), breakpoints(list(body.get("tools"))));
+        assertEquals(List.of(0), breakpoints(list(body.get("system"))));
+        // The prompt itself varies and is never a breakpoint
+        assertEquals(List.of(1), breakpoints(userContent(body)));
+    }
+    
+    @Test
+    public void testAtMostFourBreakpoints() {
+        LLMRequest request = new LLMRequest("Question");
+        for (int i = 0; i < 6; i++) {
+            request = request.withSystem(ContentPart.cached("Section " + i));
+        }
+        generate(LLMProvider.ANTHROPIC, request.withAutomaticCaching(true));
+        
+        // The latest breakpoints cover the longest prefixes
+        assertEquals(List.of(2, 3, 4, 5), breakpoints(list(lastBody().get("system"))));
+    }
+    
+    @Test
+    public void testPlainPromptUnchanged() {
+        generate(LLMProvider.ANTHROPIC, new LLMRequest("Hello"));
+        
+        Map<String, Object> body = lastBody();
+        assertFalse(body.containsKey("system"));
+        assertEquals("Hello", list(body.get("messages")).get(0).get("content"));
+    }
+    
+    @Test
+    public void testCacheWriteThenRead() {
+        Usage first = generate(LLMProvider.ANTHROPIC, new LLMRequest("First question")
+            .withSystem(ContentPart.cached(INSTRUCTIONS)));
+        Usage second = generate(LLMProvider.ANTHROPIC, new LLMRequest("Other question")
+            .withSystem(ContentPart.cached(INSTRUCTIONS)));
+        
+        assertEquals(0, first.cachedInputTokens());
+        assertTrue(first.cacheWriteInputTokens() >= 2000, first.toString());
+        assertTrue(second.cachedInputTokens() >= 2000, second.toString());
+        assertTrue(second.cacheWriteInputTokens() < first.cacheWriteInputTokens() / 10, second.toString());
+        assertEquals(first.inputTokens(), second.inputTokens());
+    }
+    
+    @Test
+    public void testSystemAndContextForOtherProviders() {
+        LLMRequest request = new LLMRequest("Question")
+            .withSystem(ContentPart.cached("Be brief."), ContentPart.text("Today is Monday."))
+            .withContext(ContentPart.text("Chapter 1 ..."));
+        
+        generate(LLMProvider.OPENAI, request);
+        List<Map<String, Object>> messages = list(lastBody().get("messages"));
+        assertEquals(Map.of("role", "system", "content", "Be brief.\n\nToday is Monday."), messages.get(0));
+        assertEquals("Chapter 1 ...", userContent(Map.of("messages", messages.subList(1, 2))).get(0).get("text"));
+        
+        generate(LLMProvider.MISTRAL, request);
+        assertEquals("system", list(lastBody().get("messages")).get(0).get("role"));
+        
+        generate(LLMProvider.GEMINI, request);
+        Map<String, Object> body = lastBody();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> systemInstruction = (Map<String, Object>) body.get("systemInstruction");
+        assertEquals(List.of(Map.of("text", "Be brief."), Map.of("text", "Today is Monday.")), systemInstruction.get("parts"));
+        @SuppressWarnings("unchecked")
+        List<Map<String, Object>> parts = (List<Map<String, Object>>) list(body.get("contents")).get(0).get("parts");
+        assertEquals(List.of(Map.of("text", "Chapter 1 ..."), Map.of("text", "Question")), parts);
+    }
+}
\ No newline at end of file
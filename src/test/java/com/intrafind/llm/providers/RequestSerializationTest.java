@@ -0,0 +1,179 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Tool;
+import com.intrafind.llm.mock.MockLLMServer;
+import com.intrafind.llm.utils.JsonParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestSerializationTest {
+    
+    private MockLLMServer server;
+    
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = new MockLLMServer().withRecording(true).withPromptCaching(true).start();
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+    
+    private LLMClient client(LLMProvider provider) {
+        return LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(server.getBaseUrl()));
+    }
+    
+    private List<String> bodies(LLMProvider provider, LLMRequest... requests) {
+        server.clearRecordedRequests();
+        LLMClient client = client(provider);
+        try {
+            for (LLMRequest request : requests) {
+                client.generate(request);
+            }
+        } finally {
+            client.close();
+        }
+        return server.getRecordedRequests().stream().map(MockLLMServer.RecordedRequest::body).toList();
+    }
+    
+    // Large enough for the tools alone to pass the mock's 1024 token caching threshold
+    private static List<Tool> tools() {
+        Map<String, Object> properties = Map.of(
+            "city", Map.of("type", "string", "description", "City name, e.g. Hamburg"),
+            "unit", Map.of("type", "string", "enum", List.of("celsius", "fahrenheit")),
+            "days", Map.of("type", "integer", "minimum", 1, "maximum", 14));
+        Map<String, Object> parameters = Map.of("type", "object", "properties", properties, "required", List.of("city"));
+        String description = "Returns the weather forecast for a city. ".repeat(120);
+        return List.of(new Tool("get_weather", description, parameters), new Tool("get_time", "Returns the local time", parameters));
+    }
+    
+    private static int commonPrefix(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            if (a.charAt(i) != b.charAt(i)) {
+                return i;
+            }
+        }
+        return length;
+    }
+    
+    @Test
+    public void testIdenticalRequestsSerializeIdentically() {
+        for (LLMProvider provider : LLMProvider.values()) {
+            LLMRequest request = new LLMRequest("What is the weather in Hamburg?")
+                .withTools(tools())
+                .withParameter("top_p", 0.9)
+                .withParameter("temperature", 0.2)
+                .withStopSequences(List.of("END"));
+            List<String> bodies = bodies(provider, request, request);
+            assertEquals(bodies.get(0), bodies.get(1), provider.name());
+        }
+    }
+    
+    @Test
+    public void testParameterInsertionOrderDoesNotMatter() {
+        for (LLMProvider provider : LLMProvider.values()) {
+            List<String> names = List.of("temperature", "top_p", "presence_penalty", "frequency_penalty", "seed");
+            LLMRequest first = new LLMRequest("Hello");
+            LLMRequest second = new LLMRequest("Hello");
+            for (int i = 0; i < names.size(); i++) {
+                first = first.withParameter(names.get(i), i);
+                second = second.withParameter(names.get(names.size() - 1 - i), names.size() - 1 - i);
+            }
+            List<String> bodies = bodies(provider, first, second);
+            assertEquals(bodies.get(0), bodies.get(1), provider.name());
+        }
+    }
+    
+    @Test
+    public void testToolsPrecedePrompt() {
+        for (LLMProvider provider : LLMProvider.values()) {
+            List<String> bodies = bodies(provider,
+                new LLMRequest("Hamburg weather tomorrow?").withTools(tools()),
+                new LLMRequest("Tokyo local time?").withTools(tools()));
+            
+            // Everything before the first prompt's text is shared, tool definitions included
+            int prefix = commonPrefix(bodies.get(0), bodies.get(1));
+            assertEquals(bodies.get(0).indexOf("Hamburg weather"), prefix, provider.name());
+            assertTrue(bodies.get(0).lastIndexOf("get_time") < prefix, provider.name());
+        }
+    }
+    
+    @Test
+    public void testSchemaKeysAreSorted() {
+        String body = bodies(LLMProvider.OPENAI, new LLMRequest("Hello").withTools(tools())).get(0);
+        int days = body.indexOf("\"days\"");
+        int unit = body.indexOf("\"unit\"");
+        int city = body.indexOf("\"city\"");
+        assertTrue(city < days && days < unit, body);
+        assertTrue(body.indexOf("\"properties\"") < body.indexOf("\"required\""), body);
+    }
+    
+    @Test
+    public void testSharedPrefixIsReportedAsCached() {
+        for (LLMProvider provider : LLMProvider.values()) {
+            LLMClient client = client(provider);
+            try {
+                // Anthropic only caches up to explicit breakpoints, the others ignore the flag
+                LLMResponse first = client.generate(new LLMRequest("What is the weather in Hamburg?").withTools(tools())
+                    .withAutomaticCaching(true));
+                LLMResponse second = client.generate(new LLMRequest("What time is it in Tokyo?").withTools(tools())
+                    .withAutomaticCaching(true));
+                
+                assertEquals(0, first.getUsage().cachedInputTokens(), provider.name());
+                assertTrue(second.getUsage().cachedInputTokens() >= 1024, provider.name() + ": " + second.getUsage());
+                assertTrue(second.getUsage().cachedInputTokens() < second.getUsage().inputTokens(), provider.name());
+            } finally {
+                client.close();
+            }
+        }
+    }
+    
+    @Test
+    public void testCanonicalize() {
+        Map<String, Object> nested = new HashMap<>();
+        nested.put("b", 2);
+        nested.put("a", 1);
+        Object canonical = JsonParser.canonicalize(Map.of("z", nested, "y", new Object[]{Map.of("d", 4, "c", 3)}));
+        assertEquals("{\"y\":[{\"c\":3,\"d\":4}],\"z\":{\"a\":1,\"b\":2}}", JsonParser.toJson(canonical));
+    }
+    
+    @Test
+    public void testInlineImagesAreStreamed() {
+        byte[] image = new byte[50_001];
+        new Random(3).nextBytes(image);
+        String base64 = Base64.getEncoder().encodeToString(image);
+        LLMRequest request = new LLMRequest("Describe").withContext(ContentPart.image("image/png", image));
+        for (LLMProvider provider : LLMProvider.values()) {
+            server.clearRecordedRequests();
+            LLMClient client = client(provider);
+            try {
+                client.generate(request);
+            } finally {
+                client.close();
+            }
+            MockLLMServer.RecordedRequest recorded = server.getRecordedRequests().get(0);
+            assertTrue(recorded.body().contains(base64), provider.name());
+            assertEquals(String.valueOf(recorded.body().getBytes(StandardCharsets.UTF_8).length),
+                recorded.headers().get("content-length"), provider.name());
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,122 @@
+package com.intrafind.llm.providers;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.metrics.UsageMetrics;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UsageMappingTest {
+    
+    private HttpServer server;
+    private String baseUrl;
+    
+    @BeforeEach
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        respond("/chat/completions", "{\"model\":\"gpt-4o\",\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"ok\"}}]," +
+            "\"usage\":{\"prompt_tokens\":1200,\"completion_tokens\":300,\"prompt_tokens_details\":{\"cached_tokens\":1024}," +
+            "\"completion_tokens_details\":{\"reasoning_tokens\":256}}}",
+            Map.of("x-ratelimit-remaining-requests", "499", "x-ratelimit-remaining-tokens", "29000",
+                "x-ratelimit-reset-requests", "1m30s", "x-ratelimit-reset-tokens", "20ms"));
+        respond("/messages", "{\"model\":\"claude-3-haiku-20240307\",\"content\":[{\"type\":\"text\",\"text\":\"ok\"}]," +
+            "\"usage\":{\"input_tokens\":50,\"output_tokens\":20,\"cache_read_input_tokens\":1000,\"cache_creation_input_tokens\":200}}",
+            Map.of("anthropic-ratelimit-requests-remaining", "49", "anthropic-ratelimit-tokens-remaining", "40000",
+                "anthropic-ratelimit-tokens-reset", Instant.now().plusSeconds(30).toString()));
+        respond("/models/gemini-pro:generateContent", "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":\"ok\"}]}}]," +
+            "\"usageMetadata\":{\"promptTokenCount\":900,\"candidatesTokenCount\":40,\"cachedContentTokenCount\":800,\"thoughtsTokenCount\":60}}",
+            Map.of());
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    private void respond(String path, String json, Map<String, String> headers) {
+        server.createContext(path, exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            headers.forEach(exchange.getResponseHeaders()::set);
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+    }
+    
+    private LLMResponse responseOf(LLMProvider provider) {
+        LLMClient client = LLMClientFactory.create(provider, new LLMConfig("test-key").withBaseUrl(baseUrl));
+        try {
+            return client.generate(new LLMRequest("Hello"));
+        } finally {
+            client.close();
+        }
+    }
+    
+    private Usage usageOf(LLMProvider provider) {
+        return responseOf(provider).getUsage();
+    }
+    
+    @Test
+    public void testOpenAIUsage() {
+        assertEquals(new Usage(1200, 300, 1024, 256), usageOf(LLMProvider.OPENAI));
+    }
+    
+    @Test
+    public void testMistralUsage() {
+        assertEquals(new Usage(1200, 300, 1024, 0), usageOf(LLMProvider.MISTRAL));
+    }
+    
+    @Test
+    public void testAnthropicUsage() {
+        Usage usage = usageOf(LLMProvider.ANTHROPIC);
+        assertEquals(1250, usage.inputTokens());
+        assertEquals(20, usage.outputTokens());
+        assertEquals(1000, usage.cachedInputTokens());
+        assertEquals(200, usage.cacheWriteInputTokens());
+    }
+    
+    @Test
+    public void testGeminiUsage() {
+        assertEquals(new Usage(900, 100, 800, 60), usageOf(LLMProvider.GEMINI));
+    }
+    
+    @Test
+    public void testGlobalMetricsRecorded() {
+        long before = UsageMetrics.global().snapshot(LLMProvider.OPENAI, "gpt-4o").outputTokens();
+        usageOf(LLMProvider.OPENAI);
+        assertEquals(before + 300, UsageMetrics.global().snapshot(LLMProvider.OPENAI, "gpt-4o").outputTokens());
+    }
+    
+    @Test
+    public void testRateLimitHeaders() {
+        assertEquals(new RateLimits(499, 29000, 90_000, 20), responseOf(LLMProvider.OPENAI).getRateLimits());
+        
+        RateLimits anthropic = responseOf(LLMProvider.ANTHROPIC).getRateLimits();
+        assertEquals(49, anthropic.remainingRequests());
+        assertEquals(40000, anthropic.remainingTokens());
+        assertEquals(-1, anthropic.requestsResetMillis());
+        assertTrue(anthropic.tokensResetMillis() > 25_000 && anthropic.tokensResetMillis() <= 30_000, String.valueOf(anthropic.tokensResetMillis()));
+        
+        assertSame(RateLimits.UNKNOWN, responseOf(LLMProvider.GEMINI).getRateLimits());
+    }
+}
\ No newline at end of file
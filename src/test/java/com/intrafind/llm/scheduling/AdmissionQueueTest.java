@@ -0,0 +1,151 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionQueueTest {
+    
+    private final GatedClient delegate = new GatedClient();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    // Added to System.nanoTime, so the tests move time forward instead of sleeping
+    private final AtomicLong skew = new AtomicLong();
+    
+    private AdmissionQueue queue(int maxInFlight) {
+        return new AdmissionQueue(delegate, maxInFlight).withClock(() -> System.nanoTime() + skew.get());
+    }
+    
+    private void advanceMillis(long millis) {
+        skew.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        delegate.gate.release(1000);
+        callers.shutdownNow();
+    }
+    
+    private Future<LLMResponse> submit(AdmissionQueue queue, LLMRequest request) {
+        return callers.submit(() -> queue.generate(request));
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+    
+    private static RequestRejectedException assertRejected(Future<LLMResponse> call) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+        return assertInstanceOf(RequestRejectedException.class, e.getCause());
+    }
+    
+    // Fills every slot with calls held by the gate
+    private void fill(AdmissionQueue queue, int slots) throws InterruptedException {
+        int before = delegate.started().size();
+        for (int i = 0; i < slots; i++) {
+            submit(queue, new LLMRequest("blocker " + i));
+        }
+        await(() -> delegate.started().size() == before + slots);
+    }
+    
+    @Test
+    public void testShedsOnExpectedWaitAndFullQueue() throws Exception {
+        AdmissionQueue queue = queue(1).withTargetWaitMillis(1000).withMaxQueued(5);
+        // One call of about 600 ms teaches the queue how long calls take
+        Future<LLMResponse> first = submit(queue, new LLMRequest("first"));
+        await(() -> delegate.started().size() == 1);
+        advanceMillis(600);
+        delegate.gate.release();
+        first.get(5, TimeUnit.SECONDS);
+        
+        fill(queue, 1);
+        Future<LLMResponse> queued = submit(queue, new LLMRequest("queued"));
+        await(() -> queue.getQueued() == 1);
+        // Second in line would wait about 1200 ms
+        RequestRejectedException e = assertThrows(RequestRejectedException.class, () -> queue.generate(new LLMRequest("shed")));
+        assertTrue(e.getMessage().contains("exceeds the target"), e.getMessage());
+        assertEquals(1, queue.getShedCount());
+        
+        delegate.gate.release(2);
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(3, queue.getAdmittedCount());
+        assertEquals(0, queue.getDroppedCount());
+        
+        AdmissionQueue noRoom = queue(1).withMaxQueued(0);
+        fill(noRoom, 1);
+        assertThrows(RequestRejectedException.class, () -> noRoom.generate(new LLMRequest("full")));
+        assertEquals(1, noRoom.getShedCount());
+    }
+    
+    @Test
+    public void testDropsCallsThatMissTheirDeadline() throws Exception {
+        AdmissionQueue queue = queue(1);
+        assertThrows(RequestRejectedException.class,
+            () -> queue.generate(new LLMRequest("too late").withDeadline(Instant.now().minusSeconds(1))));
+        assertEquals(1, queue.getShedCount());
+        
+        // Admitted to the queue, then dropped there rather than shed on arrival
+        fill(queue, 1);
+        Future<LLMResponse> call = submit(queue, new LLMRequest("in a hurry").withDeadline(Instant.now().plusMillis(100)));
+        RequestRejectedException e = assertRejected(call);
+        assertTrue(e.getMessage().contains("deadline"), e.getMessage());
+        assertEquals(1, queue.getShedCount());
+        assertEquals(1, queue.getDroppedCount());
+        assertEquals(0, queue.getQueued());
+        assertEquals(1, delegate.started().size());
+    }
+    
+    @Test
+    public void testStandingQueueDropsAtTarget() throws Exception {
+        AdmissionQueue queue = queue(16).withTargetWaitMillis(200).withIntervalMillis(600);
+        fill(queue, 16);
+        
+        // Calls that each wait 400 ms, above the target but within the interval, until a whole interval saw no shorter wait
+        List<Future<LLMResponse>> waited = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            String prompt = "waited " + i;
+            waited.add(submit(queue, new LLMRequest(prompt)));
+            await(() -> queue.getQueued() == 1);
+            advanceMillis(400);
+            delegate.gate.release();
+            await(() -> delegate.started().contains(prompt));
+        }
+        assertTrue(queue.isOverloaded());
+        assertEquals(0, queue.getDroppedCount());
+        
+        // Now a queued call gives up at the target wait instead of the interval
+        Future<LLMResponse> dropped = submit(queue, new LLMRequest("dropped"));
+        RequestRejectedException e = assertRejected(dropped);
+        Matcher waitedMillis = Pattern.compile("after waiting (\\d+) ms").matcher(e.getMessage());
+        assertTrue(waitedMillis.find(), e.getMessage());
+        long wait = Long.parseLong(waitedMillis.group(1));
+        assertTrue(wait >= 200 && wait < 600, e.getMessage());
+        assertEquals(1, queue.getDroppedCount());
+        assertFalse(delegate.started().contains("dropped"));
+        
+        delegate.gate.release(1000);
+        for (Future<LLMResponse> call : waited) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,231 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.config.LLMClientFactory;
+import com.intrafind.llm.config.LLMConfig;
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.RateLimits;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.exceptions.AuthenticationException;
+import com.intrafind.llm.exceptions.RateLimitException;
+import com.intrafind.llm.mock.MockLLMServer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CredentialPoolTest {
+    
+    // Stands in for the client of one key, reporting the quota it is given
+    private static class KeyClient implements LLMClient {
+        final AtomicInteger calls = new AtomicInteger();
+        volatile RateLimits limits = RateLimits.UNKNOWN;
+        volatile RuntimeException failure;
+        // Holds calls until released when set
+        volatile Semaphore gate;
+        
+        @Override
+        public LLMResponse generate(LLMRequest request) {
+            calls.incrementAndGet();
+            Semaphore gate = this.gate;
+            if (gate != null) {
+                gate.acquireUninterruptibly();
+            }
+            RuntimeException failure = this.failure;
+            if (failure != null) {
+                throw failure;
+            }
+            return LLMResponse.builder().content("ok").model("stub").provider(LLMProvider.OPENAI)
+                .usage(new Usage(80, 20, 0, 0)).rateLimits(limits).build();
+        }
+        
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+        
+        @Override
+        public LLMProvider getProvider() {
+            return LLMProvider.OPENAI;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    private final List<KeyClient> keys = new ArrayList<>();
+    
+    private CredentialPool pool(int size) {
+        List<String> apiKeys = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            apiKeys.add("sk-test-key-000" + i);
+            keys.add(new KeyClient());
+        }
+        Function<String, LLMClient> factory = apiKey -> keys.get(apiKeys.indexOf(apiKey));
+        return new CredentialPool(LLMProvider.OPENAI, apiKeys, factory);
+    }
+    
+    private static void call(CredentialPool pool, int times) {
+        for (int i = 0; i < times; i++) {
+            pool.generate(new LLMRequest("Hello"));
+        }
+    }
+    
+    @Test
+    public void testSpreadsCallsOverKeys() {
+        CredentialPool pool = pool(3);
+        call(pool, 30);
+        for (KeyClient key : keys) {
+            assertEquals(10, key.calls.get());
+        }
+        
+        CredentialSnapshot first = pool.snapshot().get(0);
+        assertEquals("****0000", first.key());
+        assertEquals(10, first.requestsLastMinute());
+        assertEquals(1000, first.tokensLastMinute());
+        assertEquals(-1, first.remainingRequests());
+        assertEquals(0, first.benchedMillis());
+    }
+    
+    @Test
+    public void testPrefersKeyWithMostHeadroom() {
+        CredentialPool pool = pool(2);
+        keys.get(0).limits = new RateLimits(100, 1000, 60_000, 60_000);
+        keys.get(1).limits = new RateLimits(100, 50_000, 60_000, 60_000);
+        call(pool, 2);
+        call(pool, 5);
+        assertEquals(1, keys.get(0).calls.get());
+        assertEquals(6, keys.get(1).calls.get());
+        // Calls since the last report count against it
+        keys.get(1).limits = RateLimits.UNKNOWN;
+        call(pool, 1);
+        assertEquals(49_900, pool.snapshot().get(1).remainingTokens());
+        
+        // Before the provider reports anything, the configured limits decide
+        keys.clear();
+        CredentialPool limited = pool(2).withKeyLimits(3, 0);
+        keys.get(0).limits = new RateLimits(0, -1, 60_000, -1);
+        call(limited, 4);
+        assertEquals(1, keys.get(0).calls.get());
+        assertEquals(3, keys.get(1).calls.get());
+        assertEquals(0, limited.snapshot().get(1).remainingRequests());
+    }
+    
+    @Test
+    public void testCallsInFlightCountOnceAgainstTheLimit() throws Exception {
+        CredentialPool pool = pool(2).withKeyLimits(3, 0);
+        keys.get(1).limits = new RateLimits(0, -1, 60_000, -1);
+        call(pool, 2);
+        assertEquals(1, keys.get(0).calls.get());
+        
+        // Two of three requests used, one of them still in flight, leaves one
+        Semaphore gate = new Semaphore(0);
+        keys.get(0).gate = gate;
+        CompletableFuture<Void> held = CompletableFuture.runAsync(() -> call(pool, 1));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (keys.get(0).calls.get() < 2) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+        keys.get(0).gate = null;
+        assertEquals(1, pool.snapshot().get(0).remainingRequests());
+        call(pool, 1);
+        assertEquals(3, keys.get(0).calls.get());
+        assertEquals(1, keys.get(1).calls.get());
+        gate.release();
+        held.get(5, TimeUnit.SECONDS);
+    }
+    
+    @Test
+    public void testBenchesRateLimitedAndUnauthorizedKeys() throws Exception {
+        CredentialPool pool = pool(3).withBenchMillis(1000, 300_000);
+        keys.get(0).failure = new RateLimitException("Slow down", 200);
+        keys.get(2).failure = new AuthenticationException("Invalid API key");
+        
+        // Each failure is retried on a healthy key
+        call(pool, 2);
+        assertEquals(2, keys.get(1).calls.get());
+        call(pool, 3);
+        assertEquals(1, keys.get(0).calls.get());
+        assertEquals(5, keys.get(1).calls.get());
+        assertEquals(1, keys.get(2).calls.get());
+        
+        List<CredentialSnapshot> snapshot = pool.snapshot();
+        assertTrue(snapshot.get(0).benchedMillis() > 0 && snapshot.get(0).benchedMillis() <= 200);
+        assertEquals(0, snapshot.get(1).benchedMillis());
+        assertTrue(snapshot.get(2).benchedMillis() > 200_000);
+        
+        keys.get(1).failure = new RateLimitException("Slow down");
+        assertThrows(RateLimitException.class, () -> pool.generate(new LLMRequest("Hello")));
+        RateLimitException e = assertThrows(RateLimitException.class, () -> pool.generate(new LLMRequest("Hello")));
+        assertTrue(e.getMessage().contains("All 3 API keys are benched"), e.getMessage());
+        assertTrue(e.getRetryAfterMillis() <= 200, String.valueOf(e.getRetryAfterMillis()));
+        
+        keys.get(0).failure = null;
+        Thread.sleep(e.getRetryAfterMillis() + 20);
+        call(pool, 1);
+        assertEquals(2, keys.get(0).calls.get());
+    }
+    
+    @Test
+    public void testConfiguredKeysShareTheLoad() throws Exception {
+        LLMConfig config = new LLMConfig("unused").withApiKeys("sk-first-1111", "sk-second-2222");
+        try (MockLLMServer server = new MockLLMServer().withRecording(true).start()) {
+            LLMClient client = LLMClientFactory.create(LLMProvider.OPENAI, config.withBaseUrl(server.getBaseUrl()));
+            assertInstanceOf(CredentialPool.class, client);
+            assertEquals(LLMProvider.OPENAI, client.getProvider());
+            for (int i = 0; i < 4; i++) {
+                client.generate(new LLMRequest("Hello"));
+            }
+            client.close();
+            Map<String, Long> perKey = server.getRecordedRequests().stream()
+                .collect(Collectors.groupingBy(request -> request.headers().get("authorization"), Collectors.counting()));
+            assertEquals(Map.of("Bearer sk-first-1111", 2L, "Bearer sk-second-2222", 2L), perKey);
+        }
+        
+        // Both keys are tried before the 429 reaches the caller
+        try (MockLLMServer server = new MockLLMServer().withRecording(true).withRateLimit(1.0, 2).start()) {
+            LLMClient client = LLMClientFactory.create(LLMProvider.OPENAI, config.withBaseUrl(server.getBaseUrl()));
+            RateLimitException e = assertThrows(RateLimitException.class, () -> client.generate(new LLMRequest("Hello")));
+            assertEquals(2000, e.getRetryAfterMillis());
+            assertEquals(2, server.getRecordedRequests().stream().map(request -> request.headers().get("authorization")).distinct().count());
+            client.close();
+        }
+    }
+    
+    @Test
+    public void testPrefixAffinityStaysOnKeyWithHeadroom() {
+        CredentialPool pool = pool(3).withPrefixAffinity(0, 1.25);
+        LLMRequest request = new LLMRequest("Hello").withSystem("A long shared system prompt");
+        call(pool, 1);
+        for (int i = 0; i < 6; i++) {
+            pool.generate(request);
+        }
+        int owner = -1;
+        for (int i = 0; i < keys.size(); i++) {
+            if (pool.snapshot().get(i).requestsLastMinute() >= 6) {
+                owner = i;
+            }
+        }
+        assertTrue(owner >= 0, pool.snapshot().toString());
+        
+        // A key that runs out of requests hands the prefix on
+        keys.get(owner).limits = new RateLimits(0, -1, 60_000, -1);
+        pool.generate(request);
+        int before = keys.get(owner).calls.get();
+        pool.generate(request);
+        assertEquals(before, keys.get(owner).calls.get());
+    }
+}
\ No newline at end of file
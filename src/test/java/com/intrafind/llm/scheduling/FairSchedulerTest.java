@@ -0,0 +1,159 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FairSchedulerTest {
+    
+    private final GatedClient delegate = new GatedClient();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    
+    @AfterEach
+    public void tearDown() {
+        delegate.gate.release(1000);
+        callers.shutdownNow();
+    }
+    
+    private static LLMRequest request(String tenant, String prompt, int maxTokens) {
+        return new LLMRequest(prompt).withParameter("max_tokens", maxTokens).withTenant(tenant);
+    }
+    
+    private Future<LLMResponse> submit(FairScheduler scheduler, LLMRequest request) {
+        return callers.submit(() -> scheduler.generate(request));
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+    
+    // Occupies the only slot so that everything submitted afterwards queues
+    private Future<LLMResponse> block(FairScheduler scheduler) throws InterruptedException {
+        Future<LLMResponse> blocker = submit(scheduler, request("other", "blocker", 10));
+        await(() -> delegate.started().size() == 1);
+        return blocker;
+    }
+    
+    private List<String> tenantsInStartOrder(int count) throws InterruptedException {
+        await(() -> delegate.started().size() > count);
+        List<String> tenants = new ArrayList<>();
+        for (String prompt : delegate.started().subList(1, count + 1)) {
+            tenants.add(prompt.substring(0, 1));
+        }
+        return tenants;
+    }
+    
+    @Test
+    public void testWeightedShares() throws Exception {
+        FairScheduler scheduler = new FairScheduler(delegate, 1).withWeight("a", 3);
+        long cost = scheduler.estimateTokens(request("a", "a 0", 100));
+        scheduler.withQuantumTokens((int) cost);
+        Future<LLMResponse> blocker = block(scheduler);
+        
+        // Tenant a queues first, so that it also comes first in the round
+        for (int i = 0; i < 10; i++) {
+            submit(scheduler, request("a", "a " + i, 100));
+        }
+        await(() -> scheduler.snapshot("a").queued() == 10);
+        for (int i = 0; i < 10; i++) {
+            submit(scheduler, request("b", "b " + i, 100));
+        }
+        await(() -> scheduler.snapshot("b").queued() == 10);
+        
+        delegate.gate.release(1000);
+        blocker.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("a", "a", "a", "b", "a", "a", "a", "b"), tenantsInStartOrder(8));
+    }
+    
+    @Test
+    public void testSharesAreMeasuredInTokens() throws Exception {
+        FairScheduler scheduler = new FairScheduler(delegate, 1);
+        scheduler.withQuantumTokens((int) scheduler.estimateTokens(request("s", "s 0", 100)));
+        Future<LLMResponse> blocker = block(scheduler);
+        
+        // Equal weights, but each large call is estimated at about ten small ones
+        for (int i = 0; i < 3; i++) {
+            submit(scheduler, request("l", "l " + i, 1000));
+        }
+        await(() -> scheduler.snapshot("l").queued() == 3);
+        for (int i = 0; i < 20; i++) {
+            submit(scheduler, request("s", "s " + i, 100));
+        }
+        await(() -> scheduler.snapshot("s").queued() == 20);
+        
+        delegate.gate.release(1000);
+        blocker.get(5, TimeUnit.SECONDS);
+        List<String> order = tenantsInStartOrder(20);
+        assertEquals(2, order.stream().filter("l"::equals).count(), order.toString());
+        assertTrue(order.indexOf("l") >= 8, order.toString());
+    }
+    
+    @Test
+    public void testQueueLimitAndMetricsPerTenant() throws Exception {
+        FairScheduler scheduler = new FairScheduler(delegate, 1).withMaxQueuedPerTenant(2);
+        delegate.usage = new Usage(50, 10, 0, 0);
+        Future<LLMResponse> blocker = block(scheduler);
+        
+        List<Future<LLMResponse>> queued = new ArrayList<>();
+        queued.add(submit(scheduler, request("noisy", "n 0", 100)));
+        queued.add(submit(scheduler, request("noisy", "n 1", 100)));
+        await(() -> scheduler.snapshot("noisy").queued() == 2);
+        assertThrows(RequestRejectedException.class, () -> scheduler.generate(request("noisy", "n 2", 100)));
+        queued.add(submit(scheduler, request("quiet", "q 0", 100)));
+        await(() -> scheduler.snapshot("quiet").queued() == 1);
+        
+        TenantSnapshot other = scheduler.snapshot("other");
+        assertEquals(1, other.inFlight());
+        assertTrue(other.waitMaxMicros() < 1000);
+        
+        Thread.sleep(20);
+        delegate.gate.release(1000);
+        blocker.get(5, TimeUnit.SECONDS);
+        for (Future<LLMResponse> call : queued) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        
+        TenantSnapshot noisy = scheduler.snapshot("noisy");
+        assertEquals(0, noisy.queued());
+        assertEquals(0, noisy.inFlight());
+        assertEquals(2, noisy.requests());
+        assertEquals(120, noisy.tokens());
+        assertTrue(noisy.waitMaxMicros() >= 20_000, String.valueOf(noisy.waitMaxMicros()));
+        assertEquals(1.0, noisy.weight());
+        assertEquals(3, scheduler.snapshot().size());
+        // Requests without a tenant share the default one
+        assertEquals(FairScheduler.DEFAULT_TENANT, scheduler.snapshot(null).tenant());
+    }
+    
+    @Test
+    public void testIdleTenantsAreForgottenBeyondTheLimit() {
+        FairScheduler scheduler = new FairScheduler(delegate, 1).withMaxTenants(2);
+        delegate.gate.release(4);
+        scheduler.generate(request("first", "f 0", 10));
+        scheduler.generate(request("second", "s 0", 10));
+        scheduler.generate(request("first", "f 1", 10));
+        scheduler.generate(request("third", "t 0", 10));
+        
+        // The least recently seen tenant goes
+        assertEquals(List.of("first", "third"), scheduler.snapshot().stream().map(TenantSnapshot::tenant).sorted().toList());
+        assertEquals(2, scheduler.snapshot("first").requests());
+        assertEquals(0, scheduler.snapshot("second").requests());
+    }
+}
\ No newline at end of file
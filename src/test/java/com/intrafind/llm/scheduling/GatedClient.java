@@ -0,0 +1,47 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Usage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+// Records the order calls reach the provider and holds each one until the test releases it
+class GatedClient implements LLMClient {
+    final List<String> started = new ArrayList<>();
+    final Semaphore gate = new Semaphore(0);
+    volatile Usage usage = Usage.EMPTY;
+    
+    @Override
+    public LLMResponse generate(LLMRequest request) {
+        synchronized (started) {
+            started.add(request.getPrompt());
+        }
+        gate.acquireUninterruptibly();
+        return LLMResponse.builder().content(request.getPrompt()).model("stub").provider(LLMProvider.OPENAI).usage(usage).build();
+    }
+    
+    List<String> started() {
+        synchronized (started) {
+            return new ArrayList<>(started);
+        }
+    }
+    
+    @Override
+    public boolean isHealthy() {
+        return true;
+    }
+    
+    @Override
+    public LLMProvider getProvider() {
+        return LLMProvider.OPENAI;
+    }
+    
+    @Override
+    public void close() {
+    }
+}
\ No newline at end of file
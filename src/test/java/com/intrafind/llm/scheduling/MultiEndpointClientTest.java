@@ -0,0 +1,171 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.core.Usage;
+import com.intrafind.llm.exceptions.LLMException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MultiEndpointClientTest {
+    
+    // Stands in for one deployment, answering after a fixed latency or failing with the given status; system prompts
+    // it has seen before count as cached
+    private static class EndpointClient implements LLMClient {
+        final List<String> models = new CopyOnWriteArrayList<>();
+        final Set<String> cachedSystems = ConcurrentHashMap.newKeySet();
+        final long latencyMillis;
+        volatile int failureStatus = -1;
+        
+        EndpointClient(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+        
+        @Override
+        public LLMResponse generate(LLMRequest request) {
+            models.add(request.getModel());
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (failureStatus >= 0) {
+                throw new LLMException("HTTP error " + failureStatus, failureStatus);
+            }
+            boolean cached = request.getSystemText() != null && !cachedSystems.add(request.getSystemText());
+            Usage usage = new Usage(1000, 10, cached ? 900 : 0, 0);
+            return LLMResponse.builder().content("ok").model(request.getModel()).provider(LLMProvider.OPENAI).usage(usage).build();
+        }
+        
+        int calls() {
+            return models.size();
+        }
+        
+        @Override
+        public boolean isHealthy() {
+            return true;
+        }
+        
+        @Override
+        public LLMProvider getProvider() {
+            return LLMProvider.OPENAI;
+        }
+        
+        @Override
+        public void close() {
+        }
+    }
+    
+    private static void call(LLMClient client, int times) {
+        for (int i = 0; i < times; i++) {
+            client.generate(new LLMRequest("Hello").withModel("gpt-4o"));
+        }
+    }
+    
+    @Test
+    public void testSlowEndpointGetsLessTraffic() {
+        EndpointClient fast = new EndpointClient(2);
+        EndpointClient slow = new EndpointClient(40);
+        MultiEndpointClient client = new MultiEndpointClient()
+            .withEndpoint("eastus", fast)
+            .withEndpoint("westeurope", slow);
+        call(client, 40);
+        assertEquals(1, slow.calls());
+        assertEquals(39, fast.calls());
+        
+        List<EndpointSnapshot> snapshot = client.snapshot();
+        assertEquals("eastus", snapshot.get(0).name());
+        assertEquals(39, snapshot.get(0).requests());
+        assertTrue(snapshot.get(1).latencyMillis() >= 40, String.valueOf(snapshot.get(1).latencyMillis()));
+        assertTrue(snapshot.get(0).latencyMillis() < snapshot.get(1).latencyMillis());
+    }
+    
+    @Test
+    public void testUnusedEndpointIsTriedAgain() {
+        EndpointClient fast = new EndpointClient(2);
+        EndpointClient slow = new EndpointClient(10);
+        MultiEndpointClient client = new MultiEndpointClient()
+            .withEndpoint("fast", fast)
+            .withEndpoint("slow", slow)
+            .withDecayMillis(20);
+        long end = System.nanoTime() + 300_000_000L;
+        while (System.nanoTime() < end) {
+            call(client, 1);
+        }
+        assertTrue(slow.calls() >= 3, String.valueOf(slow.calls()));
+        assertTrue(fast.calls() > slow.calls() * 2, fast.calls() + " vs " + slow.calls());
+    }
+    
+    @Test
+    public void testFailingEndpointIsAvoidedAndRetried() {
+        EndpointClient failing = new EndpointClient(0);
+        failing.failureStatus = 503;
+        EndpointClient healthy = new EndpointClient(5);
+        MultiEndpointClient client = new MultiEndpointClient()
+            .withEndpoint("failing", failing)
+            .withEndpoint("healthy", healthy);
+        call(client, 20);
+        assertEquals(1, failing.calls());
+        assertEquals(20, healthy.calls());
+        EndpointSnapshot snapshot = client.snapshot().get(0);
+        assertEquals(1, snapshot.errors());
+        assertEquals(0.1, snapshot.errorRate(), 1e-9);
+        
+        // A rejected request is not the endpoint's fault and is not retried elsewhere
+        EndpointClient rejecting = new EndpointClient(0);
+        rejecting.failureStatus = 400;
+        MultiEndpointClient single = new MultiEndpointClient().withEndpoint("rejecting", rejecting);
+        LLMException e = assertThrows(LLMException.class, () -> call(single, 1));
+        assertEquals(400, e.getStatusCode());
+        EndpointSnapshot rejected = single.snapshot().get(0);
+        assertEquals(0, rejected.errors());
+        assertEquals(0.0, rejected.errorRate());
+    }
+    
+    @Test
+    public void testModelPerEndpoint() {
+        EndpointClient azure = new EndpointClient(0);
+        MultiEndpointClient client = new MultiEndpointClient().withEndpoint("azure", azure, "gpt-4o-eastus");
+        assertEquals("gpt-4o-eastus", client.generate(new LLMRequest("Hello").withModel("gpt-4o")).getModel());
+        assertEquals(List.of("gpt-4o-eastus"), azure.models);
+        assertEquals(LLMProvider.OPENAI, client.getProvider());
+    }
+    
+    @Test
+    public void testPrefixAffinityKeepsPromptCachesWarm() {
+        List<EndpointClient> clients = List.of(new EndpointClient(0), new EndpointClient(0), new EndpointClient(0));
+        MultiEndpointClient client = new MultiEndpointClient()
+            .withEndpoint("eastus", clients.get(0))
+            .withEndpoint("westeurope", clients.get(1))
+            .withPrefixAffinity(0, 1.25)
+            .withEndpoint("openai", clients.get(2));
+        for (int round = 0; round < 5; round++) {
+            for (int agent = 0; agent < 6; agent++) {
+                client.generate(new LLMRequest("Question " + round).withSystem("Agent " + agent));
+            }
+        }
+        // Each system prompt went to a single endpoint and was prefilled there once
+        int prefilled = 0;
+        for (EndpointClient endpoint : clients) {
+            prefilled += endpoint.cachedSystems.size();
+        }
+        assertEquals(6, prefilled);
+        long input = client.snapshot().stream().mapToLong(EndpointSnapshot::inputTokens).sum();
+        long cached = client.snapshot().stream().mapToLong(EndpointSnapshot::cachedInputTokens).sum();
+        assertEquals(30_000, input);
+        assertEquals(24 * 900, cached);
+        for (EndpointSnapshot endpoint : client.snapshot()) {
+            if (endpoint.requests() > 0) {
+                assertEquals(0.72, endpoint.cacheHitRatio(), 1e-9);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,65 @@
+package com.intrafind.llm.scheduling;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefixRingTest {
+    
+    @Test
+    public void testSpreadsPrefixesAndMovesFewWhenRoutesAreAdded() {
+        PrefixRing three = new PrefixRing(List.of("eastus", "westeurope", "openai"));
+        PrefixRing four = new PrefixRing(List.of("eastus", "westeurope", "openai", "japaneast"));
+        int[] perRoute = new int[3];
+        int moved = 0;
+        for (long prefix = 0; prefix < 3000; prefix++) {
+            int route = three.select(prefix, new int[3], new boolean[3], 1.25);
+            perRoute[route]++;
+            int after = four.select(prefix, new int[4], new boolean[4], 1.25);
+            if (after != route) {
+                assertEquals(3, after, "Prefixes only move to the new route");
+                moved++;
+            }
+        }
+        for (int count : perRoute) {
+            assertTrue(count > 600 && count < 1400, String.valueOf(count));
+        }
+        assertTrue(moved > 400 && moved < 1200, String.valueOf(moved));
+    }
+    
+    @Test
+    public void testSimilarNamesShareTheLoad() {
+        // "Aa" and "BB" have the same String.hashCode, those of "key-1" and "key-2" differ by one
+        for (List<String> names : List.of(List.of("Aa", "BB"), List.of("key-1", "key-2"))) {
+            PrefixRing ring = new PrefixRing(names);
+            int[] perRoute = new int[2];
+            for (long prefix = 0; prefix < 3000; prefix++) {
+                perRoute[ring.select(prefix, new int[2], new boolean[2], 1.25)]++;
+            }
+            assertTrue(perRoute[0] > 900 && perRoute[1] > 900, names + " " + perRoute[0] + "/" + perRoute[1]);
+        }
+    }
+    
+    @Test
+    public void testBoundedLoadAndExclusions() {
+        PrefixRing ring = new PrefixRing(List.of("a", "b", "c"));
+        long prefix = 42;
+        int owner = ring.select(prefix, new int[3], new boolean[3], 1.25);
+        
+        // With one call everywhere the bound is ceil(1.25 * 4 / 3) = 2 calls, the owner may take a second
+        int[] load = { 1, 1, 1 };
+        assertEquals(owner, ring.select(prefix, load, new boolean[3], 1.25));
+        
+        // With three calls on the owner the bound is ceil(1.25 * 6 / 3) = 3, a fourth goes elsewhere
+        load[owner] = 3;
+        int overflow = ring.select(prefix, load, new boolean[3], 1.25);
+        assertNotEquals(owner, overflow);
+        
+        boolean[] excluded = new boolean[3];
+        excluded[owner] = true;
+        assertEquals(overflow, ring.select(prefix, new int[3], excluded, 1.25));
+        assertEquals(-1, ring.select(prefix, new int[3], new boolean[] { true, true, true }, 1.25));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,158 @@
+package com.intrafind.llm.scheduling;
+
+import com.intrafind.llm.core.LLMClient;
+import com.intrafind.llm.core.LLMRequest;
+import com.intrafind.llm.core.LLMResponse;
+import com.intrafind.llm.exceptions.RequestRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrioritySchedulerTest {
+    
+    private final GatedClient delegate = new GatedClient();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    
+    @AfterEach
+    public void tearDown() {
+        delegate.gate.release(100);
+        callers.shutdownNow();
+    }
+    
+    private Future<LLMResponse> submit(PriorityScheduler scheduler, String prompt, Priority priority) {
+        return callers.submit(() -> scheduler.generate(new LLMRequest(prompt), priority));
+    }
+    
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+    
+    private static void assertRejected(Future<LLMResponse> call) throws InterruptedException {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> call.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RequestRejectedException.class, e.getCause());
+    }
+    
+    @Test
+    public void testHigherPriorityRunsFirst() throws Exception {
+        PriorityScheduler scheduler = new PriorityScheduler(delegate, 1);
+        Future<LLMResponse> running = submit(scheduler, "running", Priority.NORMAL);
+        await(() -> delegate.started().size() == 1);
+        
+        List<Future<LLMResponse>> queued = new ArrayList<>();
+        queued.add(submit(scheduler, "bulk", Priority.BULK));
+        await(() -> scheduler.getQueued(Priority.BULK) == 1);
+        queued.add(submit(scheduler, "normal", Priority.NORMAL));
+        await(() -> scheduler.getQueued(Priority.NORMAL) == 1);
+        queued.add(submit(scheduler, "interactive", Priority.INTERACTIVE));
+        await(() -> scheduler.getQueued(Priority.INTERACTIVE) == 1);
+        assertEquals(1, scheduler.getInFlight());
+        
+        delegate.gate.release(4);
+        assertEquals("running", running.get(5, TimeUnit.SECONDS).getContent());
+        for (Future<LLMResponse> call : queued) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("running", "interactive", "normal", "bulk"), delegate.started());
+        assertEquals(0, scheduler.getInFlight());
+    }
+    
+    @Test
+    public void testAgingPreventsStarvation() throws Exception {
+        PriorityScheduler scheduler = new PriorityScheduler(delegate, 1).withAgingMillis(50);
+        Future<LLMResponse> running = submit(scheduler, "running", Priority.INTERACTIVE);
+        await(() -> delegate.started().size() == 1);
+        
+        Future<LLMResponse> bulk = submit(scheduler, "bulk", Priority.BULK);
+        await(() -> scheduler.getQueued(Priority.BULK) == 1);
+        // Two aging steps bring the bulk call level with interactive ones, and it has waited longer
+        Thread.sleep(150);
+        Future<LLMResponse> interactive = submit(scheduler, "interactive", Priority.INTERACTIVE);
+        await(() -> scheduler.getQueued(Priority.INTERACTIVE) == 1);
+        
+        delegate.gate.release(3);
+        running.get(5, TimeUnit.SECONDS);
+        bulk.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("running", "bulk", "interactive"), delegate.started());
+    }
+    
+    @Test
+    public void testFullQueueDisplacesLowerPriority() throws Exception {
+        PriorityScheduler scheduler = new PriorityScheduler(delegate, 1).withMaxQueued(1);
+        Future<LLMResponse> running = submit(scheduler, "running", Priority.BULK);
+        await(() -> delegate.started().size() == 1);
+        
+        Future<LLMResponse> bulk = submit(scheduler, "bulk", Priority.BULK);
+        await(() -> scheduler.getQueued(Priority.BULK) == 1);
+        Future<LLMResponse> interactive = submit(scheduler, "interactive", Priority.INTERACTIVE);
+        assertRejected(bulk);
+        await(() -> scheduler.getQueued(Priority.INTERACTIVE) == 1);
+        
+        // Nothing of a lower class left to displace
+        assertThrows(RequestRejectedException.class, () -> scheduler.generate(new LLMRequest("normal"), Priority.NORMAL));
+        
+        delegate.gate.release(2);
+        running.get(5, TimeUnit.SECONDS);
+        interactive.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("running", "interactive"), delegate.started());
+    }
+    
+    @Test
+    public void testInteractiveSpikePreemptsBulk() throws Exception {
+        PriorityScheduler scheduler = new PriorityScheduler(delegate, 1).withPreemptionThreshold(2);
+        Future<LLMResponse> running = submit(scheduler, "running", Priority.BULK);
+        await(() -> delegate.started().size() == 1);
+        
+        List<Future<LLMResponse>> bulk = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            bulk.add(submit(scheduler, "bulk " + i, Priority.BULK));
+        }
+        Future<LLMResponse> normal = submit(scheduler, "normal", Priority.NORMAL);
+        await(() -> scheduler.getQueued(Priority.BULK) == 3 && scheduler.getQueued(Priority.NORMAL) == 1);
+        
+        Future<LLMResponse> first = submit(scheduler, "interactive 1", Priority.INTERACTIVE);
+        await(() -> scheduler.getQueued(Priority.INTERACTIVE) == 1);
+        assertEquals(3, scheduler.getQueued(Priority.BULK));
+        Future<LLMResponse> second = submit(scheduler, "interactive 2", Priority.INTERACTIVE);
+        for (Future<LLMResponse> call : bulk) {
+            assertRejected(call);
+        }
+        assertEquals(0, scheduler.getQueued(Priority.BULK));
+        
+        delegate.gate.release(4);
+        for (Future<LLMResponse> call : List.of(running, first, second, normal)) {
+            call.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of("running", "interactive 1", "interactive 2", "normal"), delegate.started());
+    }
+    
+    @Test
+    public void testCloseRejectsQueuedCalls() throws Exception {
+        PriorityScheduler scheduler = new PriorityScheduler(delegate, 1);
+        LLMClient bulkClient = scheduler.client(Priority.BULK);
+        Future<LLMResponse> running = callers.submit(() -> bulkClient.generate(new LLMRequest("running")));
+        await(() -> delegate.started().size() == 1);
+        Future<LLMResponse> queued = callers.submit(() -> bulkClient.generate(new LLMRequest("queued")));
+        await(() -> scheduler.getQueued(Priority.BULK) == 1);
+        
+        scheduler.close();
+        assertRejected(queued);
+        assertThrows(RequestRejectedException.class, () -> scheduler.generate(new LLMRequest("late")));
+        delegate.gate.release();
+        running.get(5, TimeUnit.SECONDS);
+    }
+}
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.intrafind.llm.tokenizer;
+
+import com.intrafind.llm.core.ContentPart;
+import com.intrafind.llm.core.LLMProvider;
+import com.intrafind.llm.core.LLMRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class TokenizerTest {
+    
+    // All 256 bytes plus a few merges such as "th" (256), "the" (258), " the" (260), "in" (261) and "ing" (262)
+    private static final BpeTokenizer TEST = Tokenizers.vocabulary("test_base");
+    
+    private static List<String> pieces(String text) {
+        return pieces(text, false);
+    }
+    
+    private static List<String> pieces(String text, boolean o200k) {
+        char[] c = text.toCharArray();
+        List<String> pieces = new ArrayList<>();
+        for (int pos = 0; pos < c.length; ) {
+            int next = o200k ? PreTokenizer.nextO200k(c, pos, c.length) : PreTokenizer.next(c, pos, c.length);
+            pieces.add(text.substring(pos, next));
+            pos = next;
+        }
+        return pieces;
+    }
+    
+    @Test
+    public void testPreTokenizer() {
+        assertEquals(List.of("I", "'m", " here", " ", " ", "123", "456", " abc", "!!\n\n", "ok"),
+            pieces("I'm here  123456 abc!!\n\nok"));
+        assertEquals(List.of("Hello", ",", " world", "\n", "  ", " x"), pieces("Hello, world\n   x"));
+        assertEquals(List.of("Grüße", " 世界"), pieces("Grüße 世界"));
+    }
+    
+    @Test
+    public void testO200kPreTokenizer() {
+        // Words split before upper case after lower case and keep their contraction; slashes follow line breaks
+        assertEquals(List.of("HelloWorld", " I", "'m", " here"), pieces("HelloWorld I'm here"));
+        assertEquals(List.of("Hello", "World", " I'm", " here"), pieces("HelloWorld I'm here", true));
+        assertEquals(List.of("ok", "!\n", "/x"), pieces("ok!\n/x"));
+        assertEquals(List.of("ok", "!\n/", "x"), pieces("ok!\n/x", true));
+        // Other letters such as CJK count as upper and lower case
+        assertEquals(List.of("HTTPServer", " 世界Hello"), pieces("HTTPServer 世界Hello", true));
+        assertEquals(List.of("I'm", " here", " ", " ", "123", "456", " abc", "!!\n\n", "ok"), pieces("I'm here  123456 abc!!\n\nok", true));
+        assertEquals(List.of("Grüße", " 世界"), pieces("Grüße 世界", true));
+    }
+    
+    @Test
+    public void testOpenAIParity() {
+        BpeTokenizer cl100k = Tokenizers.vocabulary(Tokenizers.CL100K_BASE);
+        BpeTokenizer o200k = Tokenizers.vocabulary(Tokenizers.O200K_BASE);
+        assumeTrue(cl100k != null && o200k != null, "tiktoken rank files are not on the test classpath");
+        
+        // Token ids tiktoken returns for the same text
+        assertArrayEquals(new int[] {15339, 1917}, cl100k.encode("hello world"));
+        assertArrayEquals(new int[] {83, 1609, 5963, 374, 2294, 0}, cl100k.encode("tiktoken is great!"));
+        assertArrayEquals(new int[] {24912, 2375}, o200k.encode("hello world"));
+        assertArrayEquals(new int[] {83, 8251, 2488, 382, 2212, 0}, o200k.encode("tiktoken is great!"));
+        assertTrue(Tokenizers.forModel(LLMProvider.OPENAI, "gpt-4o").isExact());
+        assertEquals(6, Tokenizers.forModel(LLMProvider.OPENAI, "gpt-4o").countTokens("tiktoken is great!"));
+    }
+    
+    @Test
+    public void testMergesLowestRankFirst() {
+        assertNotNull(TEST);
+        assertEquals(275, TEST.getVocabularySize());
+        assertArrayEquals(new int[] {258}, TEST.encode("the"));
+        assertArrayEquals(new int[] {260}, TEST.encode(" the"));
+        // " s" + "t" merge to " st", "in" + "g" to "ing"; "r" stays a single byte
+        assertArrayEquals(new int[] {258, 264, 'r', 262}, TEST.encode("the string"));
+        assertArrayEquals(new int[] {272}, TEST.encode("ö"));
+    }
+    
+    @Test
+    public void testCountMatchesEncode() {
+        String text = "Grüße aus Hamburg! The string is 1234567 chars long, isn't it?\n\n  😀 the end";
+        assertEquals(TEST.encode(text).length, TEST.countTokens(text));
+        assertEquals(text, TEST.decode(TEST.encode(text)));
+        assertEquals(0, TEST.countTokens(""));
+        assertEquals(0, TEST.countTokens(null));
+    }
+    
+    @Test
+    public void testFitAndTruncate() {
+        assertEquals("the the", TEST.truncate("the the the", 2));
+        assertEquals("the the the", TEST.truncate("the the the", 3));
+        assertEquals(0, TEST.fit("the", 0));
+        
+        Tokenizer estimate = new EstimatingTokenizer("estimate", 4.0);
+        String document = "Employees accrue two vacation days per month. ".repeat(100);
+        String trimmed = estimate.truncate(document, 50);
+        assertTrue(estimate.countTokens(trimmed) <= 50);
+        assertTrue(estimate.countTokens(trimmed) >= 45, trimmed);
+    }
+    
+    @Test
+    public void testProviderTokenizers() {
+        // Without the rank files on the classpath OpenAI falls back to an estimate
+        boolean bundled = Tokenizers.vocabulary(Tokenizers.O200K_BASE) != null;
+        assertEquals(bundled, Tokenizers.forModel(LLMProvider.OPENAI, "gpt-4o").isExact());
+        for (LLMProvider provider : LLMProvider.values()) {
+            int tokens = Tokenizers.forModel(provider, null).countTokens("The quick brown fox jumps over the lazy dog.");
+            assertTrue(tokens >= 8 && tokens <= 16, provider + ": " + tokens);
+        }
+    }
+    
+    @Test
+    public void testRequestEstimate() {
+        LLMRequest plain = new LLMRequest("Summarize the handbook.");
+        LLMRequest withContext = new LLMRequest("Summarize the handbook.")
+            .withSystem("Answer briefly.")
+            .withContext(ContentPart.text("Employees accrue two vacation days per month. ".repeat(100)));
+        
+        int plainTokens = plain.estimateInputTokens(LLMProvider.ANTHROPIC);
+        int contextTokens = withContext.estimateInputTokens(LLMProvider.ANTHROPIC);
+        assertTrue(plainTokens > Tokenizers.MESSAGE_OVERHEAD);
+        assertTrue(contextTokens > plainTokens + 800, contextTokens + " vs " + plainTokens);
+        
+        int textOnly = plain.estimateInputTokens(LLMProvider.OPENAI);
+        int withImage = plain.withImage("image/jpeg", new byte[] {1, 2, 3}).estimateInputTokens(LLMProvider.OPENAI);
+        assertEquals(textOnly + Tokenizers.IMAGE_TOKENS, withImage);
+    }
+    
+    @Test
+    public void testCountingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        String text = "The string is 1234567 chars long, isn't it? Grüße aus Hamburg. ".repeat(1000);
+        for (int i = 0; i < 20; i++) {
+            TEST.countTokens(text);
+        }
+        
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 10; i++) {
+            TEST.countTokens(text);
+        }
+        long perCall = (threads.getThreadAllocatedBytes(thread) - before) / 10;
+        assertTrue(perCall < 1024, perCall + " bytes per call");
+    }
+}
\ No newline at end of file
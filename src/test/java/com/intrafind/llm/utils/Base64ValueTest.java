@@ -0,0 +1,61 @@
+package com.intrafind.llm.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Base64ValueTest {
+    
+    private static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+    
+    private static String json(String value) {
+        return "\"" + value + "\"";
+    }
+    
+    @Test
+    public void testMatchesJdkEncoder() {
+        // Around the chunk size, where the encoding continues from one chunk into the next
+        for (int length : new int[] {0, 1, 2, 3, 4, 5, 3071, 3072, 3073, 3074, 100_000}) {
+            byte[] data = bytes(length);
+            Base64Value value = Base64Value.of(data);
+            String expected = Base64.getEncoder().encodeToString(data);
+            assertEquals(json(expected), JsonParser.toJson(value), "length " + length);
+            assertEquals(expected.length(), value.length());
+        }
+    }
+    
+    @Test
+    public void testDataUrl() {
+        byte[] data = bytes(10);
+        assertEquals(json("data:image/png;base64," + Base64.getEncoder().encodeToString(data)),
+            JsonParser.toJson(Base64Value.dataUrl("image/png", data)));
+    }
+    
+    @Test
+    public void testFromFile(@TempDir Path dir) throws Exception {
+        byte[] data = bytes(20_000);
+        Path file = Files.write(dir.resolve("scan.png"), data);
+        assertEquals(json("data:image/png;base64," + Base64.getEncoder().encodeToString(data)),
+            JsonParser.toJson(Base64Value.dataUrl("image/png", file)));
+    }
+    
+    @Test
+    public void testIsContainedIn() {
+        Base64Value value = Base64Value.of(bytes(3));
+        assertTrue(Base64Value.isContainedIn(Map.of("messages", List.of(Map.of("content", new Object[] {value})))));
+        assertFalse(Base64Value.isContainedIn(Map.of("messages", List.of(Map.of("content", "text")))));
+        assertFalse(Base64Value.isContainedIn(null));
+    }
+}
\ No newline at end of file
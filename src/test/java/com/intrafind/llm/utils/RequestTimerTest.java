@@ -0,0 +1,79 @@
+package com.intrafind.llm.utils;
+
+import com.intrafind.llm.core.LLMTiming;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RequestTimerTest {
+    
+    private HttpServer server;
+    private String url;
+    
+    @BeforeEach
+    public void startServer() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/echo", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/echo";
+    }
+    
+    @AfterEach
+    public void stopServer() {
+        server.stop(0);
+    }
+    
+    @Test
+    public void testPhasesRecorded() {
+        HttpClient httpClient = new HttpClient();
+        
+        RequestTimer timer = new RequestTimer();
+        String body = httpClient.post(url, Map.of(), Map.of("prompt", "Hello"), timer);
+        timer.parseStarted();
+        JsonParser.parse(body, Map.class);
+        timer.parseFinished();
+        
+        LLMTiming timing = timer.toTiming();
+        assertFalse(timing.isConnectionReused());
+        assertTrue(timing.getSerialization().toNanos() > 0);
+        assertTrue(timing.getRequestWrite().toNanos() > 0);
+        assertTrue(timing.getTimeToFirstByte().toMillis() >= 50);
+        assertTrue(timing.getParse().toNanos() > 0);
+        assertTrue(timing.getTotal().compareTo(timing.getTimeToFirstByte()) > 0);
+        
+        httpClient.close();
+    }
+    
+    @Test
+    public void testConnectionReuse() {
+        HttpClient httpClient = new HttpClient();
+        httpClient.post(url, Map.of(), Map.of("prompt", "first"));
+        
+        RequestTimer timer = new RequestTimer();
+        httpClient.post(url, Map.of(), Map.of("prompt", "second"), timer);
+        
+        assertTrue(timer.toTiming().isConnectionReused());
+        
+        httpClient.close();
+    }
+}
\ No newline at end of file